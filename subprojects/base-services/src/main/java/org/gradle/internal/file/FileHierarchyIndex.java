@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.internal.Pair;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A mutable index of paths, each associated with some values. Intended to be used to efficiently determine which of the indexed paths overlap a given path,
+ * that is, are the same as the path, an ancestor of the path or a descendant of the path.
+ *
+ * Like {@link DefaultFileHierarchySet}, the paths are kept in a prefix tree, so that a lookup takes time proportional to the depth of the path
+ * rather than to the number of indexed paths. Unlike {@link DefaultFileHierarchySet}, paths can be removed from the index again.
+ *
+ * Paths are expected to be absolute and canonical. This class is not thread-safe.
+ */
+public class FileHierarchyIndex<T> {
+    private final Node<T> root = new Node<T>(null);
+
+    public boolean isEmpty() {
+        return root.valueCount == 0;
+    }
+
+    /**
+     * Associates the given value with the given path. A path can be associated with the same value multiple times.
+     */
+    public void add(String path, T value) {
+        Node<T> node = root;
+        node.valueCount++;
+        for (String segment : segments(path)) {
+            node = node.getOrCreateChild(segment);
+            node.valueCount++;
+        }
+        node.path = path;
+        node.values.add(value);
+    }
+
+    /**
+     * Removes one association of the given value with the given path.
+     *
+     * @return true if the value was associated with the path.
+     */
+    public boolean remove(String path, T value) {
+        List<Node<T>> nodes = Lists.newArrayList();
+        Node<T> node = root;
+        nodes.add(node);
+        for (String segment : segments(path)) {
+            node = node.getChild(segment);
+            if (node == null) {
+                return false;
+            }
+            nodes.add(node);
+        }
+        if (!node.values.remove(value)) {
+            return false;
+        }
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node<T> current = nodes.get(i);
+            current.valueCount--;
+            if (current.valueCount == 0 && i > 0) {
+                nodes.get(i - 1).children.remove(current.segment);
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        root.values.clear();
+        root.children = null;
+        root.valueCount = 0;
+    }
+
+    /**
+     * Returns true when some value is associated with the given path or one of its ancestors.
+     */
+    public boolean contains(String path) {
+        Node<T> node = root;
+        for (String segment : segments(path)) {
+            if (node.valueCount == 0) {
+                return false;
+            }
+            if (!node.values.isEmpty()) {
+                return true;
+            }
+            node = node.getChild(segment);
+            if (node == null) {
+                return false;
+            }
+        }
+        return !node.values.isEmpty();
+    }
+
+    /**
+     * Returns some value whose path overlaps the given path, along with the shorter of the two paths. Returns null when there is no such value.
+     */
+    @Nullable
+    public Pair<T, String> findFirstOverlap(String path) {
+        Node<T> node = root;
+        for (String segment : segments(path)) {
+            if (node.valueCount == 0) {
+                return null;
+            }
+            if (!node.values.isEmpty()) {
+                return Pair.of(node.values.get(0), node.path);
+            }
+            node = node.getChild(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        if (node.valueCount == 0) {
+            return null;
+        }
+        while (node.values.isEmpty()) {
+            // Some descendant has a value, otherwise this node would have been removed
+            node = node.children.values().iterator().next();
+        }
+        return Pair.of(node.values.get(0), path);
+    }
+
+    /**
+     * Returns all values whose path overlaps the given path, each along with the shorter of the value's path and the given path.
+     */
+    public List<Pair<T, String>> findOverlaps(String path) {
+        List<Pair<T, String>> overlaps = new ArrayList<Pair<T, String>>();
+        Node<T> node = root;
+        for (String segment : segments(path)) {
+            if (node.valueCount == 0) {
+                return overlaps;
+            }
+            for (T value : node.values) {
+                overlaps.add(Pair.of(value, node.path));
+            }
+            node = node.getChild(segment);
+            if (node == null) {
+                return overlaps;
+            }
+        }
+        collectValues(node, path, overlaps);
+        return overlaps;
+    }
+
+    private static <T> void collectValues(Node<T> node, String path, List<Pair<T, String>> overlaps) {
+        for (T value : node.values) {
+            overlaps.add(Pair.of(value, path));
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children.values()) {
+                collectValues(child, path, overlaps);
+            }
+        }
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<String>();
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            int end = path.indexOf(File.separatorChar, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                segments.add(path.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static class Node<T> {
+        private final String segment;
+        private final List<T> values = new ArrayList<T>(1);
+        private Map<String, Node<T>> children;
+        private String path;
+        /**
+         * The number of values associated with this node and its descendants.
+         */
+        private int valueCount;
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        @Nullable
+        Node<T> getChild(String segment) {
+            return children == null ? null : children.get(segment);
+        }
+
+        Node<T> getOrCreateChild(String segment) {
+            if (children == null) {
+                children = Maps.newHashMap();
+            }
+            Node<T> child = children.get(segment);
+            if (child == null) {
+                child = new Node<T>(segment);
+                children.put(segment, child);
+            }
+            return child;
+        }
+    }
+}
@@ -19,4 +19,8 @@ package org.gradle.internal.hash;
 import org.gradle.internal.Factory;
 
 public interface ContentHasherFactory extends Factory<Hasher> {
+    /**
+     * The name of the algorithm used by the hashers created by this factory. Persistent state containing hashes should be keyed by this name.
+     */
+    String getAlgorithm();
 }
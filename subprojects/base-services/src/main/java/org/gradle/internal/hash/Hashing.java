@@ -34,6 +34,8 @@ public class Hashing {
 
     private static final HashFunction SHA1 = MessageDigestHashFunction.of("SHA-1");
 
+    private static final HashFunction MURMUR3_128 = new Murmur3HashFunction();
+
     public static HashFunction md5() {
         return MD5;
     }
@@ -42,6 +44,13 @@ public class Hashing {
         return SHA1;
     }
 
+    /**
+     * A fast, non-cryptographic 128-bit hash function. Only suitable for detecting changes, not for security.
+     */
+    public static HashFunction murmur3_128() {
+        return MURMUR3_128;
+    }
+
     private static abstract class MessageDigestHashFunction implements HashFunction {
         public static MessageDigestHashFunction of(String algorithm) {
             MessageDigest prototype;
@@ -148,6 +157,12 @@ public class Hashing {
             digest.update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            checkNotDone();
+            digest.update(buffer);
+        }
+
         @Override
         public HashCode hash() {
             done = true;
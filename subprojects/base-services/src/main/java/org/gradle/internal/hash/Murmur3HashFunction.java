@@ -0,0 +1,258 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 128-bit x64 variant of MurmurHash3, with a seed of 0. Produces the same hashes as Guava's {@code Hashing.murmur3_128()}.
+ *
+ * This is not a cryptographic hash function. It is intended for detecting changes to content, where it is considerably faster than MD5.
+ * Inspired by the Google Guava project – https://github.com/google/guava.
+ */
+class Murmur3HashFunction implements HashFunction {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int BLOCK_SIZE = 16;
+
+    @Override
+    public Hasher newHasher() {
+        return new Murmur3Hasher();
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] bytes) {
+        Hasher hasher = newHasher();
+        hasher.putBytes(bytes);
+        return hasher.hash();
+    }
+
+    @Override
+    public HashCode hashString(CharSequence string) {
+        Hasher hasher = newHasher();
+        hasher.putString(string);
+        return hasher.hash();
+    }
+
+    @Override
+    public String toString() {
+        return "MURMUR3-128";
+    }
+
+    private static class Murmur3Hasher implements Hasher {
+        private final byte[] pending = new byte[BLOCK_SIZE];
+        private int pendingCount;
+        private long h1;
+        private long h2;
+        private long length;
+        private boolean done;
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher");
+            }
+        }
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            length += len;
+            if (pendingCount > 0) {
+                int count = Math.min(len, BLOCK_SIZE - pendingCount);
+                System.arraycopy(bytes, off, pending, pendingCount, count);
+                pendingCount += count;
+                off += count;
+                len -= count;
+                if (pendingCount < BLOCK_SIZE) {
+                    return;
+                }
+                processBlock(pending, 0);
+                pendingCount = 0;
+            }
+            while (len >= BLOCK_SIZE) {
+                processBlock(bytes, off);
+                off += BLOCK_SIZE;
+                len -= BLOCK_SIZE;
+            }
+            System.arraycopy(bytes, off, pending, 0, len);
+            pendingCount = len;
+        }
+
+        @Override
+        public void putBytes(ByteBuffer buffer) {
+            checkNotDone();
+            ByteBuffer bytes = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            length += bytes.remaining();
+            while (pendingCount > 0 && bytes.hasRemaining()) {
+                pending[pendingCount++] = bytes.get();
+                if (pendingCount == BLOCK_SIZE) {
+                    processBlock(pending, 0);
+                    pendingCount = 0;
+                }
+            }
+            while (bytes.remaining() >= BLOCK_SIZE) {
+                long k1 = bytes.getLong();
+                long k2 = bytes.getLong();
+                processBlock(k1, k2);
+            }
+            int remaining = bytes.remaining();
+            bytes.get(pending, pendingCount, remaining);
+            pendingCount += remaining;
+            buffer.position(buffer.limit());
+        }
+
+        @Override
+        public void putByte(byte value) {
+            checkNotDone();
+            length++;
+            pending[pendingCount++] = value;
+            if (pendingCount == BLOCK_SIZE) {
+                processBlock(pending, 0);
+                pendingCount = 0;
+            }
+        }
+
+        @Override
+        public void putInt(int value) {
+            for (int i = 0; i < 4; i++) {
+                putByte((byte) (value >>> (8 * i)));
+            }
+        }
+
+        @Override
+        public void putLong(long value) {
+            for (int i = 0; i < 8; i++) {
+                putByte((byte) (value >>> (8 * i)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            putBytes(hashCode.getBytes());
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            processTail();
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+            byte[] bytes = new byte[16];
+            putLongLittleEndian(h1, bytes, 0);
+            putLongLittleEndian(h2, bytes, 8);
+            return HashCode.fromBytesNoCopy(bytes);
+        }
+
+        private void processBlock(byte[] bytes, int off) {
+            processBlock(getLongLittleEndian(bytes, off), getLongLittleEndian(bytes, off + 8));
+        }
+
+        private void processBlock(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private void processTail() {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = 0; i < pendingCount; i++) {
+                long value = pending[i] & 0xFFL;
+                if (i < 8) {
+                    k1 ^= value << (8 * i);
+                } else {
+                    k2 ^= value << (8 * (i - 8));
+                }
+            }
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+
+        private static long getLongLittleEndian(byte[] bytes, int off) {
+            long result = 0;
+            for (int i = 7; i >= 0; i--) {
+                result = (result << 8) | (bytes[off + i] & 0xFFL);
+            }
+            return result;
+        }
+
+        private static void putLongLittleEndian(long value, byte[] bytes, int off) {
+            for (int i = 0; i < 8; i++) {
+                bytes[off + i] = (byte) (value >>> (8 * i));
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.io;
+
+import org.gradle.internal.UncheckedException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases mapped buffers eagerly. A mapped buffer is otherwise only released when it is garbage collected, and until then the mapped file
+ * cannot be deleted on some platforms. Mapping files should not be attempted when eager release is not supported by the JVM.
+ */
+public class MappedByteBuffers {
+    private static final Unmapper UNMAPPER = createUnmapper();
+
+    private MappedByteBuffers() {
+    }
+
+    public static boolean isUnmapSupported() {
+        return UNMAPPER != null;
+    }
+
+    /**
+     * Releases the given buffer. The buffer must not be used afterwards.
+     */
+    public static void unmap(MappedByteBuffer buffer) {
+        try {
+            UNMAPPER.unmap(buffer);
+        } catch (Exception e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    private static Unmapper createUnmapper() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            return new Unmapper() {
+                @Override
+                public void unmap(MappedByteBuffer buffer) throws Exception {
+                    invokeCleaner.invoke(unsafe, buffer);
+                }
+            };
+        } catch (Exception e) {
+            // Ignore, try the Java 7 and 8 way
+        }
+        try {
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return new Unmapper() {
+                @Override
+                public void unmap(MappedByteBuffer buffer) throws Exception {
+                    Object bufferCleaner = cleaner.invoke(buffer);
+                    if (bufferCleaner != null) {
+                        clean.invoke(bufferCleaner);
+                    }
+                }
+            };
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private interface Unmapper {
+        void unmap(MappedByteBuffer buffer) throws Exception;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.file
+
+import org.gradle.internal.Pair
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class FileHierarchyIndexTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def index = new FileHierarchyIndex<String>()
+
+    def "empty index has no overlaps"() {
+        expect:
+        index.empty
+        index.findFirstOverlap(path("dir")) == null
+        index.findOverlaps(path("dir")).empty
+    }
+
+    def "finds same path, ancestors and descendants"() {
+        index.add(path("dir"), "a")
+
+        expect:
+        index.findFirstOverlap(path("dir")) == Pair.of("a", path("dir"))
+        index.findFirstOverlap(path("dir/child")) == Pair.of("a", path("dir"))
+        index.findFirstOverlap(tmpDir.testDirectory.path) == Pair.of("a", tmpDir.testDirectory.path)
+        index.findFirstOverlap(path("dir2")) == null
+        index.findFirstOverlap(path("di")) == null
+        index.findFirstOverlap(path("other/dir")) == null
+    }
+
+    def "contains path when path or one of its ancestors is indexed"() {
+        index.add(path("dir/child"), "a")
+
+        expect:
+        index.contains(path("dir/child"))
+        index.contains(path("dir/child/grandchild"))
+        !index.contains(path("dir"))
+        !index.contains(path("dir/child2"))
+    }
+
+    def "finds all overlapping values"() {
+        index.add(path("dir"), "a")
+        index.add(path("dir/child"), "b")
+        index.add(path("dir/child/grandchild"), "c")
+        index.add(path("dir/child2"), "d")
+
+        expect:
+        index.findOverlaps(path("dir/child")) as Set == [Pair.of("a", path("dir")), Pair.of("b", path("dir/child")), Pair.of("c", path("dir/child"))] as Set
+        index.findOverlaps(path("dir/child2/other")) as Set == [Pair.of("a", path("dir")), Pair.of("d", path("dir/child2"))] as Set
+        index.findOverlaps(path("other")).empty
+    }
+
+    def "removed paths no longer overlap"() {
+        index.add(path("dir/child"), "a")
+        index.add(path("dir/child"), "b")
+
+        when:
+        index.remove(path("dir/child"), "a")
+
+        then:
+        index.findFirstOverlap(path("dir")) == Pair.of("b", path("dir"))
+
+        when:
+        index.remove(path("dir/child"), "b")
+
+        then:
+        index.empty
+        index.findFirstOverlap(path("dir")) == null
+        index.findFirstOverlap(path("dir/child")) == null
+    }
+
+    def "removing unknown value leaves index unchanged"() {
+        index.add(path("dir"), "a")
+
+        expect:
+        !index.remove(path("dir"), "b")
+        !index.remove(path("dir/child"), "a")
+        !index.remove(path("other"), "a")
+        index.findFirstOverlap(path("dir")) == Pair.of("a", path("dir"))
+    }
+
+    private String path(String relativePath) {
+        return tmpDir.file(relativePath).path
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+@Unroll
+class Murmur3HashFunctionTest extends Specification {
+    def random = new Random(1234L)
+
+    def "produces the same hash as Guava for #length bytes"() {
+        def bytes = new byte[length]
+        random.nextBytes(bytes)
+
+        expect:
+        Hashing.murmur3_128().hashBytes(bytes).toByteArray() == com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).asBytes()
+
+        where:
+        length << [0, 1, 7, 8, 15, 16, 17, 31, 32, 33, 1000, 8192]
+    }
+
+    def "produces the same hash regardless of how the input is split"() {
+        def bytes = new byte[100]
+        random.nextBytes(bytes)
+        def hasher = Hashing.murmur3_128().newHasher()
+
+        when:
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putByte(bytes[3])
+        hasher.putBytes(bytes, 4, 20)
+        hasher.putBytes(bytes, 24, 76)
+
+        then:
+        hasher.hash() == Hashing.murmur3_128().hashBytes(bytes)
+    }
+
+    def "hashes the content of #type buffers in the same way as arrays"() {
+        def bytes = new byte[1000]
+        random.nextBytes(bytes)
+        def buffer = direct ? ByteBuffer.allocateDirect(997) : ByteBuffer.allocate(997)
+        buffer.put(bytes, 3, 997)
+        buffer.flip()
+        def hasher = hashFunction.newHasher()
+
+        when:
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putBytes(buffer)
+
+        then:
+        !buffer.hasRemaining()
+        hasher.hash() == hashFunction.hashBytes(bytes)
+
+        where:
+        type                 | hashFunction             | direct
+        "murmur3 heap"       | Hashing.murmur3_128()    | false
+        "murmur3 direct"     | Hashing.murmur3_128()    | true
+        "md5 heap"           | Hashing.md5()            | false
+        "md5 direct"         | Hashing.md5()            | true
+    }
+
+    def "hashes primitives and strings in the same way as Guava"() {
+        def guavaHasher = com.google.common.hash.Hashing.murmur3_128().newHasher()
+        guavaHasher.putInt(123)
+        guavaHasher.putLong(456L)
+        guavaHasher.putBoolean(true)
+        guavaHasher.putDouble(1.5d)
+        guavaHasher.putString("some string", com.google.common.base.Charsets.UTF_8)
+
+        def hasher = Hashing.murmur3_128().newHasher()
+        hasher.putInt(123)
+        hasher.putLong(456L)
+        hasher.putBoolean(true)
+        hasher.putDouble(1.5d)
+        hasher.putString("some string")
+
+        expect:
+        hasher.hash().toByteArray() == guavaHasher.hash().asBytes()
+    }
+
+    def "cannot reuse hasher"() {
+        def hasher = Hashing.murmur3_128().newHasher()
+        hasher.hash()
+
+        when:
+        hasher.putInt(1)
+
+        then:
+        thrown(IllegalStateException)
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.gradle.caching.http.internal
 
+import org.gradle.caching.internal.controller.DefaultBuildCacheController
 import org.gradle.integtests.fixtures.AbstractIntegrationSpec
 import org.gradle.test.fixtures.keystore.TestKeyStore
 import spock.lang.Timeout
@@ -67,6 +68,29 @@ class HttpBuildCacheServiceIntegrationTest extends AbstractIntegrationSpec imple
         skippedTasks.containsAll ":compileJava"
     }
 
+    def "outputs of tasks are loaded from cache when remote entries are prefetched"() {
+        settingsFile << """
+            buildCache {
+                local {
+                    enabled = true
+                    directory = file("local-cache")
+                }
+            }
+        """
+        withBuildCache().run "jar"
+        withBuildCache().run "clean"
+        file("local-cache").deleteDir()
+
+        when:
+        executer.withArgument("-D${DefaultBuildCacheController.REMOTE_PREFETCH_PROPERTY}=true")
+        executer.withArgument("--info")
+        withBuildCache().succeeds "jar"
+
+        then:
+        output.contains ":compileJava FROM-CACHE"
+        output =~ /Prefetched [1-9]\d* of \d+ requested entries from the remote build cache/
+    }
+
     def "outputs are correctly loaded from cache"() {
         buildFile << """
             apply plugin: "application"
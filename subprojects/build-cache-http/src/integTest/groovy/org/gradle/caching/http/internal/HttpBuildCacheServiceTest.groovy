@@ -18,6 +18,7 @@ package org.gradle.caching.http.internal
 
 import org.apache.http.HttpHeaders
 import org.apache.http.HttpStatus
+import org.gradle.StartParameter
 import org.gradle.api.UncheckedIOException
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheException
@@ -79,7 +80,7 @@ class HttpBuildCacheServiceTest extends Specification {
         def config = new HttpBuildCache()
         config.url = server.uri.resolve("/cache/")
         buildCacheDescriber = new NoopBuildCacheDescriber()
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory()).createBuildCacheService(config, buildCacheDescriber)
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new StartParameter()).createBuildCacheService(config, buildCacheDescriber)
     }
 
     def "can cache artifact"() {
@@ -150,6 +151,30 @@ class HttpBuildCacheServiceTest extends Specification {
         receivedInput == "Data"
     }
 
+    def "reuses connection for consecutive requests"() {
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        def destFile = tempDir.file("stored.zip")
+        server.expectGet("/cache/${key.hashCode}", srcFile)
+        server.expectGetMissing("/cache/${key.hashCode}")
+        server.expectPut("/cache/${key.hashCode}", destFile, HttpStatus.SC_OK, null, 4)
+
+        when:
+        cache.load(key) { input ->
+            // Leave some of the content unread
+            input.read()
+        }
+        cache.load(key) { input ->
+            throw new RuntimeException("That should never be called")
+        }
+        cache.store(key, writer("Data".bytes))
+
+        then:
+        destFile.bytes == "Data".bytes
+        (cache as HttpBuildCacheService).httpClientHelper.openedConnectionCount == 1
+        (cache as HttpBuildCacheService).httpClientHelper.connectNanos > 0
+    }
+
     def "reports cache miss on 404"() {
         server.expectGetMissing("/cache/${key.hashCode}")
 
@@ -266,7 +291,7 @@ class HttpBuildCacheServiceTest extends Specification {
         configuration.url = server.uri.resolve("/cache/")
         configuration.credentials.username = 'user'
         configuration.credentials.password = 'password'
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory()).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new StartParameter()).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
 
         server.authenticationScheme = AuthScheme.BASIC
 
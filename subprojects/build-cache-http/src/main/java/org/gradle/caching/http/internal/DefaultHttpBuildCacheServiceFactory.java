@@ -17,6 +17,7 @@
 package org.gradle.caching.http.internal;
 
 import com.google.common.annotations.VisibleForTesting;
+import org.gradle.StartParameter;
 import org.gradle.api.GradleException;
 import org.gradle.authentication.Authentication;
 import org.gradle.caching.BuildCacheService;
@@ -39,12 +40,17 @@ import java.util.Collections;
  * Build cache factory for HTTP backend.
  */
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
+    // Loads and stores can also run in the background, alongside the workers
+    private static final int BACKGROUND_CONNECTIONS = 8;
+    private static final int MIN_CONNECTIONS = 20;
 
     private final SslContextFactory sslContextFactory;
+    private final StartParameter startParameter;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, StartParameter startParameter) {
         this.sslContextFactory = sslContextFactory;
+        this.startParameter = startParameter;
     }
 
     @Override
@@ -72,7 +78,9 @@ public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFac
         HttpSettings httpSettings = allowUntrustedServer
             ? DefaultHttpSettings.allowUntrustedSslConnections(authentications)
             : new DefaultHttpSettings(authentications, sslContextFactory);
-        HttpClientHelper httpClientHelper = new HttpClientHelper(httpSettings);
+        // Keep a connection open for each thread that can use the cache, so that requests do not need to wait for or open connections
+        int maxConnections = Math.max(MIN_CONNECTIONS, startParameter.getMaxWorkerCount() + BACKGROUND_CONNECTIONS);
+        HttpClientHelper httpClientHelper = new HttpClientHelper(httpSettings, maxConnections);
 
         describer.type("HTTP")
             .config("url", noUserInfoUrl.toASCIIString())
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregated timings of the requests made to an HTTP build cache.
+ */
+class HttpBuildCacheRequestMetrics {
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong timeToResponseNanos = new AtomicLong();
+    private final AtomicLong downloadNanos = new AtomicLong();
+    private final AtomicLong downloadedBytes = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+
+    /**
+     * Records a load request.
+     *
+     * @param timeToResponseNanos the time from sending the request until the response headers were received.
+     * @param downloadNanos the time taken to read the content of the response.
+     */
+    void loaded(long timeToResponseNanos, long downloadNanos, long bytes) {
+        loadCount.incrementAndGet();
+        this.timeToResponseNanos.addAndGet(timeToResponseNanos);
+        this.downloadNanos.addAndGet(downloadNanos);
+        downloadedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Records a load request that did not return an entry.
+     */
+    void missed(long timeToResponseNanos) {
+        loaded(timeToResponseNanos, 0, 0);
+    }
+
+    /**
+     * Records a store request.
+     *
+     * @param timeToResponseNanos the time from sending the request, including its content, until the response headers were received.
+     */
+    void stored(long timeToResponseNanos, long bytes) {
+        storeCount.incrementAndGet();
+        this.timeToResponseNanos.addAndGet(timeToResponseNanos);
+        uploadedBytes.addAndGet(bytes);
+    }
+
+    long getRequestCount() {
+        return loadCount.get() + storeCount.get();
+    }
+
+    /**
+     * @param connectNanos the time taken to open the connections, which is included in the time to response of the requests that opened them.
+     */
+    String describe(long openedConnectionCount, long connectNanos) {
+        long requestCount = getRequestCount();
+        return String.format("%d loads and %d stores using %d connections opened in %d ms, average time to response %d ms, downloaded %d KB in %d ms, uploaded %d KB",
+            loadCount.get(), storeCount.get(), openedConnectionCount, TimeUnit.NANOSECONDS.toMillis(connectNanos),
+            requestCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(timeToResponseNanos.get() / requestCount),
+            downloadedBytes.get() / 1024, TimeUnit.NANOSECONDS.toMillis(downloadNanos.get()),
+            uploadedBytes.get() / 1024);
+    }
+}
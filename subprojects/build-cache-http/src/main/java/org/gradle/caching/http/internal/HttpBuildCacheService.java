@@ -17,6 +17,7 @@
 package org.gradle.caching.http.internal;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.CountingInputStream;
 import org.apache.commons.lang.IncompleteArgumentException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpMessage;
@@ -27,6 +28,7 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.util.EntityUtils;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
@@ -47,6 +49,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Build cache implementation that delegates to a service accessible via HTTP.
@@ -68,6 +71,7 @@ public class HttpBuildCacheService implements BuildCacheService {
 
     private final URI root;
     private final HttpClientHelper httpClientHelper;
+    private final HttpBuildCacheRequestMetrics metrics = new HttpBuildCacheRequestMetrics();
 
     public HttpBuildCacheService(HttpClientHelper httpClientHelper, URI url) {
         if (!url.getPath().endsWith("/")) {
@@ -86,16 +90,27 @@ public class HttpBuildCacheService implements BuildCacheService {
 
         CloseableHttpResponse response = null;
         try {
+            long start = System.nanoTime();
             response = httpClientHelper.performHttpRequest(httpGet);
+            long timeToResponse = System.nanoTime() - start;
             StatusLine statusLine = response.getStatusLine();
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Response for GET {}: {}", safeUri(uri), statusLine);
+                LOGGER.debug("Response for GET {}: {} after {} ms", safeUri(uri), statusLine, TimeUnit.NANOSECONDS.toMillis(timeToResponse));
             }
             int statusCode = statusLine.getStatusCode();
             if (isHttpSuccess(statusCode)) {
-                reader.readFrom(response.getEntity().getContent());
+                long downloadStart = System.nanoTime();
+                CountingInputStream content = new CountingInputStream(response.getEntity().getContent());
+                reader.readFrom(content);
+                // Read whatever the reader left behind, so that the connection can be reused
+                EntityUtils.consume(response.getEntity());
+                metrics.loaded(timeToResponse, System.nanoTime() - downloadStart, content.getCount());
                 return true;
-            } else if (statusCode == HttpStatus.SC_NOT_FOUND) {
+            }
+            // Read the error page, so that the connection can be reused
+            EntityUtils.consumeQuietly(response.getEntity());
+            if (statusCode == HttpStatus.SC_NOT_FOUND) {
+                metrics.missed(timeToResponse);
                 return false;
             } else {
                 return throwHttpStatusCodeException(
@@ -150,13 +165,19 @@ public class HttpBuildCacheService implements BuildCacheService {
         });
         CloseableHttpResponse response = null;
         try {
+            long start = System.nanoTime();
             response = httpClientHelper.performHttpRequest(httpPut);
+            long timeToResponse = System.nanoTime() - start;
             StatusLine statusLine = response.getStatusLine();
             if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Response for PUT {}: {}", safeUri(uri), statusLine);
+                LOGGER.debug("Response for PUT {}: {} after {} ms", safeUri(uri), statusLine, TimeUnit.NANOSECONDS.toMillis(timeToResponse));
             }
+            // Read the response, so that the connection can be reused
+            EntityUtils.consumeQuietly(response.getEntity());
             int statusCode = statusLine.getStatusCode();
-            if (!isHttpSuccess(statusCode)) {
+            if (isHttpSuccess(statusCode)) {
+                metrics.stored(timeToResponse, output.getSize());
+            } else {
                 throwHttpStatusCodeException(
                     statusCode,
                     String.format("Storing entry at '%s' response status %d: %s", safeUri(uri), statusCode, statusLine.getReasonPhrase())
@@ -187,6 +208,9 @@ public class HttpBuildCacheService implements BuildCacheService {
 
     @Override
     public void close() throws IOException {
+        if (metrics.getRequestCount() > 0) {
+            LOGGER.info("HTTP build cache {}: {}", safeUri(root), metrics.describe(httpClientHelper.getOpenedConnectionCount(), httpClientHelper.getConnectNanos()));
+        }
         httpClientHelper.close();
     }
 
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching;
+
+import org.gradle.api.Incubating;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link BuildCacheService} that can look up and load multiple cache entries with a single request.
+ *
+ * <p>
+ *     These methods are meant for when Gradle knows the keys of several entries at once, for example when it loads the entries for the tasks
+ *     in the task graph ahead of their execution. Gradle does not load entries ahead of execution by default yet, so a build currently loads
+ *     each entry with {@link BuildCacheService#load(BuildCacheKey, BuildCacheEntryReader)}, whether or not the build cache implements this interface.
+ * </p>
+ *
+ * @since 4.3
+ */
+@Incubating
+public interface BatchingBuildCacheService extends BuildCacheService {
+    /**
+     * Determines which of the given cache keys have an entry in the cache.
+     *
+     * @param keys the cache keys to look up.
+     * @return the keys of the given set that have an entry in the cache.
+     * @throws BuildCacheException if the cache fails to look up the given keys
+     */
+    Set<BuildCacheKey> contains(Set<BuildCacheKey> keys) throws BuildCacheException;
+
+    /**
+     * Load the cached entries corresponding to the given cache keys. The reader for a key will be called if an entry is found in the cache for that key.
+     * The readers may be called in any order, but are not called concurrently.
+     *
+     * @param readers the readers to read the data corresponding to each cache key.
+     * @return the keys for which an entry was found.
+     * @throws BuildCacheException if the cache fails to load the cache entries for the given keys
+     */
+    Set<BuildCacheKey> load(Map<BuildCacheKey, ? extends BuildCacheEntryReader> readers) throws BuildCacheException;
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.configuration;
+
+import org.gradle.api.Incubating;
+
+/**
+ * The compression used for the entries stored in the build cache.
+ *
+ * <p>Entries are readable regardless of the compression that was used to store them, so the compression can be changed without invalidating the cache.</p>
+ *
+ * @since 4.3
+ */
+@Incubating
+public enum BuildCacheCompression {
+    /**
+     * Compresses entries using gzip. This produces the smallest entries, but uses the most CPU time. This is the default.
+     */
+    GZIP,
+
+    /**
+     * Compresses entries using the LZ4 frame format. This produces larger entries than gzip, but is considerably faster.
+     */
+    LZ4,
+
+    /**
+     * Compresses entries using the Snappy framing format. This produces larger entries than gzip, but is considerably faster.
+     */
+    SNAPPY
+}
@@ -115,4 +115,22 @@ public interface BuildCacheConfiguration {
      * @throws IllegalStateException If no remote cache has been assigned yet
      */
     void remote(Action<? super BuildCache> configuration);
+
+    /**
+     * Returns the compression used for the entries stored in the build cache. Defaults to {@link BuildCacheCompression#GZIP}.
+     *
+     * @since 4.3
+     */
+    @Incubating
+    BuildCacheCompression getCompression();
+
+    /**
+     * Sets the compression used for the entries stored in the build cache.
+     *
+     * <p>Entries stored using a different compression can still be loaded.</p>
+     *
+     * @since 4.3
+     */
+    @Incubating
+    void setCompression(BuildCacheCompression compression);
 }
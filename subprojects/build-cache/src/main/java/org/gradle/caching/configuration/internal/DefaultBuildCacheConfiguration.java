@@ -22,6 +22,7 @@ import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.configuration.BuildCache;
+import org.gradle.caching.configuration.BuildCacheCompression;
 import org.gradle.caching.local.DirectoryBuildCache;
 import org.gradle.internal.Actions;
 import org.gradle.internal.Cast;
@@ -39,6 +40,7 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
 
     private BuildCache local;
     private BuildCache remote;
+    private BuildCacheCompression compression = BuildCacheCompression.GZIP;
 
     private final Set<BuildCacheServiceRegistration> registrations;
 
@@ -109,6 +111,16 @@ public class DefaultBuildCacheConfiguration implements BuildCacheConfigurationIn
         configuration.execute(remote);
     }
 
+    @Override
+    public BuildCacheCompression getCompression() {
+        return compression;
+    }
+
+    @Override
+    public void setCompression(BuildCacheCompression compression) {
+        this.compression = Preconditions.checkNotNull(compression, "compression cannot be null.");
+    }
+
     private static <T extends BuildCache> T createLocalCacheConfiguration(Instantiator instantiator, Class<T> type, Set<BuildCacheServiceRegistration> registrations) {
         T local = createBuildCacheConfiguration(instantiator, type, registrations);
         // By default, we push to the local cache.
@@ -16,10 +16,12 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Collection;
 
 /**
  * Internal coordinator of build cache operations.
@@ -33,6 +35,13 @@ public interface BuildCacheController extends Closeable {
 
     void store(BuildCacheStoreCommand command);
 
+    /**
+     * Hints that the entries with the given keys are likely to be loaded later in the build.
+     * The controller may start loading the entries from the remote cache into the local cache in the background,
+     * using a single request for several entries when the remote cache supports it.
+     */
+    void prefetch(Collection<? extends BuildCacheKey> keys);
+
     @Override
     void close();
 
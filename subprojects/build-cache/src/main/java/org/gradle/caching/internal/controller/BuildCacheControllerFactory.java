@@ -29,10 +29,12 @@ import org.gradle.caching.internal.FinalizeBuildCacheConfigurationBuildOperation
 import org.gradle.caching.internal.controller.service.BuildCacheServiceRole;
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration;
 import org.gradle.internal.Cast;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.CallableBuildOperation;
 import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.progress.BuildOperationState;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.util.Path;
 import org.slf4j.Logger;
@@ -65,6 +67,22 @@ public final class BuildCacheControllerFactory {
         final RemoteAccessMode remoteAccessMode,
         final boolean logStackTraces,
         final Instantiator instantiator
+    ) {
+        return create(buildOperationExecutor, buildIdentityPath, gradleUserHomeDir, buildCacheConfiguration, buildCacheState, remoteAccessMode, logStackTraces, instantiator, null, 0, null);
+    }
+
+    public static BuildCacheController create(
+        final BuildOperationExecutor buildOperationExecutor,
+        final Path buildIdentityPath,
+        final File gradleUserHomeDir,
+        final BuildCacheConfigurationInternal buildCacheConfiguration,
+        final BuildCacheMode buildCacheState,
+        final RemoteAccessMode remoteAccessMode,
+        final boolean logStackTraces,
+        final Instantiator instantiator,
+        @Nullable final ExecutorFactory executorFactory,
+        final int maxPendingRemoteStores,
+        @Nullable final BuildOperationState remoteStoreParentOperation
     ) {
         return buildOperationExecutor.call(new CallableBuildOperation<BuildCacheController>() {
             @Override
@@ -114,7 +132,10 @@ public final class BuildCacheControllerFactory {
                         config,
                         buildOperationExecutor,
                         gradleUserHomeDir,
-                        logStackTraces
+                        logStackTraces,
+                        executorFactory,
+                        maxPendingRemoteStores,
+                        remoteStoreParentOperation
                     );
                 }
             }
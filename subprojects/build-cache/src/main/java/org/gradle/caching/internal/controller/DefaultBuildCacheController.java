@@ -43,10 +43,12 @@ import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.progress.BuildOperationState;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -55,9 +57,21 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    /**
+     * The system property that specifies the maximum number of stores to the remote build cache that can be queued or in progress at the same time.
+     * When set, entries are stored in the remote build cache in the background. Stores to the local build cache are not affected.
+     */
+    public static final String MAX_PENDING_REMOTE_STORES_PROPERTY = "org.gradle.caching.remote.maxPendingStores";
+
+    /**
+     * The system property that enables prefetching of entries from the remote build cache into the local build cache, once the task graph is known.
+     */
+    public static final String REMOTE_PREFETCH_PROPERTY = "org.gradle.caching.remote.prefetch";
+
     @VisibleForTesting
     final BuildCacheServiceHandle legacyLocal;
 
@@ -69,6 +83,8 @@ public class DefaultBuildCacheController implements BuildCacheController {
 
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final RemoteStoreQueue remoteStoreQueue;
+    private final RemoteLoadPrefetcher remoteLoadPrefetcher;
 
     private boolean closed;
 
@@ -77,6 +93,23 @@ public class DefaultBuildCacheController implements BuildCacheController {
         BuildOperationExecutor buildOperationExecutor,
         File gradleUserHomeDir,
         boolean logStackTraces
+    ) {
+        this(config, buildOperationExecutor, gradleUserHomeDir, logStackTraces, null, 0, null);
+    }
+
+    /**
+     * @param maxPendingRemoteStores The maximum number of stores to the remote build cache to run in the background, or 0 to store synchronously.
+     * @param remoteStoreParentOperation The operation that stores to the remote build cache run under when they run in the background.
+     * Must keep running until this controller has been closed.
+     */
+    public DefaultBuildCacheController(
+        BuildCacheServicesConfiguration config,
+        BuildOperationExecutor buildOperationExecutor,
+        File gradleUserHomeDir,
+        boolean logStackTraces,
+        @Nullable ExecutorFactory executorFactory,
+        int maxPendingRemoteStores,
+        @Nullable BuildOperationState remoteStoreParentOperation
     ) {
         this.buildOperationExecutor = buildOperationExecutor;
 
@@ -92,6 +125,12 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
 
         this.remote = toHandle(config.remote, config.remotePush, BuildCacheServiceRole.REMOTE, buildOperationExecutor, logStackTraces);
+        this.remoteStoreQueue = executorFactory != null && maxPendingRemoteStores > 0 && remote.canStore()
+            ? new RemoteStoreQueue(remote, local, buildOperationExecutor, remoteStoreParentOperation, executorFactory, maxPendingRemoteStores)
+            : null;
+        this.remoteLoadPrefetcher = executorFactory != null && remote.canLoad() && local.canStore()
+            ? new RemoteLoadPrefetcher(remote, local, tmp, executorFactory)
+            : null;
     }
 
     @Nullable
@@ -100,12 +139,16 @@ public class DefaultBuildCacheController implements BuildCacheController {
         final Unpack<T> unpack = new Unpack<T>(command);
 
         if (local.canLoad()) {
-            try {
-                local.load(command.getKey(), unpack);
-            } catch (Exception e) {
-                throw new GradleException("Build cache entry " + command.getKey() + " from local build cache is invalid", e);
+            loadLocal(command, unpack);
+            if (unpack.result != null) {
+                return unpack.result.getMetadata();
             }
+        }
 
+        // A prefetch that missed does not mean the entry is still missing, as another build may have stored it in the meantime
+        RemoteLoadPrefetcher.Outcome prefetched = remoteLoadPrefetcher == null ? RemoteLoadPrefetcher.Outcome.NONE : remoteLoadPrefetcher.await(command.getKey());
+        if (prefetched == RemoteLoadPrefetcher.Outcome.LOADED && local.canLoad()) {
+            loadLocal(command, unpack);
             if (unpack.result != null) {
                 return unpack.result.getMetadata();
             }
@@ -150,6 +193,14 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
     }
 
+    private <T> void loadLocal(BuildCacheLoadCommand<T> command, Unpack<T> unpack) {
+        try {
+            local.load(command.getKey(), unpack);
+        } catch (Exception e) {
+            throw new GradleException("Build cache entry " + command.getKey() + " from local build cache is invalid", e);
+        }
+    }
+
     private class Unpack<T> implements Action<File> {
         private final BuildCacheLoadCommand<T> command;
 
@@ -215,7 +266,14 @@ public class DefaultBuildCacheController implements BuildCacheController {
                 }
 
                 if (remote.canStore()) {
-                    remote.store(key, new StoreTarget(file));
+                    if (remoteStoreQueue != null) {
+                        // The queue takes the file and stores it in the local cache after the remote cache
+                        if (remoteStoreQueue.store(key, file)) {
+                            return;
+                        }
+                    } else {
+                        remote.store(key, new StoreTarget(file));
+                    }
                 }
 
                 if (local.canStore()) {
@@ -225,6 +283,13 @@ public class DefaultBuildCacheController implements BuildCacheController {
         });
     }
 
+    @Override
+    public void prefetch(Collection<? extends BuildCacheKey> keys) {
+        if (remoteLoadPrefetcher != null) {
+            remoteLoadPrefetcher.prefetch(keys);
+        }
+    }
+
     private class Pack implements Action<File> {
 
         private final BuildCacheStoreCommand command;
@@ -263,6 +328,12 @@ public class DefaultBuildCacheController implements BuildCacheController {
     public void close() {
         if (!closed) {
             closed = true;
+            if (remoteLoadPrefetcher != null) {
+                remoteLoadPrefetcher.close();
+            }
+            if (remoteStoreQueue != null) {
+                remoteStoreQueue.close();
+            }
             CompositeStoppable.stoppable(legacyLocal, local, remote).stop();
         }
     }
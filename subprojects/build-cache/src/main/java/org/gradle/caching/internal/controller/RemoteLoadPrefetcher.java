@@ -0,0 +1,321 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.Action;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.LoadTarget;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.local.internal.BuildCacheTempFileStore;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Loads entries from the remote build cache into the local build cache using background threads, ahead of the point where the build needs them.
+ *
+ * A load for an entry waits for any prefetch of that entry that is in progress, and cancels any prefetch of that entry that has not yet started.
+ * Prefetching is best effort: a failed prefetch is logged and the entry is loaded again when it is needed.
+ *
+ * When the remote cache can look up and load multiple entries with a single request, the entries requested together are first looked up
+ * with a single request, and those that the remote cache contains are then loaded in batches. Otherwise, each entry is loaded with its own request.
+ */
+class RemoteLoadPrefetcher implements Closeable {
+    enum Outcome {
+        /**
+         * The entry was not prefetched.
+         */
+        NONE,
+        /**
+         * The entry was prefetched into the local cache.
+         */
+        LOADED,
+        /**
+         * The remote cache did not contain the entry when it was prefetched. The entry is still loaded from the remote cache when it is needed.
+         */
+        MISSED
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteLoadPrefetcher.class);
+    private static final int MAX_DOWNLOAD_THREADS = 4;
+    private static final int MAX_BATCH_SIZE = 16;
+
+    private final BuildCacheServiceHandle remote;
+    private final LocalBuildCacheServiceHandle local;
+    private final BuildCacheTempFileStore tmp;
+    private final ExecutorFactory executorFactory;
+    private final Map<String, Prefetch> prefetches = new HashMap<String, Prefetch>();
+    private ManagedExecutor executor;
+    private boolean closed;
+
+    RemoteLoadPrefetcher(BuildCacheServiceHandle remote, LocalBuildCacheServiceHandle local, BuildCacheTempFileStore tmp, ExecutorFactory executorFactory) {
+        this.remote = remote;
+        this.local = local;
+        this.tmp = tmp;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Starts loading the given entries into the local cache, except those that have already been requested.
+     */
+    void prefetch(Collection<? extends BuildCacheKey> keys) {
+        final List<Prefetch> requested = new ArrayList<Prefetch>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            for (BuildCacheKey key : keys) {
+                if (!prefetches.containsKey(key.getHashCode())) {
+                    Prefetch prefetch = new Prefetch(key);
+                    prefetches.put(key.getHashCode(), prefetch);
+                    requested.add(prefetch);
+                }
+            }
+            if (requested.isEmpty()) {
+                return;
+            }
+            if (executor == null) {
+                executor = executorFactory.create("Remote build cache prefetches", MAX_DOWNLOAD_THREADS);
+            }
+        }
+        if (!remote.canLoadInBatches()) {
+            for (Prefetch prefetch : requested) {
+                executor.execute(new Batch(Collections.singletonList(prefetch)));
+            }
+        } else if (requested.size() == 1) {
+            executor.execute(new Batch(requested));
+        } else {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    lookUp(requested);
+                }
+            });
+        }
+    }
+
+    /**
+     * Looks up the given entries with a single request, completes those that the remote cache does not contain, and schedules the others to be loaded in batches.
+     */
+    private void lookUp(List<Prefetch> requested) {
+        List<Prefetch> found = requested;
+        try {
+            if (remote.canLoad()) {
+                Set<BuildCacheKey> keys = new LinkedHashSet<BuildCacheKey>(requested.size());
+                for (Prefetch prefetch : requested) {
+                    keys.add(prefetch.key);
+                }
+                Set<BuildCacheKey> contained = remote.contains(keys);
+                if (remote.canLoad()) {
+                    Set<String> containedHashCodes = new HashSet<String>(contained.size());
+                    for (BuildCacheKey key : contained) {
+                        containedHashCodes.add(key.getHashCode());
+                    }
+                    found = new ArrayList<Prefetch>(contained.size());
+                    for (Prefetch prefetch : requested) {
+                        if (containedHashCodes.contains(prefetch.key.getHashCode())) {
+                            found.add(prefetch);
+                        } else if (prefetch.start()) {
+                            prefetch.complete(Outcome.MISSED);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.info("Could not look up {} build cache entries to prefetch.", requested.size(), e);
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            for (List<Prefetch> batch : Lists.partition(found, MAX_BATCH_SIZE)) {
+                executor.execute(new Batch(batch));
+            }
+        }
+    }
+
+    /**
+     * Waits for any prefetch of the given entry to complete.
+     */
+    Outcome await(BuildCacheKey key) {
+        Prefetch prefetch;
+        synchronized (this) {
+            prefetch = prefetches.get(key.getHashCode());
+        }
+        return prefetch == null ? Outcome.NONE : prefetch.await();
+    }
+
+    /**
+     * Discards the prefetches that have not yet started and waits for the others to complete.
+     */
+    @Override
+    public void close() {
+        ManagedExecutor executor;
+        int hits = 0;
+        synchronized (this) {
+            closed = true;
+            for (Prefetch prefetch : prefetches.values()) {
+                prefetch.cancel();
+            }
+            executor = this.executor;
+        }
+        if (executor != null) {
+            executor.stop();
+        }
+        for (Prefetch prefetch : prefetches.values()) {
+            if (prefetch.outcome == Outcome.LOADED) {
+                hits++;
+            }
+        }
+        if (!prefetches.isEmpty()) {
+            LOGGER.info("Prefetched {} of {} requested entries from the remote build cache.", hits, prefetches.size());
+        }
+    }
+
+    /**
+     * Loads a batch of entries with a single request. A batch that contains a single entry loads it using the single entry methods of the remote cache.
+     */
+    private class Batch implements Runnable {
+        private final List<Prefetch> prefetches;
+        private final Map<BuildCacheKey, LoadTarget> loadTargets = new LinkedHashMap<BuildCacheKey, LoadTarget>();
+
+        Batch(List<Prefetch> prefetches) {
+            this.prefetches = prefetches;
+        }
+
+        @Override
+        public void run() {
+            List<Prefetch> started = new ArrayList<Prefetch>(prefetches.size());
+            for (Prefetch prefetch : prefetches) {
+                if (prefetch.start()) {
+                    started.add(prefetch);
+                }
+            }
+            if (started.isEmpty()) {
+                return;
+            }
+            try {
+                if (remote.canLoad()) {
+                    allocateTempFiles(started, 0);
+                }
+            } catch (Exception e) {
+                LOGGER.info("Could not prefetch {} build cache entries.", started.size(), e);
+            } finally {
+                for (Prefetch prefetch : started) {
+                    prefetch.finished.countDown();
+                }
+            }
+        }
+
+        private void allocateTempFiles(final List<Prefetch> started, final int index) {
+            if (index == started.size()) {
+                load(started);
+                return;
+            }
+            final Prefetch prefetch = started.get(index);
+            tmp.allocateTempFile(prefetch.key, new Action<File>() {
+                @Override
+                public void execute(File file) {
+                    loadTargets.put(prefetch.key, new LoadTarget(file));
+                    allocateTempFiles(started, index + 1);
+                }
+            });
+        }
+
+        private void load(List<Prefetch> started) {
+            if (started.size() == 1) {
+                BuildCacheKey key = started.get(0).key;
+                remote.load(key, loadTargets.get(key));
+            } else {
+                remote.load(loadTargets);
+            }
+            // The handle disables itself when the load fails, so an entry that was not loaded was a miss
+            boolean missed = remote.canLoad();
+            for (Prefetch prefetch : started) {
+                LoadTarget loadTarget = loadTargets.get(prefetch.key);
+                if (loadTarget.isLoaded()) {
+                    local.store(prefetch.key, loadTarget.getFile());
+                    prefetch.outcome = Outcome.LOADED;
+                } else if (missed) {
+                    prefetch.outcome = Outcome.MISSED;
+                }
+            }
+        }
+    }
+
+    private static class Prefetch {
+        private final BuildCacheKey key;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private boolean started;
+        private boolean cancelled;
+        private volatile Outcome outcome = Outcome.NONE;
+
+        Prefetch(BuildCacheKey key) {
+            this.key = key;
+        }
+
+        synchronized boolean start() {
+            if (cancelled) {
+                return false;
+            }
+            started = true;
+            return true;
+        }
+
+        void complete(Outcome outcome) {
+            this.outcome = outcome;
+            finished.countDown();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+        }
+
+        Outcome await() {
+            synchronized (this) {
+                if (!started) {
+                    cancelled = true;
+                    return Outcome.NONE;
+                }
+            }
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+            return outcome;
+        }
+    }
+}
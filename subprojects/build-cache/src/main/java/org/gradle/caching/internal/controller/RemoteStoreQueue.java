@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.controller;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.operations.DrainOperationDetails;
+import org.gradle.caching.internal.controller.operations.DrainOperationResult;
+import org.gradle.caching.internal.controller.service.BuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.LocalBuildCacheServiceHandle;
+import org.gradle.caching.internal.controller.service.StoreTarget;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.progress.BuildOperationState;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Stores entries in the remote build cache using background threads, so that a slow remote cache does not hold up the thread that executed the task.
+ *
+ * At most a fixed number of stores can be queued or in progress. When the queue is full, a new store blocks until a queued store completes.
+ * An entry is only stored once per build, even when it is produced multiple times. Closing the queue waits for all queued stores to complete.
+ *
+ * The queue takes ownership of the file of each entry it accepts, and hands the file to the local cache once the entry has been stored in the remote
+ * cache, so that the entry does not need to be copied.
+ */
+class RemoteStoreQueue implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteStoreQueue.class);
+    private static final int MAX_UPLOAD_THREADS = 4;
+
+    private final BuildCacheServiceHandle remote;
+    private final LocalBuildCacheServiceHandle local;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final BuildOperationState parentOperation;
+    private final ManagedExecutor executor;
+    private final Semaphore capacity;
+    private final Set<String> storedKeys = new HashSet<String>();
+    private int pendingStoreCount;
+    private int maxPendingStoreCount;
+    private int duplicateStoreCount;
+
+    /**
+     * @param parentOperation the operation that the stores run under. Must keep running until the queue has been closed.
+     */
+    RemoteStoreQueue(BuildCacheServiceHandle remote, LocalBuildCacheServiceHandle local, BuildOperationExecutor buildOperationExecutor, @Nullable BuildOperationState parentOperation, ExecutorFactory executorFactory, int maxPendingStores) {
+        this.remote = remote;
+        this.local = local;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.parentOperation = parentOperation;
+        this.executor = executorFactory.create("Remote build cache stores", Math.min(maxPendingStores, MAX_UPLOAD_THREADS));
+        this.capacity = new Semaphore(maxPendingStores);
+    }
+
+    /**
+     * Queues the given entry to be stored in the remote cache, and then in the local cache.
+     *
+     * @return true when the queue has taken the file, false when the entry has already been queued during this build and the caller should store the file in the local cache itself.
+     */
+    boolean store(final BuildCacheKey key, File file) {
+        synchronized (this) {
+            if (!storedKeys.add(key.getHashCode())) {
+                duplicateStoreCount++;
+                return false;
+            }
+        }
+
+        final File uploadFile = new File(file.getParentFile(), file.getName() + ".upload");
+        if (!file.renameTo(uploadFile)) {
+            synchronized (this) {
+                storedKeys.remove(key.getHashCode());
+            }
+            throw new UncheckedIOException("Could not move build cache entry " + file + " to " + uploadFile + ".");
+        }
+
+        capacity.acquireUninterruptibly();
+        synchronized (this) {
+            pendingStoreCount++;
+            maxPendingStoreCount = Math.max(maxPendingStoreCount, pendingStoreCount);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (remote.canStore()) {
+                        remote.store(key, new StoreTarget(uploadFile), parentOperation);
+                    }
+                    if (local.canStore()) {
+                        local.store(key, uploadFile);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warn("Could not store entry {} in local build cache.", key, e);
+                } finally {
+                    GFileUtils.deleteQuietly(uploadFile);
+                    synchronized (RemoteStoreQueue.this) {
+                        pendingStoreCount--;
+                    }
+                    capacity.release();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Waits for all queued stores to complete.
+     */
+    @Override
+    public void close() {
+        final int pending;
+        synchronized (this) {
+            if (storedKeys.isEmpty()) {
+                executor.stop();
+                return;
+            }
+            pending = pendingStoreCount;
+        }
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                executor.stop();
+                synchronized (RemoteStoreQueue.this) {
+                    context.setResult(new DrainOperationResult(maxPendingStoreCount, duplicateStoreCount));
+                }
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Wait for stores to remote build cache")
+                    .details(new DrainOperationDetails(pending))
+                    .progressDisplayName("Uploading to remote build cache");
+            }
+        });
+    }
+}
@@ -18,11 +18,15 @@ package org.gradle.caching.internal.controller.service;
 
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.caching.BatchingBuildCacheService;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.progress.BuildOperationState;
 
 import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
 
 public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
@@ -34,7 +38,7 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
     private final boolean pushEnabled;
     private final boolean logStackTraces;
 
-    private boolean disabled;
+    private volatile boolean disabled;
 
     public BaseBuildCacheServiceHandle(BuildCacheService service, boolean push, BuildCacheServiceRole role, boolean logStackTraces) {
         this.role = role;
@@ -73,6 +77,57 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
         service.load(key, entryReader);
     }
 
+    @Override
+    public boolean canLoadInBatches() {
+        return service instanceof BatchingBuildCacheService;
+    }
+
+    @Override
+    public final Set<BuildCacheKey> contains(Set<BuildCacheKey> keys) {
+        if (!canLoadInBatches()) {
+            return keys;
+        }
+        String description = "Look up " + keys.size() + " entries in " + role.getDisplayName() + " build cache";
+        LOGGER.debug(description);
+        try {
+            return containsInner(description, keys);
+        } catch (Exception e) {
+            failure("Could not look up " + keys.size() + " entries in " + role.getDisplayName() + " build cache", e);
+            return keys;
+        }
+    }
+
+    protected Set<BuildCacheKey> containsInner(String description, Set<BuildCacheKey> keys) {
+        return ((BatchingBuildCacheService) service).contains(keys);
+    }
+
+    @Override
+    public final void load(Map<BuildCacheKey, LoadTarget> loadTargets) {
+        if (!canLoadInBatches()) {
+            for (Map.Entry<BuildCacheKey, LoadTarget> entry : loadTargets.entrySet()) {
+                if (canLoad()) {
+                    load(entry.getKey(), entry.getValue());
+                }
+            }
+            return;
+        }
+        String description = "Load " + loadTargets.size() + " entries from " + role.getDisplayName() + " build cache";
+        LOGGER.debug(description);
+        try {
+            loadInner(description, loadTargets);
+        } catch (Exception e) {
+            failure("Could not load " + loadTargets.size() + " entries from " + role.getDisplayName() + " build cache", e);
+        }
+    }
+
+    protected void loadInner(String description, Map<BuildCacheKey, LoadTarget> loadTargets) {
+        loadInner(loadTargets);
+    }
+
+    protected void loadInner(Map<BuildCacheKey, ? extends BuildCacheEntryReader> entryReaders) {
+        ((BatchingBuildCacheService) service).load(entryReaders);
+    }
+
     @Override
     public boolean canStore() {
         return pushEnabled && !disabled;
@@ -80,23 +135,35 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
     @Override
     public final void store(BuildCacheKey key, StoreTarget storeTarget) {
+        store(key, storeTarget, null);
+    }
+
+    @Override
+    public final void store(BuildCacheKey key, StoreTarget storeTarget, @Nullable BuildOperationState parentOperation) {
         String description = "Store entry " + key.getHashCode() + " in " + role.getDisplayName() + " build cache";
         LOGGER.debug(description);
         try {
-            storeInner(description, key, storeTarget);
+            storeInner(description, key, storeTarget, parentOperation);
         } catch (Exception e) {
             failure("store", "in", key, e);
         }
     }
 
+    protected void storeInner(String description, BuildCacheKey key, StoreTarget storeTarget, @Nullable BuildOperationState parentOperation) {
+        storeInner(description, key, storeTarget);
+    }
+
     protected void storeInner(String description, BuildCacheKey key, StoreTarget storeTarget) {
         service.store(key, storeTarget);
     }
 
     private void failure(String verb, String preposition, BuildCacheKey key, Throwable e) {
+        failure("Could not " + verb + " entry " + key.getDisplayName() + " " + preposition + " " + role.getDisplayName() + " build cache", e);
+    }
+
+    private void failure(String description, Throwable e) {
         disabled = true;
 
-        String description = "Could not " + verb + " entry " + key.getDisplayName() + " " + preposition + " " + role.getDisplayName() + " build cache";
         if (LOGGER.isWarnEnabled()) {
             if (logStackTraces) {
                 LOGGER.warn(description, e);
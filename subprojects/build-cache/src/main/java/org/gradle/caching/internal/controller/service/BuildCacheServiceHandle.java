@@ -19,9 +19,12 @@ package org.gradle.caching.internal.controller.service;
 import com.google.common.annotations.VisibleForTesting;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.progress.BuildOperationState;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Map;
+import java.util.Set;
 
 public interface BuildCacheServiceHandle extends Closeable {
 
@@ -33,10 +36,32 @@ public interface BuildCacheServiceHandle extends Closeable {
 
     void load(BuildCacheKey key, LoadTarget loadTarget);
 
+    /**
+     * Returns true when the service can look up and load multiple entries with a single request.
+     */
+    boolean canLoadInBatches();
+
+    /**
+     * Returns those of the given keys that the service may have an entry for.
+     * Returns all of the given keys when the service cannot look up multiple entries with a single request.
+     */
+    Set<BuildCacheKey> contains(Set<BuildCacheKey> keys);
+
+    /**
+     * Loads the entries for the given keys, using a single request when the service supports it.
+     */
+    void load(Map<BuildCacheKey, LoadTarget> loadTargets);
+
     boolean canStore();
 
     void store(BuildCacheKey key, StoreTarget storeTarget);
 
+    /**
+     * Stores the given entry as a child of the given operation, rather than of the operation of the current thread.
+     * The given operation must still be running when the store completes.
+     */
+    void store(BuildCacheKey key, StoreTarget storeTarget, @Nullable BuildOperationState parentOperation);
+
     @Override
     void close();
 }
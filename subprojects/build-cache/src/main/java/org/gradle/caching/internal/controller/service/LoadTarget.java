@@ -50,6 +50,10 @@ public class LoadTarget implements BuildCacheEntryReader {
         }
     }
 
+    public File getFile() {
+        return file;
+    }
+
     public boolean isLoaded() {
         return loaded;
     }
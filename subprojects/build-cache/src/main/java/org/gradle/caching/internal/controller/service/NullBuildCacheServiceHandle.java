@@ -18,8 +18,11 @@ package org.gradle.caching.internal.controller.service;
 
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.internal.progress.BuildOperationState;
 
 import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
 
 public class NullBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
@@ -41,6 +44,21 @@ public class NullBuildCacheServiceHandle implements BuildCacheServiceHandle {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean canLoadInBatches() {
+        return false;
+    }
+
+    @Override
+    public Set<BuildCacheKey> contains(Set<BuildCacheKey> keys) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void load(Map<BuildCacheKey, LoadTarget> loadTargets) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean canStore() {
         return false;
@@ -51,6 +69,11 @@ public class NullBuildCacheServiceHandle implements BuildCacheServiceHandle {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void store(BuildCacheKey key, StoreTarget storeTarget, @Nullable BuildOperationState parentOperation) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void close() {
 
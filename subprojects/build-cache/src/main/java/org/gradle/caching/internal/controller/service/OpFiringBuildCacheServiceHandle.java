@@ -25,12 +25,18 @@ import org.gradle.caching.internal.controller.operations.LoadOperationMissResult
 import org.gradle.caching.internal.controller.operations.StoreOperationDetails;
 import org.gradle.caching.internal.controller.operations.StoreOperationResult;
 import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.CallableBuildOperation;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.progress.BuildOperationState;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 public class OpFiringBuildCacheServiceHandle extends BaseBuildCacheServiceHandle {
 
@@ -64,7 +70,43 @@ public class OpFiringBuildCacheServiceHandle extends BaseBuildCacheServiceHandle
     }
 
     @Override
-    protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget) {
+    protected Set<BuildCacheKey> containsInner(final String description, final Set<BuildCacheKey> keys) {
+        return buildOperationExecutor.call(new CallableBuildOperation<Set<BuildCacheKey>>() {
+            @Override
+            public Set<BuildCacheKey> call(BuildOperationContext context) {
+                return OpFiringBuildCacheServiceHandle.super.containsInner(description, keys);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName(description)
+                    .progressDisplayName("Requesting from remote build cache");
+            }
+        });
+    }
+
+    @Override
+    protected void loadInner(final String description, final Map<BuildCacheKey, LoadTarget> loadTargets) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                Map<BuildCacheKey, BuildCacheEntryReader> entryReaders = new LinkedHashMap<BuildCacheKey, BuildCacheEntryReader>(loadTargets.size());
+                for (Map.Entry<BuildCacheKey, LoadTarget> entry : loadTargets.entrySet()) {
+                    entryReaders.put(entry.getKey(), new OpFiringEntryReader(entry.getValue()));
+                }
+                loadInner(entryReaders);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName(description)
+                    .progressDisplayName("Requesting from remote build cache");
+            }
+        });
+    }
+
+    @Override
+    protected void storeInner(final String description, final BuildCacheKey key, final StoreTarget storeTarget, @Nullable final BuildOperationState parentOperation) {
         buildOperationExecutor.run(new RunnableBuildOperation() {
             @Override
             public void run(BuildOperationContext context) {
@@ -76,7 +118,8 @@ public class OpFiringBuildCacheServiceHandle extends BaseBuildCacheServiceHandle
             public BuildOperationDescriptor.Builder description() {
                 return BuildOperationDescriptor.displayName(description)
                     .details(new StoreOperationDetails(key, storeTarget.getSize()))
-                    .progressDisplayName("Uploading to remote build cache");
+                    .progressDisplayName("Uploading to remote build cache")
+                    .parent(parentOperation);
             }
         });
     }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.operations;
+
+import org.gradle.internal.operations.BuildOperationType;
+
+/**
+ * Waits for the stores to the remote build cache that were queued during the build to complete.
+ *
+ * The duration of the operation is the time taken to drain the queue at the end of the build.
+ */
+public final class BuildCacheRemoteStoreDrainBuildOperationType implements BuildOperationType<BuildCacheRemoteStoreDrainBuildOperationType.Details, BuildCacheRemoteStoreDrainBuildOperationType.Result> {
+
+    public interface Details {
+
+        /**
+         * The number of stores that were queued or in progress when the build finished.
+         */
+        int getPendingStoreCount();
+
+    }
+
+    public interface Result {
+
+        /**
+         * The largest number of stores that were queued or in progress at the same time during the build.
+         */
+        int getMaxPendingStoreCount();
+
+        /**
+         * The number of stores that were not queued because an entry with the same key had already been queued.
+         */
+        int getDuplicateStoreCount();
+
+    }
+
+    private BuildCacheRemoteStoreDrainBuildOperationType() {
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.CacheAccessJournal;
+import org.gradle.internal.resource.local.LocallyAvailableResource;
+import org.gradle.internal.resource.local.PathKeyFileStore;
+import org.gradle.util.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Stores build cache entries in a deduplicated form. Each entry is stored as a manifest that references the files in the entry by the hash
+ * of their content, and the content of each file is stored only once, however many entries contain it.
+ *
+ * Only entries that are gzip compressed tar archives can be split. Each file in the archive of at least {@link #MIN_BLOB_SIZE} bytes is stored
+ * as a separate gzip member, and the remaining parts of the archive, such as headers, padding and small files, are stored inline in the
+ * manifest as gzip members. A sequence of gzip members is itself a valid gzip stream, so an entry is reassembled by concatenating the members,
+ * without compressing or decompressing any content.
+ *
+ * Storing an entry happens in two steps. The entry is first split into a manifest and content blobs in temporary files, which does all of the
+ * decompressing, hashing and compressing and does not need the cache lock. The temporary files are then moved into the cache while holding the lock.
+ */
+class ContentAddressedEntryStore {
+    static final int MIN_BLOB_SIZE = 8 * 1024;
+    static final String BLOB_SUFFIX = ".blob";
+
+    private static final int MANIFEST_MAGIC = 0x474d4631;
+    private static final byte END = 0;
+    private static final byte INLINE = 1;
+    private static final byte BLOB = 2;
+
+    private static final int RECORD_SIZE = 512;
+    private static final int MAX_INLINE_SIZE = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PathKeyFileStore fileStore;
+    private final CacheAccessJournal journal;
+
+    ContentAddressedEntryStore(PathKeyFileStore fileStore, @Nullable CacheAccessJournal journal) {
+        this.fileStore = fileStore;
+        this.journal = journal;
+    }
+
+    /**
+     * Returns true when the given file is a manifest, rather than a complete entry.
+     */
+    boolean isManifest(File file) {
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                return input.readInt() == MANIFEST_MAGIC;
+            } finally {
+                input.close();
+            }
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Splits the given entry into a manifest and content blobs, written to temporary files next to the entry. Does not change the content of the cache,
+     * so does not need to hold the cache lock. The result should be stored using {@link #store(String, SplitEntry)} and then discarded.
+     *
+     * @return null when the entry is not in a format that can be split.
+     */
+    @Nullable
+    SplitEntry split(File entry) {
+        SplitEntry splitEntry = new SplitEntry(createTempFile(entry));
+        boolean split = false;
+        try {
+            split = split(entry, splitEntry);
+            return split ? splitEntry : null;
+        } finally {
+            if (!split) {
+                splitEntry.discard();
+            }
+        }
+    }
+
+    /**
+     * Stores the given split entry under the given key. Should be called while holding the cache lock.
+     */
+    void store(String key, SplitEntry entry) {
+        try {
+            for (Blob blob : entry.blobs.values()) {
+                LocallyAvailableResource existing = fileStore.get(blob.hash + BLOB_SUFFIX);
+                if (existing != null) {
+                    // Mark as recently used
+                    GFileUtils.touch(existing.getFile());
+                    recordAccess(existing.getFile());
+                } else {
+                    recordAccess(fileStore.move(blob.hash + BLOB_SUFFIX, blob.compressedContent()).getFile());
+                }
+            }
+            recordAccess(fileStore.move(key, entry.manifest).getFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reassembles the entry described by the given manifest into the given file.
+     *
+     * @return false when some of the content of the entry is no longer available, for example because it has been removed by cleanup.
+     */
+    boolean assemble(File manifest, File entry) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)));
+            try {
+                OutputStream output = new BufferedOutputStream(new FileOutputStream(entry));
+                try {
+                    if (input.readInt() != MANIFEST_MAGIC) {
+                        throw new IllegalArgumentException(String.format("%s is not a build cache manifest.", manifest));
+                    }
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    while (true) {
+                        byte tag = input.readByte();
+                        if (tag == END) {
+                            return true;
+                        } else if (tag == INLINE) {
+                            copy(input, output, input.readInt(), buffer);
+                        } else if (tag == BLOB) {
+                            LocallyAvailableResource blob = fileStore.get(input.readUTF() + BLOB_SUFFIX);
+                            if (blob == null) {
+                                return false;
+                            }
+                            File blobFile = blob.getFile();
+                            // Mark as recently used
+                            GFileUtils.touch(blobFile);
+                            recordAccess(blobFile);
+                            InputStream blobInput = new FileInputStream(blobFile);
+                            try {
+                                copy(blobInput, output, blobFile.length(), buffer);
+                            } finally {
+                                blobInput.close();
+                            }
+                        } else {
+                            throw new IllegalArgumentException(String.format("Build cache manifest %s is corrupt.", manifest));
+                        }
+                    }
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean split(File entry, SplitEntry splitEntry) {
+        try {
+            if (!isGzip(entry)) {
+                return false;
+            }
+            DataInputStream input = new DataInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(entry)), BUFFER_SIZE));
+            try {
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(splitEntry.manifest)));
+                try {
+                    output.writeInt(MANIFEST_MAGIC);
+                    if (!splitArchive(input, new InlineSegment(output), entry, splitEntry)) {
+                        return false;
+                    }
+                    output.writeByte(END);
+                } finally {
+                    output.close();
+                }
+            } finally {
+                input.close();
+            }
+            return true;
+        } catch (EOFException e) {
+            return false;
+        } catch (ZipException e) {
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean splitArchive(DataInputStream input, InlineSegment inline, File entry, SplitEntry splitEntry) throws IOException {
+        byte[] header = new byte[RECORD_SIZE];
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (true) {
+            input.readFully(header);
+            inline.write(header, 0, header.length);
+            if (isZero(header)) {
+                // End of archive, keep whatever follows as is
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    inline.write(buffer, 0, read);
+                }
+                inline.flush();
+                return true;
+            }
+
+            TarArchiveEntry tarEntry;
+            try {
+                tarEntry = new TarArchiveEntry(header);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            long size = tarEntry.getSize();
+            long padding = (RECORD_SIZE - size % RECORD_SIZE) % RECORD_SIZE;
+            if (tarEntry.isPaxHeader() || tarEntry.isGlobalPaxHeader()) {
+                byte[] content = new byte[(int) (size + padding)];
+                input.readFully(content);
+                // An extended header can override the size of the following entry, which would be missed when splitting the archive
+                if (new String(content, 0, (int) size, "UTF-8").contains(" size=")) {
+                    return false;
+                }
+                inline.write(content, 0, content.length);
+            } else if (tarEntry.isFile() && size >= MIN_BLOB_SIZE) {
+                inline.flush();
+                inline.writeBlob(splitBlob(input, size, entry, splitEntry, buffer));
+                copy(input, inline, padding, buffer);
+            } else {
+                copy(input, inline, size + padding, buffer);
+            }
+        }
+    }
+
+    private String splitBlob(InputStream input, long size, File entry, SplitEntry splitEntry, byte[] buffer) throws IOException {
+        File content = createTempFile(entry);
+        boolean keepContent = false;
+        try {
+            Hasher hasher = Hashing.sha1().newHasher();
+            OutputStream output = new FileOutputStream(content);
+            try {
+                long remaining = size;
+                while (remaining > 0) {
+                    int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException();
+                    }
+                    hasher.putBytes(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            } finally {
+                output.close();
+            }
+
+            String hash = hasher.hash().toString();
+            if (!splitEntry.blobs.containsKey(hash)) {
+                Blob blob = new Blob(hash, content);
+                splitEntry.blobs.put(hash, blob);
+                keepContent = true;
+                // Don't compress content that is already in the cache. This check is made without holding the lock, so the content may be
+                // removed before the entry is stored, in which case it is compressed then
+                if (fileStore.get(hash + BLOB_SUFFIX) == null) {
+                    blob.compress(createTempFile(entry), buffer);
+                }
+            }
+            return hash;
+        } finally {
+            if (!keepContent) {
+                GFileUtils.deleteQuietly(content);
+            }
+        }
+    }
+
+    private void recordAccess(File file) {
+        if (journal != null) {
+            journal.recordAccess(file);
+        }
+    }
+
+    private static void compress(File source, File target, byte[] buffer) throws IOException {
+        InputStream input = new FileInputStream(source);
+        try {
+            OutputStream output = new GZIPOutputStream(new FileOutputStream(target), BUFFER_SIZE);
+            try {
+                int read;
+                while ((read = input.read(buffer)) >= 0) {
+                    output.write(buffer, 0, read);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static boolean isGzip(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            return input.read() == 0x1f && input.read() == 0x8b;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static boolean isZero(byte[] record) {
+        for (byte b : record) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void copy(InputStream input, OutputStream output, long length, byte[] buffer) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException();
+            }
+            output.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static File createTempFile(File entry) {
+        try {
+            return File.createTempFile("content", BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX, entry.getAbsoluteFile().getParentFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * An entry that has been split into a manifest and content blobs, in temporary files.
+     */
+    static class SplitEntry {
+        private final File manifest;
+        private final Map<String, Blob> blobs = new LinkedHashMap<String, Blob>();
+
+        private SplitEntry(File manifest) {
+            this.manifest = manifest;
+        }
+
+        /**
+         * Deletes the temporary files that have not been moved into the cache.
+         */
+        void discard() {
+            GFileUtils.deleteQuietly(manifest);
+            for (Blob blob : blobs.values()) {
+                GFileUtils.deleteQuietly(blob.file);
+            }
+        }
+    }
+
+    /**
+     * The content of a file in an entry, either compressed or, when the content was already in the cache, uncompressed.
+     */
+    private static class Blob {
+        private final String hash;
+        private File file;
+        private boolean compressed;
+
+        Blob(String hash, File content) {
+            this.hash = hash;
+            this.file = content;
+        }
+
+        void compress(File target, byte[] buffer) throws IOException {
+            try {
+                ContentAddressedEntryStore.compress(file, target, buffer);
+            } finally {
+                GFileUtils.deleteQuietly(file);
+                file = target;
+            }
+            compressed = true;
+        }
+
+        File compressedContent() throws IOException {
+            if (!compressed) {
+                compress(createTempFile(file), new byte[BUFFER_SIZE]);
+            }
+            return file;
+        }
+    }
+
+    /**
+     * Collects the parts of an archive that are stored in the manifest, compressed as a single gzip member.
+     */
+    private static class InlineSegment extends OutputStream {
+        private final DataOutputStream manifest;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private GZIPOutputStream compressed;
+
+        InlineSegment(DataOutputStream manifest) {
+            this.manifest = manifest;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (compressed == null) {
+                compressed = new GZIPOutputStream(bytes);
+            }
+            compressed.write(buffer, offset, length);
+            if (bytes.size() >= MAX_INLINE_SIZE) {
+                flush();
+            }
+        }
+
+        /**
+         * Writes the collected content to the manifest as a complete gzip member.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (compressed == null) {
+                return;
+            }
+            compressed.finish();
+            compressed = null;
+            manifest.writeByte(INLINE);
+            manifest.writeInt(bytes.size());
+            bytes.writeTo(manifest);
+            bytes.reset();
+        }
+
+        void writeBlob(String hash) throws IOException {
+            manifest.writeByte(BLOB);
+            manifest.writeUTF(hash);
+        }
+    }
+}
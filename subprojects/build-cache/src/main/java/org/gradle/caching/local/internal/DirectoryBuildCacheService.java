@@ -20,6 +20,7 @@ import com.google.common.io.Closer;
 import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.CacheAccessJournal;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
@@ -31,6 +32,7 @@ import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -42,12 +44,27 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final PersistentCache persistentCache;
     private final BuildCacheTempFileStore tempFileStore;
     private final String failedFileSuffix;
+    private final ContentAddressedEntryStore contentStore;
+    private final boolean deduplicate;
+    private final CacheAccessJournal journal;
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, failedFileSuffix, false, null);
+    }
+
+    /**
+     * @param deduplicate true to store entries as manifests that share the content of identical files, see {@link ContentAddressedEntryStore}.
+     * Entries stored in this way can always be loaded, regardless of this flag.
+     * @param journal the journal to record the use of cache files in, so that cleanup can find the least recently used files.
+     */
+    public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, String failedFileSuffix, boolean deduplicate, @Nullable CacheAccessJournal journal) {
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
         this.failedFileSuffix = failedFileSuffix;
+        this.contentStore = new ContentAddressedEntryStore(fileStore, journal);
+        this.deduplicate = deduplicate;
+        this.journal = journal;
     }
 
     private static class LoadAction implements Action<File> {
@@ -95,16 +112,25 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
                 if (resource != null) {
                     final File file = resource.getFile();
                     GFileUtils.touch(file); // Mark as recently used
+                    if (journal != null) {
+                        journal.recordAccess(file);
+                    }
 
                     try {
-                        reader.execute(file);
+                        if (contentStore.isManifest(file)) {
+                            loadManifest(key, file, reader);
+                        } else {
+                            reader.execute(file);
+                        }
                     } catch (Exception e) {
                         // Try to move the file out of the way in case its permanently corrupt
                         // Don't delete, so that it can be potentially used for debugging
                         File failedFile = new File(file.getAbsolutePath() + failedFileSuffix);
                         GFileUtils.deleteQuietly(failedFile);
-                        //noinspection ResultOfMethodCallIgnored
-                        file.renameTo(failedFile);
+                        if (file.renameTo(failedFile) && journal != null) {
+                            journal.recordRemoval(file);
+                            journal.recordAccess(failedFile);
+                        }
 
                         throw UncheckedException.throwAsUncheckedException(e);
                     }
@@ -114,6 +140,23 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         });
     }
 
+    private void loadManifest(BuildCacheKey key, final File manifest, final Action<? super File> reader) {
+        tempFileStore.allocateTempFile(key, new Action<File>() {
+            @Override
+            public void execute(File file) {
+                if (contentStore.assemble(manifest, file)) {
+                    reader.execute(file);
+                } else {
+                    // Some of the content of the entry has been cleaned up, so treat it as a miss
+                    GFileUtils.deleteQuietly(manifest);
+                    if (journal != null) {
+                        journal.recordRemoval(manifest);
+                    }
+                }
+            }
+        });
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.allocateTempFile(key, new Action<File>() {
@@ -139,12 +182,27 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
 
     @Override
     public void store(final BuildCacheKey key, final File file) {
-        persistentCache.useCache(new Runnable() {
-            @Override
-            public void run() {
-                fileStore.move(key.getHashCode(), file);
+        // Split the entry before locking the cache, so that only moving the files into the cache happens while holding the lock
+        final ContentAddressedEntryStore.SplitEntry splitEntry = deduplicate ? contentStore.split(file) : null;
+        try {
+            persistentCache.useCache(new Runnable() {
+                @Override
+                public void run() {
+                    if (splitEntry != null) {
+                        contentStore.store(key.getHashCode(), splitEntry);
+                    } else {
+                        LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
+                        if (journal != null) {
+                            journal.recordAccess(resource.getFile());
+                        }
+                    }
+                }
+            });
+        } finally {
+            if (splitEntry != null) {
+                splitEntry.discard();
             }
-        });
+        }
     }
 
     @Override
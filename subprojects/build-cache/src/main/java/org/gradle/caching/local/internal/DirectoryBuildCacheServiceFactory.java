@@ -21,8 +21,9 @@ import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.CacheAccessJournal;
 import org.gradle.cache.internal.CacheScopeMapping;
-import org.gradle.cache.internal.FixedSizeOldestCacheCleanup;
+import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.VersionStrategy;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
@@ -39,10 +40,12 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
+    public static final String DEDUPLICATE_PROPERTY = "org.gradle.caching.local.deduplicate";
 
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
+    private static final String JOURNAL_FILE_NAME = "access.journal";
 
     private final CacheRepository cacheRepository;
     private final CacheScopeMapping cacheScopeMapping;
@@ -77,16 +80,17 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
             config("targetSize", humanReadableCacheSize);
 
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
+        CacheAccessJournal journal = new CacheAccessJournal(new File(target, JOURNAL_FILE_NAME));
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(new FixedSizeOldestCacheCleanup(buildOperationExecutor, targetSizeInMB, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX))
+            .withCleanup(new LeastRecentlyUsedCacheCleanup(buildOperationExecutor, journal, targetSizeInMB, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX))
             .withDisplayName("Build cache")
             .withLockOptions(mode(None))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(target, BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX, Boolean.getBoolean(DEDUPLICATE_PROPERTY), journal);
     }
 
     private static void checkDirectory(File directory) {
@@ -17,17 +17,25 @@
 package org.gradle.caching.internal.controller
 
 import org.gradle.api.Action
+import org.gradle.caching.BatchingBuildCacheService
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.operations.BuildCacheRemoteStoreBuildOperationType
+import org.gradle.caching.internal.operations.BuildCacheRemoteStoreDrainBuildOperationType
 import org.gradle.caching.local.internal.LocalBuildCacheService
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.progress.BuildOperationState
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.testing.internal.util.Specification
 import org.junit.Rule
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
 class DefaultBuildCacheControllerTest extends Specification {
 
     def key = Mock(BuildCacheKey) {
@@ -249,6 +257,211 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * remote.close()
     }
 
+    def "stores to remote in the background and waits for stores to complete on close"() {
+        given:
+        def buildOperation = Stub(BuildOperationState) {
+            getId() >> "build"
+        }
+        def controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            new DefaultExecutorFactory(),
+            2,
+            buildOperation
+        )
+        def stored = new ByteArrayOutputStream()
+
+        // The duplicate is stored in the local cache straight away
+        1 * local.store(key, tmpDir.file("file"))
+
+        when:
+        controller.store(storeCommand)
+        controller.store(storeCommand)
+        controller.close()
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            writer.writeTo(stored)
+        }
+
+        then:
+        1 * local.store(key, tmpDir.file("file.upload"))
+        1 * remote.close()
+
+        and:
+        stored.size() == tmpDir.file("file").length()
+        tmpDir.file("file.upload").assertDoesNotExist()
+        operations.log.all(BuildCacheRemoteStoreBuildOperationType)*.descriptor*.parentId == ["build"]
+        with(operations.log.mostRecentDetails(BuildCacheRemoteStoreDrainBuildOperationType)) {
+            pendingStoreCount <= 1
+        }
+        with(operations.log.mostRecentResult(BuildCacheRemoteStoreDrainBuildOperationType)) {
+            maxPendingStoreCount == 1
+            duplicateStoreCount == 1
+        }
+    }
+
+    def "prefetched remote entries are loaded from local cache"() {
+        given:
+        def prefetched = new CountDownLatch(1)
+        def cachedFile = tmpDir.file("cached")
+        def controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            new DefaultExecutorFactory(),
+            0,
+            null
+        )
+
+        when:
+        controller.prefetch([key])
+        controller.prefetch([key])
+        assert prefetched.await(10, TimeUnit.SECONDS)
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+        1 * local.store(key, _) >> {
+            cachedFile.text = "foo"
+            prefetched.countDown()
+        }
+
+        when:
+        controller.load(loadCommand)
+        controller.close()
+
+        then:
+        1 * local.load(key, _) >> { BuildCacheKey key, Action<File> reader ->
+            if (cachedFile.exists()) {
+                reader.execute(cachedFile)
+            }
+        }
+        0 * remote.load(_, _)
+        0 * local.store(_, _)
+    }
+
+    def "loads from remote again when prefetch missed"() {
+        given:
+        def prefetched = new CountDownLatch(1)
+        def controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            new DefaultExecutorFactory(),
+            0,
+            null
+        )
+
+        when:
+        controller.prefetch([key])
+        assert prefetched.await(10, TimeUnit.SECONDS)
+
+        then:
+        1 * remote.load(key, _) >> {
+            prefetched.countDown()
+            false
+        }
+
+        when:
+        controller.load(loadCommand)
+        controller.close()
+
+        then:
+        1 * local.load(key, _)
+        1 * remote.load(key, _) >> false
+        0 * local.store(_, _)
+    }
+
+    def "prefetches remote entries one at a time when remote cache does not support batches"() {
+        given:
+        def key2 = Mock(BuildCacheKey) {
+            getHashCode() >> "key2"
+        }
+        local = Mock(Local) {
+            allocateTempFile(_, _) >> { BuildCacheKey key, action ->
+                action.execute(tmpDir.file(key.hashCode))
+            }
+        }
+        def loaded = new CountDownLatch(2)
+        def controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            new DefaultExecutorFactory(),
+            0,
+            null
+        )
+
+        when:
+        controller.prefetch([key, key2])
+        loaded.await(10, TimeUnit.SECONDS)
+        controller.close()
+
+        then:
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            loaded.countDown()
+            true
+        }
+        1 * remote.load(key2, _) >> {
+            loaded.countDown()
+            false
+        }
+        1 * local.store(key, _)
+        0 * local.store(key2, _)
+    }
+
+    def "looks up and loads prefetched remote entries in batches when remote cache supports it"() {
+        given:
+        def key2 = Mock(BuildCacheKey) {
+            getHashCode() >> "key2"
+        }
+        def key3 = Mock(BuildCacheKey) {
+            getHashCode() >> "key3"
+        }
+        local = Mock(Local) {
+            allocateTempFile(_, _) >> { BuildCacheKey key, action ->
+                action.execute(tmpDir.file(key.hashCode))
+            }
+        }
+        def remote = Mock(BatchingBuildCacheService)
+        def loaded = new CountDownLatch(1)
+        def controller = new DefaultBuildCacheController(
+            new BuildCacheServicesConfiguration(local, localPush, remote, remotePush),
+            operations,
+            tmpDir.file("dir"),
+            false,
+            new DefaultExecutorFactory(),
+            0,
+            null
+        )
+
+        when:
+        controller.prefetch([key, key2, key3])
+        loaded.await(10, TimeUnit.SECONDS)
+        controller.close()
+
+        then:
+        1 * remote.contains([key, key2, key3] as Set) >> ([key, key2] as Set)
+        1 * remote.load({ it.keySet() == [key, key2] as Set }) >> { Map<BuildCacheKey, BuildCacheEntryReader> readers ->
+            readers[key].readFrom(new ByteArrayInputStream("foo".bytes))
+            loaded.countDown()
+            [key] as Set
+        }
+        0 * remote.load(_, _)
+        1 * local.store(key, _)
+        0 * local.store(key2, _)
+        0 * local.store(key3, _)
+    }
+
     def "does not store to local cache if using legacy local service"() {
         given:
         legacyLocal = Mock(BuildCacheService)
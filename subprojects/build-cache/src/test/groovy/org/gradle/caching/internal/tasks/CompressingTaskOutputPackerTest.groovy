@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.caching.configuration.BuildCacheCompression
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPOutputStream
+
+class CompressingTaskOutputPackerTest extends Specification {
+    def content = ("task output " * 1000).bytes
+    def readOrigin = Stub(TaskOutputOriginReader)
+    def writeOrigin = Stub(TaskOutputOriginWriter)
+    def delegate = new TaskOutputPacker() {
+        byte[] unpacked
+
+        @Override
+        TaskOutputPacker.PackResult pack(SortedSet propertySpecs, Map outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) {
+            output.write(content)
+            new TaskOutputPacker.PackResult(1)
+        }
+
+        @Override
+        TaskOutputPacker.UnpackResult unpack(SortedSet propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) {
+            unpacked = input.bytes
+            new TaskOutputPacker.UnpackResult(null, 1, null)
+        }
+    }
+
+    @Unroll
+    def "can unpack entry packed with #packedWith when configured to use #configured"() {
+        def output = new ByteArrayOutputStream()
+
+        when:
+        new CompressingTaskOutputPacker(delegate, packedWith).pack(new TreeSet(), [:], output, writeOrigin)
+        new CompressingTaskOutputPacker(delegate, configured).unpack(new TreeSet(), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        output.size() < content.length
+        delegate.unpacked == content
+
+        where:
+        [packedWith, configured] << [BuildCacheCompression.values(), BuildCacheCompression.values()].combinations()
+    }
+
+    @Unroll
+    def "can unpack entry packed in chunks with #compression"() {
+        def executor = new DefaultExecutorFactory().create("test", 4)
+        def output = new ByteArrayOutputStream()
+        content = new byte[3 * ChunkedCompressingOutputStream.CHUNK_SIZE + 1]
+        new Random(1).nextBytes(content)
+
+        when:
+        new CompressingTaskOutputPacker(delegate, compression, executor, 2).pack(new TreeSet(), [:], output, writeOrigin)
+
+        then:
+        output.toByteArray()[0..2] as byte[] == [0x47, 0x43, 0x80 | codecId] as byte[]
+
+        when:
+        new CompressingTaskOutputPacker(delegate, compression).unpack(new TreeSet(), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        delegate.unpacked == content
+
+        when:
+        delegate.unpacked = null
+        new CompressingTaskOutputPacker(delegate, compression, executor, 2).unpack(new TreeSet(), new ByteArrayInputStream(output.toByteArray()), readOrigin)
+
+        then:
+        delegate.unpacked == content
+
+        cleanup:
+        executor.stop()
+
+        where:
+        compression                  | codecId
+        BuildCacheCompression.GZIP   | 0
+        BuildCacheCompression.LZ4    | 1
+        BuildCacheCompression.SNAPPY | 2
+    }
+
+    def "fails to unpack chunk that is larger than the maximum chunk size"() {
+        def input = [0x47, 0x43, 0x80, 0x7f, 0xff, 0xff, 0xff] as byte[]
+
+        when:
+        new CompressingTaskOutputPacker(delegate, BuildCacheCompression.GZIP).unpack(new TreeSet(), new ByteArrayInputStream(input), readOrigin)
+
+        then:
+        def e = thrown(IOException)
+        e.message == "Invalid compressed chunk length: 2147483647"
+    }
+
+    def "gzip entries have no header"() {
+        def output = new ByteArrayOutputStream()
+        def expected = new ByteArrayOutputStream()
+        new GZIPOutputStream(expected).withStream { it.write(content) }
+
+        when:
+        new CompressingTaskOutputPacker(delegate, BuildCacheCompression.GZIP).pack(new TreeSet(), [:], output, writeOrigin)
+
+        then:
+        output.toByteArray() == expected.toByteArray()
+    }
+
+    @Unroll
+    def "fails to unpack entry with unknown format #input"() {
+        when:
+        new CompressingTaskOutputPacker(delegate, BuildCacheCompression.GZIP).unpack(new TreeSet(), new ByteArrayInputStream(input as byte[]), readOrigin)
+
+        then:
+        def e = thrown(IOException)
+        e.message == message
+
+        where:
+        input            | message
+        [0x47, 0x43, 9]  | "Build cache entry uses an unsupported compression codec (9)."
+        [1, 2, 3]        | "Build cache entry is not in a recognized format."
+    }
+}
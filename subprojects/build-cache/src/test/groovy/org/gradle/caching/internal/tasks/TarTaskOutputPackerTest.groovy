@@ -36,6 +36,7 @@ import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 
 import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.DIRECTORY
 import static org.gradle.api.internal.tasks.CacheableTaskOutputFilePropertySpec.OutputType.FILE
@@ -113,6 +114,28 @@ class TarTaskOutputPackerTest extends Specification {
         0 * _
     }
 
+    def "can unpack task output directory writing files in parallel"() {
+        def executor = Executors.newFixedThreadPool(4)
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        (1..100).each { sourceOutputDir.file("dir-${it % 10}/file-${it}.txt") << "output $it" }
+        def output = new ByteArrayOutputStream()
+        pack output, prop(DIRECTORY, sourceOutputDir)
+        def sequentialResult = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, temporaryFolder.file("sequential").createDir())
+
+        when:
+        packer = new TarTaskOutputPacker(fileSystem, streamHasher, stringInterner, executor)
+        def targetOutputDir = temporaryFolder.file("target").createDir()
+        def result = unpack new ByteArrayInputStream(output.toByteArray()), prop(DIRECTORY, targetOutputDir)
+
+        then:
+        (1..100).every { targetOutputDir.file("dir-${it % 10}/file-${it}.txt").text == "output $it" }
+        result.snapshots.get("test")*.relativePath == sequentialResult.snapshots.get("test")*.relativePath
+        result.snapshots.get("test")*.content*.contentMd5 == sequentialResult.snapshots.get("test")*.content*.contentMd5
+
+        cleanup:
+        executor.shutdown()
+    }
+
     @Unroll
     def "can pack task output with missing #type (pre-existing as: #preExistsAs)"() {
         def sourceOutput = temporaryFolder.file("source")
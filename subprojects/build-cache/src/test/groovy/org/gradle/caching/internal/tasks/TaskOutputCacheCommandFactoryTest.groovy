@@ -86,7 +86,7 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         def result = load.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated(_)
         1 * originFactory.createReader(task)
 
         then:
@@ -122,7 +122,7 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated(_)
         1 * originFactory.createReader(task)
 
         then:
@@ -151,7 +151,7 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         command.load(input)
 
         then:
-        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated(_)
         1 * originFactory.createReader(task)
 
         then:
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.gradle.internal.resource.local.LocallyAvailableResource
+import org.gradle.internal.resource.local.PathKeyFileStore
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+@CleanupTestDirectory
+class ContentAddressedEntryStoreTest extends Specification {
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.createDir("cache")
+    def fileStore = Stub(PathKeyFileStore) {
+        get(_) >> { String path ->
+            def file = cacheDir.file(path)
+            file.exists() ? resource(file) : null
+        }
+        move(_, _) >> { String path, File source ->
+            def file = cacheDir.file(path)
+            assert source.renameTo(file)
+            resource(file)
+        }
+    }
+    def store = new ContentAddressedEntryStore(fileStore, null)
+    def random = new Random(1)
+
+    def "stores content shared between entries once"() {
+        def shared = randomBytes(100000)
+        def first = archive("first.part", [METADATA: "first".bytes, "tree-out/shared.bin": shared, "tree-out/first.bin": randomBytes(20000)])
+        def second = archive("second.part", [METADATA: "second".bytes, "tree-out/shared.bin": shared, "tree-out/second.bin": randomBytes(20000), "tree-out/small.txt": "small".bytes])
+
+        when:
+        def storedFirst = storeEntry("first", first)
+        def storedSecond = storeEntry("second", second)
+
+        then:
+        storedFirst
+        storedSecond
+        store.isManifest(cacheDir.file("first"))
+        store.isManifest(cacheDir.file("second"))
+        blobs.size() == 3
+
+        when:
+        def firstOutput = temporaryFolder.file("first.out")
+        def secondOutput = temporaryFolder.file("second.out")
+        def assembledFirst = store.assemble(cacheDir.file("first"), firstOutput)
+        def assembledSecond = store.assemble(cacheDir.file("second"), secondOutput)
+
+        then:
+        assembledFirst
+        assembledSecond
+        uncompressed(firstOutput) == uncompressed(first)
+        uncompressed(secondOutput) == uncompressed(second)
+        entryNames(secondOutput) == ["METADATA", "tree-out/shared.bin", "tree-out/second.bin", "tree-out/small.txt"]
+    }
+
+    def "keeps long file names and small files inline"() {
+        def longName = "tree-out/" + ("long-directory-name/" * 10) + "file.txt"
+        def entry = archive("entry.part", [METADATA: "metadata".bytes, (longName): "content".bytes])
+
+        expect:
+        storeEntry("key", entry)
+        blobs.empty
+        store.assemble(cacheDir.file("key"), temporaryFolder.file("entry.out"))
+        entryNames(temporaryFolder.file("entry.out")) == ["METADATA", longName]
+    }
+
+    def "does not split entry that is not a gzip compressed tar archive"() {
+        def entry = temporaryFolder.file("entry.part")
+        entry.bytes = content
+
+        expect:
+        !storeEntry("key", entry)
+        !cacheDir.file("key").exists()
+        !store.isManifest(entry)
+
+        where:
+        content << [[] as byte[], "not an archive".bytes, [0x1f, 0x8b, 1, 2, 3] as byte[]]
+    }
+
+    def "splitting an entry does not change the cache"() {
+        def entry = archive("entry.part", [METADATA: "metadata".bytes, "tree-out/file.bin": randomBytes(20000)])
+
+        when:
+        def splitEntry = store.split(entry)
+
+        then:
+        splitEntry != null
+        !cacheDir.file("key").exists()
+        blobs.empty
+
+        when:
+        splitEntry.discard()
+
+        then:
+        cacheDir.listFiles()*.name == ["entry.part"]
+    }
+
+    def "stores content that was removed from the cache after the entry was split"() {
+        def shared = randomBytes(20000)
+        def first = archive("first.part", [METADATA: "first".bytes, "tree-out/shared.bin": shared])
+        def second = archive("second.part", [METADATA: "second".bytes, "tree-out/shared.bin": shared])
+        storeEntry("first", first)
+
+        when:
+        def splitEntry = store.split(second)
+        blobs*.delete()
+        store.store("second", splitEntry)
+        splitEntry.discard()
+
+        then:
+        blobs.size() == 1
+        store.assemble(cacheDir.file("second"), temporaryFolder.file("second.out"))
+        uncompressed(temporaryFolder.file("second.out")) == uncompressed(second)
+        cacheDir.listFiles().findAll { it.name.startsWith("content") }.empty
+    }
+
+    def "cannot assemble entry when some of its content has been removed"() {
+        def entry = archive("entry.part", [METADATA: "metadata".bytes, "tree-out/file.bin": randomBytes(20000)])
+        storeEntry("key", entry)
+
+        when:
+        blobs*.delete()
+
+        then:
+        !store.assemble(cacheDir.file("key"), temporaryFolder.file("entry.out"))
+    }
+
+    private boolean storeEntry(String key, File entry) {
+        def splitEntry = store.split(entry)
+        if (splitEntry == null) {
+            return false
+        }
+        try {
+            store.store(key, splitEntry)
+        } finally {
+            splitEntry.discard()
+        }
+        true
+    }
+
+    private LocallyAvailableResource resource(File file) {
+        Stub(LocallyAvailableResource) {
+            getFile() >> file
+        }
+    }
+
+    private List<TestFile> getBlobs() {
+        cacheDir.listFiles().findAll { it.name.endsWith(ContentAddressedEntryStore.BLOB_SUFFIX) }
+    }
+
+    private byte[] randomBytes(int count) {
+        def bytes = new byte[count]
+        random.nextBytes(bytes)
+        bytes
+    }
+
+    private TestFile archive(String name, Map<String, byte[]> files) {
+        def file = cacheDir.file(name)
+        def tarOutput = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(file)), "utf-8")
+        tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX)
+        try {
+            files.each { path, content ->
+                def entry = new TarArchiveEntry(path, true)
+                entry.size = content.length
+                entry.mode = 0644
+                tarOutput.putArchiveEntry(entry)
+                tarOutput.write(content)
+                tarOutput.closeArchiveEntry()
+            }
+        } finally {
+            tarOutput.close()
+        }
+        file
+    }
+
+    private static byte[] uncompressed(File file) {
+        new GZIPInputStream(new FileInputStream(file)).withCloseable { it.bytes }
+    }
+
+    private static List<String> entryNames(File file) {
+        def names = []
+        new TarArchiveInputStream(new GZIPInputStream(new FileInputStream(file))).withCloseable { input ->
+            def entry
+            while ((entry = input.nextTarEntry) != null) {
+                names << entry.name
+            }
+        }
+        names
+    }
+}
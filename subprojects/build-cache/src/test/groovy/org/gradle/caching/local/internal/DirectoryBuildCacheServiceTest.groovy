@@ -16,9 +16,12 @@
 
 package org.gradle.caching.local.internal
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
 import org.gradle.cache.PersistentCache
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -26,6 +29,8 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.zip.GZIPOutputStream
+
 @UsesNativeServices
 @CleanupTestDirectory
 class DirectoryBuildCacheServiceTest extends Specification {
@@ -68,4 +73,43 @@ class DirectoryBuildCacheServiceTest extends Specification {
         cacheDir.listFiles() as List == []
         1 * key.getHashCode() >> hashCode
     }
+
+    def "splits deduplicated entry before locking the cache"() {
+        def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, ".failed", true, null)
+        def key = Stub(BuildCacheKey) {
+            getHashCode() >> "1234abcd"
+        }
+        def entry = temporaryFolder.file("entry.tgz")
+        new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(entry))).withCloseable { output ->
+            def content = new byte[20000]
+            new Random(1).nextBytes(content)
+            def tarEntry = new TarArchiveEntry("tree-out/file.bin")
+            tarEntry.size = content.length
+            output.putArchiveEntry(tarEntry)
+            output.write(content)
+            output.closeArchiveEntry()
+        }
+        def resource = Stub(LocallyAvailableResource)
+        def filesWhenLocked = null
+
+        when:
+        service.store(key, entry)
+
+        then:
+        1 * persistentCache.useCache(_) >> { Runnable action ->
+            filesWhenLocked = splitFiles()
+            action.run()
+        }
+        1 * fileStore.move({ it.endsWith(ContentAddressedEntryStore.BLOB_SUFFIX) }, _) >> resource
+        1 * fileStore.move("1234abcd", _) >> resource
+
+        and:
+        // The manifest and the compressed content
+        filesWhenLocked.size() == 2
+        splitFiles().empty
+    }
+
+    private List<File> splitFiles() {
+        temporaryFolder.testDirectory.listFiles().findAll { it.name.startsWith("content") }
+    }
 }
@@ -90,6 +90,7 @@ public class StartParameter implements LoggingConfiguration, ParallelismConfigur
     private boolean recompileScripts;
     private boolean buildCacheEnabled;
     private boolean configureOnDemand;
+    private boolean criticalPathScheduling;
     private boolean continuous;
     private List<File> includedBuilds = new ArrayList<File>();
     private boolean buildScan;
@@ -232,6 +233,7 @@ public class StartParameter implements LoggingConfiguration, ParallelismConfigur
         p.setParallelProjectExecutionEnabled(isParallelProjectExecutionEnabled());
         p.buildCacheEnabled = buildCacheEnabled;
         p.configureOnDemand = configureOnDemand;
+        p.criticalPathScheduling = criticalPathScheduling;
         p.setMaxWorkerCount(getMaxWorkerCount());
         p.systemPropertiesArgs = new HashMap<String, String>(systemPropertiesArgs);
         return p;
@@ -748,6 +750,7 @@ public class StartParameter implements LoggingConfiguration, ParallelismConfigur
             + ", configureOnDemand=" + configureOnDemand
             + ", maxWorkerCount=" + getMaxWorkerCount()
             + ", buildCacheEnabled=" + buildCacheEnabled
+            + ", criticalPathScheduling=" + criticalPathScheduling
             + '}';
     }
 
@@ -763,6 +766,27 @@ public class StartParameter implements LoggingConfiguration, ParallelismConfigur
         this.configureOnDemand = configureOnDemand;
     }
 
+    /**
+     * Returns true if ready tasks should be executed in order of the longest remaining path through the task graph,
+     * estimated from the durations of previous executions.
+     *
+     * @since 4.3
+     */
+    @Incubating
+    public boolean isCriticalPathSchedulingEnabled() {
+        return criticalPathScheduling;
+    }
+
+    /**
+     * Enables/disables scheduling of ready tasks by their remaining critical path.
+     *
+     * @since 4.3
+     */
+    @Incubating
+    public void setCriticalPathSchedulingEnabled(boolean criticalPathScheduling) {
+        this.criticalPathScheduling = criticalPathScheduling;
+    }
+
     @Incubating
     public boolean isContinuous() {
         return continuous;
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.ParallelDirectoryWalker;
+import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
+import org.gradle.internal.hash.DefaultFileHasher;
+import org.gradle.internal.hash.DefaultStreamHasher;
+import org.gradle.internal.hash.FileHasher;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.nativeintegration.services.FileSystems;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Compares snapshotting a directory tree on a single thread with walking and hashing the tree using multiple threads.
+ * The file system mirror is not shared between invocations, so that every invocation walks and hashes the whole tree.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+@SuppressWarnings("Since15")
+public class DirectorySnapshottingBenchmark {
+    private static final int FILES_PER_DIRECTORY = 50;
+
+    private final FileSystem fileSystem = FileSystems.getDefault();
+    private final FileHasher hasher = new DefaultFileHasher(new DefaultStreamHasher(new DefaultContentHasherFactory()));
+    private final DefaultDirectoryFileTreeFactory directoryFileTreeFactory = new DefaultDirectoryFileTreeFactory();
+    private ParallelDirectoryWalker parallelDirectoryWalker;
+    private File tempDir;
+
+    @Param({"1000", "10000", "100000"})
+    int fileCount;
+
+    @Param({"1024", "32768"})
+    int fileSize;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("directory-snapshotting").toFile();
+        Random random = new Random(1234L);
+        byte[] content = new byte[fileSize];
+        for (int i = 0; i < fileCount; i++) {
+            int dir = i / FILES_PER_DIRECTORY;
+            File file = new File(tempDir, "dir" + (dir % 10) + "/dir" + dir + "/file" + i + ".txt");
+            random.nextBytes(content);
+            FileUtils.writeByteArrayToFile(file, content);
+        }
+        parallelDirectoryWalker = new ParallelDirectoryWalker(fileSystem);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        parallelDirectoryWalker.stop();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public FileTreeSnapshot sequential() {
+        return snapshotter(null).snapshotDirectoryTree(tempDir);
+    }
+
+    @Benchmark
+    public FileTreeSnapshot parallel() {
+        return snapshotter(parallelDirectoryWalker).snapshotDirectoryTree(tempDir);
+    }
+
+    private DefaultFileSystemSnapshotter snapshotter(ParallelDirectoryWalker walker) {
+        return new DefaultFileSystemSnapshotter(hasher, new StringInterner(), fileSystem, directoryFileTreeFactory, new DefaultFileSystemMirror(Collections.<CachedJarFileStore>emptyList()), walker);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares hashing files by reading them through a heap buffer with hashing them by mapping them into memory.
+ * Run with {@code -prof gc} to compare the allocation rates as well.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class FileHashingBenchmark {
+    @Param({"65536", "1048576", "67108864", "268435456"})
+    int fileSize;
+
+    @Param({"MD5", "MURMUR3-128"})
+    String algorithm;
+
+    private File file;
+    private FileHasher streamingHasher;
+    private FileHasher mappingHasher;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("file-hashing", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(1234L);
+        for (long written = 0; written < fileSize; written += chunk.length) {
+            random.nextBytes(chunk);
+            int length = (int) Math.min(chunk.length, fileSize - written);
+            FileUtils.writeByteArrayToFile(file, Arrays.copyOf(chunk, length), true);
+        }
+        ContentHasherFactory hasherFactory = new DefaultContentHasherFactory(algorithm);
+        StreamHasher streamHasher = new DefaultStreamHasher(hasherFactory);
+        streamingHasher = new DefaultFileHasher(streamHasher);
+        mappingHasher = new DefaultFileHasher(streamHasher, hasherFactory, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.forceDelete(file);
+    }
+
+    @Benchmark
+    public HashCode streamed() {
+        return streamingHasher.hash(file);
+    }
+
+    @Benchmark
+    public HashCode mapped() {
+        return mappingHasher.hash(file);
+    }
+}
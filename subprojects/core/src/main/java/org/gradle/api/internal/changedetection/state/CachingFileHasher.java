@@ -21,6 +21,7 @@ import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.hash.DefaultContentHasherFactory;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
@@ -46,6 +47,14 @@ public class CachingFileHasher implements FileHasher {
         this.timestampInspector = timestampInspector;
     }
 
+    /**
+     * Returns the name of the cache to use for hashes created with the given algorithm. Hashes created with different algorithms are kept in separate caches,
+     * so that changing the algorithm never mixes them up.
+     */
+    public static String cacheNameFor(String baseName, String algorithm) {
+        return DefaultContentHasherFactory.MD5.equals(algorithm) ? baseName : baseName + "-" + algorithm;
+    }
+
     @Override
     public String toString() {
         return "{hasher cache: " + cache + "}";
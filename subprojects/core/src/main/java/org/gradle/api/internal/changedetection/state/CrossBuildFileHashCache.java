@@ -47,7 +47,9 @@ public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
     @Override
     public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Serializer<V> valueSerializer, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
-                .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
+                .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses))
+                .pageCacheSize(Long.getLong(PersistentIndexedCacheParameters.PAGE_CACHE_SIZE_PROPERTY, 0))
+                .storeType(PersistentIndexedCacheParameters.StoreType.fromSystemProperty());
         return cache.createCache(parameters);
     }
 
@@ -16,34 +16,96 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
 import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.initialization.RootBuildLifecycleListener;
+import org.gradle.internal.Pair;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.file.DefaultFileHierarchySet;
+import org.gradle.internal.file.FileHierarchyIndex;
 import org.gradle.internal.file.FileHierarchySet;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
+ *
+ * <p>When created with a {@link FileWatcherFactory}, the state for some files that do not live in an append-only cache is retained between builds.
+ * This is intended to be used in a long-lived daemon, and is enabled with the {@value #RETAIN_BETWEEN_BUILDS_PROPERTY} system property.</p>
+ *
+ * <p>Only the state recorded for a file that was already watched when the build started is retained, so that any change made after the state
+ * was recorded produces an event. The files whose state was recorded during a build are watched at the end of the build, and their state is
+ * retained from the next build on. State for missing files is never retained, as the watcher may not notice the creation of their parent directories.</p>
+ *
+ * <p>When the next build starts, the mirror first waits for the watcher to report a change to a file of its own, so that the events for changes
+ * made before the build started have been received. It then discards the state overlapping the changed files. All retained state is discarded
+ * when the watcher does not catch up in time, fails, or reports that events were lost. When task outputs are generated, only the state
+ * overlapping the declared outputs of the task, and the files reported as changed so far, is discarded.</p>
  */
-public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener {
-    // Maps from interned absolute path for a file to known details for the file.
-    private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
-    private final Map<String, FileSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSnapshot>();
-    // Maps from interned absolute path for a directory to known details for the directory.
-    private final Map<String, FileTreeSnapshot> trees = new ConcurrentHashMap<String, FileTreeSnapshot>();
-    private final Map<String, FileTreeSnapshot> cacheTrees = new ConcurrentHashMap<String, FileTreeSnapshot>();
-    // Maps from interned absolute path to a snapshot
-    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
-    private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
+public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener, Stoppable {
+    public static final String RETAIN_BETWEEN_BUILDS_PROPERTY = "org.gradle.filesystem.retain";
+    private static final Logger LOGGER = Logging.getLogger(DefaultFileSystemMirror.class);
+    // When this many changes are pending, it is cheaper to throw away all state than to invalidate the changed files one by one
+    private static final int MAX_PENDING_CHANGES = 10000;
+    private static final long SYNC_TIMEOUT_SECONDS = 10;
+
+    private final MirrorState cacheState = new MirrorState();
+    // State for files that were watched before the state was recorded
+    private final MirrorState retainedState = new MirrorState();
+    // State for all other files, discarded at the end of the build
+    private final MirrorState buildState = new MirrorState();
     private final FileHierarchySet cachedDirectories;
 
+    @Nullable
+    private final FileWatcherFactory fileWatcherFactory;
+    // A directory owned by the mirror, in which a file is created to check that the watcher has caught up
+    @Nullable
+    private final File syncDir;
+    private final AtomicInteger syncCount = new AtomicInteger();
+    private volatile File syncFile;
+    private volatile CountDownLatch syncLatch;
+    // The files that were watched when the current build started
+    private volatile FileHierarchySet watchedFiles = DefaultFileHierarchySet.of();
+    // Files reported as changed since the last time the state was invalidated
+    private final Queue<File> changedFiles = new ConcurrentLinkedQueue<File>();
+    private final AtomicInteger changedFileCount = new AtomicInteger();
+    private final AtomicBoolean invalidateAll = new AtomicBoolean();
+    private FileWatcher fileWatcher;
+
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
+        this(fileStores, null, null);
+    }
+
+    /**
+     * @param fileWatcherFactory used to watch for changes to the retained state. When null, all state is discarded at the end of each build.
+     * @param syncDir a directory owned by the mirror, used to check that the watcher has reported all changes. Required when watching.
+     */
+    public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, @Nullable FileWatcherFactory fileWatcherFactory, @Nullable File syncDir) {
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
         for (CachedJarFileStore fileStore : fileStores) {
             for (File file : fileStore.getFileStoreRoots()) {
@@ -51,26 +113,30 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
             }
         }
         this.cachedDirectories = cachedDirectories;
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.syncDir = syncDir == null ? null : syncDir.getAbsoluteFile();
     }
 
     @Nullable
     @Override
     public FileSnapshot getFile(String path) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly infer that the path refers to a directory, if we have details for a descendant path (and it's not a missing file)
         if (cachedDirectories.contains(path)) {
-            return cacheFiles.get(path);
-        } else {
-            return files.get(path);
+            return cacheState.getFile(path);
         }
+        FileSnapshot file = retainedState.getFile(path);
+        return file != null ? file : buildState.getFile(path);
     }
 
     @Override
     public void putFile(FileSnapshot file) {
-        if (cachedDirectories.contains(file.getPath())) {
-            cacheFiles.put(file.getPath(), file);
+        String path = file.getPath();
+        if (cachedDirectories.contains(path)) {
+            cacheState.putFile(file);
+        } else if (file.getType() != FileType.Missing && watchedFiles.contains(path)) {
+            retainedState.putFile(file);
         } else {
-            files.put(file.getPath(), file);
+            buildState.putFile(file);
         }
     }
 
@@ -78,63 +144,355 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Override
     public Snapshot getContent(String path) {
         if (cachedDirectories.contains(path)) {
-            return cacheSnapshots.get(path);
-        } else {
-            return snapshots.get(path);
+            return cacheState.getContent(path);
         }
+        Snapshot snapshot = retainedState.getContent(path);
+        return snapshot != null ? snapshot : buildState.getContent(path);
     }
 
     @Override
     public void putContent(String path, Snapshot snapshot) {
-        if (cachedDirectories.contains(path)) {
-            cacheSnapshots.put(path, snapshot);
-        } else {
-            snapshots.put(path, snapshot);
-        }
+        stateFor(path).putContent(path, snapshot);
     }
 
     @Nullable
     @Override
     public FileTreeSnapshot getDirectoryTree(String path) {
-        // Could potentially also look whether we have the details for an ancestor directory tree
         // Could possibly also short-circuit some scanning if we have details for some sub trees
         if (cachedDirectories.contains(path)) {
-            return cacheTrees.get(path);
-        } else {
-            return trees.get(path);
+            return cacheState.getDirectoryTree(path);
         }
+        FileTreeSnapshot tree = retainedState.getDirectoryTree(path);
+        return tree != null ? tree : buildState.getDirectoryTree(path);
     }
 
     @Override
     public void putDirectory(FileTreeSnapshot directory) {
-        if (cachedDirectories.contains(directory.getPath())) {
-            cacheTrees.put(directory.getPath(), directory);
-        } else {
-            trees.put(directory.getPath(), directory);
+        stateFor(directory.getPath()).putDirectory(directory);
+    }
+
+    private MirrorState stateFor(String path) {
+        if (cachedDirectories.contains(path)) {
+            return cacheState;
         }
+        return watchedFiles.contains(path) ? retainedState : buildState;
     }
 
     @Override
-    public void beforeTaskOutputsGenerated() {
-        // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
-        // This is intentionally very simple, to be improved later
-        files.clear();
-        trees.clear();
-        snapshots.clear();
+    public void beforeTaskOutputsGenerated(@Nullable Iterable<File> outputRoots) {
+        if (fileWatcherFactory == null || outputRoots == null) {
+            // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
+            // This is intentionally very simple, to be improved later
+            retainedState.clear();
+            buildState.clear();
+            return;
+        }
+        List<File> changed = Lists.newArrayList(outputRoots);
+        if (drainChangedFiles(changed)) {
+            retainedState.clear();
+        }
+        retainedState.invalidate(changed);
+        buildState.invalidate(changed);
     }
 
     @Override
     public void afterStart() {
+        if (fileWatcherFactory == null) {
+            return;
+        }
+        if (!retainedState.isEmpty() && !awaitWatcher()) {
+            LOGGER.info("File system watcher did not report changes in time. Discarding file system state retained between builds.");
+            invalidateAll.set(true);
+        }
+        List<File> changed = Lists.newArrayList();
+        if (drainChangedFiles(changed)) {
+            retainedState.clear();
+        } else {
+            retainedState.invalidate(changed);
+        }
     }
 
     @Override
     public void beforeComplete() {
-        // We throw away all state between builds
-        files.clear();
-        cacheFiles.clear();
-        trees.clear();
-        cacheTrees.clear();
-        snapshots.clear();
-        cacheSnapshots.clear();
+        if (fileWatcherFactory != null) {
+            // Watch the files whose state was recorded during this build, so that the state recorded for them by later builds can be retained
+            startWatching(buildState.getPaths());
+        }
+        buildState.clear();
+        // The append-only caches may be cleaned up between builds
+        cacheState.clear();
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            if (fileWatcher != null) {
+                fileWatcher.stop();
+                fileWatcher = null;
+            }
+        }
+    }
+
+    /**
+     * Adds the files reported as changed to the given list.
+     *
+     * @return true when the changes are not known and all state should be discarded.
+     */
+    private boolean drainChangedFiles(List<File> changed) {
+        for (File file = changedFiles.poll(); file != null; file = changedFiles.poll()) {
+            changed.add(file);
+        }
+        changedFileCount.set(0);
+        return invalidateAll.getAndSet(false);
+    }
+
+    /**
+     * Creates a file in the sync directory and waits for the watcher to report it. Events are reported in order, so once the watcher has reported
+     * the file, it has also reported the changes made before the file was created.
+     */
+    private boolean awaitWatcher() {
+        synchronized (this) {
+            if (fileWatcher == null) {
+                return false;
+            }
+        }
+        File file = new File(syncDir, "sync-" + syncCount.incrementAndGet());
+        CountDownLatch latch = new CountDownLatch(1);
+        syncLatch = latch;
+        syncFile = file;
+        try {
+            if (!file.createNewFile()) {
+                return false;
+            }
+            return latch.await(SYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (IOException e) {
+            LOGGER.debug("Could not create file " + file, e);
+            return false;
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void startWatching(Collection<String> paths) {
+        synchronized (this) {
+            // A new watcher does not report changes to the files watched by a previous one
+            FileHierarchySet newWatchedFiles = fileWatcher == null ? DefaultFileHierarchySet.of() : watchedFiles;
+            FileSystemSubset.Builder builder = FileSystemSubset.builder();
+            boolean hasNewFiles = false;
+            for (String path : paths) {
+                if (!newWatchedFiles.contains(path)) {
+                    File file = new File(path);
+                    builder.add(file);
+                    newWatchedFiles = newWatchedFiles.plus(file);
+                    hasNewFiles = true;
+                }
+            }
+            if (!hasNewFiles) {
+                return;
+            }
+            try {
+                if (fileWatcher == null) {
+                    if (!syncDir.isDirectory() && !syncDir.mkdirs()) {
+                        throw new IOException("Could not create directory " + syncDir);
+                    }
+                    builder.add(syncDir);
+                    fileWatcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                        @Override
+                        public void execute(Throwable throwable) {
+                            watchingFailed(throwable);
+                        }
+                    }, new FileWatcherListener() {
+                        @Override
+                        public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+                            fileChanged(event);
+                        }
+                    });
+                }
+                fileWatcher.watch(builder.build());
+                // Changes made to these files from now on are reported
+                watchedFiles = newWatchedFiles;
+            } catch (IOException e) {
+                watchingFailed(e);
+            }
+        }
+    }
+
+    private void watchingFailed(Throwable failure) {
+        LOGGER.info("Could not watch the file system for changes. Discarding file system state retained between builds.", failure);
+        invalidateAll.set(true);
+        synchronized (this) {
+            watchedFiles = DefaultFileHierarchySet.of();
+            if (fileWatcher != null) {
+                fileWatcher.stop();
+                fileWatcher = null;
+            }
+        }
+    }
+
+    private void fileChanged(FileWatcherEvent event) {
+        File file = event.getFile();
+        if (file != null && (file.equals(syncDir) || syncDir.equals(file.getParentFile()))) {
+            if (file.equals(syncFile)) {
+                syncLatch.countDown();
+            }
+            return;
+        }
+        if (file == null || changedFileCount.incrementAndGet() > MAX_PENDING_CHANGES) {
+            invalidateAll.set(true);
+        } else {
+            changedFiles.add(file);
+        }
+    }
+
+    /**
+     * The known details for some set of files. Indexes the paths of the details, so that the details overlapping a changed file can be found
+     * without visiting all of them.
+     */
+    private static class MirrorState {
+        // Maps from interned absolute path for a file to known details for the file.
+        private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
+        // Maps from interned absolute path for a directory to known details for the directory.
+        private final Map<String, FileTreeSnapshot> trees = new ConcurrentHashMap<String, FileTreeSnapshot>();
+        // Maps from interned absolute path to a snapshot
+        private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+        // Each path is associated with itself, once for each of the maps above that contains it. Guarded by itself.
+        private final FileHierarchyIndex<String> paths = new FileHierarchyIndex<String>();
+
+        boolean isEmpty() {
+            return files.isEmpty() && trees.isEmpty() && snapshots.isEmpty();
+        }
+
+        Set<String> getPaths() {
+            Set<String> result = Sets.newHashSet();
+            result.addAll(files.keySet());
+            result.addAll(trees.keySet());
+            result.addAll(snapshots.keySet());
+            return result;
+        }
+
+        @Nullable
+        FileSnapshot getFile(String path) {
+            FileSnapshot file = files.get(path);
+            if (file == null) {
+                // Files that are not part of an ancestor tree cannot be assumed to be missing, as they may be excluded by default
+                DirectoryTreeDetails ancestor = findAncestorTree(path);
+                file = ancestor == null ? null : ancestor.getDescendant(path);
+                if (file != null) {
+                    putFile(file);
+                }
+            }
+            return file;
+        }
+
+        void putFile(FileSnapshot file) {
+            synchronized (paths) {
+                if (files.put(file.getPath(), file) == null) {
+                    paths.add(file.getPath(), file.getPath());
+                }
+            }
+        }
+
+        @Nullable
+        Snapshot getContent(String path) {
+            return snapshots.get(path);
+        }
+
+        void putContent(String path, Snapshot snapshot) {
+            synchronized (paths) {
+                if (snapshots.put(path, snapshot) == null) {
+                    paths.add(path, path);
+                }
+            }
+        }
+
+        @Nullable
+        FileTreeSnapshot getDirectoryTree(String path) {
+            FileTreeSnapshot tree = trees.get(path);
+            if (tree == null) {
+                DirectoryTreeDetails ancestor = findAncestorTree(path);
+                tree = ancestor == null ? null : ancestor.getSubTree(path);
+                if (tree != null) {
+                    putDirectory(tree);
+                }
+            }
+            return tree;
+        }
+
+        void putDirectory(FileTreeSnapshot directory) {
+            synchronized (paths) {
+                if (trees.put(directory.getPath(), directory) == null) {
+                    paths.add(directory.getPath(), directory.getPath());
+                }
+            }
+        }
+
+        @Nullable
+        private DirectoryTreeDetails findAncestorTree(String path) {
+            if (trees.isEmpty()) {
+                return null;
+            }
+            for (int end = path.lastIndexOf(File.separatorChar); end > 0; end = path.lastIndexOf(File.separatorChar, end - 1)) {
+                FileTreeSnapshot tree = trees.get(path.substring(0, end));
+                if (tree instanceof DirectoryTreeDetails) {
+                    return (DirectoryTreeDetails) tree;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Discards the details for the given files, their descendants and their ancestors. The parts of an ancestor tree that are not affected by the changes are kept.
+         */
+        void invalidate(Collection<File> changedFiles) {
+            if (changedFiles.isEmpty()) {
+                return;
+            }
+            FileHierarchyIndex<File> changed = new FileHierarchyIndex<File>();
+            for (File file : changedFiles) {
+                changed.add(file.getAbsolutePath(), file);
+            }
+            synchronized (paths) {
+                Set<String> affectedPaths = Sets.newHashSet();
+                for (File file : changedFiles) {
+                    for (Pair<String, String> overlap : paths.findOverlaps(file.getAbsolutePath())) {
+                        affectedPaths.add(overlap.left);
+                    }
+                }
+                List<DirectoryTreeDetails> unchangedTrees = Lists.newArrayList();
+                List<FileSnapshot> unchangedFiles = Lists.newArrayList();
+                for (String path : affectedPaths) {
+                    if (files.remove(path) != null) {
+                        paths.remove(path, path);
+                    }
+                    if (snapshots.remove(path) != null) {
+                        paths.remove(path, path);
+                    }
+                    FileTreeSnapshot tree = trees.remove(path);
+                    if (tree != null) {
+                        paths.remove(path, path);
+                        if (tree instanceof DirectoryTreeDetails) {
+                            ((DirectoryTreeDetails) tree).collectUnchanged(changed, unchangedTrees, unchangedFiles);
+                        }
+                    }
+                }
+                for (DirectoryTreeDetails unchangedTree : unchangedTrees) {
+                    putDirectory(unchangedTree);
+                }
+                for (FileSnapshot unchangedFile : unchangedFiles) {
+                    putFile(unchangedFile);
+                }
+            }
+        }
+
+        void clear() {
+            synchronized (paths) {
+                files.clear();
+                trees.clear();
+                snapshots.clear();
+                paths.clear();
+            }
+        }
     }
 }
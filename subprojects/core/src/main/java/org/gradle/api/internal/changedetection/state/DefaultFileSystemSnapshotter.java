@@ -18,15 +18,19 @@ package org.gradle.api.internal.changedetection.state;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import org.gradle.api.Transformer;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
+import org.gradle.api.file.ReproducibleFileVisitor;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.file.FileTreeInternal;
 import org.gradle.api.internal.file.collections.DirectoryFileTree;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.ParallelDirectoryWalker;
 import org.gradle.api.internal.file.collections.SimpleFileCollection;
+import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.cache.internal.ProducerGuard;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
@@ -37,6 +41,7 @@ import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.normalization.internal.InputNormalizationStrategy;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 
@@ -52,22 +57,42 @@ import java.util.List;
  * The implementations are currently intentionally very, very simple, and so there are a number of ways in which they can be made much more efficient. This can happen over time.
  */
 public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
+    /**
+     * When set, directory trees are walked and their files hashed using multiple threads.
+     */
+    public static final String PARALLEL_WALKING_PROPERTY = "org.gradle.filesystem.parallel";
+
     private final FileHasher hasher;
     private final StringInterner stringInterner;
     private final FileSystem fileSystem;
     private final DirectoryFileTreeFactory directoryFileTreeFactory;
     private final FileSystemMirror fileSystemMirror;
+    private final ParallelDirectoryWalker parallelDirectoryWalker;
+    private final Transformer<FileSnapshot, FileVisitDetails> snapshotElement = new Transformer<FileSnapshot, FileVisitDetails>() {
+        @Override
+        public FileSnapshot transform(FileVisitDetails details) {
+            return details.isDirectory() ? directorySnapshot(details) : regularFileSnapshot(details);
+        }
+    };
     private final ProducerGuard<String> producingSelfSnapshots = ProducerGuard.striped();
     private final ProducerGuard<String> producingTrees = ProducerGuard.striped();
     private final ProducerGuard<String> producingAllSnapshots = ProducerGuard.striped();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
 
     public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        this(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, null);
+    }
+
+    /**
+     * @param parallelDirectoryWalker When not null, used to walk directory trees and hash their files using multiple threads.
+     */
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, @Nullable ParallelDirectoryWalker parallelDirectoryWalker) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
         this.fileSystemMirror = fileSystemMirror;
+        this.parallelDirectoryWalker = parallelDirectoryWalker;
         snapshotter = new DefaultGenericFileCollectionSnapshotter(stringInterner, directoryFileTreeFactory, this);
     }
 
@@ -132,10 +157,16 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     public FileTreeSnapshot snapshotDirectoryTree(final DirectoryFileTree dirTree) {
         // Could potentially coordinate with a thread that is snapshotting an overlapping directory tree
         // Currently cache only those trees where we want everything from a directory
-        if (!dirTree.getPatterns().isEmpty()) {
-            List<FileSnapshot> elements = Lists.newArrayList();
-            dirTree.visit(new FileVisitorImpl(elements));
-            return new DirectoryTreeDetails(dirTree.getDir().getAbsolutePath(), elements);
+        PatternSet patterns = dirTree.getPatterns();
+        if (!patterns.isEmpty()) {
+            // When everything from the directory is already known and the patterns do not need to look at the files, filter what we already know
+            if (patterns.getIncludeSpecs().isEmpty() && patterns.getExcludeSpecs().isEmpty()) {
+                FileTreeSnapshot unfiltered = fileSystemMirror.getDirectoryTree(dirTree.getDir().getAbsolutePath());
+                if (unfiltered instanceof DirectoryTreeDetails) {
+                    return ((DirectoryTreeDetails) unfiltered).filter(patterns.getAsSpec(), fileSystem);
+                }
+            }
+            return new DirectoryTreeDetails(dirTree.getDir().getAbsolutePath(), walk(dirTree));
         }
 
         final String path = dirTree.getDir().getAbsolutePath();
@@ -162,9 +193,17 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
     private FileTreeSnapshot doSnapshot(DirectoryFileTree directoryTree) {
         String path = getPath(directoryTree.getDir());
+        return new DirectoryTreeDetails(path, ImmutableList.copyOf(walk(directoryTree)));
+    }
+
+    private List<FileSnapshot> walk(DirectoryFileTree directoryTree) {
+        // Both walks visit the tree in the same order and classify its elements in the same way, so that the snapshot does not depend on which one is used
+        if (parallelDirectoryWalker != null && !directoryTree.isPostfix() && directoryTree.getDir().isDirectory()) {
+            return parallelDirectoryWalker.walkDir(directoryTree.getDir(), directoryTree.getPatterns().getAsSpec(), snapshotElement);
+        }
         List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
-        return new DirectoryTreeDetails(path, ImmutableList.copyOf(elements));
+        directoryTree.visit(new ReproducibleFileVisitorImpl(elements));
+        return elements;
     }
 
     private String getPath(File file) {
@@ -186,6 +225,14 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
         }
     }
 
+    private DirectoryFileSnapshot directorySnapshot(FileVisitDetails dirDetails) {
+        return new DirectoryFileSnapshot(getPath(dirDetails.getFile()), dirDetails.getRelativePath(), false);
+    }
+
+    private RegularFileSnapshot regularFileSnapshot(FileVisitDetails fileDetails) {
+        return new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails));
+    }
+
     private FileHashSnapshot fileSnapshot(FileTreeElement fileDetails) {
         return new FileHashSnapshot(hasher.hash(fileDetails), fileDetails.getLastModified());
     }
@@ -216,12 +263,23 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
         @Override
         public void visitDir(FileVisitDetails dirDetails) {
-            fileTreeElements.add(new DirectoryFileSnapshot(getPath(dirDetails.getFile()), dirDetails.getRelativePath(), false));
+            fileTreeElements.add(directorySnapshot(dirDetails));
         }
 
         @Override
         public void visitFile(FileVisitDetails fileDetails) {
-            fileTreeElements.add(new RegularFileSnapshot(getPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
+            fileTreeElements.add(regularFileSnapshot(fileDetails));
+        }
+    }
+
+    private class ReproducibleFileVisitorImpl extends FileVisitorImpl implements ReproducibleFileVisitor {
+        ReproducibleFileVisitorImpl(List<FileSnapshot> fileTreeElements) {
+            super(fileTreeElements);
+        }
+
+        @Override
+        public boolean isReproducibleFileOrder() {
+            return true;
         }
     }
 }
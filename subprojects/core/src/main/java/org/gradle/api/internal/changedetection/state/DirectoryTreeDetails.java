@@ -16,16 +16,36 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileTreeElement;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.file.FileHierarchyIndex;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the state of a directory tree.
+ *
+ * The tree can answer queries for its descendants, such as the state of a single file, of a sub-directory or of a filtered view of the tree,
+ * without scanning the file system again. To do so, the descendants are arranged into a hierarchy on first use.
  */
 public class DirectoryTreeDetails implements FileTreeSnapshot {
     // Interned path
     private final String path;
     // All elements, not just direct children
     private final Collection<FileSnapshot> descendants;
+    private volatile Hierarchy hierarchy;
 
     public DirectoryTreeDetails(String path, Collection<FileSnapshot> descendants) {
         this.path = path;
@@ -42,8 +62,150 @@ public class DirectoryTreeDetails implements FileTreeSnapshot {
         return descendants;
     }
 
+    /**
+     * Returns the state of the given descendant, as if the descendant was snapshotted on its own. Returns null when the path is not a known descendant of this tree.
+     */
+    @Nullable
+    public FileSnapshot getDescendant(String path) {
+        Node node = getHierarchy().nodes.get(path);
+        if (node == null) {
+            return null;
+        }
+        return relativize(node.snapshot, node.depth - 1, true);
+    }
+
+    /**
+     * Returns the tree rooted at the given descendant directory. Returns null when the path is not a known descendant directory of this tree.
+     */
+    @Nullable
+    public DirectoryTreeDetails getSubTree(String path) {
+        Node node = getHierarchy().nodes.get(path);
+        if (node == null || node.snapshot.getType() != FileType.Directory) {
+            return null;
+        }
+        return subTree(node);
+    }
+
+    /**
+     * Returns the descendants matching the given spec, in the same way as scanning the directory with the spec would. That is, the descendants of excluded directories are excluded too.
+     */
+    public DirectoryTreeDetails filter(Spec<? super FileTreeElement> spec, FileSystem fileSystem) {
+        List<FileSnapshot> elements = Lists.newArrayList();
+        filter(getHierarchy().root, spec, fileSystem, elements);
+        return new DirectoryTreeDetails(path, elements);
+    }
+
+    private static void filter(Node parent, Spec<? super FileTreeElement> spec, FileSystem fileSystem, List<FileSnapshot> elements) {
+        for (Node child : parent.children) {
+            FileSnapshot snapshot = child.snapshot;
+            if (!spec.isSatisfiedBy(new DefaultFileTreeElement(new File(snapshot.getPath()), snapshot.getRelativePath(), fileSystem, fileSystem))) {
+                continue;
+            }
+            elements.add(snapshot);
+            filter(child, spec, fileSystem, elements);
+        }
+    }
+
+    /**
+     * Collects the largest sub-trees and files of this tree that are not affected by the given changes. Does not collect anything when the root directory of the tree has changed.
+     */
+    public void collectUnchanged(FileHierarchyIndex<?> changed, Collection<DirectoryTreeDetails> unchangedTrees, Collection<FileSnapshot> unchangedFiles) {
+        if (!changed.contains(path)) {
+            collectUnchanged(getHierarchy().root, changed, unchangedTrees, unchangedFiles);
+        }
+    }
+
+    private static void collectUnchanged(Node parent, FileHierarchyIndex<?> changed, Collection<DirectoryTreeDetails> unchangedTrees, Collection<FileSnapshot> unchangedFiles) {
+        for (Node child : parent.children) {
+            if (changed.findFirstOverlap(child.snapshot.getPath()) == null) {
+                if (child.snapshot.getType() == FileType.Directory) {
+                    unchangedTrees.add(subTree(child));
+                }
+                unchangedFiles.add(relativize(child.snapshot, child.depth - 1, true));
+            } else {
+                collectUnchanged(child, changed, unchangedTrees, unchangedFiles);
+            }
+        }
+    }
+
+    private static DirectoryTreeDetails subTree(Node node) {
+        ImmutableList.Builder<FileSnapshot> builder = ImmutableList.builder();
+        collectDescendants(node, node.depth, builder);
+        return new DirectoryTreeDetails(node.snapshot.getPath(), builder.build());
+    }
+
+    private static void collectDescendants(Node parent, int depth, ImmutableList.Builder<FileSnapshot> builder) {
+        for (Node child : parent.children) {
+            builder.add(relativize(child.snapshot, depth, false));
+            collectDescendants(child, depth, builder);
+        }
+    }
+
+    /**
+     * Drops the first {@code depth} segments of the relative path of the given snapshot.
+     */
+    private static FileSnapshot relativize(FileSnapshot snapshot, int depth, boolean root) {
+        if (depth == 0 && snapshot.isRoot() == root) {
+            return snapshot;
+        }
+        String[] segments = snapshot.getRelativePath().getSegments();
+        RelativePath relativePath = new RelativePath(snapshot.getRelativePath().isFile(), Arrays.copyOfRange(segments, depth, segments.length));
+        switch (snapshot.getType()) {
+            case RegularFile:
+                return new RegularFileSnapshot(snapshot.getPath(), relativePath, root, snapshot.getContent());
+            case Directory:
+                return new DirectoryFileSnapshot(snapshot.getPath(), relativePath, root);
+            case Missing:
+                return new MissingFileSnapshot(snapshot.getPath(), relativePath);
+            default:
+                throw new IllegalArgumentException("Unrecognized file type: " + snapshot.getType());
+        }
+    }
+
+    private Hierarchy getHierarchy() {
+        Hierarchy hierarchy = this.hierarchy;
+        if (hierarchy == null) {
+            hierarchy = new Hierarchy(path, descendants);
+            this.hierarchy = hierarchy;
+        }
+        return hierarchy;
+    }
+
     @Override
     public String toString() {
         return path + " (" + descendants.size() + " descendants)";
     }
+
+    private static class Hierarchy {
+        private final Node root = new Node(null);
+        private final Map<String, Node> nodes;
+
+        Hierarchy(String rootPath, Collection<FileSnapshot> descendants) {
+            nodes = Maps.newHashMapWithExpectedSize(descendants.size());
+            for (FileSnapshot descendant : descendants) {
+                nodes.put(descendant.getPath(), new Node(descendant));
+            }
+            // Keep the children of each directory in the order they were visited
+            for (FileSnapshot descendant : descendants) {
+                Node node = nodes.get(descendant.getPath());
+                String parentPath = descendant.getPath().substring(0, Math.max(0, descendant.getPath().lastIndexOf(File.separatorChar)));
+                Node parent = parentPath.equals(rootPath) ? root : nodes.get(parentPath);
+                if (parent == null) {
+                    parent = root;
+                }
+                parent.children.add(node);
+            }
+        }
+    }
+
+    private static class Node {
+        private final FileSnapshot snapshot;
+        private final int depth;
+        private final List<Node> children = Lists.newArrayListWithCapacity(0);
+
+        Node(@Nullable FileSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.depth = snapshot == null ? 0 : snapshot.getRelativePath().getSegments().length;
+        }
+    }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.internal.TaskInternal;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of how long the actions of each task took to execute the last time the task was executed.
+ */
+public interface TaskDurationRepository {
+    /**
+     * Returns the duration of the most recent execution of the given task in milliseconds, or null if the task has not been executed before.
+     */
+    @Nullable
+    Long getPreviousDuration(TaskInternal task);
+
+    void recordDuration(TaskInternal task, long durationMillis);
+}
@@ -50,14 +50,15 @@ public abstract class AbstractDirectoryWalker implements DirectoryWalker {
         List<FileVisitDetails> dirs = new ArrayList<FileVisitDetails>();
         for (int i = 0; !stopFlag.get() && i < children.length; i++) {
             File child = children[i];
-            boolean isFile = child.isFile();
-            RelativePath childPath = path.append(isFile, child.getName());
-            FileVisitDetails details = new DefaultFileVisitDetails(child, childPath, stopFlag, fileSystem, fileSystem, !isFile);
+            boolean isDirectory = child.isDirectory();
+            RelativePath childPath = path.append(!isDirectory, child.getName());
+            FileVisitDetails details = new DefaultFileVisitDetails(child, childPath, stopFlag, fileSystem, fileSystem, isDirectory);
             if (DirectoryFileTree.isAllowed(details, spec)) {
-                if (isFile) {
-                    visitor.visitFile(details);
-                } else {
+                if (isDirectory) {
                     dirs.add(details);
+                } else {
+                    checkCanBeFollowed(child);
+                    visitor.visitFile(details);
                 }
             }
         }
@@ -75,5 +76,15 @@ public abstract class AbstractDirectoryWalker implements DirectoryWalker {
         }
     }
 
+    /**
+     * Fails for a symbolic link that points to nothing, in the same way as {@link org.gradle.api.internal.file.collections.jdk7.Jdk7DirectoryWalker}.
+     * Anything else that is not a directory, such as a named pipe or a socket, is visited as a file.
+     */
+    static void checkCanBeFollowed(File file) {
+        if (!file.exists()) {
+            throw new GradleException(String.format("Could not list contents of '%s'. Couldn't follow symbolic link.", file));
+        }
+    }
+
     protected abstract File[] getChildren(File file);
 }
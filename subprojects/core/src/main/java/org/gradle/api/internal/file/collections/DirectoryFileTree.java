@@ -159,6 +159,13 @@ public class DirectoryFileTree implements MinimalFileTree, PatternFilterableFile
         return spec.isSatisfiedBy(element);
     }
 
+    /**
+     * Returns true when this tree traverses directories in postfix rather than prefix order.
+     */
+    public boolean isPostfix() {
+        return postfix;
+    }
+
     /**
      * Returns a copy that traverses directories (but not files) in postfix rather than prefix order.
      *
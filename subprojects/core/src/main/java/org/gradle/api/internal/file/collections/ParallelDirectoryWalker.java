@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.collections;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.GradleException;
+import org.gradle.api.Transformer;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Walks a directory tree using a fork/join pool, and transforms each element of the tree using the same pool. Each sub-directory is walked
+ * by a separate task, and the files of a large directory are transformed by several tasks.
+ *
+ * The results are returned in the same order as {@link ReproducibleDirectoryWalker} visits the tree, regardless of which thread produced them:
+ * depth-first prefix order, with the files of a directory before its sub-directories, and the children of a directory sorted by name.
+ * Elements are classified in the same way as well: anything that is not a directory is a file, and a symbolic link that points to nothing
+ * is reported as a failure.
+ */
+public class ParallelDirectoryWalker implements Stoppable {
+    private static final int FILES_PER_TASK = 32;
+
+    private final FileSystem fileSystem;
+    private final int parallelism;
+    private ForkJoinPool pool;
+
+    public ParallelDirectoryWalker(FileSystem fileSystem) {
+        this(fileSystem, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelDirectoryWalker(FileSystem fileSystem, int parallelism) {
+        this.fileSystem = fileSystem;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Walks the given directory, not including the directory itself. An element that does not satisfy the spec is skipped along with all of its descendants.
+     *
+     * @param transformer Transforms each element. Called concurrently from multiple threads.
+     */
+    public <T> List<T> walkDir(File rootDir, Spec<? super FileTreeElement> spec, Transformer<T, FileVisitDetails> transformer) {
+        AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        try {
+            return getPool().invoke(new DirectoryTask<T>(rootDir, RelativePath.EMPTY_ROOT, new Context<T>(spec, transformer, failure)));
+        } catch (RuntimeException e) {
+            // Rethrow the original failure rather than the copy created by the fork/join framework
+            throw failure.get() != null ? failure.get() : e;
+        }
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private File[] getChildren(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            if (dir.isDirectory() && !dir.canRead()) {
+                throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", dir));
+            }
+            throw new GradleException(String.format("Could not list contents of '%s'.", dir));
+        }
+        Arrays.sort(children);
+        return children;
+    }
+
+    private static class Context<T> {
+        private final Spec<? super FileTreeElement> spec;
+        private final Transformer<T, FileVisitDetails> transformer;
+        private final AtomicReference<RuntimeException> failure;
+        private final AtomicBoolean stopFlag = new AtomicBoolean();
+
+        Context(Spec<? super FileTreeElement> spec, Transformer<T, FileVisitDetails> transformer, AtomicReference<RuntimeException> failure) {
+            this.spec = spec;
+            this.transformer = transformer;
+            this.failure = failure;
+        }
+
+        void failed(RuntimeException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private class DirectoryTask<T> extends RecursiveTask<List<T>> {
+        private final File dir;
+        private final RelativePath path;
+        private final Context<T> context;
+
+        DirectoryTask(File dir, RelativePath path, Context<T> context) {
+            this.dir = dir;
+            this.path = path;
+            this.context = context;
+        }
+
+        @Override
+        protected List<T> compute() {
+            try {
+                return walk();
+            } catch (RuntimeException e) {
+                context.failed(e);
+                throw e;
+            }
+        }
+
+        private List<T> walk() {
+            List<FileVisitDetails> files = Lists.newArrayList();
+            List<FileVisitDetails> dirs = Lists.newArrayList();
+            for (File child : getChildren(dir)) {
+                boolean isDirectory = child.isDirectory();
+                FileVisitDetails details = new DefaultFileVisitDetails(child, path.append(!isDirectory, child.getName()), context.stopFlag, fileSystem, fileSystem, isDirectory);
+                if (DirectoryFileTree.isAllowed(details, context.spec)) {
+                    if (isDirectory) {
+                        dirs.add(details);
+                    } else {
+                        AbstractDirectoryWalker.checkCanBeFollowed(child);
+                        files.add(details);
+                    }
+                }
+            }
+
+            List<DirectoryTask<T>> subDirectories = Lists.newArrayListWithCapacity(dirs.size());
+            for (FileVisitDetails subDirectory : dirs) {
+                DirectoryTask<T> task = new DirectoryTask<T>(subDirectory.getFile(), subDirectory.getRelativePath(), context);
+                task.fork();
+                subDirectories.add(task);
+            }
+
+            List<T> results = Lists.newArrayList();
+            if (files.size() > FILES_PER_TASK) {
+                List<TransformTask<T>> chunks = Lists.newArrayList();
+                for (int start = 0; start < files.size(); start += FILES_PER_TASK) {
+                    chunks.add(new TransformTask<T>(files.subList(start, Math.min(files.size(), start + FILES_PER_TASK)), context));
+                }
+                for (TransformTask<T> chunk : ForkJoinTask.invokeAll(chunks)) {
+                    results.addAll(chunk.join());
+                }
+            } else {
+                transform(files, context, results);
+            }
+            for (int i = 0; i < dirs.size(); i++) {
+                results.add(context.transformer.transform(dirs.get(i)));
+                results.addAll(subDirectories.get(i).join());
+            }
+            return results;
+        }
+    }
+
+    private static class TransformTask<T> extends RecursiveTask<List<T>> {
+        private final List<FileVisitDetails> elements;
+        private final Context<T> context;
+
+        TransformTask(List<FileVisitDetails> elements, Context<T> context) {
+            this.elements = elements;
+            this.context = context;
+        }
+
+        @Override
+        protected List<T> compute() {
+            List<T> results = Lists.newArrayListWithCapacity(elements.size());
+            try {
+                transform(elements, context, results);
+            } catch (RuntimeException e) {
+                context.failed(e);
+                throw e;
+            }
+            return results;
+        }
+    }
+
+    private static <T> void transform(List<FileVisitDetails> elements, Context<T> context, List<T> results) {
+        for (FileVisitDetails element : elements) {
+            results.add(context.transformer.transform(element));
+        }
+    }
+}
@@ -16,12 +16,14 @@
 package org.gradle.api.internal.tasks.execution;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.gradle.api.GradleException;
 import org.gradle.api.execution.TaskActionListener;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.ContextAwareTaskAction;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
+import org.gradle.api.internal.tasks.TaskDestroyablesInternal;
 import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.logging.Logger;
@@ -40,8 +42,11 @@ import org.gradle.internal.progress.BuildOperationDescriptor;
 import org.gradle.internal.progress.BuildOperationState;
 import org.gradle.internal.work.AsyncWorkTracker;
 
+import javax.annotation.Nullable;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link org.gradle.api.internal.tasks.TaskExecuter} which executes the actions of a task.
@@ -63,7 +68,7 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
     public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         listener.beforeActions(task);
         if (!task.getTaskActions().isEmpty()) {
-            outputsGenerationListener.beforeTaskOutputsGenerated();
+            outputsGenerationListener.beforeTaskOutputsGenerated(getOutputRoots(task));
         }
         state.setExecuting(true);
         try {
@@ -82,6 +87,14 @@ public class ExecuteActionsTaskExecuter implements TaskExecuter {
         }
     }
 
+    @Nullable
+    private static Iterable<File> getOutputRoots(TaskInternal task) {
+        Set<File> outputRoots = Sets.newLinkedHashSet(task.getOutputs().getFiles());
+        outputRoots.addAll(((TaskDestroyablesInternal) task.getDestroyables()).getFilesReadOnly());
+        // Without declared outputs or destroyables, the task might change any file
+        return outputRoots.isEmpty() ? null : outputRoots;
+    }
+
     private GradleException executeActions(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
         LOGGER.debug("Executing actions for {}.", task);
         final List<ContextAwareTaskAction> actions = new ArrayList<ContextAwareTaskAction>(task.getTaskActions());
@@ -16,10 +16,15 @@
 
 package org.gradle.api.internal.tasks.execution;
 
+import javax.annotation.Nullable;
+import java.io.File;
+
 public interface TaskOutputsGenerationListener {
     /**
      * Invoked when the outputs for a task are about to be generated.
      * This is for example just before the task actions are executed or the outputs are loaded from the cache.
+     *
+     * @param outputRoots the files and directories that are about to be changed, or {@code null} when any file may change.
      */
-    void beforeTaskOutputsGenerated();
+    void beforeTaskOutputsGenerated(@Nullable Iterable<File> outputRoots);
 }
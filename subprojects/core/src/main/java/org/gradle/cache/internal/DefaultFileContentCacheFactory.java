@@ -32,6 +32,7 @@ import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -94,7 +95,7 @@ public class DefaultFileContentCacheFactory implements FileContentCacheFactory,
         }
 
         @Override
-        public void beforeTaskOutputsGenerated() {
+        public void beforeTaskOutputsGenerated(@Nullable Iterable<File> outputRoots) {
             // A very dumb strategy for invalidating cache
             cache.clear();
         }
@@ -29,8 +29,11 @@ import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory;
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode;
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory.RemoteAccessMode;
+import org.gradle.caching.internal.controller.DefaultBuildCacheController;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -52,8 +55,20 @@ import static org.gradle.caching.internal.controller.BuildCacheControllerFactory
 
 public class BuildCacheTaskServices {
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner));
+    /**
+     * The system property that enables packing and unpacking build cache entries using multiple threads.
+     * Entries packed this way cannot be unpacked by earlier Gradle versions.
+     */
+    public static final String PARALLEL_PACKING_PROPERTY = "org.gradle.caching.parallelPacking";
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, BuildCacheConfigurationInternal buildCacheConfiguration, ExecutorFactory executorFactory) {
+        if (Boolean.getBoolean(PARALLEL_PACKING_PROPERTY)) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            // The compressing packer stops the executor when the build completes
+            ManagedExecutor executor = executorFactory.create("Build cache entry packing", threads);
+            return new CompressingTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner, executor), buildCacheConfiguration.getCompression(), executor, 2 * threads);
+        }
+        return new CompressingTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner), buildCacheConfiguration.getCompression());
     }
 
     TaskOutputOriginFactory createTaskOutputOriginFactory(
@@ -84,6 +99,7 @@ public class BuildCacheTaskServices {
         BuildCacheConfigurationInternal buildCacheConfiguration,
         BuildOperationExecutor buildOperationExecutor,
         InstantiatorFactory instantiatorFactory,
+        ExecutorFactory executorFactory,
         GradleInternal gradle
     ) {
         StartParameter startParameter = gradle.getStartParameter();
@@ -105,7 +121,11 @@ public class BuildCacheTaskServices {
             buildCacheMode,
             remoteAccessMode,
             logStackTraces,
-            instantiatorFactory.inject(serviceRegistry)
+            instantiatorFactory.inject(serviceRegistry),
+            executorFactory,
+            Integer.getInteger(DefaultBuildCacheController.MAX_PENDING_REMOTE_STORES_PROPERTY, 0),
+            // The build operation keeps running until the controller is closed when the build finishes
+            gradle.getBuildOperation()
         );
 
         // Stop the controller early so that any logging emitted during stopping is visible.
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.internal.UncheckedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Splits the data written to it into fixed size chunks and compresses each chunk independently, so that the chunks can be compressed
+ * concurrently. Each chunk is written as its compressed length followed by the compressed bytes, and the stream ends with a chunk of length 0.
+ *
+ * The chunks are written in order. At most a fixed number of chunks are held in memory while they are waiting to be compressed or written.
+ *
+ * @see ChunkedDecompressingInputStream
+ */
+class ChunkedCompressingOutputStream extends OutputStream {
+    static final int CHUNK_SIZE = 1024 * 1024;
+    /**
+     * The largest compressed size of a chunk that a reader accepts. Compressing data that does not compress well makes it larger, by up to a sixth for Snappy.
+     */
+    static final int MAX_COMPRESSED_CHUNK_SIZE = CHUNK_SIZE + CHUNK_SIZE / 4;
+
+    private final DataOutputStream output;
+    private final CompressionCodec codec;
+    private final Executor executor;
+    private final int maxPendingChunks;
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<Future<byte[]>>();
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int count;
+    private boolean closed;
+
+    ChunkedCompressingOutputStream(OutputStream output, CompressionCodec codec, Executor executor, int maxPendingChunks) {
+        this.output = new DataOutputStream(output);
+        this.codec = codec;
+        this.executor = executor;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == chunk.length) {
+            submitChunk();
+        }
+        chunk[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (count == chunk.length) {
+                submitChunk();
+            }
+            int copied = Math.min(length, chunk.length - count);
+            System.arraycopy(bytes, offset, chunk, count, copied);
+            count += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        final byte[] data = chunk;
+        final int length = count;
+        FutureTask<byte[]> compression = new FutureTask<byte[]>(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+                OutputStream compressingOutput = codec.compress(compressed);
+                compressingOutput.write(data, 0, length);
+                compressingOutput.close();
+                return compressed.toByteArray();
+            }
+        });
+        pendingChunks.add(compression);
+        executor.execute(compression);
+        chunk = new byte[CHUNK_SIZE];
+        count = 0;
+
+        while (pendingChunks.size() > maxPendingChunks) {
+            writeChunk(pendingChunks.removeFirst());
+        }
+    }
+
+    private void writeChunk(Future<byte[]> compression) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = compression.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        output.writeInt(compressed.length);
+        output.write(compressed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitChunk();
+            while (!pendingChunks.isEmpty()) {
+                writeChunk(pendingChunks.removeFirst());
+            }
+            output.writeInt(0);
+        } finally {
+            output.close();
+        }
+    }
+}
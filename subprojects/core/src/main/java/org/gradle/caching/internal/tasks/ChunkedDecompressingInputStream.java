@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads a stream written by {@link ChunkedCompressingOutputStream}, decompressing the chunks that follow the one being read concurrently.
+ * A chunk that is larger than the writer produces, either compressed or decompressed, is rejected before it is read into memory.
+ */
+class ChunkedDecompressingInputStream extends InputStream {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final DataInputStream input;
+    private final CompressionCodec codec;
+    private final Executor executor;
+    private final int maxPendingChunks;
+    private final Deque<Future<byte[]>> pendingChunks = new ArrayDeque<Future<byte[]>>();
+    private boolean endOfInput;
+    private byte[] chunk = EMPTY;
+    private int position;
+
+    ChunkedDecompressingInputStream(InputStream input, CompressionCodec codec, Executor executor, int maxPendingChunks) {
+        this.input = new DataInputStream(input);
+        this.codec = codec;
+        this.executor = executor;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        int copied = Math.min(length, chunk.length - position);
+        System.arraycopy(chunk, position, bytes, offset, copied);
+        position += copied;
+        return copied;
+    }
+
+    @Override
+    public int available() {
+        return chunk.length - position;
+    }
+
+    private boolean ensureAvailable() throws IOException {
+        while (position == chunk.length) {
+            submitChunks();
+            if (pendingChunks.isEmpty()) {
+                return false;
+            }
+            chunk = await(pendingChunks.removeFirst());
+            position = 0;
+        }
+        return true;
+    }
+
+    private void submitChunks() throws IOException {
+        while (!endOfInput && pendingChunks.size() < maxPendingChunks) {
+            int length = input.readInt();
+            if (length == 0) {
+                endOfInput = true;
+                return;
+            }
+            if (length < 0 || length > ChunkedCompressingOutputStream.MAX_COMPRESSED_CHUNK_SIZE) {
+                throw new IOException("Invalid compressed chunk length: " + length);
+            }
+            final byte[] compressed = new byte[length];
+            input.readFully(compressed);
+            FutureTask<byte[]> decompression = new FutureTask<byte[]>(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    InputStream decompressingInput = codec.decompress(new ByteArrayInputStream(compressed));
+                    try {
+                        byte[] decompressed = IOUtils.toByteArray(ByteStreams.limit(decompressingInput, ChunkedCompressingOutputStream.CHUNK_SIZE + 1));
+                        if (decompressed.length > ChunkedCompressingOutputStream.CHUNK_SIZE) {
+                            throw new IOException("Decompressed chunk is larger than " + ChunkedCompressingOutputStream.CHUNK_SIZE + " bytes.");
+                        }
+                        return decompressed;
+                    } finally {
+                        decompressingInput.close();
+                    }
+                }
+            });
+            pendingChunks.add(decompression);
+            executor.execute(decompression);
+        }
+    }
+
+    private static byte[] await(Future<byte[]> decompression) {
+        try {
+            return decompression.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorInputStream;
+import org.apache.commons.compress.compressors.snappy.FramedSnappyCompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.configuration.BuildCacheCompression;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Adds compression and integrity checks to the packed task output.
+ *
+ * Entries compressed with gzip are written without a header, the same as entries written by earlier versions.
+ * Entries compressed with another codec start with a header that identifies the codec. As a gzip stream always
+ * starts with the gzip magic bytes, entries compressed with any codec can be unpacked regardless of the codec
+ * used to pack new entries.
+ *
+ * When an executor is provided, entries are compressed in independent chunks using {@link ChunkedCompressingOutputStream},
+ * so that packing and unpacking an entry can use multiple threads. Such entries always start with a header.
+ */
+public class CompressingTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int HEADER_MAGIC_1 = 'G';
+    private static final int HEADER_MAGIC_2 = 'C';
+    private static final int CHUNKED_FLAG = 0x80;
+
+    private final TaskOutputPacker delegate;
+    private final Codec codec;
+    private final ManagedExecutor executor;
+    private final int maxPendingChunks;
+
+    public CompressingTaskOutputPacker(TaskOutputPacker delegate, BuildCacheCompression compression) {
+        this(delegate, compression, null, 0);
+    }
+
+    /**
+     * @param executor The executor to use to compress chunks of an entry, or null to compress entries on the calling thread. The executor is stopped when this packer is stopped.
+     * @param maxPendingChunks The maximum number of chunks of an entry to compress or decompress ahead of the chunk being written or read.
+     */
+    public CompressingTaskOutputPacker(TaskOutputPacker delegate, BuildCacheCompression compression, @Nullable ManagedExecutor executor, int maxPendingChunks) {
+        this.delegate = delegate;
+        this.codec = Codec.valueOf(compression.name());
+        this.executor = executor;
+        this.maxPendingChunks = maxPendingChunks;
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputFiles, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        OutputStream compressedOutput = createCompressedOutputStream(output);
+        try {
+            return delegate.pack(propertySpecs, outputFiles, compressedOutput, writeOrigin);
+        } finally {
+            IOUtils.closeQuietly(compressedOutput);
+        }
+    }
+
+    private OutputStream createCompressedOutputStream(OutputStream output) throws IOException {
+        if (executor != null) {
+            writeHeader(output, CHUNKED_FLAG | codec.id);
+            return new ChunkedCompressingOutputStream(output, codec, executor, maxPendingChunks);
+        }
+        if (codec != Codec.GZIP) {
+            writeHeader(output, codec.id);
+        }
+        return codec.compress(output);
+    }
+
+    private static void writeHeader(OutputStream output, int codec) throws IOException {
+        output.write(HEADER_MAGIC_1);
+        output.write(HEADER_MAGIC_2);
+        output.write(codec);
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        InputStream decompressedInput = createDecompressedInputStream(input);
+        try {
+            return delegate.unpack(propertySpecs, decompressedInput, readOrigin);
+        } finally {
+            IOUtils.closeQuietly(decompressedInput);
+        }
+    }
+
+    private InputStream createDecompressedInputStream(InputStream input) throws IOException {
+        InputStream bufferedInput = new BufferedInputStream(input);
+        bufferedInput.mark(3);
+        int magic1 = bufferedInput.read();
+        int magic2 = bufferedInput.read();
+        if (magic1 == GZIP_MAGIC_1 && magic2 == GZIP_MAGIC_2) {
+            bufferedInput.reset();
+            return Codec.GZIP.decompress(bufferedInput);
+        }
+        if (magic1 == HEADER_MAGIC_1 && magic2 == HEADER_MAGIC_2) {
+            int header = bufferedInput.read();
+            Codec entryCodec = Codec.forId(header & ~CHUNKED_FLAG);
+            if (entryCodec == null) {
+                throw new IOException("Build cache entry uses an unsupported compression codec (" + header + ").");
+            }
+            if ((header & CHUNKED_FLAG) == 0) {
+                return entryCodec.decompress(bufferedInput);
+            }
+            if (executor == null) {
+                return new ChunkedDecompressingInputStream(bufferedInput, entryCodec, MoreExecutors.sameThreadExecutor(), 1);
+            }
+            return new ChunkedDecompressingInputStream(bufferedInput, entryCodec, executor, maxPendingChunks);
+        }
+        throw new IOException("Build cache entry is not in a recognized format.");
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    private enum Codec implements CompressionCodec {
+        GZIP(0) {
+            @Override
+            public OutputStream compress(OutputStream output) throws IOException {
+                return new GZIPOutputStream(output);
+            }
+
+            @Override
+            public InputStream decompress(InputStream input) throws IOException {
+                return new GZIPInputStream(input);
+            }
+        },
+        LZ4(1) {
+            @Override
+            public OutputStream compress(OutputStream output) throws IOException {
+                return new FramedLZ4CompressorOutputStream(output);
+            }
+
+            @Override
+            public InputStream decompress(InputStream input) throws IOException {
+                return new FramedLZ4CompressorInputStream(input);
+            }
+        },
+        SNAPPY(2) {
+            @Override
+            public OutputStream compress(OutputStream output) throws IOException {
+                return new FramedSnappyCompressorOutputStream(output);
+            }
+
+            @Override
+            public InputStream decompress(InputStream input) throws IOException {
+                return new FramedSnappyCompressorInputStream(input);
+            }
+        };
+
+        private final int id;
+
+        Codec(int id) {
+            this.id = id;
+        }
+
+        @Nullable
+        static Codec forId(int id) {
+            for (Codec codec : values()) {
+                if (codec.id == id) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -19,8 +19,9 @@ package org.gradle.caching.internal.tasks;
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
@@ -43,11 +44,14 @@ import org.gradle.api.internal.tasks.TaskFilePropertySpec;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
+import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -56,9 +60,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -81,14 +93,26 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         }
     };
 
+    private static final int MAX_PARALLEL_WRITE_SIZE = 1024 * 1024;
+    private static final int MAX_PENDING_WRITE_SIZE = 32 * 1024 * 1024;
+
     private final FileSystem fileSystem;
     private final StreamHasher streamHasher;
     private final StringInterner stringInterner;
+    private final Executor executor;
 
     public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner) {
+        this(fileSystem, streamHasher, stringInterner, null);
+    }
+
+    /**
+     * @param executor The executor to use to write unpacked files, or null to write files on the calling thread.
+     */
+    public TarTaskOutputPacker(FileSystem fileSystem, StreamHasher streamHasher, StringInterner stringInterner, @Nullable Executor executor) {
         this.fileSystem = fileSystem;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.executor = executor;
     }
 
     @Override
@@ -252,33 +276,37 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         });
         TarArchiveEntry tarEntry;
         TaskOutputOriginMetadata originMetadata = null;
-        ImmutableListMultimap.Builder<String, FileSnapshot> propertyFileSnapshots = ImmutableListMultimap.builder();
+        FileSnapshots propertyFileSnapshots = new FileSnapshots();
 
         long entries = 0;
-        while ((tarEntry = tarInput.getNextTarEntry()) != null) {
-            ++entries;
-            String name = tarEntry.getName();
+        try {
+            while ((tarEntry = tarInput.getNextTarEntry()) != null) {
+                ++entries;
+                String name = tarEntry.getName();
+
+                if (name.equals(METADATA_PATH)) {
+                    // handle origin metadata
+                    originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
+                } else {
+                    // handle output property
+                    Matcher matcher = PROPERTY_PATH.matcher(name);
+                    if (!matcher.matches()) {
+                        throw new IllegalStateException("Cached result format error, invalid contents: " + name);
+                    }
 
-            if (name.equals(METADATA_PATH)) {
-                // handle origin metadata
-                originMetadata = readOriginAction.execute(new CloseShieldInputStream(tarInput));
-            } else {
-                // handle output property
-                Matcher matcher = PROPERTY_PATH.matcher(name);
-                if (!matcher.matches()) {
-                    throw new IllegalStateException("Cached result format error, invalid contents: " + name);
-                }
+                    String propertyName = matcher.group(2);
+                    ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
+                    if (propertySpec == null) {
+                        throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                    }
 
-                String propertyName = matcher.group(2);
-                ResolvedTaskOutputFilePropertySpec propertySpec = propertySpecsMap.get(propertyName);
-                if (propertySpec == null) {
-                    throw new IllegalStateException(String.format("No output property '%s' registered", propertyName));
+                    boolean outputMissing = matcher.group(1) != null;
+                    String childPath = matcher.group(3);
+                    unpackPropertyEntry(propertySpec, tarInput, tarEntry, childPath, outputMissing, propertyFileSnapshots);
                 }
-
-                boolean outputMissing = matcher.group(1) != null;
-                String childPath = matcher.group(3);
-                unpackPropertyEntry(propertySpec, tarInput, tarEntry, childPath, outputMissing, propertyFileSnapshots);
             }
+        } finally {
+            propertyFileSnapshots.awaitWrites();
         }
         if (originMetadata == null) {
             throw new IllegalStateException("Cached result format error, no origin metadata was found.");
@@ -287,7 +315,7 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
         return new UnpackResult(originMetadata, entries, propertyFileSnapshots.build());
     }
 
-    private void unpackPropertyEntry(ResolvedTaskOutputFilePropertySpec propertySpec, InputStream input, TarArchiveEntry entry, String childPath, boolean missing, ImmutableMultimap.Builder<String, FileSnapshot> fileSnapshots) throws IOException {
+    private void unpackPropertyEntry(ResolvedTaskOutputFilePropertySpec propertySpec, InputStream input, TarArchiveEntry entry, String childPath, boolean missing, FileSnapshots fileSnapshots) throws IOException {
         File propertyRoot = propertySpec.getOutputFile();
         String propertyName = propertySpec.getPropertyName();
         if (propertyRoot == null) {
@@ -327,21 +355,110 @@ public class TarTaskOutputPacker implements TaskOutputPacker {
 
         String internedPath = stringInterner.intern(outputFile.getAbsolutePath());
         RelativePath relativePath = root ? RelativePath.parse(!isDirEntry, outputFile.getName()) : RelativePath.parse(!isDirEntry, childPath);
+        int mode = entry.getMode() & FILE_PERMISSION_MASK;
         if (isDirEntry) {
             FileUtils.forceMkdir(outputFile);
+            fileSystem.chmod(outputFile, mode);
             fileSnapshots.put(propertyName, new DirectoryFileSnapshot(internedPath, relativePath, root));
+        } else if (executor != null && entry.getSize() <= MAX_PARALLEL_WRITE_SIZE) {
+            // Read the content on this thread, as the archive can only be read sequentially, and write the file in the background
+            byte[] content = new byte[(int) entry.getSize()];
+            IOUtils.readFully(input, content);
+            fileSnapshots.putWhenWritten(propertyName, new WriteFile(outputFile, new ByteArrayInputStream(content), mode, internedPath, relativePath, root), content.length);
         } else {
+            fileSnapshots.put(propertyName, new WriteFile(outputFile, input, mode, internedPath, relativePath, root).call());
+        }
+    }
+
+    private class WriteFile implements Callable<FileSnapshot> {
+        private final File outputFile;
+        private final InputStream content;
+        private final int mode;
+        private final String internedPath;
+        private final RelativePath relativePath;
+        private final boolean root;
+
+        WriteFile(File outputFile, InputStream content, int mode, String internedPath, RelativePath relativePath, boolean root) {
+            this.outputFile = outputFile;
+            this.content = content;
+            this.mode = mode;
+            this.internedPath = internedPath;
+            this.relativePath = relativePath;
+            this.root = root;
+        }
+
+        @Override
+        public FileSnapshot call() throws IOException {
             OutputStream output = new FileOutputStream(outputFile);
             HashCode hash;
             try {
-                hash = streamHasher.hashCopy(input, output);
+                hash = streamHasher.hashCopy(content, output);
             } finally {
                 IOUtils.closeQuietly(output);
             }
             FileHashSnapshot contentSnapshot = new FileHashSnapshot(hash, outputFile.lastModified());
-            fileSnapshots.put(propertyName, new RegularFileSnapshot(internedPath, relativePath, root, contentSnapshot));
+            fileSystem.chmod(outputFile, mode);
+            return new RegularFileSnapshot(internedPath, relativePath, root, contentSnapshot);
+        }
+    }
+
+    /**
+     * Collects the snapshots of the unpacked files in the order they appear in the archive, while some of the files are still being written in the background.
+     */
+    private class FileSnapshots {
+        private final List<String> propertyNames = new ArrayList<String>();
+        private final List<Future<FileSnapshot>> snapshots = new ArrayList<Future<FileSnapshot>>();
+        private final Semaphore pendingWriteCapacity = new Semaphore(MAX_PENDING_WRITE_SIZE);
+
+        void put(String propertyName, FileSnapshot snapshot) {
+            propertyNames.add(propertyName);
+            snapshots.add(Futures.immediateFuture(snapshot));
+        }
+
+        void putWhenWritten(String propertyName, final Callable<FileSnapshot> write, final int size) {
+            pendingWriteCapacity.acquireUninterruptibly(size);
+            FutureTask<FileSnapshot> snapshot = new FutureTask<FileSnapshot>(new Callable<FileSnapshot>() {
+                @Override
+                public FileSnapshot call() throws Exception {
+                    try {
+                        return write.call();
+                    } finally {
+                        pendingWriteCapacity.release(size);
+                    }
+                }
+            });
+            propertyNames.add(propertyName);
+            snapshots.add(snapshot);
+            executor.execute(snapshot);
         }
 
-        fileSystem.chmod(outputFile, entry.getMode() & FILE_PERMISSION_MASK);
+        /**
+         * Waits for all files to be written, so that no writes are in progress when unpacking completes or fails.
+         */
+        void awaitWrites() {
+            for (Future<FileSnapshot> snapshot : snapshots) {
+                try {
+                    Uninterruptibles.getUninterruptibly(snapshot);
+                } catch (ExecutionException e) {
+                    // Reported by build()
+                }
+            }
+        }
+
+        ImmutableListMultimap<String, FileSnapshot> build() throws IOException {
+            ImmutableListMultimap.Builder<String, FileSnapshot> builder = ImmutableListMultimap.builder();
+            for (int i = 0; i < snapshots.size(); i++) {
+                try {
+                    builder.put(propertyNames.get(i), Uninterruptibles.getUninterruptibly(snapshots.get(i)));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw UncheckedException.throwAsUncheckedException(cause);
+                }
+            }
+            return builder.build();
+        }
     }
 }
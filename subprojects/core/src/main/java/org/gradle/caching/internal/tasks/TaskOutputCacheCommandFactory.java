@@ -21,6 +21,7 @@ import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
@@ -114,7 +115,7 @@ public class TaskOutputCacheCommandFactory {
 
         @Override
         public BuildCacheLoadCommand.Result<TaskOutputOriginMetadata> load(InputStream input) throws IOException {
-            taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+            taskOutputsGenerationListener.beforeTaskOutputsGenerated(getOutputFiles());
             final TaskOutputPacker.UnpackResult unpackResult;
             try {
                 unpackResult = packer.unpack(outputProperties, input, taskOutputOriginFactory.createReader(task));
@@ -145,6 +146,17 @@ public class TaskOutputCacheCommandFactory {
             };
         }
 
+        private List<File> getOutputFiles() {
+            List<File> outputFiles = Lists.newArrayList();
+            for (ResolvedTaskOutputFilePropertySpec property : outputProperties) {
+                File outputFile = property.getOutputFile();
+                if (outputFile != null) {
+                    outputFiles.add(outputFile);
+                }
+            }
+            return outputFiles;
+        }
+
         private void updateSnapshots(ImmutableListMultimap<String, FileSnapshot> propertiesFileSnapshots) {
             ImmutableSortedMap.Builder<String, FileCollectionSnapshot> propertySnapshotsBuilder = ImmutableSortedMap.naturalOrder();
             for (ResolvedTaskOutputFilePropertySpec property : outputProperties) {
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.Task;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.TaskOutputsInternal;
+import org.gradle.api.internal.changedetection.TaskArtifactState;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calculates the build cache keys of the tasks in the task graph that do not depend on other tasks, so that the build cache
+ * can load their entries from the remote cache before the tasks are executed. The keys are passed to the build cache in groups,
+ * so that a remote cache that supports it can look up the entries with a single request per group.
+ *
+ * The keys are calculated on a background thread, so that the build can start executing tasks straight away. The first entries are
+ * prefetched while the remaining keys are being calculated. A task that has started executing by the time its key would be calculated
+ * is skipped, as it loads its entry itself.
+ *
+ * The inputs of a task that depends on other tasks are not known until those tasks have executed, so the key of such a task
+ * is not calculated here. A task whose key changes before it executes simply loads its entry when it executes.
+ */
+public class TaskOutputCachePrefetcher implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskOutputCachePrefetcher.class);
+    private static final int KEYS_PER_REQUEST = 16;
+
+    private final Factory<TaskArtifactStateRepository> repository;
+    private final Factory<BuildCacheController> buildCache;
+    private final ExecutorFactory executorFactory;
+    private ManagedExecutor executor;
+    private volatile boolean stopped;
+
+    /**
+     * @param repository the task history, which is only available once the build is running.
+     * @param buildCache the build cache, which is only available once the build is running.
+     */
+    public TaskOutputCachePrefetcher(Factory<TaskArtifactStateRepository> repository, Factory<BuildCacheController> buildCache, ExecutorFactory executorFactory) {
+        this.repository = repository;
+        this.buildCache = buildCache;
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Starts calculating the keys of the given tasks and prefetching their entries in the background.
+     */
+    public void prefetch(Iterable<? extends Task> tasks) {
+        final List<TaskInternal> candidates = new ArrayList<TaskInternal>();
+        for (Task task : tasks) {
+            candidates.add((TaskInternal) task);
+        }
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            if (executor == null) {
+                executor = executorFactory.create("Build cache key calculation");
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    calculateKeys(candidates);
+                }
+            });
+        }
+    }
+
+    private void calculateKeys(List<TaskInternal> tasks) {
+        Timer clock = Time.startTimer();
+        TaskArtifactStateRepository repository = this.repository.create();
+        BuildCacheController buildCache = this.buildCache.create();
+        List<BuildCacheKey> keys = new ArrayList<BuildCacheKey>(KEYS_PER_REQUEST);
+        int requested = 0;
+        for (TaskInternal task : tasks) {
+            if (stopped) {
+                break;
+            }
+            BuildCacheKey cacheKey = calculateKey(repository, task);
+            if (cacheKey == null) {
+                continue;
+            }
+            keys.add(cacheKey);
+            if (keys.size() == KEYS_PER_REQUEST) {
+                buildCache.prefetch(ImmutableList.copyOf(keys));
+                requested += keys.size();
+                keys.clear();
+            }
+        }
+        if (!keys.isEmpty() && !stopped) {
+            buildCache.prefetch(keys);
+            requested += keys.size();
+        }
+        LOGGER.info("Requested prefetch of {} build cache entries, took {}.", requested, clock.getElapsed());
+    }
+
+    private static BuildCacheKey calculateKey(TaskArtifactStateRepository repository, TaskInternal task) {
+        TaskStateInternal state = task.getState();
+        if (state.getExecuting() || state.getExecuted()) {
+            return null;
+        }
+        if (task.getTaskActions().isEmpty() || !task.getTaskDependencies().getDependencies(task).isEmpty()) {
+            return null;
+        }
+        try {
+            TaskOutputsInternal outputs = task.getOutputs();
+            if (!outputs.getHasOutput() || !outputs.getCachingState().isEnabled()) {
+                return null;
+            }
+            TaskArtifactState taskState = repository.getStateFor(task);
+            if (!taskState.isAllowedToUseCachedResults()) {
+                return null;
+            }
+            TaskOutputCachingBuildCacheKey cacheKey = taskState.calculateCacheKey();
+            return cacheKey.isValid() ? cacheKey : null;
+        } catch (Exception e) {
+            // The task will report the problem when it executes
+            LOGGER.debug("Could not calculate build cache key for {} ahead of execution.", task, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stops calculating keys, and waits for the key that is being calculated.
+     */
+    @Override
+    public void stop() {
+        ManagedExecutor executor;
+        synchronized (this) {
+            stopped = true;
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import org.gradle.api.Transformer;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calculates, for each task of an execution plan, the length of the longest path from the task to the end of the plan, weighted by task duration.
+ * The longest path overall is the critical path of the plan.
+ *
+ * Tasks that must run after a given task, either because they depend on it or because of a must-run-after relationship, are
+ * considered downstream of that task.
+ */
+class CriticalPathCalculator {
+    private final Map<TaskInfo, Long> remainingPathLengths = Maps.newHashMap();
+    private final Map<TaskInfo, TaskInfo> nextOnLongestPath = Maps.newHashMap();
+    private final Map<TaskInfo, Long> durations = Maps.newHashMap();
+    private TaskInfo start;
+
+    /**
+     * @param executionPlan the tasks of the plan, in execution order.
+     * @param durations the duration of each task.
+     */
+    CriticalPathCalculator(Collection<TaskInfo> executionPlan, Transformer<Long, TaskInfo> durations) {
+        Multimap<TaskInfo, TaskInfo> downstreamTasks = ArrayListMultimap.create();
+        for (TaskInfo taskInfo : executionPlan) {
+            this.durations.put(taskInfo, durations.transform(taskInfo));
+        }
+        for (TaskInfo taskInfo : executionPlan) {
+            for (TaskInfo dependency : Sets.newHashSet(Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors()))) {
+                if (this.durations.containsKey(dependency)) {
+                    downstreamTasks.put(dependency, taskInfo);
+                }
+            }
+        }
+
+        // Downstream tasks always come later in the plan, so visit the plan backwards
+        long longestPath = -1;
+        for (TaskInfo taskInfo : Lists.reverse(Lists.newArrayList(executionPlan))) {
+            long longestDownstreamPath = 0;
+            TaskInfo next = null;
+            for (TaskInfo downstreamTask : downstreamTasks.get(taskInfo)) {
+                long pathLength = remainingPathLengths.get(downstreamTask);
+                if (next == null || pathLength > longestDownstreamPath) {
+                    longestDownstreamPath = pathLength;
+                    next = downstreamTask;
+                }
+            }
+            long pathLength = this.durations.get(taskInfo) + longestDownstreamPath;
+            remainingPathLengths.put(taskInfo, pathLength);
+            if (next != null) {
+                nextOnLongestPath.put(taskInfo, next);
+            }
+            if (pathLength >= longestPath) {
+                longestPath = pathLength;
+                start = taskInfo;
+            }
+        }
+    }
+
+    /**
+     * Returns the duration of the given task plus the longest path from the task to the end of the plan.
+     */
+    long getRemainingPathLength(TaskInfo taskInfo) {
+        Long pathLength = remainingPathLengths.get(taskInfo);
+        return pathLength == null ? 0 : pathLength;
+    }
+
+    Map<TaskInfo, Long> getRemainingPathLengths() {
+        return Collections.unmodifiableMap(remainingPathLengths);
+    }
+
+    long getDuration(TaskInfo taskInfo) {
+        Long duration = durations.get(taskInfo);
+        return duration == null ? 0 : duration;
+    }
+
+    List<TaskInfo> getCriticalPath() {
+        List<TaskInfo> path = Lists.newArrayList();
+        for (TaskInfo current = start; current != null; current = nextOnLongestPath.get(current)) {
+            path.add(current);
+        }
+        return path;
+    }
+
+    long getCriticalPathLength() {
+        return start == null ? 0 : remainingPathLengths.get(start);
+    }
+}
@@ -18,7 +18,6 @@ package org.gradle.execution.taskgraph;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
-import com.google.common.base.StandardSystemProperty;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
@@ -33,17 +32,22 @@ import org.gradle.api.Transformer;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.CachingTaskDependencyResolveContext;
 import org.gradle.api.internal.tasks.TaskContainerInternal;
 import org.gradle.api.internal.tasks.TaskDestroyablesInternal;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.execution.MultipleBuildFailures;
 import org.gradle.execution.TaskFailureHandler;
 import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.internal.Factory;
 import org.gradle.internal.Pair;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.file.FileHierarchyIndex;
 import org.gradle.internal.graph.CachingDirectedGraphWalker;
 import org.gradle.internal.graph.DirectedGraph;
 import org.gradle.internal.graph.DirectedGraphRenderer;
@@ -53,11 +57,13 @@ import org.gradle.internal.resources.ResourceDeadlockException;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.TimeFormatting;
+import org.gradle.internal.time.Timer;
 import org.gradle.internal.work.WorkerLeaseRegistry.WorkerLease;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.CollectionUtils;
 import org.gradle.util.Path;
-import org.gradle.util.TextUtil;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -73,7 +79,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -89,11 +94,18 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.*;
  * methods.
  */
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    private static final Logger LOGGER = Logging.getLogger(DefaultTaskExecutionPlan.class);
+
+    /**
+     * When set, tasks are moved to a ready queue as their last dependency completes, rather than being discovered by scanning the execution queue.
+     */
+    public static final String READY_QUEUE_SCHEDULING_PROPERTY = "org.gradle.tasks.readyqueue";
+
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskInfoFactory nodeFactory = new TaskInfoFactory();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final Set<TaskInfo> executionQueue = new LinkedHashSet<TaskInfo>();
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
@@ -104,20 +116,33 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final Set<TaskInfo> runningTasks = Sets.newIdentityHashSet();
     private final Set<Task> filteredTasks = Sets.newIdentityHashSet();
     private final Map<TaskInfo, TaskMutationInfo> taskMutations = Maps.newIdentityHashMap();
+    private final FileHierarchyIndex<TaskInfo> runningTaskMutations = new FileHierarchyIndex<TaskInfo>();
+    private final FileHierarchyIndex<TaskInfo> consumedTaskOutputs = new FileHierarchyIndex<TaskInfo>();
     private final Map<File, String> canonicalizedFileCache = Maps.newIdentityHashMap();
     private final Map<Pair<TaskInfo, TaskInfo>, Boolean> reachableCache = Maps.newHashMap();
     private final Set<TaskInfo> dependenciesCompleteCache = Sets.newHashSet();
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private boolean useReadyQueue;
+    private final ReadyTaskQueue readyQueue = new ReadyTaskQueue();
+    private Factory<? extends TaskDurationRepository> taskDurationRepository;
+    private CriticalPathCalculator predictedCriticalPath;
+    private final Map<TaskInfo, Timer> executionTimers = Maps.newHashMap();
+    private final Map<TaskInfo, Long> executionDurations = Maps.newHashMap();
 
     private boolean tasksCancelled;
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle) {
+        this(cancellationToken, coordinationService, workerLeaseService, gradle, Boolean.getBoolean(READY_QUEUE_SCHEDULING_PROPERTY));
+    }
+
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle, boolean useReadyQueue) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
+        this.useReadyQueue = useReadyQueue;
     }
 
     @Override
@@ -355,7 +380,35 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         executionQueue.clear();
         executionQueue.addAll(executionPlan.values());
+        if (taskDurationRepository != null) {
+            predictedCriticalPath = new CriticalPathCalculator(executionQueue, previousTaskDurations(taskDurationRepository.create()));
+            readyQueue.initialize(executionQueue, predictedCriticalPath.getRemainingPathLengths());
+        } else if (useReadyQueue) {
+            readyQueue.initialize(executionQueue);
+        }
+    }
 
+    /**
+     * Estimates task durations from previous executions. Tasks that have not been executed before are assumed to take the average duration of the other tasks.
+     */
+    private Transformer<Long, TaskInfo> previousTaskDurations(TaskDurationRepository repository) {
+        final Map<TaskInfo, Long> previousDurations = Maps.newHashMap();
+        long totalDuration = 0;
+        for (TaskInfo taskInfo : executionQueue) {
+            Long duration = repository.getPreviousDuration(taskInfo.getTask());
+            if (duration != null) {
+                previousDurations.put(taskInfo, duration);
+                totalDuration += duration;
+            }
+        }
+        final long defaultDuration = previousDurations.isEmpty() ? 1 : Math.max(1, totalDuration / previousDurations.size());
+        return new Transformer<Long, TaskInfo>() {
+            @Override
+            public Long transform(TaskInfo taskInfo) {
+                Long duration = previousDurations.get(taskInfo);
+                return duration == null ? defaultDuration : duration;
+            }
+        };
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -509,9 +562,15 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 entryTasks.clear();
                 executionPlan.clear();
                 executionQueue.clear();
+                readyQueue.clear();
+                predictedCriticalPath = null;
+                executionTimers.clear();
+                executionDurations.clear();
                 projectLocks.clear();
                 failures.clear();
                 taskMutations.clear();
+                runningTaskMutations.clear();
+                consumedTaskOutputs.clear();
                 canonicalizedFileCache.clear();
                 reachableCache.clear();
                 dependenciesCompleteCache.clear();
@@ -538,6 +597,15 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         this.failureHandler = handler;
     }
 
+    /**
+     * Executes ready tasks in order of their remaining critical path, estimated from the durations of previous executions, and reports
+     * the predicted and actual critical paths once all tasks have completed. Implies ready queue scheduling.
+     */
+    public void useCriticalPathScheduling(Factory<? extends TaskDurationRepository> taskDurationRepository) {
+        this.taskDurationRepository = taskDurationRepository;
+        this.useReadyQueue = true;
+    }
+
     @Override
     public boolean executeWithTask(final WorkerLease workerLease, final Action<TaskInfo> taskExecution) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
@@ -567,6 +635,11 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                     workRemaining.set(false);
                 }
 
+                if (useReadyQueue && selected.get() == null && workRemaining.get()) {
+                    // Selection drops tasks that are no longer ready, which may have been the last waiting tasks
+                    workRemaining.set(workRemaining());
+                }
+
                 if (selected.get() == null && workRemaining.get()) {
                     return RETRY;
                 } else {
@@ -583,9 +656,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     private TaskInfo selectNextTask(final WorkerLease workerLease) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
-        final Iterator<TaskInfo> iterator = executionQueue.iterator();
+        final Iterator<TaskInfo> iterator = useReadyQueue ? readyQueue.iterator() : executionQueue.iterator();
         while (iterator.hasNext()) {
             final TaskInfo taskInfo = iterator.next();
+            if (useReadyQueue && !taskInfo.isReady()) {
+                // Skipped or aborted since it became ready
+                iterator.remove();
+                continue;
+            }
             if (taskInfo.isReady() && allDependenciesComplete(taskInfo)) {
                 coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
                     @Override
@@ -613,7 +691,15 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 }
             }
         }
-        return selected.get();
+
+        TaskInfo selectedTask = selected.get();
+        if (useReadyQueue && selectedTask != null) {
+            executionQueue.remove(selectedTask);
+            if (selectedTask.isComplete()) {
+                readyQueue.taskComplete(selectedTask);
+            }
+        }
+        return selectedTask;
     }
 
     private void execute(TaskInfo selectedTask, WorkerLease workerLease, Action<TaskInfo> taskExecution) {
@@ -711,34 +797,26 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
     @Nullable
     private Pair<TaskInfo, String> firstRunningTaskWithOverlappingMutations(Set<String> candidateTaskMutations) {
-        if (!candidateTaskMutations.isEmpty()) {
-            for (TaskInfo runningTask : runningTasks) {
-                TaskMutationInfo taskMutationInfo = taskMutations.get(runningTask);
-                Iterable<String> runningTaskMutations = Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths);
-                String firstOverlap = findFirstOverlap(candidateTaskMutations, runningTaskMutations);
-                if (firstOverlap != null) {
-                    return Pair.of(runningTask, firstOverlap);
-                }
+        for (String candidateTaskMutation : candidateTaskMutations) {
+            Pair<TaskInfo, String> overlap = runningTaskMutations.findFirstOverlap(candidateTaskMutation);
+            if (overlap != null) {
+                return overlap;
             }
         }
-
         return null;
     }
 
     @Nullable
     private Pair<TaskInfo, String> firstTaskWithDestroyedIntermediateInput(final TaskInfo taskInfo, Set<String> destroyablePaths) {
-        if (!destroyablePaths.isEmpty()) {
-            Iterator<TaskMutationInfo> iterator = taskMutations.values().iterator();
-            while (iterator.hasNext()) {
-                TaskMutationInfo taskMutationInfo = iterator.next();
-                if (taskMutationInfo.task.isComplete() && !taskMutationInfo.consumingTasks.isEmpty()) {
-                    String firstOverlap = findFirstOverlap(destroyablePaths, taskMutationInfo.outputPaths);
-                    if (firstOverlap != null) {
-                        for (TaskInfo consumingTask : taskMutationInfo.consumingTasks) {
-                            if (consumingTask != taskInfo && !isReachableFrom(consumingTask, taskInfo)) {
-                                return Pair.of(consumingTask, firstOverlap);
-                            }
-                        }
+        if (consumedTaskOutputs.isEmpty()) {
+            return null;
+        }
+        for (String destroyablePath : destroyablePaths) {
+            for (Pair<TaskInfo, String> overlap : consumedTaskOutputs.findOverlaps(destroyablePath)) {
+                TaskMutationInfo taskMutationInfo = taskMutations.get(overlap.left);
+                for (TaskInfo consumingTask : taskMutationInfo.consumingTasks) {
+                    if (consumingTask != taskInfo && !isReachableFrom(consumingTask, taskInfo)) {
+                        return Pair.of(consumingTask, overlap.right);
                     }
                 }
             }
@@ -768,18 +846,6 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return reachable;
     }
 
-    private String findFirstOverlap(Iterable<String> paths1, Iterable<String> paths2) {
-        for (String path1 : paths1) {
-            for (String path2 : paths2) {
-                if (pathsOverlap(path1, path2)) {
-                    return TextUtil.shorterOf(path1, path2);
-                }
-            }
-        }
-
-        return null;
-    }
-
     private Set<String> getOutputPaths(TaskInfo task) {
         try {
             return canonicalizedPaths(canonicalizedFileCache, task.getTask().getOutputs().getFiles());
@@ -792,42 +858,50 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return canonicalizedPaths(canonicalizedFileCache, ((TaskDestroyablesInternal)task.getTask().getDestroyables()).getFilesReadOnly());
     }
 
-    private boolean pathsOverlap(String firstPath, String secondPath) {
-        if (firstPath.equals(secondPath)) {
-            return true;
-        }
-
-        String shorter;
-        String longer;
-        if (firstPath.length() > secondPath.length()) {
-            shorter = secondPath;
-            longer = firstPath;
-        } else {
-            shorter = firstPath;
-            longer = secondPath;
-        }
-        return longer.startsWith(shorter + StandardSystemProperty.FILE_SEPARATOR.value());
-    }
-
     private void recordTaskStarted(TaskInfo taskInfo) {
         runningTasks.add(taskInfo);
+        if (predictedCriticalPath != null) {
+            executionTimers.put(taskInfo, Time.startTimer());
+        }
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
         taskMutationInfo.outputPaths.addAll(getOutputPaths(taskInfo));
         taskMutationInfo.destroyablePaths.addAll(getDestroyablePaths(taskInfo));
+        for (String path : Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths)) {
+            runningTaskMutations.add(path, taskInfo);
+        }
     }
 
     private void recordTaskCompleted(TaskInfo taskInfo) {
         runningTasks.remove(taskInfo);
+        Timer executionTimer = executionTimers.remove(taskInfo);
+        if (executionTimer != null) {
+            executionDurations.put(taskInfo, executionTimer.getElapsedMillis());
+        }
         TaskMutationInfo taskMutationInfo = taskMutations.get(taskInfo);
+        for (String path : Iterables.concat(taskMutationInfo.outputPaths, taskMutationInfo.destroyablePaths)) {
+            runningTaskMutations.remove(path, taskInfo);
+        }
         for (TaskInfo producerTask : taskMutationInfo.consumesOutputOf) {
             TaskMutationInfo producerTaskMutationInfo = taskMutations.get(producerTask);
             if (producerTaskMutationInfo.consumingTasks.remove(taskInfo) && canRemoveTaskMutation(producerTaskMutationInfo)) {
-                taskMutations.remove(producerTask);
+                removeTaskMutation(producerTaskMutationInfo);
             }
         }
 
         if (canRemoveTaskMutation(taskMutationInfo)) {
             taskMutations.remove(taskInfo);
+        } else {
+            // Still has consumers waiting to execute, so remember the outputs in case a task wants to destroy them
+            for (String path : taskMutationInfo.outputPaths) {
+                consumedTaskOutputs.add(path, taskInfo);
+            }
+        }
+    }
+
+    private void removeTaskMutation(TaskMutationInfo taskMutationInfo) {
+        taskMutations.remove(taskMutationInfo.task);
+        for (String path : taskMutationInfo.outputPaths) {
+            consumedTaskOutputs.remove(path, taskMutationInfo.task);
         }
     }
 
@@ -846,22 +920,33 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                if (useReadyQueue) {
+                    readyQueue.taskComplete(taskInfo);
+                }
                 return FINISHED;
             }
         });
     }
 
     private void enforceFinalizerTasks(TaskInfo taskInfo) {
+        boolean reopenedTasks = false;
         for (TaskInfo finalizerNode : taskInfo.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
-                enforceWithDependencies(finalizerNode, Sets.<TaskInfo>newHashSet());
+                reopenedTasks |= enforceWithDependencies(finalizerNode, Sets.<TaskInfo>newHashSet());
             }
         }
+        if (reopenedTasks && useReadyQueue) {
+            readyQueue.rebuild();
+        }
     }
 
-    private void enforceWithDependencies(TaskInfo nodeInfo, Set<TaskInfo> enforcedTasks) {
+    /**
+     * @return true if any of the enforced tasks was previously considered complete.
+     */
+    private boolean enforceWithDependencies(TaskInfo nodeInfo, Set<TaskInfo> enforcedTasks) {
         Deque<TaskInfo> candidateNodes = new ArrayDeque<TaskInfo>();
         candidateNodes.add(nodeInfo);
+        boolean reopenedTasks = false;
 
         while (!candidateNodes.isEmpty()) {
             TaskInfo node = candidateNodes.pop();
@@ -871,10 +956,12 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 candidateNodes.addAll(node.getDependencySuccessors());
 
                 if (node.isMustNotRun() || node.isRequired()) {
+                    reopenedTasks |= node.isMustNotRun();
                     node.enforceRun();
                 }
             }
         }
+        return reopenedTasks;
     }
 
     private void abortAllAndFail(Throwable t) {
@@ -921,6 +1008,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 aborted = true;
             }
         }
+        if (aborted && useReadyQueue) {
+            readyQueue.rebuild();
+        }
         return aborted;
     }
 
@@ -929,6 +1019,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             @Override
             public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
                 if (allTasksComplete()) {
+                    reportCriticalPath();
                     rethrowFailures();
                     return FINISHED;
                 } else {
@@ -938,6 +1029,33 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         });
     }
 
+    private void reportCriticalPath() {
+        if (predictedCriticalPath == null) {
+            return;
+        }
+        CriticalPathCalculator actualCriticalPath = new CriticalPathCalculator(executionPlan.values(), new Transformer<Long, TaskInfo>() {
+            @Override
+            public Long transform(TaskInfo taskInfo) {
+                Long duration = executionDurations.get(taskInfo);
+                return duration == null ? 0L : duration;
+            }
+        });
+        LOGGER.lifecycle("Critical path: predicted {} over {} tasks, actual {} over {} tasks.",
+            TimeFormatting.formatDurationVerbose(predictedCriticalPath.getCriticalPathLength()), predictedCriticalPath.getCriticalPath().size(),
+            TimeFormatting.formatDurationVerbose(actualCriticalPath.getCriticalPathLength()), actualCriticalPath.getCriticalPath().size());
+        if (LOGGER.isInfoEnabled()) {
+            logCriticalPath("Predicted", predictedCriticalPath);
+            logCriticalPath("Actual", actualCriticalPath);
+        }
+    }
+
+    private static void logCriticalPath(String kind, CriticalPathCalculator criticalPath) {
+        LOGGER.info("{} critical path:", kind);
+        for (TaskInfo taskInfo : criticalPath.getCriticalPath()) {
+            LOGGER.info("  {} ({})", taskInfo.getTask().getIdentityPath(), TimeFormatting.formatDurationVerbose(criticalPath.getDuration(taskInfo)));
+        }
+    }
+
     private void rethrowFailures() {
         if (tasksCancelled) {
             failures.add(new BuildCancelledException());
@@ -963,6 +1081,10 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean workRemaining() {
+        if (useReadyQueue) {
+            // Every task that has not been selected yet and can still run is tracked by the ready queue
+            return readyQueue.hasWaitingTasks();
+        }
         for (TaskInfo taskInfo : executionQueue) {
             if (!taskInfo.isComplete()) {
                 return true;
@@ -28,6 +28,7 @@ import org.gradle.api.execution.internal.ExecuteTaskBuildOperationDetails;
 import org.gradle.api.execution.internal.ExecuteTaskBuildOperationResult;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
 import org.gradle.api.internal.tasks.TaskStateInternal;
@@ -91,6 +92,10 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         taskExecutionPlan.useFailureHandler(handler);
     }
 
+    public void useCriticalPathScheduling(Factory<? extends TaskDurationRepository> taskDurationRepository) {
+        taskExecutionPlan.useCriticalPathScheduling(taskDurationRepository);
+    }
+
     public void useFilter(Spec<? super Task> filter) {
         this.filter = (Spec<? super Task>) (filter != null ? filter : Specs.SATISFIES_ALL);
         taskExecutionPlan.useFilter(this.filter);
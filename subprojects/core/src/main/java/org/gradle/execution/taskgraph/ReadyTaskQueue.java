@@ -0,0 +1,191 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps track of the tasks in an execution plan whose dependencies have all completed, so that the next task to execute can be
+ * selected without scanning the whole plan.
+ *
+ * Each waiting task carries a count of its incomplete dependencies, which is decremented as each dependency completes. A task becomes
+ * ready when its count drops to zero. Ready tasks are handed out in order of priority, and then in execution plan order.
+ *
+ * Dependencies that are not part of the plan, such as tasks of an included build, complete without notifying the plan. Tasks waiting
+ * on such dependencies are polled instead.
+ *
+ * This class is not thread-safe. Callers are expected to hold the coordination service state lock.
+ */
+class ReadyTaskQueue {
+    private final List<TaskInfo> plan = Lists.newArrayList();
+    private final Map<TaskInfo, Integer> planPositions = Maps.newHashMap();
+    private final Map<TaskInfo, Long> priorities = Maps.newHashMap();
+    private final Map<TaskInfo, Integer> incompleteDependencyCounts = Maps.newHashMap();
+    private final Multimap<TaskInfo, TaskInfo> waitingSuccessors = ArrayListMultimap.create();
+    private final Set<TaskInfo> hasExternalDependencies = Sets.newHashSet();
+    private final Set<TaskInfo> waitingForExternalDependencies = Sets.newLinkedHashSet();
+    private final TreeSet<TaskInfo> readyTasks = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        @Override
+        public int compare(TaskInfo o1, TaskInfo o2) {
+            int result = getPriority(o2).compareTo(getPriority(o1));
+            if (result != 0) {
+                return result;
+            }
+            return planPositions.get(o1).compareTo(planPositions.get(o2));
+        }
+    });
+
+    /**
+     * Starts tracking the given tasks, in execution order. Replaces any previously tracked tasks.
+     */
+    public void initialize(Collection<TaskInfo> executionPlan) {
+        initialize(executionPlan, Collections.<TaskInfo, Long>emptyMap());
+    }
+
+    /**
+     * Starts tracking the given tasks, in execution order. Ready tasks with a higher priority are handed out first.
+     * Tasks without a priority have priority 0.
+     */
+    public void initialize(Collection<TaskInfo> executionPlan, Map<TaskInfo, Long> priorities) {
+        clear();
+        plan.addAll(executionPlan);
+        this.priorities.putAll(priorities);
+        for (TaskInfo taskInfo : plan) {
+            planPositions.put(taskInfo, planPositions.size());
+        }
+        for (TaskInfo taskInfo : plan) {
+            track(taskInfo);
+        }
+    }
+
+    /**
+     * Recalculates the state of all tasks that have not been started yet. Required when a task moves back from complete to incomplete,
+     * or when tasks are completed without being handed out by this queue, for example when execution is aborted.
+     */
+    public void rebuild() {
+        clearTaskStates();
+        for (TaskInfo taskInfo : plan) {
+            track(taskInfo);
+        }
+    }
+
+    private Long getPriority(TaskInfo taskInfo) {
+        Long priority = priorities.get(taskInfo);
+        return priority == null ? 0L : priority;
+    }
+
+    private void track(TaskInfo taskInfo) {
+        if (!taskInfo.isReady()) {
+            return;
+        }
+        int incompleteDependencies = 0;
+        for (TaskInfo dependency : Sets.newHashSet(Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors()))) {
+            if (dependency.isComplete()) {
+                continue;
+            }
+            if (planPositions.containsKey(dependency)) {
+                incompleteDependencies++;
+                waitingSuccessors.put(dependency, taskInfo);
+            } else {
+                hasExternalDependencies.add(taskInfo);
+            }
+        }
+        if (incompleteDependencies > 0) {
+            incompleteDependencyCounts.put(taskInfo, incompleteDependencies);
+        } else {
+            dependenciesComplete(taskInfo);
+        }
+    }
+
+    /**
+     * Notifies this queue that the given task has completed, either because it was executed or skipped.
+     */
+    public void taskComplete(TaskInfo taskInfo) {
+        for (TaskInfo successor : waitingSuccessors.removeAll(taskInfo)) {
+            int remaining = incompleteDependencyCounts.get(successor) - 1;
+            if (remaining > 0) {
+                incompleteDependencyCounts.put(successor, remaining);
+            } else {
+                incompleteDependencyCounts.remove(successor);
+                dependenciesComplete(successor);
+            }
+        }
+    }
+
+    private void dependenciesComplete(TaskInfo taskInfo) {
+        if (hasExternalDependencies.contains(taskInfo)) {
+            waitingForExternalDependencies.add(taskInfo);
+        } else {
+            readyTasks.add(taskInfo);
+        }
+    }
+
+    /**
+     * Returns the tasks that are ready to execute, highest priority first. A task should be removed from the returned iterator
+     * when it has been selected for execution, or when it is no longer ready to execute.
+     */
+    public Iterator<TaskInfo> iterator() {
+        if (!waitingForExternalDependencies.isEmpty()) {
+            Iterator<TaskInfo> iterator = waitingForExternalDependencies.iterator();
+            while (iterator.hasNext()) {
+                TaskInfo taskInfo = iterator.next();
+                if (taskInfo.allDependenciesComplete()) {
+                    iterator.remove();
+                    readyTasks.add(taskInfo);
+                }
+            }
+        }
+        return readyTasks.iterator();
+    }
+
+    /**
+     * Returns true when there are tasks that have not been handed out yet, either because they are waiting on dependencies or are ready.
+     * Does not scan the plan.
+     */
+    public boolean hasWaitingTasks() {
+        return !readyTasks.isEmpty() || !incompleteDependencyCounts.isEmpty() || !waitingForExternalDependencies.isEmpty();
+    }
+
+    public void clear() {
+        clearTaskStates();
+        plan.clear();
+        planPositions.clear();
+        priorities.clear();
+    }
+
+    private void clearTaskStates() {
+        incompleteDependencyCounts.clear();
+        waitingSuccessors.clear();
+        hasExternalDependencies.clear();
+        waitingForExternalDependencies.clear();
+        readyTasks.clear();
+    }
+}
@@ -53,6 +53,7 @@ public class StartParameterBuildOptionFactory implements Factory<List<BuildOptio
         options.add(new IncludeBuildOption());
         options.add(new ConfigureOnDemandOption());
         options.add(new BuildCacheOption());
+        options.add(new CriticalPathSchedulingOption());
         options.add(new BuildScanOption());
     }
 
@@ -264,6 +265,19 @@ public class StartParameterBuildOptionFactory implements Factory<List<BuildOptio
         }
     }
 
+    public static class CriticalPathSchedulingOption extends BooleanBuildOption<StartParameter> {
+        public static final String GRADLE_PROPERTY = "org.gradle.scheduling.criticalpath";
+
+        public CriticalPathSchedulingOption() {
+            super(GRADLE_PROPERTY, CommandLineOptionConfiguration.create("critical-path-scheduling", "Executes ready tasks with the longest remaining path through the task graph first, based on the durations of previous builds.").incubating());
+        }
+
+        @Override
+        public void applyTo(boolean value, StartParameter settings, Origin origin) {
+            settings.setCriticalPathSchedulingEnabled(value);
+        }
+    }
+
     public static class BuildScanOption extends BooleanBuildOption<StartParameter> {
         public BuildScanOption() {
             super(null, CommandLineOptionConfiguration.create("scan", "Creates a build scan. Gradle will emit a warning if the build scan plugin has not been applied. (https://gradle.com/build-scans)").incubating());
@@ -17,12 +17,43 @@
 package org.gradle.internal.hash;
 
 public class DefaultContentHasherFactory implements ContentHasherFactory {
-    private static final byte[] SIGNATURE = Hashing.md5().hashString(DefaultContentHasherFactory.class.getName()).toByteArray();
+    /**
+     * Selects the algorithm used to hash content, either {@value #MD5} or {@value #MURMUR3_128}. Defaults to {@value #MD5}.
+     */
+    public static final String ALGORITHM_PROPERTY = "org.gradle.hashing.algorithm";
+    public static final String MD5 = "MD5";
+    public static final String MURMUR3_128 = "MURMUR3-128";
+
+    private final String algorithm;
+    private final HashFunction hashFunction;
+    private final byte[] signature;
+
+    public DefaultContentHasherFactory() {
+        this(MD5);
+    }
+
+    public DefaultContentHasherFactory(String algorithm) {
+        if (MD5.equalsIgnoreCase(algorithm)) {
+            this.algorithm = MD5;
+            this.hashFunction = Hashing.md5();
+        } else if (MURMUR3_128.equalsIgnoreCase(algorithm)) {
+            this.algorithm = MURMUR3_128;
+            this.hashFunction = Hashing.murmur3_128();
+        } else {
+            throw new IllegalArgumentException(String.format("Unsupported hash algorithm '%s'. Supported algorithms are %s and %s.", algorithm, MD5, MURMUR3_128));
+        }
+        this.signature = hashFunction.hashString(DefaultContentHasherFactory.class.getName()).toByteArray();
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
 
     @Override
     public Hasher create() {
-        Hasher hasher = Hashing.md5().newHasher();
-        hasher.putBytes(SIGNATURE);
+        Hasher hasher = hashFunction.newHasher();
+        hasher.putBytes(signature);
         return hasher;
     }
 }
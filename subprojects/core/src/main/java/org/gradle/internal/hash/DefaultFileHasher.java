@@ -19,31 +19,75 @@ import org.apache.commons.io.IOUtils;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.file.FileTreeElement;
 import org.gradle.internal.file.FileMetadataSnapshot;
+import org.gradle.internal.io.MappedByteBuffers;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Files of at least this many bytes are hashed by mapping them into memory, rather than by reading them through a heap buffer.
+     * Files are never mapped when not set.
+     */
+    public static final String MAPPED_HASHING_THRESHOLD_PROPERTY = "org.gradle.hashing.mappedThreshold";
+
+    // Map large files a region at a time, so as not to exhaust the address space of 32-bit JVMs
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+
     private final StreamHasher streamHasher;
+    private final ContentHasherFactory hasherFactory;
+    private final long mappedHashingThreshold;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
+        this(streamHasher, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param hasherFactory The factory used by the stream hasher, so that mapped and streamed files get the same hash.
+     * @param mappedHashingThreshold The size from which files are mapped into memory.
+     */
+    public DefaultFileHasher(StreamHasher streamHasher, @Nullable ContentHasherFactory hasherFactory, long mappedHashingThreshold) {
         this.streamHasher = streamHasher;
+        this.hasherFactory = hasherFactory;
+        this.mappedHashingThreshold = hasherFactory != null && MappedByteBuffers.isUnmapSupported() ? mappedHashingThreshold : Long.MAX_VALUE;
     }
 
     @Override
     public HashCode hash(File file) {
         try {
-            InputStream inputStream = new FileInputStream(file);
+            FileInputStream inputStream = new FileInputStream(file);
             try {
+                if (mappedHashingThreshold != Long.MAX_VALUE) {
+                    FileChannel channel = inputStream.getChannel();
+                    long size = channel.size();
+                    if (size >= mappedHashingThreshold) {
+                        return hashMapped(channel, size);
+                    }
+                }
                 return streamHasher.hash(inputStream);
             } finally {
                 IOUtils.closeQuietly(inputStream);
             }
         } catch (IOException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s'.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
+        }
+    }
+
+    private HashCode hashMapped(FileChannel channel, long size) throws IOException {
+        Hasher hasher = hasherFactory.create();
+        for (long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+            try {
+                hasher.putBytes(region);
+            } finally {
+                MappedByteBuffers.unmap(region);
+            }
         }
+        return hasher.hash();
     }
 
     @Override
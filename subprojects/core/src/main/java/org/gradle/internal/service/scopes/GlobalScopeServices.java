@@ -40,6 +40,7 @@ import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.TmpDirTemporaryFileProvider;
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.ParallelDirectoryWalker;
 import org.gradle.api.internal.model.DefaultObjectFactory;
 import org.gradle.api.internal.model.NamedObjectInstantiator;
 import org.gradle.api.internal.provider.DefaultProviderFactory;
@@ -245,6 +246,10 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
         return new DefaultDirectoryFileTreeFactory(patternSetFactory, fileSystem);
     }
 
+    ParallelDirectoryWalker createParallelDirectoryWalker(FileSystem fileSystem) {
+        return new ParallelDirectoryWalker(fileSystem);
+    }
+
     FileCollectionFactory createFileCollectionFactory() {
         return new DefaultFileCollectionFactory();
     }
@@ -352,7 +357,7 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
     }
 
     ContentHasherFactory createHasherFactory() {
-        return new DefaultContentHasherFactory();
+        return new DefaultContentHasherFactory(System.getProperty(DefaultContentHasherFactory.ALGORITHM_PROPERTY, DefaultContentHasherFactory.MD5));
     }
 
     StreamHasher createStreamHasher(ContentHasherFactory hasherFactory) {
@@ -16,11 +16,15 @@
 package org.gradle.internal.service.scopes;
 
 import org.gradle.api.Action;
+import org.gradle.api.execution.TaskExecutionGraph;
+import org.gradle.api.execution.TaskExecutionGraphListener;
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
 import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter;
 import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory;
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.internal.plugins.DefaultPluginManager;
 import org.gradle.api.internal.plugins.ImperativeOnlyPluginTarget;
@@ -34,6 +38,9 @@ import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.DefaultFileContentCacheFactory;
 import org.gradle.cache.internal.FileContentCacheFactory;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.controller.DefaultBuildCacheController;
+import org.gradle.caching.internal.tasks.TaskOutputCachePrefetcher;
 import org.gradle.configuration.ConfigurationTargetIdentifier;
 import org.gradle.execution.BuildConfigurationAction;
 import org.gradle.execution.BuildConfigurationActionExecuter;
@@ -57,6 +64,7 @@ import org.gradle.internal.Factory;
 import org.gradle.internal.cleanup.BuildOutputCleanupRegistry;
 import org.gradle.internal.cleanup.DefaultBuildOutputCleanupRegistry;
 import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.event.ListenerManager;
 import org.gradle.internal.id.UniqueId;
 import org.gradle.internal.logging.LoggingManagerInternal;
@@ -139,6 +147,24 @@ public class GradleScopeServices extends DefaultServiceRegistry {
         };
     }
 
+    TaskOutputCachePrefetcher createTaskOutputCachePrefetcher(ExecutorFactory executorFactory) {
+        // Lazy, as the task history and the build cache are only available once the build is running
+        return new TaskOutputCachePrefetcher(
+            new Factory<TaskArtifactStateRepository>() {
+                @Override
+                public TaskArtifactStateRepository create() {
+                    return get(TaskArtifactStateRepository.class);
+                }
+            },
+            new Factory<BuildCacheController>() {
+                @Override
+                public BuildCacheController create() {
+                    return get(BuildCacheController.class);
+                }
+            },
+            executorFactory);
+    }
+
     TaskGraphExecuter createTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal) {
         Factory<TaskExecuter> taskExecuterFactory = new Factory<TaskExecuter>() {
             @Override
@@ -146,7 +172,25 @@ public class GradleScopeServices extends DefaultServiceRegistry {
                 return get(TaskExecuter.class);
             }
         };
-        return new DefaultTaskGraphExecuter(listenerManager, taskPlanExecutor, taskExecuterFactory, cancellationToken, buildOperationExecutor, workerLeaseService, coordinationService, gradleInternal);
+        DefaultTaskGraphExecuter taskGraphExecuter = new DefaultTaskGraphExecuter(listenerManager, taskPlanExecutor, taskExecuterFactory, cancellationToken, buildOperationExecutor, workerLeaseService, coordinationService, gradleInternal);
+        if (gradleInternal.getStartParameter().isCriticalPathSchedulingEnabled()) {
+            // Lazy, as the task history is only available once the build is running
+            taskGraphExecuter.useCriticalPathScheduling(new Factory<TaskDurationRepository>() {
+                @Override
+                public TaskDurationRepository create() {
+                    return get(TaskDurationRepository.class);
+                }
+            });
+        }
+        if (gradleInternal.getStartParameter().isBuildCacheEnabled() && Boolean.getBoolean(DefaultBuildCacheController.REMOTE_PREFETCH_PROPERTY)) {
+            taskGraphExecuter.addTaskExecutionGraphListener(new TaskExecutionGraphListener() {
+                @Override
+                public void graphPopulated(TaskExecutionGraph graph) {
+                    get(TaskOutputCachePrefetcher.class).prefetch(graph.getAllTasks());
+                }
+            });
+        }
+        return taskGraphExecuter;
     }
 
     ServiceRegistryFactory createServiceRegistryFactory(final ServiceRegistry services) {
@@ -21,6 +21,7 @@ import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.changedetection.state.CachingFileHasher.FileInfo
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.cache.PersistentIndexedCache
+import org.gradle.internal.hash.DefaultContentHasherFactory
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.Hashing
 import org.gradle.internal.nativeintegration.filesystem.DefaultFileMetadata
@@ -193,4 +194,10 @@ class CachingFileHasherTest extends Specification {
         }
         0 * _._
     }
+
+    def "keeps hashes created with different algorithms in separate caches"() {
+        expect:
+        CachingFileHasher.cacheNameFor("fileHashes", DefaultContentHasherFactory.MD5) == "fileHashes"
+        CachingFileHasher.cacheNameFor("fileHashes", DefaultContentHasherFactory.MURMUR3_128) == "fileHashes-MURMUR3-128"
+    }
 }
@@ -17,22 +17,37 @@
 package org.gradle.api.internal.changedetection.state
 
 import org.gradle.BuildResult
+import org.gradle.api.Action
+import org.gradle.api.file.RelativePath
 import org.gradle.api.internal.GradleInternal
 import org.gradle.internal.classpath.CachedJarFileStore
+import org.gradle.internal.file.FileType
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.internal.filewatch.FileWatcherListener
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.atomic.AtomicBoolean
+
 class DefaultFileSystemMirrorTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
 
     DefaultFileSystemMirror mirror
     TestFile cacheDir
+    TestFile syncDir
+    def fileWatcherFactory = Mock(FileWatcherFactory)
+    def fileWatcher = Mock(FileWatcher)
+    FileWatcherListener listener
+    Action<Throwable> onError
 
     def setup() {
         cacheDir = tmpDir.createDir("cache")
+        syncDir = tmpDir.file("sync")
         def fileStore = Stub(CachedJarFileStore)
         fileStore.fileStoreRoots >> [cacheDir]
         mirror = new DefaultFileSystemMirror([fileStore])
@@ -61,7 +76,7 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == fileTreeSnapshot
         mirror.getContent(file.path) == snapshot
 
-        mirror.beforeTaskOutputsGenerated()
+        mirror.beforeTaskOutputsGenerated(null)
 
         mirror.getFile(file.path) == null
         mirror.getDirectoryTree(file.path) == null
@@ -129,7 +144,7 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == fileTreeSnapshot
         mirror.getContent(file.path) == snapshot
 
-        mirror.beforeTaskOutputsGenerated()
+        mirror.beforeTaskOutputsGenerated(null)
 
         mirror.getFile(file.path) == fileSnapshot
         mirror.getDirectoryTree(file.path) == fileTreeSnapshot
@@ -141,4 +156,207 @@ class DefaultFileSystemMirrorTest extends Specification {
         mirror.getDirectoryTree(file.path) == null
         mirror.getContent(file.path) == null
     }
+
+    def "retains state recorded for watched files between builds and discards state for changed files"() {
+        def changed = tmpDir.file("changed")
+        def unchanged = tmpDir.file("unchanged")
+        def missing = tmpDir.file("missing")
+        watching()
+
+        given:
+        mirror.putFile(fileSnapshot(changed))
+        mirror.putFile(fileSnapshot(unchanged))
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        1 * fileWatcher.watch({ it.contains(changed) && it.contains(unchanged) && it.contains(syncDir) })
+        mirror.getFile(changed.path) == null
+        mirror.getFile(unchanged.path) == null
+
+        when:
+        startBuild()
+        mirror.putFile(fileSnapshot(changed))
+        mirror.putFile(fileSnapshot(unchanged))
+        mirror.putFile(fileSnapshot(missing, FileType.Missing))
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(changed.path) != null
+        mirror.getFile(unchanged.path) != null
+        mirror.getFile(missing.path) == null
+
+        when:
+        startBuild(FileWatcherEvent.modify(changed))
+
+        then:
+        mirror.getFile(changed.path) == null
+        mirror.getFile(unchanged.path) != null
+    }
+
+    def "discards all retained state when changes are not known"() {
+        def file = tmpDir.file("a")
+        watching()
+
+        given:
+        retain(file)
+
+        when:
+        startBuild(FileWatcherEvent.undefined())
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards all retained state when watching fails"() {
+        def file = tmpDir.file("a")
+        watching()
+
+        given:
+        retain(file)
+
+        when:
+        onError.execute(new IOException("broken"))
+        mirror.afterStart()
+
+        then:
+        1 * fileWatcher.stop()
+        mirror.getFile(file.path) == null
+    }
+
+    def "does not retain state when files cannot be watched"() {
+        def file = tmpDir.file("a")
+        watching()
+        fileWatcher.watch(_) >> { throw new IOException("broken") }
+
+        when:
+        mirror.putFile(fileSnapshot(file))
+        mirror.beforeComplete()
+        mirror.afterStart()
+        mirror.putFile(fileSnapshot(file))
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards state only for task outputs when watching"() {
+        def outputDir = tmpDir.file("build")
+        def output = outputDir.file("classes/A.class")
+        def outputParent = tmpDir.file("build/classes")
+        def input = tmpDir.file("src/A.java")
+        watching()
+
+        given:
+        mirror.putFile(fileSnapshot(output))
+        mirror.putDirectory(treeSnapshot(outputParent))
+        mirror.putFile(fileSnapshot(input))
+        mirror.putDirectory(treeSnapshot(tmpDir.file("src")))
+
+        when:
+        mirror.beforeTaskOutputsGenerated([outputDir])
+
+        then:
+        mirror.getFile(output.path) == null
+        mirror.getDirectoryTree(outputParent.path) == null
+        mirror.getFile(input.path) != null
+        mirror.getDirectoryTree(tmpDir.file("src").path) != null
+
+        when:
+        mirror.beforeTaskOutputsGenerated(null)
+
+        then:
+        mirror.getFile(input.path) == null
+    }
+
+    def "keeps unaffected parts of a directory tree when part of the tree changes"() {
+        def root = tmpDir.file("src")
+        def main = root.file("main")
+        def mainFile = main.file("A.java")
+        def test = root.file("test")
+        def testFile = test.file("ATest.java")
+        def readme = root.file("README")
+        watching()
+
+        given:
+        mirror.putDirectory(new DirectoryTreeDetails(root.path, [
+            new DirectoryFileSnapshot(main.path, new RelativePath(false, "main"), false),
+            new RegularFileSnapshot(mainFile.path, new RelativePath(true, "main", "A.java"), false, Stub(FileContentSnapshot)),
+            new DirectoryFileSnapshot(test.path, new RelativePath(false, "test"), false),
+            new RegularFileSnapshot(testFile.path, new RelativePath(true, "test", "ATest.java"), false, Stub(FileContentSnapshot)),
+            new RegularFileSnapshot(readme.path, new RelativePath(true, "README"), false, Stub(FileContentSnapshot))
+        ]))
+
+        expect:
+        mirror.getDirectoryTree(main.path).descendants*.relativePath*.pathString == ["A.java"]
+        mirror.getFile(testFile.path).relativePath.pathString == "ATest.java"
+        mirror.getFile(testFile.path).root
+
+        when:
+        mirror.beforeTaskOutputsGenerated([test])
+
+        then:
+        mirror.getDirectoryTree(root.path) == null
+        mirror.getDirectoryTree(test.path) == null
+        mirror.getFile(testFile.path) == null
+        mirror.getDirectoryTree(main.path).descendants*.path == [mainFile.path]
+        mirror.getFile(mainFile.path).path == mainFile.path
+        mirror.getFile(readme.path).relativePath.pathString == "README"
+    }
+
+    private void watching() {
+        fileWatcherFactory.watch(_, _) >> { error, l ->
+            onError = error
+            listener = l
+            fileWatcher
+        }
+        mirror = new DefaultFileSystemMirror([], fileWatcherFactory, syncDir)
+    }
+
+    private void retain(File file) {
+        mirror.putFile(fileSnapshot(file))
+        mirror.beforeComplete()
+        startBuild()
+        mirror.putFile(fileSnapshot(file))
+        mirror.beforeComplete()
+        assert mirror.getFile(file.path) != null
+    }
+
+    /**
+     * Reports the given events and then the creation of the file that the mirror uses to check that the watcher has caught up, as the next build starts.
+     */
+    private void startBuild(FileWatcherEvent... events) {
+        events.each { listener.onChange(fileWatcher, it) }
+        def started = new AtomicBoolean()
+        def reporter = Thread.start {
+            while (!started.get()) {
+                def syncFiles = syncDir.listFiles()
+                if (syncFiles) {
+                    syncFiles.each { listener.onChange(fileWatcher, FileWatcherEvent.create(it)) }
+                    return
+                }
+                Thread.sleep(10)
+            }
+        }
+        try {
+            mirror.afterStart()
+        } finally {
+            started.set(true)
+            reporter.join()
+        }
+    }
+
+    private FileSnapshot fileSnapshot(File file, FileType type = FileType.RegularFile) {
+        return Stub(FileSnapshot) {
+            getPath() >> file.path
+            getType() >> type
+        }
+    }
+
+    private FileTreeSnapshot treeSnapshot(File file) {
+        return Stub(FileTreeSnapshot) {
+            getPath() >> file.path
+        }
+    }
 }
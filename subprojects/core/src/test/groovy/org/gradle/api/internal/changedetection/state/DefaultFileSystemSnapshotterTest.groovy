@@ -18,6 +18,7 @@ package org.gradle.api.internal.changedetection.state
 
 import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.internal.file.collections.ParallelDirectoryWalker
 import org.gradle.internal.hash.TestFileHasher
 import org.gradle.caching.internal.DefaultBuildCacheHasher
 import org.gradle.internal.file.FileType
@@ -154,6 +155,85 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         snapshot4.is(snapshot3)
     }
 
+    def "uses details of an ancestor directory tree for a sub directory or a file"() {
+        def d = tmpDir.createDir("d")
+        def f1 = d.createFile("f1")
+        d.createFile("d1/f2")
+        d.createFile("d1/d3/f3")
+        d.createDir("d2")
+
+        expect:
+        snapshotter.snapshotDirectoryTree(d)
+
+        def subTree = snapshotter.snapshotDirectoryTree(d.file("d1"))
+        subTree.path == d.file("d1").path
+        subTree.descendants*.relativePath*.pathString as Set == ["f2", "d3", "d3/f3"] as Set
+        subTree.descendants.every { !it.root }
+        snapshotter.snapshotDirectoryTree(d.file("d1")).is(subTree)
+
+        def file = snapshotter.snapshotSelf(f1)
+        file.path == f1.path
+        file.type == FileType.RegularFile
+        file.root
+        file.relativePath.toString() == "f1"
+        file.content == new FileHashSnapshot(fileHasher.hash(f1), f1.lastModified())
+    }
+
+    def "filters details of a known directory tree with patterns instead of scanning the tree"() {
+        def d = tmpDir.createDir("d")
+        d.createFile("f1")
+        d.createFile("d1/f2")
+        d.createFile("d1/f1")
+        d.createDir("d2")
+        d.createFile("d2/f1")
+        d.createFile("d2/f2")
+        def patterns = TestFiles.patternSetFactory.create()
+        patterns.include "**/*1"
+        patterns.exclude "d2"
+        def tree = TestFiles.directoryFileTreeFactory().create(d, patterns)
+        def scanned = new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), new DefaultFileSystemMirror([])).snapshotDirectoryTree(tree)
+
+        when:
+        snapshotter.snapshotDirectoryTree(d)
+        def filtered = snapshotter.snapshotDirectoryTree(tree)
+
+        then:
+        filtered.path == d.path
+        filtered.descendants*.relativePath*.pathString as Set == ["f1", "d1", "d1/f1"] as Set
+        filtered.descendants*.relativePath as Set == scanned.descendants*.relativePath as Set
+    }
+
+    def "walks and hashes a directory tree using multiple threads"() {
+        def d = tmpDir.createDir("d")
+        d.createFile("f1")
+        d.createFile("d1/f2")
+        d.createFile("d1/d3/f3")
+        d.createDir("d2")
+        (1..50).each { d.createFile("d4/f$it") << "content $it" }
+        def walker = new ParallelDirectoryWalker(TestFiles.fileSystem(), 4)
+        def parallelSnapshotter = new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), new DefaultFileSystemMirror([]), walker)
+
+        when:
+        def snapshot = parallelSnapshotter.snapshotDirectoryTree(d)
+        def expected = snapshotter.snapshotDirectoryTree(d)
+
+        then:
+        snapshot.path == d.path
+        snapshot.descendants.size() == 57
+        snapshot.descendants*.path == expected.descendants*.path
+        snapshot.descendants.collectEntries { [it.path, it.content] } == expected.descendants.collectEntries { [it.path, it.content] }
+        parallelSnapshotter.snapshotDirectoryTree(d).is(snapshot)
+
+        when:
+        def again = new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), new DefaultFileSystemMirror([]), walker).snapshotDirectoryTree(d)
+
+        then:
+        again.descendants*.path == snapshot.descendants*.path
+
+        cleanup:
+        walker.stop()
+    }
+
     def "snapshots a file and caches the result"() {
         def f = tmpDir.createFile("f")
 
@@ -161,7 +241,7 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         def snapshot = snapshotter.snapshotAll(f)
         snapshotter.snapshotAll(f).is(snapshot)
 
-        fileSystemMirror.beforeTaskOutputsGenerated()
+        fileSystemMirror.beforeTaskOutputsGenerated(null)
         f << "some other content"
 
         def snapshot2 = snapshotter.snapshotAll(f)
@@ -175,7 +255,7 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         def snapshot = snapshotter.snapshotAll(f)
         snapshotter.snapshotAll(f).is(snapshot)
 
-        fileSystemMirror.beforeTaskOutputsGenerated()
+        fileSystemMirror.beforeTaskOutputsGenerated(null)
         f.createDir()
 
         def snapshot2 = snapshotter.snapshotAll(f)
@@ -191,7 +271,7 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         def snapshot = snapshotter.snapshotAll(f)
         snapshotter.snapshotAll(f).is(snapshot)
 
-        fileSystemMirror.beforeTaskOutputsGenerated()
+        fileSystemMirror.beforeTaskOutputsGenerated(null)
         f.createFile("newFile")
 
         def snapshot2 = snapshotter.snapshotAll(f)
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.collections
+
+import org.gradle.api.GradleException
+import org.gradle.api.Transformer
+import org.gradle.api.file.FileVisitDetails
+import org.gradle.api.file.FileVisitor
+import org.gradle.api.file.RelativePath
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.api.specs.Specs
+import org.gradle.api.tasks.util.PatternSet
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+class ParallelDirectoryWalkerTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def walker = new ParallelDirectoryWalker(TestFiles.fileSystem(), 4)
+    def relativePaths = { FileVisitDetails details -> details.relativePath.pathString } as Transformer<String, FileVisitDetails>
+
+    def cleanup() {
+        walker.stop()
+    }
+
+    def "visits the tree in the same order as the reproducible walker"() {
+        def root = tmpDir.createDir("root")
+        root.createFile("b")
+        root.createFile("a")
+        root.createFile("d2/f")
+        root.createFile("d1/d3/f")
+        root.createDir("d1/empty")
+        (1..100).each { root.createFile("d1/many/f$it") }
+
+        when:
+        def result = walker.walkDir(root, Specs.satisfyAll(), relativePaths)
+
+        then:
+        result == reproducibleWalk(root, new PatternSet())
+        result.take(3) == ["a", "b", "d1"]
+    }
+
+    def "skips the descendants of excluded directories"() {
+        def root = tmpDir.createDir("root")
+        root.createFile("a.txt")
+        root.createFile("excluded/b.txt")
+        root.createFile("included/c.txt")
+        root.createFile("included/c.java")
+        def patterns = new PatternSet()
+        patterns.exclude("excluded", "**/*.java")
+
+        when:
+        def result = walker.walkDir(root, patterns.asSpec, relativePaths)
+
+        then:
+        result == ["a.txt", "included", "included/c.txt"]
+        result == reproducibleWalk(root, patterns)
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "follows symbolic links in the same way as the reproducible walker"() {
+        def root = tmpDir.createDir("root")
+        def target = tmpDir.createDir("target")
+        target.createFile("f")
+        tmpDir.createFile("file")
+        root.file("dir-link").createLink(target)
+        root.file("file-link").createLink(tmpDir.file("file"))
+
+        when:
+        def result = walker.walkDir(root, Specs.satisfyAll(), relativePaths)
+
+        then:
+        result == ["file-link", "dir-link", "dir-link/f"]
+        result == reproducibleWalk(root, new PatternSet())
+
+        cleanup:
+        root.file("dir-link").delete()
+        root.file("file-link").delete()
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    def "fails on a symbolic link that points to nothing unless it is excluded"() {
+        def root = tmpDir.createDir("root")
+        def target = tmpDir.createDir("target")
+        def link = root.file("link")
+        link.createLink(target)
+        target.deleteDir()
+
+        when:
+        walker.walkDir(root, Specs.satisfyAll(), relativePaths)
+
+        then:
+        def e = thrown(GradleException)
+        e.message == "Could not list contents of '${link}'. Couldn't follow symbolic link."
+
+        when:
+        def patterns = new PatternSet()
+        patterns.exclude("link")
+        def result = walker.walkDir(root, patterns.asSpec, relativePaths)
+
+        then:
+        result == []
+
+        cleanup:
+        link.delete()
+    }
+
+    def "rethrows failure to transform an element"() {
+        def root = tmpDir.createDir("root")
+        root.createFile("d1/d2/broken")
+        def failure = new GradleException("broken")
+        def transformer = { FileVisitDetails details ->
+            if (details.name == "broken") {
+                throw failure
+            }
+            details.name
+        } as Transformer<String, FileVisitDetails>
+
+        when:
+        walker.walkDir(root, Specs.satisfyAll(), transformer)
+
+        then:
+        def e = thrown(GradleException)
+        e.is(failure)
+    }
+
+    private static List<String> reproducibleWalk(File root, PatternSet patterns) {
+        def result = []
+        new ReproducibleDirectoryWalker(TestFiles.fileSystem()).walkDir(root, RelativePath.EMPTY_ROOT, new FileVisitor() {
+            @Override
+            void visitDir(FileVisitDetails dirDetails) {
+                result << dirDetails.relativePath.pathString
+            }
+
+            @Override
+            void visitFile(FileVisitDetails fileDetails) {
+                result << fileDetails.relativePath.pathString
+            }
+        }, patterns.asSpec, new AtomicBoolean(), false)
+        return result
+    }
+}
@@ -17,9 +17,12 @@ package org.gradle.api.internal.tasks.execution
 
 import org.gradle.api.execution.TaskActionListener
 import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.file.collections.SimpleFileCollection
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.ContextAwareTaskAction
+import org.gradle.api.internal.tasks.TaskDestroyablesInternal
 import org.gradle.api.internal.tasks.TaskExecutionContext
 import org.gradle.api.internal.tasks.TaskExecutionOutcome
 import org.gradle.api.internal.tasks.TaskStateInternal
@@ -59,6 +62,12 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         task.getState() >> state
         project.getBuildScriptSource() >> scriptSource
         task.getStandardOutputCapture() >> standardOutputCapture
+        task.getOutputs() >> Stub(TaskOutputsInternal) {
+            getFiles() >> new SimpleFileCollection()
+        }
+        task.getDestroyables() >> Stub(TaskDestroyablesInternal) {
+            getFilesReadOnly() >> []
+        }
         executionContext.taskArtifactState >> taskArtifactState
     }
 
@@ -107,7 +116,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -164,7 +173,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
 
@@ -203,7 +212,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -243,7 +252,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -281,7 +290,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -336,7 +345,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -383,7 +392,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
@@ -429,7 +438,7 @@ class ExecuteActionsTaskExecutorTest extends Specification {
         then:
         1 * publicListener.beforeActions(task)
         then:
-        1 * internalListener.beforeTaskOutputsGenerated()
+        1 * internalListener.beforeTaskOutputsGenerated(_)
         then:
         1 * standardOutputCapture.start()
         then:
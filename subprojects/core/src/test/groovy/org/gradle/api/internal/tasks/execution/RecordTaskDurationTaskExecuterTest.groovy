@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskExecutionContext
+import org.gradle.api.internal.tasks.TaskStateInternal
+import spock.lang.Specification
+
+class RecordTaskDurationTaskExecuterTest extends Specification {
+    def repository = Mock(TaskDurationRepository)
+    def delegate = Mock(TaskExecuter)
+    def task = Mock(TaskInternal)
+    def state = new TaskStateInternal()
+    def context = Mock(TaskExecutionContext)
+    def executer = new RecordTaskDurationTaskExecuter(repository, delegate)
+
+    def "records duration of successful execution"() {
+        when:
+        executer.execute(task, state, context)
+
+        then:
+        1 * delegate.execute(task, state, context)
+
+        then:
+        1 * repository.recordDuration(task, { it >= 0 })
+        0 * _
+    }
+
+    def "does not record duration of failed execution"() {
+        when:
+        executer.execute(task, state, context)
+
+        then:
+        1 * delegate.execute(task, state, context) >> {
+            state.setOutcome(new RuntimeException("failure"))
+        }
+        0 * repository._
+    }
+}
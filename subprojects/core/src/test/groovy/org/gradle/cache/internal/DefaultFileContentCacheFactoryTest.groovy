@@ -159,7 +159,7 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         0 * _
 
         when:
-        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated(null)
         result = cache.get(file)
 
         then:
@@ -190,7 +190,7 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         0 * _
 
         when:
-        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated(null)
         result = cache.get(file)
 
         then:
@@ -222,7 +222,7 @@ class DefaultFileContentCacheFactoryTest extends Specification {
         0 * _
 
         when:
-        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated(null)
         result = cache.get(file)
 
         then:
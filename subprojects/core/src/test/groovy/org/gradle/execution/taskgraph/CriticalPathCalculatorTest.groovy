@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.Transformer
+import org.gradle.api.internal.TaskInternal
+import spock.lang.Specification
+
+class CriticalPathCalculatorTest extends Specification {
+
+    def "remaining path length includes the longest downstream path"() {
+        def compile = taskInfo("compile")
+        def test = taskInfo("test")
+        def javadoc = taskInfo("javadoc")
+        def check = taskInfo("check")
+        test.addDependencySuccessor(compile)
+        javadoc.addDependencySuccessor(compile)
+        check.addDependencySuccessor(test)
+
+        when:
+        def calculator = calculate([compile, javadoc, test, check], [compile: 10, javadoc: 5, test: 20, check: 1])
+
+        then:
+        calculator.getRemainingPathLength(compile) == 31
+        calculator.getRemainingPathLength(javadoc) == 5
+        calculator.getRemainingPathLength(test) == 21
+        calculator.getRemainingPathLength(check) == 1
+        calculator.criticalPath == [compile, test, check]
+        calculator.criticalPathLength == 31
+    }
+
+    def "must run after relationships are part of the path"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        b.addMustSuccessor(a)
+
+        when:
+        def calculator = calculate([a, b], [a: 3, b: 4])
+
+        then:
+        calculator.getRemainingPathLength(a) == 7
+        calculator.criticalPath == [a, b]
+    }
+
+    def "ignores dependencies that are not part of the plan"() {
+        def external = taskInfo("external")
+        def a = taskInfo("a")
+        a.addDependencySuccessor(external)
+
+        when:
+        def calculator = calculate([a], [a: 3])
+
+        then:
+        calculator.getRemainingPathLength(external) == 0
+        calculator.criticalPath == [a]
+        calculator.criticalPathLength == 3
+    }
+
+    def "critical path of empty plan is empty"() {
+        when:
+        def calculator = calculate([], [:])
+
+        then:
+        calculator.criticalPath.empty
+        calculator.criticalPathLength == 0
+    }
+
+    private static CriticalPathCalculator calculate(List<TaskInfo> plan, Map<String, Long> durations) {
+        return new CriticalPathCalculator(plan, new Transformer<Long, TaskInfo>() {
+            @Override
+            Long transform(TaskInfo taskInfo) {
+                return durations[taskInfo.task.name] as Long
+            }
+        })
+    }
+
+    private TaskInfo taskInfo(String name) {
+        TaskInternal task = Mock()
+        task.name >> name
+        task.path >> ":$name"
+        task.compareTo(_ as TaskInternal) >> { TaskInternal other ->
+            return name.compareTo(other.name)
+        }
+        return new TaskInfo(task)
+    }
+}
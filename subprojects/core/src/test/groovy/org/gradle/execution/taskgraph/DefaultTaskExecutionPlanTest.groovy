@@ -23,6 +23,7 @@ import org.gradle.api.Task
 import org.gradle.api.internal.GradleInternal
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.state.TaskDurationRepository
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskDestroyablesInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
@@ -31,6 +32,7 @@ import org.gradle.api.tasks.TaskDependency
 import org.gradle.api.tasks.TaskDestroyables
 import org.gradle.execution.TaskFailureHandler
 import org.gradle.initialization.BuildCancellationToken
+import org.gradle.internal.Factories
 import org.gradle.internal.resources.ResourceLock
 import org.gradle.internal.resources.ResourceLockCoordinationService
 import org.gradle.internal.resources.ResourceLockState
@@ -870,6 +872,110 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "ready queue executes tasks in dependency order"() {
+        given:
+        useReadyQueue()
+        Task a = task("a")
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c", mustRunAfter: [b])
+        Task d = task("d", dependsOn: [c, a])
+
+        when:
+        addToGraphAndPopulate([d, b])
+
+        then:
+        executedTasks == [a, b, c, d]
+    }
+
+    def "ready queue does not execute tasks whose dependencies failed"() {
+        given:
+        useReadyQueue()
+        RuntimeException failure = new RuntimeException()
+        Task a = task("a", failure: failure)
+        Task b = task("b", dependsOn: [a])
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d")
+        addToGraphAndPopulate([c, d])
+
+        when:
+        executionPlan.useFailureHandler(createIgnoreTaskFailureHandler(a))
+
+        then:
+        executedTasks == [a, d]
+
+        when:
+        executionPlan.awaitCompletion()
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def "ready queue executes finalizer tasks and their dependencies after a failure"() {
+        given:
+        useReadyQueue()
+        Task finalizerDependency = task("finalizerDependency")
+        Task finalizer = task("finalizer", dependsOn: [finalizerDependency])
+        Task finalized = task("finalized", finalizedBy: [finalizer], failure: new RuntimeException("failure"))
+        Task other = task("other", dependsOn: [finalized])
+        addToGraphAndPopulate([other])
+
+        expect:
+        executedTasks == [finalized, finalizerDependency, finalizer]
+    }
+
+    def "ready queue stops returning tasks when build is cancelled"() {
+        given:
+        useReadyQueue()
+        2 * cancellationHandler.cancellationRequested >>> [false, true]
+        Task a = task("a")
+        Task b = task("b")
+        addToGraphAndPopulate([a, b])
+
+        expect:
+        executedTasks == [a]
+    }
+
+    def "critical path scheduling executes tasks with the longest remaining path first"() {
+        given:
+        def durations = Mock(TaskDurationRepository)
+        executionPlan.useCriticalPathScheduling(Factories.constant(durations))
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        durations.getPreviousDuration(a) >> 15L
+        durations.getPreviousDuration(b) >> 10L
+        durations.getPreviousDuration(c) >> 10L
+
+        when:
+        addToGraphAndPopulate([a, c])
+
+        then:
+        executedTasks == [b, a, c]
+    }
+
+    def "critical path scheduling estimates tasks without previous duration"() {
+        given:
+        def durations = Mock(TaskDurationRepository)
+        executionPlan.useCriticalPathScheduling(Factories.constant(durations))
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        durations.getPreviousDuration(a) >> 15L
+        durations.getPreviousDuration(b) >> null
+        durations.getPreviousDuration(c) >> 15L
+
+        when:
+        addToGraphAndPopulate([a, c])
+
+        then:
+        executedTasks == [b, a, c]
+    }
+
+    private void useReadyQueue() {
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), true)
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
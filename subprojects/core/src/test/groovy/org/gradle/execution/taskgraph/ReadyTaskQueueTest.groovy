@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph
+
+import org.gradle.api.internal.TaskInternal
+import spock.lang.Specification
+
+class ReadyTaskQueueTest extends Specification {
+    def queue = new ReadyTaskQueue()
+
+    def "tasks without dependencies are ready in plan order"() {
+        def b = taskInfo("b")
+        def a = taskInfo("a")
+
+        when:
+        queue.initialize([b, a])
+
+        then:
+        readyTasks() == [b, a]
+    }
+
+    def "task becomes ready when its last dependency completes"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        def c = taskInfo("c")
+        c.addDependencySuccessor(a)
+        c.addMustSuccessor(b)
+
+        when:
+        queue.initialize([a, b, c])
+
+        then:
+        readyTasks() == [a, b]
+
+        when:
+        complete(a)
+
+        then:
+        readyTasks() == [b]
+
+        when:
+        complete(b)
+
+        then:
+        readyTasks() == [c]
+    }
+
+    def "ready tasks with higher priority are handed out first"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        def c = taskInfo("c")
+
+        when:
+        queue.initialize([a, b, c], [(b): 10L, (c): 5L])
+
+        then:
+        readyTasks() == [b, c, a]
+    }
+
+    def "dependencies that are already complete are ignored"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        b.addDependencySuccessor(a)
+        a.mustNotRun()
+
+        when:
+        queue.initialize([a, b])
+
+        then:
+        readyTasks() == [b]
+    }
+
+    def "polls dependencies that are not part of the plan"() {
+        def external = taskInfo("external")
+        def a = taskInfo("a")
+        a.addDependencySuccessor(external)
+
+        when:
+        queue.initialize([a])
+
+        then:
+        readyTasks() == []
+
+        when:
+        external.doNotRequire()
+
+        then:
+        readyTasks() == [a]
+    }
+
+    def "rebuild picks up tasks that were reopened"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        b.addDependencySuccessor(a)
+        a.mustNotRun()
+        queue.initialize([a, b])
+
+        when:
+        a.enforceRun()
+        queue.rebuild()
+
+        then:
+        readyTasks() == [a]
+    }
+
+    def "removing a task from the iterator takes it out of the queue"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        queue.initialize([a, b])
+
+        when:
+        def iterator = queue.iterator()
+        iterator.next()
+        iterator.remove()
+
+        then:
+        readyTasks() == [b]
+    }
+
+    def "has waiting tasks until every task has been handed out"() {
+        def a = taskInfo("a")
+        def b = taskInfo("b")
+        b.addDependencySuccessor(a)
+        queue.initialize([a, b])
+
+        expect:
+        queue.hasWaitingTasks()
+
+        when:
+        complete(a)
+
+        then:
+        queue.hasWaitingTasks()
+
+        when:
+        complete(b)
+
+        then:
+        !queue.hasWaitingTasks()
+    }
+
+    private void complete(TaskInfo taskInfo) {
+        def iterator = queue.iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next() == taskInfo) {
+                iterator.remove()
+            }
+        }
+        taskInfo.startExecution()
+        taskInfo.finishExecution()
+        queue.taskComplete(taskInfo)
+    }
+
+    private List<TaskInfo> readyTasks() {
+        def tasks = []
+        def iterator = queue.iterator()
+        while (iterator.hasNext()) {
+            tasks << iterator.next()
+        }
+        return tasks
+    }
+
+    private TaskInfo taskInfo(String name) {
+        TaskInternal task = Mock()
+        task.path >> ":$name"
+        task.compareTo(_ as TaskInternal) >> { TaskInternal other ->
+            return ":$name".toString().compareTo(other.path)
+        }
+        def taskInfo = new TaskInfo(task)
+        taskInfo.require()
+        return taskInfo
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+
+class DefaultContentHasherFactoryTest extends Specification {
+    def "uses MD5 by default"() {
+        expect:
+        new DefaultContentHasherFactory().algorithm == DefaultContentHasherFactory.MD5
+        hash(new DefaultContentHasherFactory()) == hash(new DefaultContentHasherFactory("md5"))
+    }
+
+    def "can use a fast hash function instead"() {
+        def factory = new DefaultContentHasherFactory("murmur3-128")
+
+        expect:
+        factory.algorithm == DefaultContentHasherFactory.MURMUR3_128
+        hash(factory).length() == 16
+        hash(factory) == hash(new DefaultContentHasherFactory(DefaultContentHasherFactory.MURMUR3_128))
+        hash(factory) != hash(new DefaultContentHasherFactory())
+    }
+
+    def "fails for unsupported algorithm"() {
+        when:
+        new DefaultContentHasherFactory("CRC32")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unsupported hash algorithm 'CRC32'. Supported algorithms are MD5 and MURMUR3-128."
+    }
+
+    private static HashCode hash(ContentHasherFactory factory) {
+        def hasher = factory.create()
+        hasher.putString("content")
+        return hasher.hash()
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+@Unroll
+class DefaultFileHasherTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def "mapped and streamed files get the same #algorithm hash"() {
+        def hasherFactory = new DefaultContentHasherFactory(algorithm)
+        def streamHasher = new DefaultStreamHasher(hasherFactory)
+        def small = tmpDir.file("small")
+        def large = tmpDir.file("large")
+        def content = new byte[100000]
+        new Random(1234L).nextBytes(content)
+        small.bytes = content[0..<100] as byte[]
+        large.bytes = content
+
+        def streaming = new DefaultFileHasher(streamHasher)
+        def mapping = new DefaultFileHasher(streamHasher, hasherFactory, 1000)
+
+        expect:
+        mapping.hash(large) == streaming.hash(large)
+        mapping.hash(small) == streaming.hash(small)
+        mapping.hash(large) != mapping.hash(small)
+
+        and:
+        // Mapped files are released straight away
+        large.delete()
+
+        where:
+        algorithm << [DefaultContentHasherFactory.MD5, DefaultContentHasherFactory.MURMUR3_128]
+    }
+
+    def "empty file can be mapped"() {
+        def hasherFactory = new DefaultContentHasherFactory()
+        def streamHasher = new DefaultStreamHasher(hasherFactory)
+        def file = tmpDir.createFile("empty")
+
+        expect:
+        new DefaultFileHasher(streamHasher, hasherFactory, 0).hash(file) == new DefaultFileHasher(streamHasher).hash(file)
+    }
+
+    def "fails to hash missing file"() {
+        def file = tmpDir.file("missing")
+
+        when:
+        new DefaultFileHasher(new DefaultStreamHasher(new DefaultContentHasherFactory())).hash(file)
+
+        then:
+        def e = thrown(UncheckedIOException)
+        e.message == "Failed to create hash for file '$file'."
+    }
+}
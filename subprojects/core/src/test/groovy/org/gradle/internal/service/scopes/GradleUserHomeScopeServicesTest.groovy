@@ -28,6 +28,7 @@ import org.gradle.api.internal.changedetection.state.ValueSnapshotter
 import org.gradle.api.internal.classpath.ModuleRegistry
 import org.gradle.api.internal.file.TemporaryFileProvider
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory
+import org.gradle.api.internal.file.collections.ParallelDirectoryWalker
 import org.gradle.api.internal.initialization.loadercache.ClassLoaderCache
 import org.gradle.cache.CacheDecorator
 import org.gradle.cache.PersistentCache
@@ -43,6 +44,7 @@ import org.gradle.internal.classpath.CachedClasspathTransformer
 import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.event.ListenerManager
+import org.gradle.internal.filewatch.FileWatcherFactory
 import org.gradle.internal.hash.ContentHasherFactory
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.StreamHasher
@@ -119,6 +121,8 @@ class GradleUserHomeScopeServicesTest extends Specification {
         expectParentServiceLocated(DirectoryFileTreeFactory)
         expectParentServiceLocated(ContentHasherFactory)
         expectParentServiceLocated(StreamHasher)
+        expectParentServiceLocated(FileWatcherFactory)
+        expectParentServiceLocated(ParallelDirectoryWalker)
 
         expect:
         findsAndCachesService(serviceType)
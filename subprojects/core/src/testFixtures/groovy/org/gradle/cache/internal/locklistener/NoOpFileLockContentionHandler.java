@@ -20,6 +20,8 @@ public class NoOpFileLockContentionHandler implements FileLockContentionHandler
 
     public void start(long lockId, Runnable whenContended) {}
 
+    public void watch(long lockId, FileLockHandoffChannel channel) {}
+
     public void stop(long lockId) {}
 
     public int reservePort() {
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Compares reading a set of POMs into a DOM, as the POM parser used to do, with reading them using {@link PomDocumentParser}.
+ *
+ * The POMs are read from the directory given by the {@code org.gradle.benchmark.pomDirectory} system property, which defaults to the
+ * module cache in the Gradle user home directory. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class PomParserBenchmark {
+    private static final int MAX_POMS = 1000;
+
+    private final List<byte[]> poms = new ArrayList<byte[]>();
+    private DocumentBuilder documentBuilder;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+        File defaultDir = new File(System.getProperty("user.home"), ".gradle/caches/modules-2/files-2.1");
+        File pomDir = new File(System.getProperty("org.gradle.benchmark.pomDirectory", defaultDir.getAbsolutePath()));
+        Collection<File> files = FileUtils.listFiles(pomDir, new String[]{"pom"}, true);
+        for (File file : files) {
+            if (poms.size() == MAX_POMS) {
+                break;
+            }
+            poms.add(FileUtils.readFileToByteArray(file));
+        }
+        if (poms.isEmpty()) {
+            throw new IllegalStateException("No POMs found in " + pomDir);
+        }
+
+        final byte[] entities = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setValidating(false);
+        documentBuilder = factory.newDocumentBuilder();
+        documentBuilder.setEntityResolver(new EntityResolver() {
+            public InputSource resolveEntity(String publicId, String systemId) {
+                if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                    return new InputSource(new ByteArrayInputStream(entities));
+                }
+                return null;
+            }
+        });
+    }
+
+    @Benchmark
+    public void dom(Blackhole blackhole) throws Exception {
+        for (byte[] pom : poms) {
+            Document document = documentBuilder.parse(new PomDocumentParser.AddDTDFilterInputStream(new ByteArrayInputStream(pom)), "pom.xml");
+            blackhole.consume(document);
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        for (byte[] pom : poms) {
+            blackhole.consume(PomDocumentParser.parse(new ByteArrayInputStream(pom), "pom.xml"));
+        }
+    }
+}
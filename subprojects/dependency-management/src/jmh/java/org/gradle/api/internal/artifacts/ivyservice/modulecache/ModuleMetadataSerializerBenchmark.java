@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.internal.component.external.descriptor.Artifact;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.descriptor.MutableModuleDescriptorState;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata;
+import org.gradle.internal.component.external.model.MavenDependencyMetadata;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures reading module metadata from the module metadata cache, as happens for every module in the graph when resolving with a warm cache.
+ * Compares using the dependencies of a single configuration, as resolution does, with using every dependency of the module.
+ * Run with {@code -prof gc} to compare the allocation rates.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ModuleMetadataSerializerBenchmark {
+    private static final MavenScope[] SCOPES = {MavenScope.Compile, MavenScope.Runtime, MavenScope.Test, MavenScope.Test, MavenScope.Provided};
+
+    @Param({"10", "100"})
+    int dependencyCount;
+
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+    private final ModuleMetadataSerializer serializer = new ModuleMetadataSerializer(new StringInterner());
+    private byte[] entry;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception {
+        ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId("org.gradle.benchmark", "module", "1.0");
+        List<DependencyMetadata> dependencies = new ArrayList<DependencyMetadata>();
+        for (int i = 0; i < dependencyCount; i++) {
+            List<Exclude> excludes = Collections.<Exclude>singletonList(new DefaultExclude(DefaultModuleIdentifier.newId("org.gradle.excluded", "excluded-" + i), new String[]{"runtime"}, "exact"));
+            dependencies.add(new MavenDependencyMetadata(SCOPES[i % SCOPES.length], i % 7 == 0, DefaultModuleVersionSelector.newSelector("org.gradle.dependency" + (i % 5), "dependency-" + i, "1." + i), Collections.<Artifact>emptyList(), excludes));
+        }
+        ModuleComponentResolveMetadata metadata = new DefaultMutableMavenModuleResolveMetadata(DefaultModuleVersionIdentifier.newId(id), id, new MutableModuleDescriptorState(id), "jar", false, dependencies).asImmutable();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        serializer.write(encoder, metadata);
+        encoder.flush();
+        entry = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public void readAndSelectRuntimeConfiguration(Blackhole blackhole) throws Exception {
+        ModuleComponentResolveMetadata metadata = read();
+        blackhole.consume(metadata.getConfiguration("runtime").getDependencies());
+    }
+
+    @Benchmark
+    public void readAndUseAllDependencies(Blackhole blackhole) throws Exception {
+        ModuleComponentResolveMetadata metadata = read();
+        for (DependencyMetadata dependency : metadata.getDependencies()) {
+            blackhole.consume(dependency);
+        }
+    }
+
+    private ModuleComponentResolveMetadata read() throws Exception {
+        return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(entry)), moduleIdentifierFactory, null).asImmutable();
+    }
+}
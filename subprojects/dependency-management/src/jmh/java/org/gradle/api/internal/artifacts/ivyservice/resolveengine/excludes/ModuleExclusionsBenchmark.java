@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.Exclude;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures intersection and union of large sets of exclude rules, as happens when traversing a dependency graph with many exclude rules.
+ *
+ * The 'warm' benchmarks reuse the exclusions and caches of a single {@link ModuleExclusions} from several threads, as parallel resolution does.
+ * The 'cold' benchmarks create the exclusions from the exclude rules on each invocation.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ModuleExclusionsBenchmark {
+    private static final int EXCLUSION_COUNT = 50;
+    private static final String[] CONFIGURATIONS = {"default"};
+
+    @Param({"10", "100"})
+    int rulesPerExclusion;
+
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+    private final List<List<Exclude>> rules = new ArrayList<List<Exclude>>();
+    private final List<ModuleExclusion> exclusions = new ArrayList<ModuleExclusion>();
+    private ModuleExclusions moduleExclusions;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        Random random = new Random(42);
+        for (int i = 0; i < EXCLUSION_COUNT; i++) {
+            List<Exclude> excludes = new ArrayList<Exclude>();
+            for (int j = 0; j < rulesPerExclusion; j++) {
+                // Draw the rules from a pool that is small enough that the exclusions overlap
+                String group = "org.group" + random.nextInt(rulesPerExclusion);
+                String module = "module" + random.nextInt(rulesPerExclusion);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        excludes.add(exclude(group, "*"));
+                        break;
+                    case 1:
+                        excludes.add(exclude("*", module));
+                        break;
+                    default:
+                        excludes.add(exclude(group, module));
+                }
+            }
+            rules.add(excludes);
+        }
+        moduleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        exclusions.addAll(createExclusions(moduleExclusions));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void intersectWarm(Blackhole blackhole) {
+        intersect(moduleExclusions, exclusions, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void unionWarm(Blackhole blackhole) {
+        union(moduleExclusions, exclusions, blackhole);
+    }
+
+    @Benchmark
+    public void intersectCold(Blackhole blackhole) {
+        ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        intersect(moduleExclusions, createExclusions(moduleExclusions), blackhole);
+    }
+
+    @Benchmark
+    public void unionCold(Blackhole blackhole) {
+        ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        union(moduleExclusions, createExclusions(moduleExclusions), blackhole);
+    }
+
+    private static void intersect(ModuleExclusions moduleExclusions, List<ModuleExclusion> exclusions, Blackhole blackhole) {
+        for (int i = 1; i < exclusions.size(); i++) {
+            blackhole.consume(moduleExclusions.intersect(exclusions.get(i - 1), exclusions.get(i)));
+        }
+    }
+
+    private static void union(ModuleExclusions moduleExclusions, List<ModuleExclusion> exclusions, Blackhole blackhole) {
+        for (int i = 1; i < exclusions.size(); i++) {
+            blackhole.consume(moduleExclusions.union(exclusions.get(i - 1), exclusions.get(i)));
+        }
+    }
+
+    private List<ModuleExclusion> createExclusions(ModuleExclusions moduleExclusions) {
+        List<ModuleExclusion> result = new ArrayList<ModuleExclusion>(rules.size());
+        for (List<Exclude> excludes : rules) {
+            result.add(moduleExclusions.excludeAny(excludes));
+        }
+        return result;
+    }
+
+    private static Exclude exclude(String group, String module) {
+        ModuleIdentifier moduleId = DefaultModuleIdentifier.newId(group, module);
+        return new DefaultExclude(moduleId, CONFIGURATIONS, PatternMatchers.EXACT);
+    }
+}
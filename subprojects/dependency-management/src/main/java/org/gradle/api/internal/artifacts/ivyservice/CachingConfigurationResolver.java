@@ -0,0 +1,777 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.LenientConfiguration;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.ResolutionStrategy;
+import org.gradle.api.artifacts.ResolveException;
+import org.gradle.api.artifacts.ResolvedArtifact;
+import org.gradle.api.artifacts.ResolvedConfiguration;
+import org.gradle.api.artifacts.ResolvedDependency;
+import org.gradle.api.artifacts.component.ComponentArtifactIdentifier;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeContainer;
+import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultModuleVersionSelector;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.Module;
+import org.gradle.api.internal.artifacts.ResolveArtifactsBuildOperationType;
+import org.gradle.api.internal.artifacts.ResolverResults;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.CachingModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ConfiguredModuleComponentRepository;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ErrorHandlingArtifactResolver;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryChainModuleSource;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ComponentResolversChain;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.DefaultVisitedArtifactResults;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ParallelResolveArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactResults;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactsResults;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusions;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResultGraphVisitor;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.repositories.resolver.MavenResolver;
+import org.gradle.api.internal.artifacts.result.DefaultResolutionResult;
+import org.gradle.api.internal.artifacts.transform.ArtifactTransforms;
+import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.EmptySchema;
+import org.gradle.api.internal.attributes.ImmutableAttributes;
+import org.gradle.api.internal.component.ArtifactType;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.specs.Specs;
+import org.gradle.internal.Describables;
+import org.gradle.internal.Factories;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier;
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactMetadata;
+import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
+import org.gradle.internal.component.model.ComponentArtifactMetadata;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DefaultVariantMetadata;
+import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.component.model.IvyArtifactName;
+import org.gradle.internal.component.model.LocalComponentDependencyMetadata;
+import org.gradle.internal.component.model.ModuleSource;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hasher;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.resolve.ArtifactResolveException;
+import org.gradle.internal.resolve.resolver.ArtifactResolver;
+import org.gradle.internal.resolve.result.BuildableArtifactResolveResult;
+import org.gradle.internal.resolve.result.BuildableArtifactSetResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentIdResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reuses the resolved graph and artifacts of a configuration from a previous build, when the inputs to the resolution have not changed.
+ *
+ * Only configurations whose dependencies are all external modules, resolved from remote Maven repositories without any resolution rules, are cached.
+ * A graph is stored once its artifacts have been visited, so configurations that are only resolved for their graph are not cached.
+ *
+ * A stored graph is reused when the repositories still select the same version for each dynamic selector and the same descriptor for each changing module
+ * in the graph. These checks go through the module caches, so that the cache policy of the configuration applies as for any other resolution.
+ * The files of a reused graph are resolved through the module caches when they are first required.
+ *
+ * A reused graph only holds the resolution result and the artifacts of the configuration. Queries that need more than that, such as those of the
+ * legacy {@link ResolvedConfiguration} or for the files of a subset of the dependencies, resolve the graph again without the cache.
+ */
+public class CachingConfigurationResolver implements ConfigurationResolver {
+    public static final String CACHE_GRAPHS_PROPERTY = "org.gradle.resolution.cacheGraphs";
+    private static final Logger LOGGER = Logging.getLogger(CachingConfigurationResolver.class);
+
+    private final ConfigurationResolver delegate;
+    private final ResolvedGraphCache cache;
+    private final RepositoryHandler repositories;
+    private final GlobalDependencyResolutionRules metadataHandler;
+    private final ResolveIvyFactory resolveIvyFactory;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final ArtifactTransforms artifactTransforms;
+    private final ArtifactTypeRegistry artifactTypeRegistry;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final boolean refreshDependencies;
+
+    public CachingConfigurationResolver(ConfigurationResolver delegate, ResolvedGraphCache cache, RepositoryHandler repositories, GlobalDependencyResolutionRules metadataHandler,
+                                        ResolveIvyFactory resolveIvyFactory, VersionSelectorScheme versionSelectorScheme, ArtifactTransforms artifactTransforms,
+                                        ArtifactTypeRegistry artifactTypeRegistry, ImmutableModuleIdentifierFactory moduleIdentifierFactory, BuildOperationExecutor buildOperationExecutor,
+                                        boolean refreshDependencies) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.repositories = repositories;
+        this.metadataHandler = metadataHandler;
+        this.resolveIvyFactory = resolveIvyFactory;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.artifactTransforms = artifactTransforms;
+        this.artifactTypeRegistry = artifactTypeRegistry;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.refreshDependencies = refreshDependencies;
+    }
+
+    @Override
+    public void resolveBuildDependencies(ConfigurationInternal configuration, ResolverResults result) {
+        delegate.resolveBuildDependencies(configuration, result);
+    }
+
+    @Override
+    public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
+        HashCode key = cacheKeyFor(configuration);
+        if (key == null) {
+            delegate.resolveGraph(configuration, results);
+            return;
+        }
+
+        if (!refreshDependencies) {
+            ResolvedGraphCache.CachedGraph cachedGraph = cache.getCachedGraph(key);
+            if (cachedGraph != null) {
+                ComponentResolversChain resolvers = createResolvers(configuration);
+                if (isUpToDate(cachedGraph, resolvers)) {
+                    LOGGER.debug("Using the cached dependency graph for {}.", configuration);
+                    CachedGraphState state = new CachedGraphState(configuration, createArtifactResults(cachedGraph, resolvers));
+                    results.graphResolved(new DefaultResolutionResult(Factories.constant(cachedGraph.getRoot())), new ResolvedLocalComponentsResultGraphVisitor(), state);
+                    results.retainState(state);
+                    return;
+                }
+            }
+        }
+
+        delegate.resolveGraph(configuration, results);
+        results.retainState(new PendingGraphState(key, results.getArtifactResolveState()));
+    }
+
+    @Override
+    public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
+        Object state = results.getArtifactResolveState();
+        if (state instanceof CachedGraphState) {
+            CachedGraphState cachedGraphState = (CachedGraphState) state;
+            results.artifactsResolved(new CachedGraphResolvedConfiguration(cachedGraphState), cachedGraphState);
+        } else if (state instanceof PendingGraphState) {
+            PendingGraphState pendingGraphState = (PendingGraphState) state;
+            results.retainState(pendingGraphState.delegateState);
+            delegate.resolveArtifacts(configuration, results);
+            if (!results.hasError()) {
+                RecordingArtifactSet recordingArtifactSet = new RecordingArtifactSet(pendingGraphState.key, configuration, results.getResolutionResult(), results.getVisitedArtifacts());
+                results.artifactsResolved(results.getResolvedConfiguration(), recordingArtifactSet);
+            }
+        } else {
+            delegate.resolveArtifacts(configuration, results);
+        }
+    }
+
+    private ComponentResolversChain createResolvers(ConfigurationInternal configuration) {
+        List<ResolutionAwareRepository> resolutionAwareRepositories = new ArrayList<ResolutionAwareRepository>();
+        for (ArtifactRepository repository : repositories) {
+            resolutionAwareRepositories.add((ResolutionAwareRepository) repository);
+        }
+        return new ComponentResolversChain(
+            Collections.singletonList(resolveIvyFactory.create(configuration.getResolutionStrategy(), resolutionAwareRepositories, metadataHandler.getComponentMetadataProcessor())),
+            artifactTypeRegistry);
+    }
+
+    private boolean isUpToDate(ResolvedGraphCache.CachedGraph cachedGraph, ComponentResolversChain resolvers) {
+        for (Map.Entry<ModuleComponentSelector, ModuleComponentIdentifier> entry : cachedGraph.getDynamicVersions().entrySet()) {
+            if (!entry.getValue().equals(selectVersion(entry.getKey(), resolvers))) {
+                return false;
+            }
+        }
+        for (Map.Entry<ModuleComponentIdentifier, BigInteger> entry : cachedGraph.getChangingModules().entrySet()) {
+            ComponentResolveMetadata metadata = resolveMetadata(entry.getKey(), true, resolvers);
+            if (metadata == null || !entry.getValue().equals(descriptorHashOf(metadata.getSource()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Selects a version for the given dynamic selector, using the module version lists of the module caches when they are still valid.
+     */
+    @Nullable
+    private static ComponentIdentifier selectVersion(ModuleComponentSelector selector, ComponentResolversChain resolvers) {
+        LocalComponentDependencyMetadata dependency = new LocalComponentDependencyMetadata(selector, DefaultModuleVersionSelector.newSelector(selector.getGroup(), selector.getModule(), selector.getVersion()),
+            Dependency.DEFAULT_CONFIGURATION, ImmutableAttributes.EMPTY, null, Collections.<IvyArtifactName>emptySet(), Collections.<Exclude>emptyList(), false, false, true);
+        DefaultBuildableComponentIdResolveResult result = new DefaultBuildableComponentIdResolveResult();
+        resolvers.getComponentIdResolver().resolve(dependency, result);
+        if (!result.hasResult() || result.getFailure() != null) {
+            return null;
+        }
+        return result.getId();
+    }
+
+    /**
+     * Resolves the metadata of the given module, using the module metadata cache when its entry is still valid.
+     */
+    @Nullable
+    private static ComponentResolveMetadata resolveMetadata(ModuleComponentIdentifier id, boolean changing, ComponentResolversChain resolvers) {
+        ComponentOverrideMetadata overrideMetadata = changing ? new DefaultComponentOverrideMetadata().withChanging() : new DefaultComponentOverrideMetadata();
+        DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+        resolvers.getComponentResolver().resolve(id, overrideMetadata, result);
+        if (!result.hasResult() || result.getFailure() != null) {
+            return null;
+        }
+        return result.getMetaData();
+    }
+
+    @Nullable
+    private static BigInteger descriptorHashOf(ModuleSource moduleSource) {
+        ModuleSource source = moduleSource;
+        if (source instanceof RepositoryChainModuleSource) {
+            source = ((RepositoryChainModuleSource) source).getDelegate();
+        }
+        if (source instanceof CachingModuleComponentRepository.CachingModuleSource) {
+            return ((CachingModuleComponentRepository.CachingModuleSource) source).getDescriptorHash();
+        }
+        return null;
+    }
+
+    /**
+     * Creates the artifacts of a cached graph. Each run of consecutive artifacts of the same component becomes a single variant of that component,
+     * as it was when the graph was stored.
+     */
+    private VisitedArtifactsResults createArtifactResults(ResolvedGraphCache.CachedGraph cachedGraph, ComponentResolversChain resolvers) {
+        ArtifactResolver artifactResolver = new ErrorHandlingArtifactResolver(new CachedGraphArtifactResolver(resolvers, cachedGraph.getChangingModules().keySet()));
+        Map<ComponentArtifactIdentifier, ResolvableArtifact> allResolvedArtifacts = new HashMap<ComponentArtifactIdentifier, ResolvableArtifact>();
+        List<ArtifactSet> artifactSets = new ArrayList<ArtifactSet>();
+        for (List<ComponentArtifactMetadata> artifacts : groupByComponent(cachedGraph.getArtifacts())) {
+            ModuleComponentIdentifier componentId = (ModuleComponentIdentifier) artifacts.get(0).getComponentId();
+            artifactSets.add(DefaultArtifactSet.singleVariant(componentId, moduleIdentifierFactory.moduleWithVersion(componentId.getGroup(), componentId.getModule(), componentId.getVersion()),
+                Describables.of(componentId), new LinkedHashSet<ComponentArtifactMetadata>(artifacts), null, ModuleExclusions.excludeNone(), EmptySchema.INSTANCE,
+                artifactResolver, allResolvedArtifacts, artifactTypeRegistry));
+        }
+        // The artifacts were stored in the order they were visited, so are already sorted
+        return new DefaultVisitedArtifactResults(ResolutionStrategy.SortOrder.DEFAULT, artifactSets);
+    }
+
+    private static List<List<ComponentArtifactMetadata>> groupByComponent(List<ModuleComponentArtifactIdentifier> artifactIds) {
+        List<List<ComponentArtifactMetadata>> groups = new ArrayList<List<ComponentArtifactMetadata>>();
+        List<ComponentArtifactMetadata> current = null;
+        for (ModuleComponentArtifactIdentifier artifactId : artifactIds) {
+            if (current == null || !current.get(0).getComponentId().equals(artifactId.getComponentIdentifier())) {
+                current = new ArrayList<ComponentArtifactMetadata>();
+                groups.add(current);
+            }
+            current.add(new DefaultModuleComponentArtifactMetadata(artifactId));
+        }
+        return groups;
+    }
+
+    private void storeGraph(HashCode key, ConfigurationInternal configuration, ResolutionResult result, List<ModuleComponentArtifactIdentifier> artifacts) {
+        ComponentResolversChain resolvers = createResolvers(configuration);
+
+        Map<ModuleComponentSelector, ModuleComponentIdentifier> dynamicVersions = new LinkedHashMap<ModuleComponentSelector, ModuleComponentIdentifier>();
+        for (DependencyResult dependency : result.getAllDependencies()) {
+            if (!(dependency.getRequested() instanceof ModuleComponentSelector)) {
+                continue;
+            }
+            ModuleComponentSelector selector = (ModuleComponentSelector) dependency.getRequested();
+            if (!dynamicVersions.containsKey(selector) && versionSelectorScheme.parseSelector(selector.getVersion()).isDynamic()) {
+                ComponentIdentifier selected = selectVersion(selector, resolvers);
+                if (!(selected instanceof ModuleComponentIdentifier)) {
+                    return;
+                }
+                dynamicVersions.put(selector, (ModuleComponentIdentifier) selected);
+            }
+        }
+
+        Set<ModuleIdentifier> declaredChanging = new HashSet<ModuleIdentifier>();
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (((ExternalModuleDependency) dependency).isChanging()) {
+                declaredChanging.add(moduleIdentifierFactory.module(dependency.getGroup(), dependency.getName()));
+            }
+        }
+
+        Map<ModuleComponentIdentifier, BigInteger> changingModules = new LinkedHashMap<ModuleComponentIdentifier, BigInteger>();
+        ResolvedComponentResult root = result.getRoot();
+        for (ResolvedComponentResult component : result.getAllComponents()) {
+            if (component == root || !(component.getId() instanceof ModuleComponentIdentifier)) {
+                continue;
+            }
+            ModuleComponentIdentifier id = (ModuleComponentIdentifier) component.getId();
+            boolean changing = declaredChanging.contains(component.getModuleVersion().getModule());
+            ComponentResolveMetadata metadata = resolveMetadata(id, changing, resolvers);
+            if (metadata == null) {
+                return;
+            }
+            if (changing || metadata.isChanging()) {
+                BigInteger descriptorHash = descriptorHashOf(metadata.getSource());
+                if (descriptorHash == null) {
+                    return;
+                }
+                changingModules.put(id, descriptorHash);
+            }
+        }
+
+        cache.cacheGraph(key, new ResolvedGraphCache.CachedGraph(root, artifacts, dynamicVersions, changingModules));
+    }
+
+    /**
+     * Calculates a hash of the inputs to the resolution of the given configuration, or returns null when the resolved graph of the configuration cannot be cached.
+     */
+    @Nullable
+    private HashCode cacheKeyFor(ConfigurationInternal configuration) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (resolutionStrategy.getDependencySubstitution().hasRules()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || metadataHandler.getDependencySubstitutionRules().hasRules()
+            || metadataHandler.getComponentMetadataProcessor().hasRules()
+            || metadataHandler.getModuleMetadataProcessor().getModuleReplacements().hasReplacements()) {
+            return null;
+        }
+
+        Hasher hasher = Hashing.md5().newHasher();
+        hasher.putString(configuration.getIdentityPath().getPath());
+        Module module = configuration.getModule();
+        putNullableString(hasher, module.getGroup());
+        putNullableString(hasher, module.getName());
+        putNullableString(hasher, module.getVersion());
+        putNullableString(hasher, module.getStatus());
+        putNullableString(hasher, module.getProjectPath());
+
+        for (ArtifactRepository repository : repositories) {
+            if (!(repository instanceof ResolutionAwareRepository)) {
+                return null;
+            }
+            ConfiguredModuleComponentRepository resolver = ((ResolutionAwareRepository) repository).createResolver();
+            // Local repositories are not cached, and Ivy descriptors can declare changing dependencies
+            if (resolver.isLocal() || !(resolver instanceof MavenResolver)) {
+                return null;
+            }
+            hasher.putString(resolver.getId());
+        }
+
+        for (Configuration conf : configuration.getHierarchy()) {
+            hasher.putString(conf.getName());
+            hasher.putBoolean(conf.isTransitive());
+            putExcludeRules(hasher, conf.getExcludeRules());
+        }
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return null;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            putNullableString(hasher, moduleDependency.getGroup());
+            hasher.putString(moduleDependency.getName());
+            putNullableString(hasher, moduleDependency.getVersion());
+            putNullableString(hasher, moduleDependency.getTargetConfiguration());
+            hasher.putBoolean(moduleDependency.isTransitive());
+            hasher.putBoolean(moduleDependency.isForce());
+            hasher.putBoolean(moduleDependency.isChanging());
+            putExcludeRules(hasher, moduleDependency.getExcludeRules());
+            hasher.putInt(moduleDependency.getArtifacts().size());
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                hasher.putString(artifact.getName());
+                putNullableString(hasher, artifact.getType());
+                putNullableString(hasher, artifact.getExtension());
+                putNullableString(hasher, artifact.getClassifier());
+                putNullableString(hasher, artifact.getUrl());
+            }
+        }
+
+        ImmutableAttributes attributes = configuration.getAttributes().asImmutable();
+        for (Attribute<?> attribute : attributes.keySet()) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            hasher.putString(String.valueOf(attributes.getAttribute(attribute)));
+        }
+
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        hasher.putString(resolutionStrategy.getSortOrder().name());
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            putNullableString(hasher, forcedModule.getGroup());
+            hasher.putString(forcedModule.getName());
+            putNullableString(hasher, forcedModule.getVersion());
+        }
+        return hasher.hash();
+    }
+
+    private static void putExcludeRules(Hasher hasher, Set<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            putNullableString(hasher, excludeRule.getGroup());
+            putNullableString(hasher, excludeRule.getModule());
+        }
+    }
+
+    private static void putNullableString(Hasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putBoolean(false);
+        } else {
+            hasher.putBoolean(true);
+            hasher.putString(value);
+        }
+    }
+
+    /**
+     * The state of a configuration whose graph has been resolved but not yet stored.
+     */
+    private static class PendingGraphState {
+        private final HashCode key;
+        private final Object delegateState;
+
+        PendingGraphState(HashCode key, Object delegateState) {
+            this.key = key;
+            this.delegateState = delegateState;
+        }
+    }
+
+    /**
+     * Stores the graph of a configuration the first time all of its artifacts are visited, when these artifacts can be created again from the module caches.
+     */
+    private class RecordingArtifactSet implements VisitedArtifactSet {
+        private final HashCode key;
+        private final ConfigurationInternal configuration;
+        private final ResolutionResult resolutionResult;
+        private final VisitedArtifactSet delegate;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        RecordingArtifactSet(HashCode key, ConfigurationInternal configuration, ResolutionResult resolutionResult, VisitedArtifactSet delegate) {
+            this.key = key;
+            this.configuration = configuration;
+            this.resolutionResult = resolutionResult;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public SelectedArtifactSet select(Spec<? super Dependency> dependencySpec, AttributeContainerInternal requestedAttributes, Spec<? super ComponentIdentifier> componentSpec, boolean allowNoMatchingVariant) {
+            final SelectedArtifactSet selected = delegate.select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant);
+            if (dependencySpec != Specs.SATISFIES_ALL || componentSpec != Specs.SATISFIES_ALL || !requestedAttributes.asImmutable().equals(configuration.getAttributes().asImmutable())) {
+                return selected;
+            }
+            return new SelectedArtifactSet() {
+                @Override
+                public void collectBuildDependencies(BuildDependenciesVisitor visitor) {
+                    selected.collectBuildDependencies(visitor);
+                }
+
+                @Override
+                public void visitArtifacts(ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                    if (recorded.get()) {
+                        selected.visitArtifacts(visitor, continueOnSelectionFailure);
+                        return;
+                    }
+                    ArtifactRecorder recorder = new ArtifactRecorder(visitor);
+                    selected.visitArtifacts(recorder, continueOnSelectionFailure);
+                    List<ModuleComponentArtifactIdentifier> artifacts = recorder.getArtifacts();
+                    if (artifacts != null && recorded.compareAndSet(false, true)) {
+                        storeGraph(key, configuration, resolutionResult, artifacts);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Records the artifacts visited by another visitor, and whether they can be created again from their identifiers alone.
+     */
+    private class ArtifactRecorder implements ArtifactVisitor {
+        private final ArtifactVisitor delegate;
+        private final List<ModuleComponentArtifactIdentifier> artifacts = new ArrayList<ModuleComponentArtifactIdentifier>();
+        private final List<AttributeContainer> variants = new ArrayList<AttributeContainer>();
+        private boolean replayable = true;
+
+        ArtifactRecorder(ArtifactVisitor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void visitArtifact(AttributeContainer variant, ResolvableArtifact artifact) {
+            if (artifact.getId() instanceof DefaultModuleComponentArtifactIdentifier) {
+                artifacts.add((ModuleComponentArtifactIdentifier) artifact.getId());
+                variants.add(variant);
+            } else {
+                replayable = false;
+            }
+            delegate.visitArtifact(variant, artifact);
+        }
+
+        @Override
+        public boolean requireArtifactFiles() {
+            return delegate.requireArtifactFiles();
+        }
+
+        @Override
+        public boolean includeFiles() {
+            return delegate.includeFiles();
+        }
+
+        @Override
+        public void visitFile(ComponentArtifactIdentifier artifactIdentifier, AttributeContainer variant, File file) {
+            replayable = false;
+            delegate.visitFile(artifactIdentifier, variant, file);
+        }
+
+        @Override
+        public void visitFailure(Throwable failure) {
+            replayable = false;
+            delegate.visitFailure(failure);
+        }
+
+        /**
+         * Returns the visited artifacts, or null when the variant of some artifact would not be the same when created from the module caches,
+         * for example because it was transformed.
+         */
+        @Nullable
+        List<ModuleComponentArtifactIdentifier> getArtifacts() {
+            if (!replayable) {
+                return null;
+            }
+            int index = 0;
+            for (List<ComponentArtifactMetadata> group : groupByComponent(artifacts)) {
+                ImmutableAttributes attributes = artifactTypeRegistry.mapAttributesFor(new DefaultVariantMetadata(Describables.of(group.get(0).getComponentId()), ImmutableAttributes.EMPTY, new LinkedHashSet<ComponentArtifactMetadata>(group)));
+                for (int i = 0; i < group.size(); i++, index++) {
+                    AttributeContainer variant = variants.get(index);
+                    if (!(variant instanceof AttributeContainerInternal) || !((AttributeContainerInternal) variant).asImmutable().equals(attributes)) {
+                        return null;
+                    }
+                }
+            }
+            return artifacts;
+        }
+    }
+
+    /**
+     * Resolves the artifacts of a cached graph, resolving the metadata of their component from the module caches the first time one of its artifacts is required.
+     */
+    private static class CachedGraphArtifactResolver implements ArtifactResolver {
+        private final ComponentResolversChain resolvers;
+        private final Set<ModuleComponentIdentifier> changingModules;
+        private final ConcurrentMap<ComponentIdentifier, ModuleSource> moduleSources = new ConcurrentHashMap<ComponentIdentifier, ModuleSource>();
+
+        CachedGraphArtifactResolver(ComponentResolversChain resolvers, Set<ModuleComponentIdentifier> changingModules) {
+            this.resolvers = resolvers;
+            this.changingModules = changingModules;
+        }
+
+        @Override
+        public void resolveArtifactsWithType(ComponentResolveMetadata component, ArtifactType artifactType, BuildableArtifactSetResolveResult result) {
+            // The given metadata has been resolved already, so carries its source
+            resolvers.getArtifactResolver().resolveArtifactsWithType(component, artifactType, result);
+        }
+
+        @Override
+        public void resolveArtifact(ComponentArtifactMetadata artifact, ModuleSource moduleSource, BuildableArtifactResolveResult result) {
+            ModuleSource componentSource = moduleSourceFor(artifact, result);
+            if (componentSource != null) {
+                resolvers.getArtifactResolver().resolveArtifact(artifact, componentSource, result);
+            }
+        }
+
+        /**
+         * Returns the source of the component of the given artifact, or null when the metadata of the component could not be resolved.
+         * In that case, the failure is reported to the given result.
+         */
+        @Nullable
+        private ModuleSource moduleSourceFor(ComponentArtifactMetadata artifact, BuildableArtifactResolveResult artifactResult) {
+            ModuleComponentIdentifier id = (ModuleComponentIdentifier) artifact.getComponentId();
+            ModuleSource moduleSource = moduleSources.get(id);
+            if (moduleSource == null) {
+                ComponentOverrideMetadata overrideMetadata = changingModules.contains(id) ? new DefaultComponentOverrideMetadata().withChanging() : new DefaultComponentOverrideMetadata();
+                DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+                resolvers.getComponentResolver().resolve(id, overrideMetadata, result);
+                if (result.getFailure() != null) {
+                    artifactResult.failed(new ArtifactResolveException(artifact.getId(), result.getFailure()));
+                    return null;
+                }
+                moduleSource = result.getMetaData().getSource();
+                moduleSources.put(id, moduleSource);
+            }
+            return moduleSource;
+        }
+    }
+
+    /**
+     * The artifacts of a configuration whose graph was loaded from the cache. Falls back to resolving the graph again for queries that need more than the artifacts.
+     */
+    private class CachedGraphState implements VisitedArtifactSet {
+        private final ConfigurationInternal configuration;
+        private final VisitedArtifactsResults artifactResults;
+        private ResolverResults fullResults;
+
+        CachedGraphState(ConfigurationInternal configuration, VisitedArtifactsResults artifactResults) {
+            this.configuration = configuration;
+            this.artifactResults = artifactResults;
+        }
+
+        /**
+         * Resolves the graph and artifacts of the configuration again, without the cache. This is as expensive as resolving the configuration
+         * without the cache, and is only required by queries that need more than the files of the configuration, such as those of the legacy
+         * {@link ResolvedConfiguration}. The results are kept, so the graph is resolved again at most once per configuration.
+         */
+        synchronized ResolverResults getFullResults() {
+            if (fullResults == null) {
+                DefaultResolverResults results = new DefaultResolverResults();
+                delegate.resolveGraph(configuration, results);
+                delegate.resolveArtifacts(configuration, results);
+                fullResults = results;
+            }
+            return fullResults;
+        }
+
+        @Override
+        public SelectedArtifactSet select(final Spec<? super Dependency> dependencySpec, final AttributeContainerInternal requestedAttributes, final Spec<? super ComponentIdentifier> componentSpec, final boolean allowNoMatchingVariant) {
+            if (dependencySpec != Specs.SATISFIES_ALL) {
+                return new SelectedArtifactSet() {
+                    @Override
+                    public void collectBuildDependencies(BuildDependenciesVisitor visitor) {
+                        // Only configurations whose dependencies are all external modules are cached, and these have no build dependencies
+                    }
+
+                    @Override
+                    public void visitArtifacts(ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                        getFullResults().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant).visitArtifacts(visitor, continueOnSelectionFailure);
+                    }
+                };
+            }
+
+            final SelectedArtifactResults selected = artifactResults.select(componentSpec, artifactTransforms.variantSelector(requestedAttributes, allowNoMatchingVariant));
+            return new SelectedArtifactSet() {
+                @Override
+                public void collectBuildDependencies(BuildDependenciesVisitor visitor) {
+                    selected.getArtifacts().collectBuildDependencies(visitor);
+                }
+
+                @Override
+                public void visitArtifacts(final ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                    buildOperationExecutor.run(new RunnableBuildOperation() {
+                        @Override
+                        public void run(BuildOperationContext context) {
+                            ParallelResolveArtifactSet.wrap(selected.getArtifacts(), buildOperationExecutor).visit(visitor);
+                            context.setResult(ResolveArtifactsBuildOperationType.RESULT);
+                        }
+
+                        @Override
+                        public BuildOperationDescriptor.Builder description() {
+                            String displayName = "Resolve files of " + configuration.getIdentityPath();
+                            return BuildOperationDescriptor
+                                .displayName(displayName)
+                                .progressDisplayName(displayName)
+                                .details(new ResolveArtifactsBuildOperationType.DetailsImpl(configuration.getPath()));
+                        }
+                    });
+                }
+            };
+        }
+    }
+
+    /**
+     * The legacy view of a configuration whose graph was loaded from the cache, which resolves the graph again when first queried.
+     */
+    private static class CachedGraphResolvedConfiguration implements ResolvedConfiguration {
+        private final CachedGraphState state;
+
+        CachedGraphResolvedConfiguration(CachedGraphState state) {
+            this.state = state;
+        }
+
+        private ResolvedConfiguration getDelegate() {
+            return state.getFullResults().getResolvedConfiguration();
+        }
+
+        @Override
+        public boolean hasError() {
+            // Graphs with failures are not cached
+            return false;
+        }
+
+        @Override
+        public LenientConfiguration getLenientConfiguration() {
+            return getDelegate().getLenientConfiguration();
+        }
+
+        @Override
+        public void rethrowFailure() throws ResolveException {
+        }
+
+        @Override
+        public Set<File> getFiles() throws ResolveException {
+            return getDelegate().getFiles();
+        }
+
+        @Override
+        public Set<File> getFiles(Spec<? super Dependency> dependencySpec) throws ResolveException {
+            return getDelegate().getFiles(dependencySpec);
+        }
+
+        @Override
+        public Set<ResolvedDependency> getFirstLevelModuleDependencies() throws ResolveException {
+            return getDelegate().getFirstLevelModuleDependencies();
+        }
+
+        @Override
+        public Set<ResolvedDependency> getFirstLevelModuleDependencies(Spec<? super Dependency> dependencySpec) throws ResolveException {
+            return getDelegate().getFirstLevelModuleDependencies(dependencySpec);
+        }
+
+        @Override
+        public Set<ResolvedArtifact> getResolvedArtifacts() throws ResolveException {
+            return getDelegate().getResolvedArtifacts();
+        }
+    }
+}
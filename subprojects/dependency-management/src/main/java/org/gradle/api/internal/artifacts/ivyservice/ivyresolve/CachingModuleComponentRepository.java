@@ -431,7 +431,7 @@ public class CachingModuleComponentRepository implements ModuleComponentReposito
         return new ArtifactAtRepositoryKey(delegate.getId(), artifact.getId());
     }
 
-    static class CachingModuleSource implements ModuleSource {
+    public static class CachingModuleSource implements ModuleSource {
         private final BigInteger descriptorHash;
         private final boolean changingModule;
         private final ModuleSource delegate;
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The parts of a POM that are used to resolve a module, as declared in the POM. Property references are not replaced.
+ *
+ * <p>Instances are immutable, and so can be shared by all {@link PomReader}s that read the same POM.</p>
+ */
+public final class PomDocument {
+    private final String rootElementName;
+    private final Coordinates coordinates;
+    private final String packaging;
+    private final String description;
+    private final Coordinates parent;
+    private final Coordinates relocation;
+    private final Map<String, String> properties;
+    private final List<Dependency> dependencies;
+    private final List<Dependency> dependencyMgts;
+    private final List<Profile> profiles;
+
+    PomDocument(String rootElementName, Coordinates coordinates, String packaging, String description, Coordinates parent, Coordinates relocation,
+                Map<String, String> properties, List<Dependency> dependencies, List<Dependency> dependencyMgts, List<Profile> profiles) {
+        this.rootElementName = rootElementName;
+        this.coordinates = coordinates;
+        this.packaging = packaging;
+        this.description = description;
+        this.parent = parent;
+        this.relocation = relocation;
+        this.properties = Collections.unmodifiableMap(properties);
+        this.dependencies = Collections.unmodifiableList(dependencies);
+        this.dependencyMgts = Collections.unmodifiableList(dependencyMgts);
+        this.profiles = Collections.unmodifiableList(profiles);
+    }
+
+    public String getRootElementName() {
+        return rootElementName;
+    }
+
+    public Coordinates getCoordinates() {
+        return coordinates;
+    }
+
+    public String getPackaging() {
+        return packaging;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the coordinates declared by the {@code parent} element, or null when the POM has no parent.
+     */
+    public Coordinates getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the coordinates declared by the {@code distributionManagement/relocation} element, or null when the POM is not relocated.
+     */
+    public Coordinates getRelocation() {
+        return relocation;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public List<Dependency> getDependencies() {
+        return dependencies;
+    }
+
+    public List<Dependency> getDependencyMgts() {
+        return dependencyMgts;
+    }
+
+    public List<Profile> getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * The group, artifact and version declared by some element. Each value is null when not declared.
+     */
+    public static final class Coordinates {
+        static final Coordinates NONE = new Coordinates(null, null, null);
+
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+
+        Coordinates(String groupId, String artifactId, String version) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+
+        public String getGroupId() {
+            return groupId;
+        }
+
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * A {@code dependency} element, from either the {@code dependencies} or the {@code dependencyManagement} element.
+     */
+    public static final class Dependency {
+        private final Coordinates coordinates;
+        private final String scope;
+        private final String type;
+        private final String classifier;
+        private final String optional;
+        private final List<Coordinates> exclusions;
+
+        Dependency(Coordinates coordinates, String scope, String type, String classifier, String optional, List<Coordinates> exclusions) {
+            this.coordinates = coordinates;
+            this.scope = scope;
+            this.type = type;
+            this.classifier = classifier;
+            this.optional = optional;
+            this.exclusions = Collections.unmodifiableList(exclusions);
+        }
+
+        public Coordinates getCoordinates() {
+            return coordinates;
+        }
+
+        public String getScope() {
+            return scope;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getClassifier() {
+            return classifier;
+        }
+
+        /**
+         * Returns the content of the {@code optional} element, or null when not declared.
+         */
+        public String getOptional() {
+            return optional;
+        }
+
+        public List<Coordinates> getExclusions() {
+            return exclusions;
+        }
+    }
+
+    /**
+     * A {@code profile} element.
+     */
+    public static final class Profile {
+        private final String id;
+        private final String activeByDefault;
+        private final String activationPropertyName;
+        private final Map<String, String> properties;
+        private final List<Dependency> dependencies;
+        private final List<Dependency> dependencyMgts;
+
+        Profile(String id, String activeByDefault, String activationPropertyName, Map<String, String> properties, List<Dependency> dependencies, List<Dependency> dependencyMgts) {
+            this.id = id;
+            this.activeByDefault = activeByDefault;
+            this.activationPropertyName = activationPropertyName;
+            this.properties = Collections.unmodifiableMap(properties);
+            this.dependencies = Collections.unmodifiableList(dependencies);
+            this.dependencyMgts = Collections.unmodifiableList(dependencyMgts);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the content of the {@code activation/activeByDefault} element, or null when not declared.
+         */
+        public String getActiveByDefault() {
+            return activeByDefault;
+        }
+
+        /**
+         * Returns the content of the {@code activation/property/name} element, or null when not declared.
+         */
+        public String getActivationPropertyName() {
+            return activationPropertyName;
+        }
+
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        public List<Dependency> getDependencies() {
+            return dependencies;
+        }
+
+        public List<Dependency> getDependencyMgts() {
+            return dependencyMgts;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.gradle.internal.resource.local.LocallyAvailableExternalResource;
+
+import java.io.File;
+
+/**
+ * Holds the parsed content of the parent and imported POMs used during a build. Many modules share the same few parent and BOM POMs, so these are
+ * parsed once per build rather than once for each module that refers to them.
+ *
+ * Entries are keyed by the location, length and modification time of the file, so that a POM that is replaced during the build is parsed again.
+ */
+public class PomDocumentCache {
+    private static final int MAX_ENTRIES = 2000;
+
+    private final Cache<Key, PomDocument> documents = CacheBuilder.newBuilder().maximumSize(MAX_ENTRIES).build();
+
+    public PomDocument get(LocallyAvailableExternalResource resource) {
+        File file = resource.getFile();
+        Key key = new Key(file.getAbsolutePath(), file.length(), file.lastModified());
+        PomDocument document = documents.getIfPresent(key);
+        if (document == null) {
+            document = PomReader.parse(resource);
+            documents.put(key, document);
+        }
+        return document;
+    }
+
+    long size() {
+        return documents.size();
+    }
+
+    private static class Key {
+        private final String path;
+        private final long length;
+        private final long lastModified;
+
+        Key(String path, long length, long lastModified) {
+            this.path = path;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return length == other.length && lastModified == other.lastModified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
@@ -0,0 +1,523 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a {@link PomDocument} from a POM, using a streaming parser. Only the elements that are used to resolve a module are kept,
+ * and the content of all other elements is skipped over without being retained.
+ *
+ * <p>Where an element that is expected to appear once is repeated, the first occurrence is used. The content of an element is the
+ * text directly contained in it, so the content of any nested elements is ignored.</p>
+ */
+public final class PomDocumentParser {
+    private static final String PROJECT = "project";
+    private static final String MODEL = "model";
+    private static final String GROUP_ID = "groupId";
+    private static final String ARTIFACT_ID = "artifactId";
+    private static final String VERSION = "version";
+    private static final String PACKAGING = "packaging";
+    private static final String DESCRIPTION = "description";
+    private static final String PARENT = "parent";
+    private static final String PROPERTIES = "properties";
+    private static final String DEPENDENCIES = "dependencies";
+    private static final String DEPENDENCY = "dependency";
+    private static final String DEPENDENCY_MGT = "dependencyManagement";
+    private static final String DISTRIBUTION_MGT = "distributionManagement";
+    private static final String RELOCATION = "relocation";
+    private static final String SCOPE = "scope";
+    private static final String TYPE = "type";
+    private static final String CLASSIFIER = "classifier";
+    private static final String OPTIONAL = "optional";
+    private static final String EXCLUSIONS = "exclusions";
+    private static final String EXCLUSION = "exclusion";
+    private static final String PROFILES = "profiles";
+    private static final String PROFILE = "profile";
+    private static final String PROFILE_ID = "id";
+    private static final String PROFILE_ACTIVATION = "activation";
+    private static final String PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT = "activeByDefault";
+    private static final String PROFILE_ACTIVATION_PROPERTY = "property";
+    private static final String PROFILE_ACTIVATION_PROPERTY_NAME = "name";
+
+    private static final byte[] M2_ENTITIES_RESOURCE;
+
+    static {
+        byte[] bytes;
+        try {
+            bytes = IOUtils.toByteArray(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+        M2_ENTITIES_RESOURCE = bytes;
+    }
+
+    private static final XMLResolver M2_ENTITY_RESOLVER = new XMLResolver() {
+        @Override
+        public Object resolveEntity(String publicId, String systemId, String baseUri, String namespace) {
+            if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                return new ByteArrayInputStream(M2_ENTITIES_RESOURCE);
+            }
+            return null;
+        }
+    };
+
+    // A factory is not guaranteed to be thread-safe, and may reuse the reader it previously created, so use one per thread
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            // Set the context classloader the bootstrap classloader, to work around the way that JAXP locates implementation classes
+            // This should ensure that the JAXP classes provided by the JVM are used, rather than some other implementation
+            ClassLoader original = Thread.currentThread().getContextClassLoader();
+            Thread.currentThread().setContextClassLoader(ClassLoaderUtils.getPlatformClassLoader());
+            try {
+                XMLInputFactory factory = XMLInputFactory.newInstance();
+                factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+                factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+                factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+                factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+                factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+                factory.setXMLResolver(M2_ENTITY_RESOLVER);
+                return factory;
+            } finally {
+                Thread.currentThread().setContextClassLoader(original);
+            }
+        }
+    };
+
+    private PomDocumentParser() {}
+
+    /**
+     * Parses the given POM. Stops reading at the root element when it is not a {@code project} element.
+     */
+    public static PomDocument parse(InputStream stream, String systemId) throws IOException, XMLStreamException {
+        XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(systemId, new AddDTDFilterInputStream(stream));
+        try {
+            while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                // Skip the prolog
+            }
+            String rootElementName = reader.getLocalName();
+            if (!PROJECT.equals(rootElementName) && !MODEL.equals(rootElementName)) {
+                return new PomDocument(rootElementName, PomDocument.Coordinates.NONE, null, null, null, null, Collections.<String, String>emptyMap(),
+                    Collections.<PomDocument.Dependency>emptyList(), Collections.<PomDocument.Dependency>emptyList(), Collections.<PomDocument.Profile>emptyList());
+            }
+            return readProject(reader, rootElementName);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static PomDocument readProject(XMLStreamReader reader, String rootElementName) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String packaging = null;
+        String description = null;
+        PomDocument.Coordinates parent = null;
+        PomDocument.Coordinates relocation = null;
+        boolean distributionMgtSeen = false;
+        Map<String, String> properties = null;
+        List<PomDocument.Dependency> dependencies = null;
+        List<PomDocument.Dependency> dependencyMgts = null;
+        List<PomDocument.Profile> profiles = null;
+
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (GROUP_ID.equals(name) && groupId == null) {
+                groupId = readText(reader);
+            } else if (ARTIFACT_ID.equals(name) && artifactId == null) {
+                artifactId = readText(reader);
+            } else if (VERSION.equals(name) && version == null) {
+                version = readText(reader);
+            } else if (PACKAGING.equals(name) && packaging == null) {
+                packaging = readText(reader);
+            } else if (DESCRIPTION.equals(name) && description == null) {
+                description = readText(reader);
+            } else if (PARENT.equals(name) && parent == null) {
+                parent = readCoordinates(reader);
+            } else if (DISTRIBUTION_MGT.equals(name) && !distributionMgtSeen) {
+                distributionMgtSeen = true;
+                relocation = readRelocation(reader);
+            } else if (PROPERTIES.equals(name) && properties == null) {
+                properties = readProperties(reader);
+            } else if (DEPENDENCIES.equals(name) && dependencies == null) {
+                dependencies = readDependencies(reader);
+            } else if (DEPENDENCY_MGT.equals(name) && dependencyMgts == null) {
+                dependencyMgts = readDependencyMgts(reader);
+            } else if (PROFILES.equals(name) && profiles == null) {
+                profiles = readProfiles(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        return new PomDocument(rootElementName, new PomDocument.Coordinates(groupId, artifactId, version), packaging, description, parent, relocation,
+            orEmpty(properties), orEmpty(dependencies), orEmpty(dependencyMgts), orEmpty(profiles));
+    }
+
+    private static PomDocument.Coordinates readRelocation(XMLStreamReader reader) throws XMLStreamException {
+        PomDocument.Coordinates relocation = null;
+        while (nextChild(reader)) {
+            if (RELOCATION.equals(reader.getLocalName()) && relocation == null) {
+                relocation = readCoordinates(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return relocation;
+    }
+
+    private static PomDocument.Coordinates readCoordinates(XMLStreamReader reader) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (GROUP_ID.equals(name) && groupId == null) {
+                groupId = readText(reader);
+            } else if (ARTIFACT_ID.equals(name) && artifactId == null) {
+                artifactId = readText(reader);
+            } else if (VERSION.equals(name) && version == null) {
+                version = readText(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return new PomDocument.Coordinates(groupId, artifactId, version);
+    }
+
+    private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> properties = new HashMap<String, String>();
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            properties.put(name, readText(reader));
+        }
+        return properties;
+    }
+
+    private static List<PomDocument.Dependency> readDependencyMgts(XMLStreamReader reader) throws XMLStreamException {
+        List<PomDocument.Dependency> dependencies = null;
+        while (nextChild(reader)) {
+            if (DEPENDENCIES.equals(reader.getLocalName()) && dependencies == null) {
+                dependencies = readDependencies(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return orEmpty(dependencies);
+    }
+
+    private static List<PomDocument.Dependency> readDependencies(XMLStreamReader reader) throws XMLStreamException {
+        List<PomDocument.Dependency> dependencies = new ArrayList<PomDocument.Dependency>();
+        while (nextChild(reader)) {
+            if (DEPENDENCY.equals(reader.getLocalName())) {
+                dependencies.add(readDependency(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return dependencies;
+    }
+
+    private static PomDocument.Dependency readDependency(XMLStreamReader reader) throws XMLStreamException {
+        String groupId = null;
+        String artifactId = null;
+        String version = null;
+        String scope = null;
+        String type = null;
+        String classifier = null;
+        String optional = null;
+        List<PomDocument.Coordinates> exclusions = null;
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (GROUP_ID.equals(name) && groupId == null) {
+                groupId = readText(reader);
+            } else if (ARTIFACT_ID.equals(name) && artifactId == null) {
+                artifactId = readText(reader);
+            } else if (VERSION.equals(name) && version == null) {
+                version = readText(reader);
+            } else if (SCOPE.equals(name) && scope == null) {
+                scope = readText(reader);
+            } else if (TYPE.equals(name) && type == null) {
+                type = readText(reader);
+            } else if (CLASSIFIER.equals(name) && classifier == null) {
+                classifier = readText(reader);
+            } else if (OPTIONAL.equals(name) && optional == null) {
+                optional = readText(reader);
+            } else if (EXCLUSIONS.equals(name) && exclusions == null) {
+                exclusions = readExclusions(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return new PomDocument.Dependency(new PomDocument.Coordinates(groupId, artifactId, version), scope, type, classifier, optional, orEmpty(exclusions));
+    }
+
+    private static List<PomDocument.Coordinates> readExclusions(XMLStreamReader reader) throws XMLStreamException {
+        List<PomDocument.Coordinates> exclusions = new ArrayList<PomDocument.Coordinates>();
+        while (nextChild(reader)) {
+            if (EXCLUSION.equals(reader.getLocalName())) {
+                exclusions.add(readCoordinates(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return exclusions;
+    }
+
+    private static List<PomDocument.Profile> readProfiles(XMLStreamReader reader) throws XMLStreamException {
+        List<PomDocument.Profile> profiles = new ArrayList<PomDocument.Profile>();
+        while (nextChild(reader)) {
+            if (PROFILE.equals(reader.getLocalName())) {
+                profiles.add(readProfile(reader));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return profiles;
+    }
+
+    private static PomDocument.Profile readProfile(XMLStreamReader reader) throws XMLStreamException {
+        String id = null;
+        Activation activation = null;
+        Map<String, String> properties = null;
+        List<PomDocument.Dependency> dependencies = null;
+        List<PomDocument.Dependency> dependencyMgts = null;
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (PROFILE_ID.equals(name) && id == null) {
+                id = readText(reader);
+            } else if (PROFILE_ACTIVATION.equals(name) && activation == null) {
+                activation = readActivation(reader);
+            } else if (PROPERTIES.equals(name) && properties == null) {
+                properties = readProperties(reader);
+            } else if (DEPENDENCIES.equals(name) && dependencies == null) {
+                dependencies = readDependencies(reader);
+            } else if (DEPENDENCY_MGT.equals(name) && dependencyMgts == null) {
+                dependencyMgts = readDependencyMgts(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        String activeByDefault = activation == null ? null : activation.activeByDefault;
+        String activationPropertyName = activation == null ? null : activation.propertyName;
+        return new PomDocument.Profile(id, activeByDefault, activationPropertyName, orEmpty(properties), orEmpty(dependencies), orEmpty(dependencyMgts));
+    }
+
+    private static Activation readActivation(XMLStreamReader reader) throws XMLStreamException {
+        Activation activation = new Activation();
+        boolean propertySeen = false;
+        while (nextChild(reader)) {
+            String name = reader.getLocalName();
+            if (PROFILE_ACTIVATION_ACTIVE_BY_DEFAULT.equals(name) && activation.activeByDefault == null) {
+                activation.activeByDefault = readText(reader);
+            } else if (PROFILE_ACTIVATION_PROPERTY.equals(name) && !propertySeen) {
+                propertySeen = true;
+                activation.propertyName = readPropertyName(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return activation;
+    }
+
+    private static String readPropertyName(XMLStreamReader reader) throws XMLStreamException {
+        String propertyName = null;
+        while (nextChild(reader)) {
+            if (PROFILE_ACTIVATION_PROPERTY_NAME.equals(reader.getLocalName()) && propertyName == null) {
+                propertyName = readText(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return propertyName;
+    }
+
+    /**
+     * Moves to the start of the next child of the current element, returning true, or to the end of the current element, returning false.
+     */
+    private static boolean nextChild(XMLStreamReader reader) throws XMLStreamException {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Reads the text directly contained in the current element, and moves to the end of the element.
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        String text = "";
+        StringBuilder builder = null;
+        while (true) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (text.length() == 0) {
+                        text = reader.getText();
+                    } else {
+                        if (builder == null) {
+                            builder = new StringBuilder(text);
+                        }
+                        builder.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                    skipElement(reader);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return builder == null ? text : builder.toString();
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Skips the content of the current element, and moves to the end of the element.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? Collections.<T>emptyList() : list;
+    }
+
+    private static Map<String, String> orEmpty(Map<String, String> map) {
+        return map == null ? Collections.<String, String>emptyMap() : map;
+    }
+
+    private static class Activation {
+        String activeByDefault;
+        String propertyName;
+    }
+
+    public static final class AddDTDFilterInputStream extends FilterInputStream {
+        private static final int MARK = 10000;
+        private static final String DOCTYPE = "<!DOCTYPE project SYSTEM \"m2-entities.ent\">\n";
+
+        private int count;
+        private byte[] prefix = DOCTYPE.getBytes();
+
+        public AddDTDFilterInputStream(InputStream in) throws IOException {
+            super(new BufferedInputStream(in));
+
+            this.in.mark(MARK);
+
+            // TODO: we should really find a better solution for this...
+            // maybe we could use a FilterReader instead of a FilterInputStream?
+            int byte1 = this.in.read();
+            int byte2 = this.in.read();
+            int byte3 = this.in.read();
+
+            if (byte1 == 239 && byte2 == 187 && byte3 == 191) {
+                // skip the UTF-8 BOM
+                this.in.mark(MARK);
+            } else {
+                this.in.reset();
+            }
+
+            int bytesToSkip = 0;
+            LineNumberReader reader = new LineNumberReader(new InputStreamReader(this.in, "UTF-8"), 100);
+            String firstLine = reader.readLine();
+            if (firstLine != null) {
+                String trimmed = firstLine.trim();
+                if (trimmed.startsWith("<?xml ")) {
+                    int endIndex = trimmed.indexOf("?>");
+                    String xmlDecl = trimmed.substring(0, endIndex + 2);
+                    prefix = (xmlDecl + "\n" + DOCTYPE).getBytes();
+                    bytesToSkip = xmlDecl.getBytes().length;
+                }
+            }
+
+            this.in.reset();
+            for (int i = 0; i < bytesToSkip; i++) {
+                this.in.read();
+            }
+        }
+
+        public int read() throws IOException {
+            if (count < prefix.length) {
+                return prefix[count++];
+            }
+
+            return super.read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (b == null) {
+                throw new NullPointerException();
+            } else if ((off < 0) || (off > b.length) || (len < 0)
+                    || ((off + len) > b.length) || ((off + len) < 0)) {
+                throw new IndexOutOfBoundsException();
+            } else if (len == 0) {
+                return 0;
+            }
+
+            int nbrBytesCopied = 0;
+
+            if (count < prefix.length) {
+                int nbrBytesFromPrefix = Math.min(prefix.length - count, len);
+                System.arraycopy(prefix, count, b, off, nbrBytesFromPrefix);
+                nbrBytesCopied = nbrBytesFromPrefix;
+            }
+
+            if (nbrBytesCopied < len) {
+                nbrBytesCopied += in.read(b, off + nbrBytesCopied, len - nbrBytesCopied);
+            }
+
+            count += nbrBytesCopied;
+            return nbrBytesCopied;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentIdentifierSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultSerializer;
+import org.gradle.api.internal.artifacts.metadata.ComponentArtifactIdentifierSerializer;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DefaultResolvedGraphCache implements ResolvedGraphCache {
+    private final CacheLockingManager cacheLockingManager;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private PersistentIndexedCache<HashCode, CachedGraph> cache;
+
+    public DefaultResolvedGraphCache(CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this.cacheLockingManager = cacheLockingManager;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+    }
+
+    private synchronized PersistentIndexedCache<HashCode, CachedGraph> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolved-graphs", BaseSerializerFactory.HASHCODE_SERIALIZER, new CachedGraphSerializer(moduleIdentifierFactory));
+        }
+        return cache;
+    }
+
+    @Override
+    public void cacheGraph(HashCode key, CachedGraph graph) {
+        getCache().put(key, graph);
+    }
+
+    @Override
+    public CachedGraph getCachedGraph(HashCode key) {
+        return getCache().get(key);
+    }
+
+    private static class CachedGraphSerializer extends AbstractSerializer<CachedGraph> {
+        private final ResolutionResultSerializer resultSerializer;
+        private final ComponentArtifactIdentifierSerializer artifactIdSerializer = new ComponentArtifactIdentifierSerializer();
+        private final ComponentSelectorSerializer selectorSerializer = new ComponentSelectorSerializer();
+        private final ComponentIdentifierSerializer componentIdSerializer = new ComponentIdentifierSerializer();
+
+        CachedGraphSerializer(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+            this.resultSerializer = new ResolutionResultSerializer(moduleIdentifierFactory);
+        }
+
+        @Override
+        public void write(Encoder encoder, CachedGraph value) throws Exception {
+            encoder.writeSmallInt(value.getDynamicVersions().size());
+            for (Map.Entry<ModuleComponentSelector, ModuleComponentIdentifier> entry : value.getDynamicVersions().entrySet()) {
+                selectorSerializer.write(encoder, entry.getKey());
+                componentIdSerializer.write(encoder, entry.getValue());
+            }
+            encoder.writeSmallInt(value.getChangingModules().size());
+            for (Map.Entry<ModuleComponentIdentifier, BigInteger> entry : value.getChangingModules().entrySet()) {
+                componentIdSerializer.write(encoder, entry.getKey());
+                encoder.writeBinary(entry.getValue().toByteArray());
+            }
+            encoder.writeSmallInt(value.getArtifacts().size());
+            for (ModuleComponentArtifactIdentifier artifact : value.getArtifacts()) {
+                artifactIdSerializer.write(encoder, artifact);
+            }
+            resultSerializer.write(encoder, value.getRoot());
+        }
+
+        @Override
+        public CachedGraph read(Decoder decoder) throws Exception {
+            int dynamicVersionCount = decoder.readSmallInt();
+            Map<ModuleComponentSelector, ModuleComponentIdentifier> dynamicVersions = new LinkedHashMap<ModuleComponentSelector, ModuleComponentIdentifier>(dynamicVersionCount);
+            for (int i = 0; i < dynamicVersionCount; i++) {
+                dynamicVersions.put((ModuleComponentSelector) selectorSerializer.read(decoder), (ModuleComponentIdentifier) componentIdSerializer.read(decoder));
+            }
+            int changingModuleCount = decoder.readSmallInt();
+            Map<ModuleComponentIdentifier, BigInteger> changingModules = new LinkedHashMap<ModuleComponentIdentifier, BigInteger>(changingModuleCount);
+            for (int i = 0; i < changingModuleCount; i++) {
+                changingModules.put((ModuleComponentIdentifier) componentIdSerializer.read(decoder), new BigInteger(decoder.readBinary()));
+            }
+            int artifactCount = decoder.readSmallInt();
+            List<ModuleComponentArtifactIdentifier> artifacts = new ArrayList<ModuleComponentArtifactIdentifier>(artifactCount);
+            for (int i = 0; i < artifactCount; i++) {
+                artifacts.add((ModuleComponentArtifactIdentifier) artifactIdSerializer.read(decoder));
+            }
+            ResolvedComponentResult root = resultSerializer.read(decoder);
+            return new CachedGraph(root, artifacts, dynamicVersions, changingModules);
+        }
+    }
+}
@@ -15,6 +15,8 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.modulecache;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
@@ -36,6 +38,7 @@ import org.gradle.internal.component.external.model.DefaultMutableIvyModuleResol
 import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata;
 import org.gradle.internal.component.external.model.IvyDependencyMetadata;
 import org.gradle.internal.component.external.model.IvyModuleResolveMetadata;
+import org.gradle.internal.component.external.model.LazyDependencyMetadataList;
 import org.gradle.internal.component.external.model.MavenDependencyMetadata;
 import org.gradle.internal.component.external.model.MavenModuleResolveMetadata;
 import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
@@ -46,36 +49,85 @@ import org.gradle.internal.component.model.Exclude;
 import org.gradle.internal.component.model.IvyArtifactName;
 import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Serializes module metadata to and from the module metadata cache.
+ *
+ * <p>An entry starts with a table of the strings used in the entry, and each string is then written as an index into this table. The strings
+ * are interned when the table is read, so that the many entries that use the same group names, versions, scopes and so on share the strings.</p>
+ *
+ * <p>The dependencies are written as an index, which holds the module configurations of each dependency and the location of its details,
+ * followed by the details of each dependency. The details of a dependency are decoded when first used. The dependencies of a configuration are
+ * selected using the index, so that only the dependencies of the configurations that are actually used are decoded.</p>
+ */
 public class ModuleMetadataSerializer {
     private static final byte TYPE_IVY = 1;
     private static final byte TYPE_MAVEN = 2;
 
+    private final Interner<String> stringInterner;
+
+    public ModuleMetadataSerializer(Interner<String> stringInterner) {
+        this.stringInterner = stringInterner;
+    }
+
     public MutableModuleComponentResolveMetadata read(Decoder decoder, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) throws IOException {
-        return new Reader(decoder, moduleIdentifierFactory).read();
+        String[] strings = readStringTable(decoder);
+        byte[] dependencyDetails = decoder.readBinary();
+        return new Reader(decoder, moduleIdentifierFactory, strings, dependencyDetails).read();
     }
 
     public void write(Encoder encoder, ModuleComponentResolveMetadata metadata) throws IOException {
-        new Writer(encoder).write(metadata);
+        Writer writer = new Writer();
+        byte[] body = writer.encode(metadata);
+        encoder.writeSmallInt(writer.strings.size());
+        for (String string : writer.strings.keySet()) {
+            encoder.writeString(string);
+        }
+        encoder.writeBinary(writer.dependencyDetails.toByteArray());
+        encoder.writeBytes(body);
     }
 
-    private static class Writer {
-        private final Encoder encoder;
-
-        private Writer(Encoder encoder) {
-            this.encoder = encoder;
+    private String[] readStringTable(Decoder decoder) throws IOException {
+        int count = decoder.readSmallInt();
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = stringInterner.intern(decoder.readString());
         }
+        return strings;
+    }
 
-        public void write(ModuleComponentResolveMetadata metadata) throws IOException {
+    private static class Writer {
+        private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        private final ByteArrayOutputStream dependencyDetails = new ByteArrayOutputStream();
+        private final KryoBackedEncoder dependencyEncoder = new KryoBackedEncoder(dependencyDetails);
+        private Encoder encoder;
+
+        public byte[] encode(ModuleComponentResolveMetadata metadata) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            KryoBackedEncoder bodyEncoder = new KryoBackedEncoder(body);
+            encoder = bodyEncoder;
+            write(metadata);
+            bodyEncoder.flush();
+            dependencyEncoder.flush();
+            return body.toByteArray();
+        }
+
+        private void write(ModuleComponentResolveMetadata metadata) throws IOException {
             if (metadata instanceof IvyModuleResolveMetadata) {
                 write((IvyModuleResolveMetadata) metadata);
             } else if (metadata instanceof MavenModuleResolveMetadata) {
@@ -169,8 +221,17 @@ public class ModuleMetadataSerializer {
 
         private void writeDependencies(List<? extends DependencyMetadata> dependencies) throws IOException {
             writeCount(dependencies.size());
+            Encoder indexEncoder = encoder;
             for (DependencyMetadata dd : dependencies) {
-                writeDependency(dd);
+                writeStringSet(dd.getModuleConfigurations());
+                int start = dependencyEncoder.getWritePosition();
+                encoder = dependencyEncoder;
+                try {
+                    writeDependency(dd);
+                } finally {
+                    encoder = indexEncoder;
+                }
+                writeCount(dependencyEncoder.getWritePosition() - start);
             }
         }
 
@@ -230,11 +291,23 @@ public class ModuleMetadataSerializer {
         }
 
         private void writeString(String str) throws IOException {
-            encoder.writeString(str);
+            if (str == null) {
+                throw new IllegalArgumentException("Cannot encode a null string.");
+            }
+            writeNullableString(str);
         }
 
         private void writeNullableString(String str) throws IOException {
-            encoder.writeNullableString(str);
+            if (str == null) {
+                encoder.writeSmallInt(0);
+                return;
+            }
+            Integer index = strings.get(str);
+            if (index == null) {
+                index = strings.size();
+                strings.put(str, index);
+            }
+            encoder.writeSmallInt(index + 1);
         }
 
         private void writeBoolean(boolean b) throws IOException {
@@ -278,13 +351,17 @@ public class ModuleMetadataSerializer {
     private static class Reader {
         private final Decoder decoder;
         private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+        private final String[] strings;
+        private final byte[] dependencyDetails;
         private MutableModuleDescriptorState md;
         private ModuleComponentIdentifier id;
         private ModuleVersionIdentifier mvi;
 
-        private Reader(Decoder decoder, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        private Reader(Decoder decoder, ImmutableModuleIdentifierFactory moduleIdentifierFactory, String[] strings, byte[] dependencyDetails) {
             this.decoder = decoder;
             this.moduleIdentifierFactory = moduleIdentifierFactory;
+            this.strings = strings;
+            this.dependencyDetails = dependencyDetails;
         }
 
         public MutableModuleComponentResolveMetadata read() throws IOException {
@@ -382,11 +459,20 @@ public class ModuleMetadataSerializer {
 
         private List<DependencyMetadata> readDependencies() throws IOException {
             int len = readCount();
-            List<DependencyMetadata> result = Lists.newArrayListWithCapacity(len);
+            List<Set<String>> moduleConfigurations = new ArrayList<Set<String>>(len);
+            Map<Set<String>, Set<String>> distinctModuleConfigurations = new HashMap<Set<String>, Set<String>>();
+            int[] offsets = new int[len + 1];
             for (int i = 0; i < len; i++) {
-                result.add(readDependency());
+                Set<String> configurations = ImmutableSet.copyOf(readStringSet());
+                Set<String> existing = distinctModuleConfigurations.get(configurations);
+                if (existing == null) {
+                    distinctModuleConfigurations.put(configurations, configurations);
+                    existing = configurations;
+                }
+                moduleConfigurations.add(existing);
+                offsets[i + 1] = offsets[i] + readCount();
             }
-            return result;
+            return new DecodingDependencyList(moduleIdentifierFactory, strings, dependencyDetails, offsets, moduleConfigurations);
         }
 
         private DependencyMetadata readDependency() throws IOException {
@@ -468,11 +554,12 @@ public class ModuleMetadataSerializer {
         }
 
         private String readString() throws IOException {
-            return decoder.readString();
+            return readNullableString();
         }
 
         private String readNullableString() throws IOException {
-            return decoder.readNullableString();
+            int index = decoder.readSmallInt();
+            return index == 0 ? null : strings[index - 1];
         }
 
         private boolean readBoolean() throws IOException {
@@ -520,4 +607,59 @@ public class ModuleMetadataSerializer {
         }
     }
 
+    /**
+     * The dependencies of a module, each of which is decoded when first used. Discards the encoded details once every dependency has been decoded.
+     */
+    private static class DecodingDependencyList extends LazyDependencyMetadataList {
+        private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+        private final String[] strings;
+        private final int[] offsets;
+        private final List<Set<String>> moduleConfigurations;
+        private final DependencyMetadata[] dependencies;
+        private byte[] dependencyDetails;
+        private int decodedCount;
+
+        DecodingDependencyList(ImmutableModuleIdentifierFactory moduleIdentifierFactory, String[] strings, byte[] dependencyDetails, int[] offsets, List<Set<String>> moduleConfigurations) {
+            this.moduleIdentifierFactory = moduleIdentifierFactory;
+            this.strings = strings;
+            this.dependencyDetails = dependencyDetails;
+            this.offsets = offsets;
+            this.moduleConfigurations = moduleConfigurations;
+            this.dependencies = new DependencyMetadata[moduleConfigurations.size()];
+        }
+
+        @Override
+        public int size() {
+            return dependencies.length;
+        }
+
+        @Override
+        public Set<String> getModuleConfigurations(int index) {
+            return moduleConfigurations.get(index);
+        }
+
+        @Override
+        public synchronized DependencyMetadata get(int index) {
+            DependencyMetadata dependency = dependencies[index];
+            if (dependency == null) {
+                dependency = decode(index);
+                dependencies[index] = dependency;
+                decodedCount++;
+                if (decodedCount == dependencies.length) {
+                    dependencyDetails = null;
+                }
+            }
+            return dependency;
+        }
+
+        private DependencyMetadata decode(int index) {
+            int offset = offsets[index];
+            Decoder decoder = new KryoBackedDecoder(new ByteArrayInputStream(dependencyDetails, offset, offsets[index + 1] - offset));
+            try {
+                return new Reader(decoder, moduleIdentifierFactory, strings, null).readDependency();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not decode dependency from module metadata.", e);
+            }
+        }
+    }
 }
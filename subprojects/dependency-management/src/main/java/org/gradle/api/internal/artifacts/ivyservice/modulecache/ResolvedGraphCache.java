@@ -0,0 +1,75 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.internal.component.external.model.ModuleComponentArtifactIdentifier;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cross-build cache of the resolved dependency graphs of configurations, keyed by a hash of the inputs to their resolution.
+ */
+public interface ResolvedGraphCache {
+    /**
+     * Caches the given graph, which must not contain unresolved dependencies.
+     */
+    void cacheGraph(HashCode key, CachedGraph graph);
+
+    @Nullable
+    CachedGraph getCachedGraph(HashCode key);
+
+    class CachedGraph {
+        private final ResolvedComponentResult root;
+        private final List<ModuleComponentArtifactIdentifier> artifacts;
+        private final Map<ModuleComponentSelector, ModuleComponentIdentifier> dynamicVersions;
+        private final Map<ModuleComponentIdentifier, BigInteger> changingModules;
+
+        /**
+         * @param artifacts the artifacts of the graph, in the order they are visited.
+         * @param dynamicVersions the version that each dynamic selector in the graph resolved to.
+         * @param changingModules the descriptor hash of each changing module in the graph.
+         */
+        public CachedGraph(ResolvedComponentResult root, List<ModuleComponentArtifactIdentifier> artifacts, Map<ModuleComponentSelector, ModuleComponentIdentifier> dynamicVersions, Map<ModuleComponentIdentifier, BigInteger> changingModules) {
+            this.root = root;
+            this.artifacts = artifacts;
+            this.dynamicVersions = dynamicVersions;
+            this.changingModules = changingModules;
+        }
+
+        public ResolvedComponentResult getRoot() {
+            return root;
+        }
+
+        public List<ModuleComponentArtifactIdentifier> getArtifacts() {
+            return artifacts;
+        }
+
+        public Map<ModuleComponentSelector, ModuleComponentIdentifier> getDynamicVersions() {
+            return dynamicVersions;
+        }
+
+        public Map<ModuleComponentIdentifier, BigInteger> getChangingModules() {
+            return changingModules;
+        }
+    }
+}
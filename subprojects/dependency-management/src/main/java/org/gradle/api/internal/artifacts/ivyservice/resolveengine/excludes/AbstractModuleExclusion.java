@@ -24,8 +24,7 @@ abstract class AbstractModuleExclusion implements ModuleExclusion {
     private static final String WILDCARD = "*";
 
     private int hashCode = -1;
-    private ModuleExclusion lastCheck;
-    private boolean lastCheckResult;
+    private volatile LastCheck lastCheck;
 
     protected static boolean isWildcard(String attribute) {
         return WILDCARD.equals(attribute);
@@ -55,17 +54,16 @@ abstract class AbstractModuleExclusion implements ModuleExclusion {
         if (!other.getClass().equals(getClass())) {
             return false;
         }
-        synchronized (this) {
-            // This is an optimization, based on the fact that in a large amount of times
-            // a specific exclusion is checked against the same filter the next time so
-            // we don't need to recompute the result: we can cache the last query
-            if (filter == lastCheck) {
-                return lastCheckResult;
-            }
-            lastCheck = other;
-            lastCheckResult = doExcludesSameModulesAs(other);
-            return lastCheckResult;
+        // This is an optimization, based on the fact that in a large amount of times
+        // a specific exclusion is checked against the same filter the next time so
+        // we don't need to recompute the result: we can cache the last query
+        LastCheck lastCheck = this.lastCheck;
+        if (lastCheck != null && lastCheck.filter == filter) {
+            return lastCheck.result;
         }
+        boolean result = doExcludesSameModulesAs(other);
+        this.lastCheck = new LastCheck(other, result);
+        return result;
     }
 
     /**
@@ -116,4 +114,14 @@ abstract class AbstractModuleExclusion implements ModuleExclusion {
     }
 
     protected abstract int doHashCode();
+
+    private static final class LastCheck {
+        private final ModuleExclusion filter;
+        private final boolean result;
+
+        private LastCheck(ModuleExclusion filter, boolean result) {
+            this.filter = filter;
+            this.result = result;
+        }
+    }
 }
@@ -16,8 +16,11 @@
 
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.gradle.api.artifacts.ModuleIdentifier;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
@@ -29,7 +32,6 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.AbstractModuleExclusion.isWildcard;
@@ -48,31 +50,30 @@ import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.exclude
  * <ul> <li>When a module dependency has multiple exclusions, then the resulting exclusion is the _intersection_ of those exclusions (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via a transitive path, then the resulting exclusion is the _intersection_ of the exclusions on each leg of the path (module is excluded if excluded by _any_).</li> <li>When a module
  * is depended on via multiple paths in the graph, then the resulting exclusion is the _union_ of the exclusions on each of those paths (module is excluded if excluded by _all_).</li> </ul>
+ *
+ * <p>The exclusions created by this class are interned, so that equal exclusions are usually the same instance and can be compared cheaply. The results of the operations are cached
+ * in bounded caches, which are safe to read concurrently without holding a lock.</p>
  */
 public class ModuleExclusions {
     private static final ExcludeNone EXCLUDE_NONE = new ExcludeNone();
     private static final ExcludeAllModulesSpec EXCLUDE_ALL_MODULES_SPEC = new ExcludeAllModulesSpec();
+    private static final int MAX_CACHED_EXCLUDES = 10000;
+    private static final int MAX_CACHED_MERGES = 10000;
 
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
 
-    private final Map<List<Exclude>, Map<Set<String>, ModuleExclusion>> cachedExcludes = Maps.newConcurrentMap();
-    private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
-    private final Map<List<Exclude>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
-    private final Map<Set<AbstractModuleExclusion>, ImmutableModuleExclusionSet> exclusionSetCache = Maps.newConcurrentMap();
-    private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
-    private final Object mergeOperationLock = new Object();
+    private final Interner<AbstractModuleExclusion> exclusions = Interners.newWeakInterner();
+    private final Cache<ExcludesInHierarchy, ModuleExclusion> cachedExcludes = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXCLUDES).build();
+    private final Cache<List<Exclude>, AbstractModuleExclusion> excludeAnyCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_EXCLUDES).build();
+    private final Cache<MergeOperation, AbstractModuleExclusion> mergeCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_MERGES).build();
 
     public ModuleExclusions(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
         this.moduleIdentifierFactory = moduleIdentifierFactory;
     }
 
     public ModuleExclusion excludeAny(List<Exclude> excludes, Set<String> hierarchy) {
-        Map<Set<String>, ModuleExclusion> exclusionMap = cachedExcludes.get(excludes);
-        if (exclusionMap == null) {
-            exclusionMap = Maps.newConcurrentMap();
-            cachedExcludes.put(excludes, exclusionMap);
-        }
-        ModuleExclusion moduleExclusion = exclusionMap.get(hierarchy);
+        ExcludesInHierarchy key = new ExcludesInHierarchy(excludes, hierarchy);
+        ModuleExclusion moduleExclusion = cachedExcludes.getIfPresent(key);
         if (moduleExclusion == null) {
             List<Exclude> filtered = Lists.newArrayList();
             for (Exclude exclude : excludes) {
@@ -84,18 +85,17 @@ public class ModuleExclusions {
                 }
             }
             moduleExclusion = excludeAny(filtered);
-            exclusionMap.put(hierarchy, moduleExclusion);
+            cachedExcludes.put(key, moduleExclusion);
         }
         return moduleExclusion;
     }
 
-    private ImmutableModuleExclusionSet asImmutable(Set<AbstractModuleExclusion> excludes) {
-        ImmutableModuleExclusionSet cached = exclusionSetCache.get(excludes);
-        if (cached == null) {
-            cached = new ImmutableModuleExclusionSet(excludes);
-            exclusionSetCache.put(excludes, cached);
-        }
-        return cached;
+    private AbstractModuleExclusion intern(AbstractModuleExclusion exclusion) {
+        return exclusions.intern(exclusion);
+    }
+
+    private AbstractModuleExclusion intersection(Set<AbstractModuleExclusion> excludes) {
+        return intern(new IntersectionExclusion(new ImmutableModuleExclusionSet(excludes)));
     }
 
     /**
@@ -122,15 +122,15 @@ public class ModuleExclusions {
         if (excludes.isEmpty()) {
             return EXCLUDE_NONE;
         }
-        AbstractModuleExclusion exclusion = excludeAnyCache.get(excludes);
+        AbstractModuleExclusion exclusion = excludeAnyCache.getIfPresent(excludes);
         if (exclusion != null) {
             return exclusion;
         }
         Set<AbstractModuleExclusion> exclusions = Sets.newHashSetWithExpectedSize(excludes.size());
         for (Exclude exclude : excludes) {
-            exclusions.add(forExclude(exclude));
+            exclusions.add(intern(forExclude(exclude)));
         }
-        exclusion = new IntersectionExclusion(asImmutable(exclusions));
+        exclusion = intersection(exclusions);
         excludeAnyCache.put(excludes, exclusion);
         return exclusion;
     }
@@ -185,13 +185,28 @@ public class ModuleExclusions {
         } else if (two instanceof IntersectionExclusion && ((IntersectionExclusion) two).getFilters().contains(one)) {
             return two;
         }
+        if (one instanceof IntersectionExclusion && two instanceof IntersectionExclusion) {
+            // When one spec contains all the rules of the other, it already excludes everything the other excludes
+            ImmutableModuleExclusionSet oneFilters = ((IntersectionExclusion) one).getFilters();
+            ImmutableModuleExclusionSet twoFilters = ((IntersectionExclusion) two).getFilters();
+            if (containsAll(oneFilters, twoFilters)) {
+                return one;
+            }
+            if (containsAll(twoFilters, oneFilters)) {
+                return two;
+            }
+        }
 
         Set<AbstractModuleExclusion> builder = Sets.newHashSet();
 
         ((AbstractModuleExclusion) one).unpackIntersection(builder);
         ((AbstractModuleExclusion) two).unpackIntersection(builder);
 
-        return new IntersectionExclusion(asImmutable(builder));
+        return intersection(builder);
+    }
+
+    private static boolean containsAll(ImmutableModuleExclusionSet superset, ImmutableModuleExclusionSet subset) {
+        return superset.size() >= subset.size() && superset.containsAll(subset);
     }
 
     /**
@@ -232,7 +247,7 @@ public class ModuleExclusions {
         if (specs.size() == 1) {
             return specs.get(0);
         }
-        return new UnionExclusion(specs);
+        return intern(new UnionExclusion(specs));
     }
 
     /**
@@ -253,41 +268,24 @@ public class ModuleExclusions {
         if (one.equals(other)) {
             return one;
         }
+        // When one spec contains all the rules of the other, the other excludes only modules that are also excluded by the one
+        if (containsAll(other.getFilters(), one.getFilters())) {
+            return one;
+        }
+        if (containsAll(one.getFilters(), other.getFilters())) {
+            return other;
+        }
         if (one.canMerge() && other.canMerge()) {
-            AbstractModuleExclusion[] oneFilters = one.getFilters().elements;
-            AbstractModuleExclusion[] otherFilters = other.getFilters().elements;
-            if (Arrays.equals(oneFilters, otherFilters)) {
-                return one;
-            }
-
-            MergeOperation merge = mergeOperation(oneFilters, otherFilters);
-            AbstractModuleExclusion exclusion = mergeCache.get(merge);
+            MergeOperation merge = new MergeOperation(one, other);
+            AbstractModuleExclusion exclusion = mergeCache.getIfPresent(merge);
             if (exclusion != null) {
                 return exclusion;
             }
-            return mergeAndCacheResult(merge, oneFilters, otherFilters);
+            return mergeAndCacheResult(merge, one.getFilters().elements, other.getFilters().elements);
         }
         return null;
     }
 
-    private MergeOperation mergeOperation(AbstractModuleExclusion[] one, AbstractModuleExclusion[] two) {
-        synchronized (mergeOperationLock) {
-            Map<AbstractModuleExclusion[], MergeOperation> oneMap = mergeOperationCache.get(one);
-            if (oneMap == null) {
-                oneMap = Maps.newIdentityHashMap();
-                mergeOperationCache.put(one, oneMap);
-
-            }
-            MergeOperation mergeOperation = oneMap.get(two);
-            if (mergeOperation != null) {
-                return mergeOperation;
-            }
-            mergeOperation = new MergeOperation(one, two);
-            oneMap.put(two, mergeOperation);
-            return mergeOperation;
-        }
-    }
-
     private AbstractModuleExclusion mergeAndCacheResult(MergeOperation merge, AbstractModuleExclusion[] oneFilters, AbstractModuleExclusion[] otherFilters) {
         AbstractModuleExclusion exclusion; // Merge the exclude rules from both specs into a single union spec.
         final BitSet remaining = new BitSet(otherFilters.length);
@@ -306,7 +304,7 @@ public class ModuleExclusions {
         if (merged.isEmpty()) {
             exclusion = ModuleExclusions.EXCLUDE_NONE;
         } else {
-            exclusion = new IntersectionExclusion(asImmutable(merged));
+            exclusion = intersection(merged);
         }
         mergeCache.put(merge, exclusion);
         return exclusion;
@@ -365,7 +363,7 @@ public class ModuleExclusions {
         } else if (spec2 instanceof ModuleNameExcludeSpec) {
             // Intersection of group & module name exclude only excludes module with matching group + name
             ModuleNameExcludeSpec moduleNameExcludeSpec = (ModuleNameExcludeSpec) spec2;
-            merged.add(new ModuleIdExcludeSpec(moduleIdentifierFactory.module(spec1.group, moduleNameExcludeSpec.module)));
+            merged.add(intern(new ModuleIdExcludeSpec(moduleIdentifierFactory.module(spec1.group, moduleNameExcludeSpec.module))));
         } else if (spec2 instanceof ModuleIdExcludeSpec) {
             // Intersection of group + module id exclude only excludes the module id if the excluded groups match
             ModuleIdExcludeSpec moduleIdExcludeSpec = (ModuleIdExcludeSpec) spec2;
@@ -395,16 +393,45 @@ public class ModuleExclusions {
         }
     }
 
-    private static final class MergeOperation {
-        private final AbstractModuleExclusion[] one;
-        private final AbstractModuleExclusion[] two;
+    private static final class ExcludesInHierarchy {
+        private final List<Exclude> excludes;
+        private final Set<String> hierarchy;
         private final int hashCode;
 
+        private ExcludesInHierarchy(List<Exclude> excludes, Set<String> hierarchy) {
+            this.excludes = excludes;
+            this.hierarchy = hierarchy;
+            this.hashCode = 31 * excludes.hashCode() + hierarchy.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ExcludesInHierarchy that = (ExcludesInHierarchy) o;
+            return hashCode == that.hashCode && excludes.equals(that.excludes) && hierarchy.equals(that.hierarchy);
+        }
 
-        private MergeOperation(AbstractModuleExclusion[] one, AbstractModuleExclusion[] two) {
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class MergeOperation {
+        private final IntersectionExclusion one;
+        private final IntersectionExclusion two;
+        private final int hashCode;
+
+        private MergeOperation(IntersectionExclusion one, IntersectionExclusion two) {
             this.one = one;
             this.two = two;
-            this.hashCode = 31 * Arrays.hashCode(one) + Arrays.hashCode(two);
+            this.hashCode = 31 * one.hashCode() + two.hashCode();
         }
 
         @Override
@@ -417,11 +444,7 @@ public class ModuleExclusions {
             }
 
             MergeOperation that = (MergeOperation) o;
-
-            if (!Arrays.equals(one, that.one)) {
-                return false;
-            }
-            return Arrays.equals(two, that.two);
+            return hashCode == that.hashCode && one.equals(that.one) && two.equals(that.two);
         }
 
         @Override
@@ -29,6 +29,7 @@ import org.gradle.api.artifacts.result.ComponentSelectionReason;
 import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
 import org.gradle.api.internal.artifacts.ResolveContext;
 import org.gradle.api.internal.artifacts.ResolvedConfigurationIdentifier;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ComponentResolutionState;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.ModuleConflictResolver;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes.ModuleExclusion;
@@ -50,6 +51,7 @@ import org.gradle.internal.component.model.ConfigurationMetadata;
 import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
 import org.gradle.internal.component.model.DependencyMetadata;
 import org.gradle.internal.component.model.Exclude;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.LongIdGenerator;
 import org.gradle.internal.operations.BuildOperationContext;
@@ -69,6 +71,7 @@ import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -91,13 +94,15 @@ public class DependencyGraphBuilder {
     private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
     private final ModuleExclusions moduleExclusions;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final ExecutorFactory executorFactory;
+    private final VersionSelectorScheme versionSelectorScheme;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
                                   ConflictHandler conflictHandler, Spec<? super DependencyMetadata> edgeFilter,
                                   AttributesSchemaInternal attributesSchema,
                                   ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions,
-                                  BuildOperationExecutor buildOperationExecutor) {
+                                  BuildOperationExecutor buildOperationExecutor, ExecutorFactory executorFactory, VersionSelectorScheme versionSelectorScheme) {
         this.idResolver = componentIdResolver;
         this.metaDataResolver = componentMetaDataResolver;
         this.moduleResolver = resolveContextToComponentResolver;
@@ -107,6 +112,8 @@ public class DependencyGraphBuilder {
         this.moduleIdentifierFactory = moduleIdentifierFactory;
         this.moduleExclusions = moduleExclusions;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.executorFactory = executorFactory;
+        this.versionSelectorScheme = versionSelectorScheme;
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -115,10 +122,23 @@ public class DependencyGraphBuilder {
         DefaultBuildableComponentResolveResult rootModule = new DefaultBuildableComponentResolveResult();
         moduleResolver.resolve(resolveContext, rootModule);
 
-        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions);
+        PrefetchingComponentMetaDataResolver prefetcher = null;
+        ComponentMetaDataResolver metaDataResolver = this.metaDataResolver;
+        if (PrefetchingComponentMetaDataResolver.isEnabled()) {
+            prefetcher = new PrefetchingComponentMetaDataResolver(metaDataResolver, versionSelectorScheme, buildOperationExecutor, executorFactory);
+            metaDataResolver = prefetcher;
+        }
+
+        final ResolveState resolveState = new ResolveState(idGenerator, rootModule, resolveContext.getName(), idResolver, metaDataResolver, prefetcher, edgeFilter, attributesSchema, moduleIdentifierFactory, moduleExclusions);
         conflictHandler.registerResolver(new DirectDependencyForcingResolver(resolveState.root.component));
 
-        traverseGraph(resolveState);
+        try {
+            traverseGraph(resolveState);
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.stop();
+            }
+        }
 
         resolveState.root.component.setSelectionReason(VersionSelectionReasons.ROOT);
 
@@ -208,8 +228,12 @@ public class DependencyGraphBuilder {
             return;
         }
         performSelectionSerially(dependencies, resolveState);
-        computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache);
-        downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
+        computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, resolveState, componentIdentifierCache);
+        if (resolveState.prefetcher != null) {
+            prefetchMetadata(dependenciesMissingMetadataLocally, resolveState.prefetcher);
+        } else {
+            downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
+        }
         attachToTargetRevisionsSerially(dependencies);
 
     }
@@ -240,6 +264,13 @@ public class DependencyGraphBuilder {
         });
     }
 
+    private void prefetchMetadata(List<EdgeState> dependencies, PrefetchingComponentMetaDataResolver prefetcher) {
+        // Don't wait for the downloads to complete, only the edges that are attached next need to wait for their target's meta-data
+        for (EdgeState dependency : dependencies) {
+            dependency.targetModuleRevision.prefetch(prefetcher);
+        }
+    }
+
     private void performSelectionSerially(List<EdgeState> dependencies, ResolveState resolveState) {
         for (EdgeState dependency : dependencies) {
             ComponentState moduleRevision = dependency.resolveModuleRevisionId();
@@ -257,11 +288,11 @@ public class DependencyGraphBuilder {
      * @param dependencies the dependencies to be resolved
      * @param dependenciesToBeResolvedInParallel output, edges which will need parallel metadata download
      */
-    private void computePreemptiveDownloadList(List<EdgeState> dependencies, List<EdgeState> dependenciesToBeResolvedInParallel, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private void computePreemptiveDownloadList(List<EdgeState> dependencies, List<EdgeState> dependenciesToBeResolvedInParallel, ResolveState resolveState, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
         for (EdgeState dependency : dependencies) {
             ComponentState state = dependency.targetModuleRevision;
             if (state != null && !state.fastResolve() && performPreemptiveDownload(state.state)) {
-                if (!metaDataResolver.isFetchingMetadataCheap(toComponentId(state.getId(), componentIdentifierCache))) {
+                if (!resolveState.metaDataResolver.isFetchingMetadataCheap(toComponentId(state.getId(), componentIdentifierCache))) {
                     dependenciesToBeResolvedInParallel.add(dependency);
                 }
             }
@@ -536,6 +567,7 @@ public class DependencyGraphBuilder {
         private final IdGenerator<Long> idGenerator;
         private final DependencyToComponentIdResolver idResolver;
         private final ComponentMetaDataResolver metaDataResolver;
+        private final PrefetchingComponentMetaDataResolver prefetcher;
         private final Set<NodeState> queued = Sets.newHashSet();
         private final LinkedList<NodeState> queue = new LinkedList<NodeState>();
         private final AttributesSchemaInternal attributesSchema;
@@ -543,11 +575,12 @@ public class DependencyGraphBuilder {
         private final ModuleExclusions moduleExclusions;
 
         public ResolveState(IdGenerator<Long> idGenerator, ComponentResolveResult rootResult, String rootConfigurationName, DependencyToComponentIdResolver idResolver,
-                            ComponentMetaDataResolver metaDataResolver, Spec<? super DependencyMetadata> edgeFilter, AttributesSchemaInternal attributesSchema,
+                            ComponentMetaDataResolver metaDataResolver, @Nullable PrefetchingComponentMetaDataResolver prefetcher, Spec<? super DependencyMetadata> edgeFilter, AttributesSchemaInternal attributesSchema,
                             ImmutableModuleIdentifierFactory moduleIdentifierFactory, ModuleExclusions moduleExclusions) {
             this.idGenerator = idGenerator;
             this.idResolver = idResolver;
             this.metaDataResolver = metaDataResolver;
+            this.prefetcher = prefetcher;
             this.edgeFilter = edgeFilter;
             this.attributesSchema = attributesSchema;
             this.moduleIdentifierFactory = moduleIdentifierFactory;
@@ -859,6 +892,13 @@ public class DependencyGraphBuilder {
             metaData = result.getMetaData();
         }
 
+        /**
+         * Starts downloading the meta-data for this component in the background.
+         */
+        public void prefetch(PrefetchingComponentMetaDataResolver prefetcher) {
+            prefetcher.prefetch(firstReference.idResolveResult.getId(), DefaultComponentOverrideMetadata.forDependency(firstReference.dependencyMetadata));
+        }
+
         @Override
         public ComponentResolveMetadata getMetaData() {
             if (metaData == null) {
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.model.ComponentOverrideMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.ConfigurationMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.component.model.DependencyMetadata;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.progress.BuildOperationState;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A {@link ComponentMetaDataResolver} that downloads component meta-data in the background, ahead of the graph traversal.
+ *
+ * <p>Once the meta-data for a component is available, the meta-data for the dependencies of its default configuration is downloaded in the background,
+ * and so on down the graph. This means the meta-data for a graph is downloaded one level at a time rather than one node at a time. The traversal itself
+ * still happens on a single thread and in the same order as without prefetching, and only waits for the meta-data of the component that it needs next.
+ * When that meta-data has not started downloading yet, the traversal downloads it itself rather than waiting for a free thread.</p>
+ *
+ * <p>Only requests for a component with no overrides are shared with the background downloads, and only dependencies on a fixed version are downloaded
+ * ahead. Some of these downloads may turn out not to be needed, for example when conflict resolution or a substitution rule selects another version.</p>
+ */
+class PrefetchingComponentMetaDataResolver implements ComponentMetaDataResolver, Stoppable {
+    /**
+     * Enables downloading meta-data ahead of the graph traversal. This changes the set of requests made to the repositories, so is not enabled by default.
+     */
+    static final String PREFETCH_PROPERTY = "org.gradle.resolution.prefetchMetadata";
+
+    private static final int MAX_DOWNLOAD_THREADS = 8;
+
+    private final ComponentMetaDataResolver delegate;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final BuildOperationState parentOperation;
+    private final ManagedExecutor executor;
+    private final ConcurrentMap<ComponentIdentifier, FutureTask<BuildableComponentResolveResult>> downloads = new ConcurrentHashMap<ComponentIdentifier, FutureTask<BuildableComponentResolveResult>>();
+    private volatile boolean stopped;
+
+    PrefetchingComponentMetaDataResolver(ComponentMetaDataResolver delegate, VersionSelectorScheme versionSelectorScheme, BuildOperationExecutor buildOperationExecutor, ExecutorFactory executorFactory) {
+        this.delegate = delegate;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.parentOperation = buildOperationExecutor.getCurrentOperation();
+        this.executor = executorFactory.create("Dependency meta-data downloads", MAX_DOWNLOAD_THREADS);
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean(PREFETCH_PROPERTY);
+    }
+
+    @Override
+    public void resolve(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata, BuildableComponentResolveResult result) {
+        if (!isDefault(componentOverrideMetadata)) {
+            delegate.resolve(identifier, componentOverrideMetadata, result);
+            if (result.getFailure() == null) {
+                prefetchDependencies(result.getMetaData());
+            }
+            return;
+        }
+
+        FutureTask<BuildableComponentResolveResult> download = getDownload(identifier, componentOverrideMetadata);
+        // Does nothing when the download has already started on another thread
+        download.run();
+        BuildableComponentResolveResult downloaded;
+        try {
+            downloaded = Uninterruptibles.getUninterruptibly(download);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        }
+        downloaded.applyTo(result);
+        if (downloaded.getFailure() != null) {
+            result.failed(downloaded.getFailure());
+        } else {
+            result.resolved(downloaded.getMetaData());
+        }
+    }
+
+    @Override
+    public boolean isFetchingMetadataCheap(ComponentIdentifier identifier) {
+        return downloads.containsKey(identifier) || delegate.isFetchingMetadataCheap(identifier);
+    }
+
+    /**
+     * Starts downloading the meta-data for the given component in the background, if it is not already available or being downloaded.
+     */
+    public void prefetch(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata) {
+        if (stopped || !isDefault(componentOverrideMetadata) || downloads.containsKey(identifier)) {
+            return;
+        }
+        FutureTask<BuildableComponentResolveResult> download = getDownload(identifier, componentOverrideMetadata);
+        executor.execute(download);
+    }
+
+    /**
+     * Discards any downloads that have not started, and waits for the remaining downloads to complete.
+     */
+    @Override
+    public void stop() {
+        stopped = true;
+        executor.stop();
+    }
+
+    private FutureTask<BuildableComponentResolveResult> getDownload(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata) {
+        FutureTask<BuildableComponentResolveResult> download = downloads.get(identifier);
+        if (download == null) {
+            FutureTask<BuildableComponentResolveResult> newDownload = new FutureTask<BuildableComponentResolveResult>(new DownloadMetadata(identifier, componentOverrideMetadata));
+            download = downloads.putIfAbsent(identifier, newDownload);
+            if (download == null) {
+                download = newDownload;
+            }
+        }
+        return download;
+    }
+
+    private void prefetchDependencies(ComponentResolveMetadata metadata) {
+        ConfigurationMetadata configuration = metadata.getConfiguration("default");
+        if (configuration == null) {
+            return;
+        }
+        for (DependencyMetadata dependency : configuration.getDependencies()) {
+            ComponentSelector selector = dependency.getSelector();
+            if (!(selector instanceof ModuleComponentSelector)) {
+                continue;
+            }
+            ModuleComponentSelector moduleSelector = (ModuleComponentSelector) selector;
+            if (versionSelectorScheme.parseSelector(moduleSelector.getVersion()).isDynamic()) {
+                continue;
+            }
+            prefetch(DefaultModuleComponentIdentifier.newId(moduleSelector.getGroup(), moduleSelector.getModule(), moduleSelector.getVersion()), DefaultComponentOverrideMetadata.forDependency(dependency));
+        }
+    }
+
+    private static boolean isDefault(ComponentOverrideMetadata componentOverrideMetadata) {
+        return !componentOverrideMetadata.isChanging() && componentOverrideMetadata.getArtifacts().isEmpty() && componentOverrideMetadata.getClientModule() == null;
+    }
+
+    private class DownloadMetadata implements Callable<BuildableComponentResolveResult> {
+        private final ComponentIdentifier identifier;
+        private final ComponentOverrideMetadata componentOverrideMetadata;
+
+        DownloadMetadata(ComponentIdentifier identifier, ComponentOverrideMetadata componentOverrideMetadata) {
+            this.identifier = identifier;
+            this.componentOverrideMetadata = componentOverrideMetadata;
+        }
+
+        @Override
+        public BuildableComponentResolveResult call() {
+            final DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+            if (stopped) {
+                // The traversal has finished, so the result is no longer required
+                return result;
+            }
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    delegate.resolve(identifier, componentOverrideMetadata, result);
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Resolve " + identifier).parent(parentOperation);
+                }
+            });
+            if (result.getFailure() == null) {
+                prefetchDependencies(result.getMetaData());
+            }
+            return result;
+        }
+    }
+}
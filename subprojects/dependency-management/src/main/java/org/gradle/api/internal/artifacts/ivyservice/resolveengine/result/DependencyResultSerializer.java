@@ -50,13 +50,18 @@ public class DependencyResultSerializer {
     }
 
     public void write(Encoder encoder, DependencyGraphEdge value) throws IOException {
-        encoder.writeSmallLong(value.getSelector().getResultId());
         if (value.getFailure() == null) {
-            encoder.writeByte(SUCCESSFUL);
-            encoder.writeSmallLong(value.getSelected());
+            writeSuccessful(encoder, value.getSelector().getResultId(), value.getSelected());
         } else {
+            encoder.writeSmallLong(value.getSelector().getResultId());
             encoder.writeByte(FAILED);
             componentSelectionReasonSerializer.write(encoder, value.getReason());
         }
     }
+
+    public void writeSuccessful(Encoder encoder, Long selectorId, Long selectedId) throws IOException {
+        encoder.writeSmallLong(selectorId);
+        encoder.writeByte(SUCCESSFUL);
+        encoder.writeSmallLong(selectedId);
+    }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.result;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.resolve.ModuleVersionResolveException;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder.COMPONENT;
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder.DEPENDENCY;
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder.ROOT;
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.StreamingResolutionResultBuilder.SELECTOR;
+
+/**
+ * Serializes a completed resolution result, using the same records as {@link StreamingResolutionResultBuilder}.
+ *
+ * Only results without unresolved dependencies can be written, as the failures are not serializable.
+ */
+public class ResolutionResultSerializer extends AbstractSerializer<ResolvedComponentResult> {
+    private final ComponentResultSerializer componentResultSerializer;
+    private final ComponentSelectorSerializer componentSelectorSerializer = new ComponentSelectorSerializer();
+    private final DependencyResultSerializer dependencyResultSerializer = new DependencyResultSerializer();
+
+    public ResolutionResultSerializer(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this.componentResultSerializer = new ComponentResultSerializer(moduleIdentifierFactory);
+    }
+
+    @Override
+    public ResolvedComponentResult read(Decoder decoder) throws IOException {
+        StreamingResolutionResultBuilder.RecordReader reader = new StreamingResolutionResultBuilder.RecordReader(componentResultSerializer, componentSelectorSerializer, dependencyResultSerializer, Collections.<ComponentSelector, ModuleVersionResolveException>emptyMap());
+        return reader.read(decoder);
+    }
+
+    @Override
+    public void write(Encoder encoder, ResolvedComponentResult root) throws IOException {
+        Map<ComponentIdentifier, Long> componentIds = new LinkedHashMap<ComponentIdentifier, Long>();
+        List<ResolvedComponentResult> components = new ArrayList<ResolvedComponentResult>();
+        componentIds.put(root.getId(), 0L);
+        components.add(root);
+        for (int i = 0; i < components.size(); i++) {
+            for (DependencyResult dependency : components.get(i).getDependencies()) {
+                if (!(dependency instanceof ResolvedDependencyResult)) {
+                    throw new IllegalArgumentException("Cannot serialize a resolution result that contains unresolved dependency " + dependency.getRequested().getDisplayName() + ".");
+                }
+                ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+                if (!componentIds.containsKey(selected.getId())) {
+                    componentIds.put(selected.getId(), (long) components.size());
+                    components.add(selected);
+                }
+            }
+        }
+
+        for (int i = 0; i < components.size(); i++) {
+            ResolvedComponentResult component = components.get(i);
+            encoder.writeByte(COMPONENT);
+            componentResultSerializer.write(encoder, new DefaultComponentResult((long) i, component.getModuleVersion(), component.getSelectionReason(), component.getId()));
+        }
+
+        Map<ComponentSelector, Long> selectorIds = new LinkedHashMap<ComponentSelector, Long>();
+        for (int i = 0; i < components.size(); i++) {
+            ResolvedComponentResult component = components.get(i);
+            if (component.getDependencies().isEmpty()) {
+                continue;
+            }
+            for (DependencyResult dependency : component.getDependencies()) {
+                if (!selectorIds.containsKey(dependency.getRequested())) {
+                    long selectorId = selectorIds.size();
+                    selectorIds.put(dependency.getRequested(), selectorId);
+                    encoder.writeByte(SELECTOR);
+                    encoder.writeSmallLong(selectorId);
+                    componentSelectorSerializer.write(encoder, dependency.getRequested());
+                }
+            }
+            encoder.writeByte(DEPENDENCY);
+            encoder.writeSmallLong(i);
+            encoder.writeSmallInt(component.getDependencies().size());
+            for (DependencyResult dependency : component.getDependencies()) {
+                ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+                dependencyResultSerializer.writeSuccessful(encoder, selectorIds.get(dependency.getRequested()), componentIds.get(selected.getId()));
+            }
+        }
+
+        encoder.writeByte(ROOT);
+        encoder.writeSmallLong(0L);
+    }
+}
@@ -50,10 +50,10 @@ import java.util.Set;
 import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 
 public class StreamingResolutionResultBuilder implements DependencyGraphVisitor {
-    private final static byte ROOT = 1;
-    private final static byte COMPONENT = 2;
-    private final static byte SELECTOR = 4;
-    private final static byte DEPENDENCY = 5;
+    final static byte ROOT = 1;
+    final static byte COMPONENT = 2;
+    final static byte SELECTOR = 4;
+    final static byte DEPENDENCY = 5;
 
     private final Map<ComponentSelector, ModuleVersionResolveException> failures = new HashMap<ComponentSelector, ModuleVersionResolveException>();
     private final BinaryStore store;
@@ -181,47 +181,69 @@ public class StreamingResolutionResultBuilder implements DependencyGraphVisitor
         }
 
         private ResolvedComponentResult deserialize(Decoder decoder) {
-            int valuesRead = 0;
-            byte type = -1;
             Timer clock = Time.startTimer();
+            RecordReader reader = new RecordReader(componentResultSerializer, componentSelectorSerializer, dependencyResultSerializer, failures);
             try {
-                DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
-                Map<Long, ComponentSelector> selectors = new HashMap<Long, ComponentSelector>();
-                while (true) {
-                    type = decoder.readByte();
-                    valuesRead++;
-                    switch (type) {
-                        case ROOT:
-                            // Last entry, complete the result
-                            Long rootId = decoder.readSmallLong();
-                            ResolvedComponentResult root = builder.complete(rootId).getRoot();
-                            LOG.debug("Loaded resolution results ({}) from {}", clock.getElapsed(), data);
-                            return root;
-                        case COMPONENT:
-                            ComponentResult component = componentResultSerializer.read(decoder);
-                            builder.visitComponent(component);
-                            break;
-                        case SELECTOR:
-                            Long id = decoder.readSmallLong();
-                            ComponentSelector selector = componentSelectorSerializer.read(decoder);
-                            selectors.put(id, selector);
-                            break;
-                        case DEPENDENCY:
-                            Long fromId = decoder.readSmallLong();
-                            int size = decoder.readSmallInt();
-                            List<DependencyResult> deps = new ArrayList<DependencyResult>(size);
-                            for (int i = 0; i < size; i++) {
-                                deps.add(dependencyResultSerializer.read(decoder, selectors, failures));
-                            }
-                            builder.visitOutgoingEdges(fromId, deps);
-                            break;
-                        default:
-                            throw new IOException("Unknown value type read from stream: " + type);
-                    }
-                }
+                ResolvedComponentResult root = reader.read(decoder);
+                LOG.debug("Loaded resolution results ({}) from {}", clock.getElapsed(), data);
+                return root;
             } catch (IOException e) {
                 throw new RuntimeException("Problems loading the resolution results (" + clock.getElapsed() + "). "
-                        + "Read " + valuesRead + " values, last was: " + type, e);
+                        + "Read " + reader.valuesRead + " values, last was: " + reader.type, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the records written by this builder, up to and including the root record, and assembles the resolution result.
+     */
+    static class RecordReader {
+        private final ComponentResultSerializer componentResultSerializer;
+        private final ComponentSelectorSerializer componentSelectorSerializer;
+        private final DependencyResultSerializer dependencyResultSerializer;
+        private final Map<ComponentSelector, ModuleVersionResolveException> failures;
+        int valuesRead;
+        byte type = -1;
+
+        RecordReader(ComponentResultSerializer componentResultSerializer, ComponentSelectorSerializer componentSelectorSerializer, DependencyResultSerializer dependencyResultSerializer, Map<ComponentSelector, ModuleVersionResolveException> failures) {
+            this.componentResultSerializer = componentResultSerializer;
+            this.componentSelectorSerializer = componentSelectorSerializer;
+            this.dependencyResultSerializer = dependencyResultSerializer;
+            this.failures = failures;
+        }
+
+        ResolvedComponentResult read(Decoder decoder) throws IOException {
+            DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
+            Map<Long, ComponentSelector> selectors = new HashMap<Long, ComponentSelector>();
+            while (true) {
+                type = decoder.readByte();
+                valuesRead++;
+                switch (type) {
+                    case ROOT:
+                        // Last entry, complete the result
+                        Long rootId = decoder.readSmallLong();
+                        return builder.complete(rootId).getRoot();
+                    case COMPONENT:
+                        ComponentResult component = componentResultSerializer.read(decoder);
+                        builder.visitComponent(component);
+                        break;
+                    case SELECTOR:
+                        Long id = decoder.readSmallLong();
+                        ComponentSelector selector = componentSelectorSerializer.read(decoder);
+                        selectors.put(id, selector);
+                        break;
+                    case DEPENDENCY:
+                        Long fromId = decoder.readSmallLong();
+                        int size = decoder.readSmallInt();
+                        List<DependencyResult> deps = new ArrayList<DependencyResult>(size);
+                        for (int i = 0; i < size; i++) {
+                            deps.add(dependencyResultSerializer.read(decoder, selectors, failures));
+                        }
+                        builder.visitOutgoingEdges(fromId, deps);
+                        break;
+                    default:
+                        throw new IOException("Unknown value type read from stream: " + type);
+                }
             }
         }
     }
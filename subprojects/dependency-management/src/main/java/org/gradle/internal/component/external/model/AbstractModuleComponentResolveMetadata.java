@@ -16,6 +16,7 @@
 
 package org.gradle.internal.component.external.model;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import org.gradle.api.artifacts.ModuleVersionIdentifier;
@@ -213,8 +214,7 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
         Set<String> configurationsNames = configurationDefinitions.keySet();
         Map<String, DefaultConfigurationMetadata> configurations = new HashMap<String, DefaultConfigurationMetadata>(configurationsNames.size());
         for (String configName : configurationsNames) {
-            DefaultConfigurationMetadata configuration = populateConfigurationFromDescriptor(configName, configurationDefinitions, configurations);
-            configuration.populateDependencies(dependencies);
+            populateConfigurationFromDescriptor(configName, configurationDefinitions, configurations);
         }
         return configurations;
     }
@@ -231,7 +231,7 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
         boolean visible = descriptorConfiguration.isVisible();
         if (extendsFrom.isEmpty()) {
             // tail
-            populated = new DefaultConfigurationMetadata(componentIdentifier, name, transitive, visible, excludes);
+            populated = new DefaultConfigurationMetadata(componentIdentifier, name, transitive, visible, dependencies, excludes);
             configurations.put(name, populated);
             return populated;
         } else if (extendsFrom.size() == 1) {
@@ -241,6 +241,7 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
                 transitive,
                 visible,
                 Collections.singletonList(populateConfigurationFromDescriptor(extendsFrom.get(0), configurationDefinitions, configurations)),
+                dependencies,
                 excludes
             );
             configurations.put(name, populated);
@@ -256,6 +257,7 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
             transitive,
             visible,
             hierarchy,
+            dependencies,
             excludes
         );
 
@@ -267,7 +269,8 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
         private final ModuleComponentIdentifier componentId;
         private final String name;
         private final List<DefaultConfigurationMetadata> parents;
-        private final List<DependencyMetadata> configDependencies = new ArrayList<DependencyMetadata>();
+        private final List<? extends DependencyMetadata> componentDependencies;
+        private List<DependencyMetadata> configDependencies;
         private final Set<ComponentArtifactMetadata> artifacts = new LinkedHashSet<ComponentArtifactMetadata>();
         private final boolean transitive;
         private final boolean visible;
@@ -275,18 +278,19 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
         private final List<Exclude> excludes;
         private ModuleExclusion exclusions;
 
-        private DefaultConfigurationMetadata(ModuleComponentIdentifier componentId, String name, boolean transitive, boolean visible, List<DefaultConfigurationMetadata> parents, List<Exclude> excludes) {
+        private DefaultConfigurationMetadata(ModuleComponentIdentifier componentId, String name, boolean transitive, boolean visible, List<DefaultConfigurationMetadata> parents, List<? extends DependencyMetadata> componentDependencies, List<Exclude> excludes) {
             this.componentId = componentId;
             this.name = name;
             this.parents = parents;
+            this.componentDependencies = componentDependencies;
             this.transitive = transitive;
             this.visible = visible;
             this.hierarchy = calculateHierarchy();
             this.excludes = excludes;
         }
 
-        private DefaultConfigurationMetadata(ModuleComponentIdentifier componentId, String name, boolean transitive, boolean visible, List<Exclude> excludes) {
-            this(componentId, name, transitive, visible, null, excludes);
+        private DefaultConfigurationMetadata(ModuleComponentIdentifier componentId, String name, boolean transitive, boolean visible, List<? extends DependencyMetadata> componentDependencies, List<Exclude> excludes) {
+            this(componentId, name, transitive, visible, null, componentDependencies, excludes);
         }
 
         @Override
@@ -354,26 +358,44 @@ abstract class AbstractModuleComponentResolveMetadata implements ModuleComponent
 
         @Override
         public List<DependencyMetadata> getDependencies() {
+            if (configDependencies == null) {
+                configDependencies = selectDependencies();
+            }
             return configDependencies;
         }
 
-        private void populateDependencies(Iterable<? extends DependencyMetadata> dependencies) {
-            for (DependencyMetadata dependency : dependencies) {
-                if (include(dependency)) {
-                    this.configDependencies.add(dependency);
+        /**
+         * Selects the dependencies of this configuration on first use, so that the dependencies of configurations that are never used are not
+         * selected and, where the dependencies are created on demand, not created.
+         */
+        private List<DependencyMetadata> selectDependencies() {
+            ImmutableList.Builder<DependencyMetadata> builder = ImmutableList.builder();
+            if (componentDependencies instanceof LazyDependencyMetadataList) {
+                LazyDependencyMetadataList lazyDependencies = (LazyDependencyMetadataList) componentDependencies;
+                for (int i = 0; i < lazyDependencies.size(); i++) {
+                    if (include(lazyDependencies.getModuleConfigurations(i))) {
+                        builder.add(lazyDependencies.get(i));
+                    }
+                }
+            } else {
+                for (DependencyMetadata dependency : componentDependencies) {
+                    if (include(dependency.getModuleConfigurations())) {
+                        builder.add(dependency);
+                    }
                 }
             }
+            return builder.build();
         }
 
-        private boolean include(DependencyMetadata dependency) {
+        private boolean include(Set<String> moduleConfigurations) {
             Set<String> hierarchy = getHierarchy();
-            for (String moduleConfiguration : dependency.getModuleConfigurations()) {
+            for (String moduleConfiguration : moduleConfigurations) {
                 if (moduleConfiguration.equals("%") || hierarchy.contains(moduleConfiguration)) {
                     return true;
                 }
                 if (moduleConfiguration.equals("*")) {
                     boolean include = true;
-                    for (String conf2 : dependency.getModuleConfigurations()) {
+                    for (String conf2 : moduleConfigurations) {
                         if (conf2.startsWith("!") && conf2.substring(1).equals(getName())) {
                             include = false;
                             break;
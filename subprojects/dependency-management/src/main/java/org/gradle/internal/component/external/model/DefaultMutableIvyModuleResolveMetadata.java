@@ -42,7 +42,7 @@ public class DefaultMutableIvyModuleResolveMetadata extends AbstractMutableModul
     }
 
     public DefaultMutableIvyModuleResolveMetadata(ModuleVersionIdentifier id, ModuleComponentIdentifier componentIdentifier, ModuleDescriptorState descriptor, Collection<Configuration> configurations, Collection<? extends DependencyMetadata> dependencies) {
-        super(id, componentIdentifier, descriptor, toMap(configurations), ImmutableList.copyOf(dependencies));
+        super(id, componentIdentifier, descriptor, toMap(configurations), LazyDependencyMetadataList.copyOf(dependencies));
     }
 
     private static Map<String, Configuration> toMap(Collection<Configuration> configurations) {
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.component.external.model;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.internal.component.model.DependencyMetadata;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A list of dependencies that are created on demand, for example when decoded from a cache entry. The module configurations of each
+ * dependency are available without creating the dependency, so that the dependencies of a configuration can be selected without
+ * creating the dependencies of the other configurations.
+ *
+ * Implementations must be thread-safe.
+ */
+public abstract class LazyDependencyMetadataList extends AbstractList<DependencyMetadata> {
+    /**
+     * Returns the module configurations of the dependency at the given index. Returns the same value as {@code get(index).getModuleConfigurations()}.
+     */
+    public abstract Set<String> getModuleConfigurations(int index);
+
+    /**
+     * Returns an immutable copy of the given dependencies. A lazy list is not copied, as it cannot be modified and copying would create every dependency.
+     */
+    static List<? extends DependencyMetadata> copyOf(Collection<? extends DependencyMetadata> dependencies) {
+        if (dependencies instanceof LazyDependencyMetadataList) {
+            return (LazyDependencyMetadataList) dependencies;
+        }
+        return ImmutableList.copyOf(dependencies);
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ResolutionStrategy
+import org.gradle.api.artifacts.ResolvedConfiguration
+import org.gradle.api.artifacts.dsl.RepositoryHandler
+import org.gradle.api.artifacts.repositories.ArtifactRepository
+import org.gradle.api.attributes.Attribute
+import org.gradle.api.internal.artifacts.ComponentSelectionRulesInternal
+import org.gradle.api.internal.artifacts.ConfigurationResolver
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultResolverResults
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.ResolverResults
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dependencies.DefaultExternalModuleDependency
+import org.gradle.api.internal.artifacts.dependencies.DefaultProjectDependency
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionsInternal
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.CachingModuleComponentRepository
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ComponentResolvers
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.RepositoryChainModuleSource
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.ResolveIvyFactory
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.modulecache.ResolvedGraphCache
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvableArtifact
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ResolvedVariantSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultComponentResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultResolutionResultBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository
+import org.gradle.api.internal.artifacts.repositories.resolver.MavenResolver
+import org.gradle.api.internal.artifacts.transform.ArtifactTransforms
+import org.gradle.api.internal.artifacts.transform.VariantSelector
+import org.gradle.api.internal.artifacts.type.ArtifactTypeRegistry
+import org.gradle.api.internal.attributes.DefaultImmutableAttributesFactory
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.api.specs.Specs
+import org.gradle.internal.component.external.model.DefaultModuleComponentArtifactIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resolve.ArtifactResolveException
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ArtifactResolver
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.resolver.DependencyToComponentIdResolver
+import org.gradle.util.Path
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+
+class CachingConfigurationResolverSpec extends Specification {
+    def delegate = Mock(ConfigurationResolver)
+    def entries = [:]
+    def cache = new InMemoryResolvedGraphCache(entries: entries)
+    def mavenResolver = Stub(MavenResolver) {
+        getId() >> "repo"
+        isLocal() >> false
+    }
+    def repository = Stub(TestRepository) {
+        createResolver() >> mavenResolver
+    }
+    def repositoryList = [repository]
+    def repositories = Stub(RepositoryHandler) {
+        iterator() >> { repositoryList.iterator() }
+    }
+    def dependencies = [new DefaultExternalModuleDependency("org", "a", "1.+")]
+    def configuration = Stub(ConfigurationInternal)
+
+    def selectedVersion = "1.2"
+    def changing = false
+    def descriptorHash = BigInteger.ONE
+    def file = new File("a.jar")
+    ModuleVersionResolveException metadataFailure = null
+    def idResolver = Mock(DependencyToComponentIdResolver) {
+        resolve(_, _) >> { dependency, result -> result.resolved(DefaultModuleComponentIdentifier.newId("org", "a", selectedVersion), newId("org", "a", selectedVersion)) }
+    }
+    def metadataResolver = Mock(ComponentMetaDataResolver) {
+        resolve(_, _, _) >> { id, override, result ->
+            if (metadataFailure != null) {
+                result.failed(metadataFailure)
+                return
+            }
+            result.resolved(Stub(ComponentResolveMetadata) {
+                isChanging() >> changing
+                getSource() >> new RepositoryChainModuleSource("repo", new CachingModuleComponentRepository.CachingModuleSource(descriptorHash, changing, null))
+            })
+        }
+    }
+    def artifactResolver = Mock(ArtifactResolver)
+    def resolveIvyFactory = Stub(ResolveIvyFactory) {
+        create(_, _, _) >> Stub(ComponentResolvers) {
+            getComponentIdResolver() >> idResolver
+            getComponentResolver() >> metadataResolver
+            getArtifactResolver() >> artifactResolver
+        }
+    }
+    def artifactTransforms = Stub(ArtifactTransforms) {
+        variantSelector(_, _) >> Stub(VariantSelector) {
+            select(_) >> { ResolvedVariantSet variants -> variants.variants.first().artifacts }
+        }
+    }
+    def artifactTypeRegistry = Stub(ArtifactTypeRegistry) {
+        mapAttributesFor(_) >> ImmutableAttributes.EMPTY
+    }
+    def versionSelectorScheme = new DefaultVersionSelectorScheme(new DefaultVersionComparator())
+    def resolver = new CachingConfigurationResolver(delegate, cache, repositories, GlobalDependencyResolutionRules.NO_OP, resolveIvyFactory, versionSelectorScheme,
+        artifactTransforms, artifactTypeRegistry, new DefaultImmutableModuleIdentifierFactory(), new TestBuildOperationExecutor(), false)
+
+    def setup() {
+        def resolutionStrategy = Stub(ResolutionStrategyInternal) {
+            getDependencySubstitution() >> Stub(DependencySubstitutionsInternal)
+            getComponentSelection() >> Stub(ComponentSelectionRulesInternal) {
+                getRules() >> []
+            }
+            getConflictResolution() >> ConflictResolution.latest
+            getSortOrder() >> ResolutionStrategy.SortOrder.DEFAULT
+            getForcedModules() >> ([] as Set)
+        }
+        configuration.getName() >> "conf"
+        configuration.isTransitive() >> true
+        configuration.getExcludeRules() >> ([] as Set)
+        configuration.getHierarchy() >> ([configuration] as Set)
+        configuration.getIdentityPath() >> Path.path(":conf")
+        configuration.getAttributes() >> ImmutableAttributes.EMPTY
+        configuration.getResolutionStrategy() >> resolutionStrategy
+        configuration.getAllDependencies() >> Stub(DependencySet) {
+            iterator() >> { dependencies.iterator() }
+        }
+    }
+
+    def "reuses graph and artifacts resolved in a previous build"() {
+        def graph = graph("1.+", "1.2")
+
+        when:
+        def results = resolve()
+        def files = visitFiles(results)
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        1 * delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts("1.2", ImmutableAttributes.EMPTY)) }
+        files == [file]
+
+        and:
+        entries.size() == 1
+        def cached = entries.values().first()
+        cached.artifacts == [artifactId("1.2")]
+        cached.dynamicVersions == [(new DefaultModuleComponentSelector("org", "a", "1.+")): DefaultModuleComponentIdentifier.newId("org", "a", "1.2")]
+        cached.changingModules.isEmpty()
+
+        when:
+        results = resolve()
+        files = visitFiles(results)
+
+        then:
+        0 * delegate._
+        1 * artifactResolver.resolveArtifact({ it.id == artifactId("1.2") }, { it.delegate instanceof CachingModuleComponentRepository.CachingModuleSource }, _) >> { artifact, source, result -> result.resolved(file) }
+
+        and:
+        results.resolutionResult.root.is(graph.root)
+        results.resolvedLocalComponents.resolvedProjectConfigurations.empty
+        files == [file]
+    }
+
+    def "resolves again when a dynamic version selects a different version"() {
+        def graph = graph("1.+", "1.2")
+
+        given:
+        delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts("1.2", ImmutableAttributes.EMPTY)) }
+        visitFiles(resolve())
+
+        when:
+        selectedVersion = "1.3"
+        resolve()
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+    }
+
+    def "resolves again when the descriptor of a changing module has changed"() {
+        def graph = graph("1.0-SNAPSHOT", "1.0-SNAPSHOT")
+
+        given:
+        dependencies[0] = new DefaultExternalModuleDependency("org", "a", "1.0-SNAPSHOT")
+        changing = true
+        delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts("1.0-SNAPSHOT", ImmutableAttributes.EMPTY)) }
+        visitFiles(resolve())
+
+        expect:
+        entries.values().first().changingModules == [(DefaultModuleComponentIdentifier.newId("org", "a", "1.0-SNAPSHOT")): BigInteger.ONE]
+
+        when:
+        resolve()
+
+        then:
+        0 * delegate.resolveGraph(configuration, _)
+
+        when:
+        descriptorHash = BigInteger.TEN
+        resolve()
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+    }
+
+    def "does not cache graph with unresolved dependencies"() {
+        def graph = graph("1.+", "1.2")
+
+        when:
+        visitFiles(resolve())
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        1 * delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration) { hasError() >> true }, visitedArtifacts("1.2", ImmutableAttributes.EMPTY)) }
+        entries.isEmpty()
+    }
+
+    def "does not cache graph whose artifacts are not visited"() {
+        def graph = graph("1.+", "1.2")
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        entries.isEmpty()
+    }
+
+    def "does not cache graph whose artifacts cannot be created again from the module caches"() {
+        def graph = graph("1.+", "1.2")
+        def transformed = new DefaultImmutableAttributesFactory().of(Attribute.of("artifactType", String), "classes")
+
+        when:
+        visitFiles(resolve())
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        1 * delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts("1.2", transformed)) }
+        entries.isEmpty()
+    }
+
+    def "does not cache graph of configuration with project dependencies"() {
+        given:
+        dependencies << Stub(DefaultProjectDependency)
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        2 * delegate.resolveGraph(configuration, _)
+        entries.isEmpty()
+    }
+
+    def "does not cache graph of configuration that uses a local repository"() {
+        given:
+        def localResolver = Stub(MavenResolver) {
+            isLocal() >> true
+        }
+        def localRepository = Stub(TestRepository) {
+            createResolver() >> localResolver
+        }
+        repositoryList << localRepository
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        1 * delegate.resolveGraph(configuration, _)
+        entries.isEmpty()
+    }
+
+    def "reports failure to resolve the metadata of a component of a cached graph"() {
+        def graph = graph("1.+", "1.2")
+        def failures = []
+        def visitor = Stub(ArtifactVisitor) {
+            requireArtifactFiles() >> true
+            visitFailure(_) >> { Throwable failure -> failures << failure }
+        }
+
+        given:
+        delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts("1.2", ImmutableAttributes.EMPTY)) }
+        visitFiles(resolve())
+        def results = resolve()
+        metadataFailure = new ModuleVersionResolveException(newId("org", "a", "1.2"), "broken")
+
+        when:
+        results.visitedArtifacts.select(Specs.satisfyAll(), ImmutableAttributes.EMPTY, Specs.satisfyAll(), false).visitArtifacts(visitor, true)
+
+        then:
+        0 * artifactResolver.resolveArtifact(_, _, _)
+        failures.size() == 1
+        failures[0] instanceof ArtifactResolveException
+        failures[0].cause.is(metadataFailure)
+    }
+
+    def "resolves graph again when the artifacts of a cached graph are selected by dependency"() {
+        def graph = graph("1.+", "1.2")
+        def visitedArtifacts = Mock(VisitedArtifactSet)
+        def selectedArtifacts = Mock(SelectedArtifactSet)
+        def artifactVisitor = Stub(ArtifactVisitor)
+        def dependencySpec = Specs.convertClosureToSpec { true }
+
+        given:
+        delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet)) }
+        delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts("1.2", ImmutableAttributes.EMPTY)) }
+        visitFiles(resolve())
+        def results = resolve()
+
+        when:
+        results.visitedArtifacts.select(dependencySpec, ImmutableAttributes.EMPTY, Specs.satisfyAll(), true).visitArtifacts(artifactVisitor, false)
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { c, r -> r.graphResolved(graph, Stub(ResolvedLocalComponentsResult), visitedArtifacts) }
+        1 * delegate.resolveArtifacts(configuration, _) >> { c, r -> r.artifactsResolved(Stub(ResolvedConfiguration), visitedArtifacts) }
+        1 * visitedArtifacts.select(dependencySpec, _, _, true) >> selectedArtifacts
+        1 * selectedArtifacts.visitArtifacts(artifactVisitor, false)
+    }
+
+    ResolverResults resolve() {
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+        resolver.resolveArtifacts(configuration, results)
+        return results
+    }
+
+    List<File> visitFiles(ResolverResults results) {
+        def files = []
+        def visitor = Stub(ArtifactVisitor) {
+            requireArtifactFiles() >> true
+            visitArtifact(_, _) >> { variant, ResolvableArtifact artifact -> files << artifact.file }
+        }
+        results.visitedArtifacts.select(Specs.satisfyAll(), ImmutableAttributes.EMPTY, Specs.satisfyAll(), false).visitArtifacts(visitor, false)
+        return files
+    }
+
+    VisitedArtifactSet visitedArtifacts(String version, ImmutableAttributes variant) {
+        def artifact = Stub(ResolvableArtifact) {
+            getId() >> artifactId(version)
+            getFile() >> file
+        }
+        return Stub(VisitedArtifactSet) {
+            select(_, _, _, _) >> Stub(SelectedArtifactSet) {
+                visitArtifacts(_, _) >> { ArtifactVisitor visitor, boolean continueOnSelectionFailure -> visitor.visitArtifact(variant, artifact) }
+            }
+        }
+    }
+
+    static artifactId(String version) {
+        return new DefaultModuleComponentArtifactIdentifier(DefaultModuleComponentIdentifier.newId("org", "a", version), "a", "jar", "jar")
+    }
+
+    def graph(String requestedVersion, String selectedVersion) {
+        def builder = new DefaultResolutionResultBuilder()
+        builder.visitComponent(new DefaultComponentResult(0L, newId("org", "root", "1.0"), VersionSelectionReasons.ROOT, DefaultModuleComponentIdentifier.newId("org", "root", "1.0")))
+        builder.visitComponent(new DefaultComponentResult(1L, newId("org", "a", selectedVersion), VersionSelectionReasons.REQUESTED, DefaultModuleComponentIdentifier.newId("org", "a", selectedVersion)))
+        builder.visitOutgoingEdges(0L, [new DefaultDependencyResult(new DefaultModuleComponentSelector("org", "a", requestedVersion), 1L, null, null)])
+        return builder.complete(0L)
+    }
+
+    interface TestRepository extends ArtifactRepository, ResolutionAwareRepository {
+    }
+
+    static class InMemoryResolvedGraphCache implements ResolvedGraphCache {
+        Map<HashCode, CachedGraph> entries
+
+        @Override
+        void cacheGraph(HashCode key, CachedGraph graph) {
+            entries[key] = graph
+        }
+
+        @Override
+        CachedGraph getCachedGraph(HashCode key) {
+            entries[key]
+        }
+    }
+}
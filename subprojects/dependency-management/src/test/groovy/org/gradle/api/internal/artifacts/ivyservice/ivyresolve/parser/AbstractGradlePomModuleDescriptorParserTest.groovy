@@ -47,7 +47,8 @@ abstract class AbstractGradlePomModuleDescriptorParserTest extends Specification
     }
     final ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory)
     final FileResourceRepository fileRepository = TestFiles.fileRepository()
-    final GradlePomModuleDescriptorParser parser = new GradlePomModuleDescriptorParser(new DefaultVersionSelectorScheme(), moduleIdentifierFactory, moduleExclusions, fileRepository)
+    final PomDocumentCache pomDocumentCache = new PomDocumentCache()
+    final GradlePomModuleDescriptorParser parser = new GradlePomModuleDescriptorParser(new DefaultVersionSelectorScheme(), moduleIdentifierFactory, moduleExclusions, fileRepository, pomDocumentCache)
     final parseContext = Mock(DescriptorParseContext)
     TestFile pomFile
     ModuleDescriptorState descriptor
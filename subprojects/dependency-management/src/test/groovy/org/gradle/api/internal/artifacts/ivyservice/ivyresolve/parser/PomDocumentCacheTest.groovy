@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser
+
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.internal.resource.local.LocalFileStandInExternalResource
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class PomDocumentCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cache = new PomDocumentCache()
+
+    def "parses a POM once while it is unchanged"() {
+        given:
+        def pomFile = tmpDir.file("parent.pom")
+        pomFile.text = pom("1.0")
+        def resource = new LocalFileStandInExternalResource(pomFile, TestFiles.fileSystem())
+
+        when:
+        def first = cache.get(resource)
+        def second = cache.get(new LocalFileStandInExternalResource(pomFile, TestFiles.fileSystem()))
+
+        then:
+        first.is(second)
+        first.coordinates.version == "1.0"
+        cache.size() == 1
+    }
+
+    def "parses a POM again when it changes"() {
+        given:
+        def pomFile = tmpDir.file("parent.pom")
+        pomFile.text = pom("1.0")
+        def resource = new LocalFileStandInExternalResource(pomFile, TestFiles.fileSystem())
+        def first = cache.get(resource)
+
+        when:
+        pomFile.text = pom("1.0-changed")
+        pomFile.lastModified = pomFile.lastModified() + 2000
+        def second = cache.get(resource)
+
+        then:
+        second.coordinates.version == "1.0-changed"
+        !first.is(second)
+    }
+
+    def "reads the content of a POM"() {
+        given:
+        def pomFile = tmpDir.file("parent.pom")
+        pomFile.text = """
+<project>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <parent>
+        <groupId>parent-group</groupId>
+        <artifactId>parent-artifact</artifactId>
+        <version>parent-version</version>
+    </parent>
+    <properties>
+        <some.prop>\${other.prop}</some.prop>
+    </properties>
+    <dependencies>
+        <dependency>
+            <groupId>group-two</groupId>
+            <artifactId>artifact-two</artifactId>
+            <version>\${some.prop}</version>
+            <optional>true</optional>
+            <exclusions>
+                <exclusion>
+                    <groupId>group-three</groupId>
+                    <artifactId>artifact-three</artifactId>
+                </exclusion>
+            </exclusions>
+        </dependency>
+    </dependencies>
+    <profiles>
+        <profile>
+            <id>profile-1</id>
+            <activation>
+                <property>
+                    <name>!some.prop</name>
+                </property>
+            </activation>
+        </profile>
+    </profiles>
+</project>
+"""
+
+        when:
+        def document = cache.get(new LocalFileStandInExternalResource(pomFile, TestFiles.fileSystem()))
+
+        then:
+        document.coordinates.groupId == "group-one"
+        document.parent.artifactId == "parent-artifact"
+        document.relocation == null
+        document.properties == ["some.prop": '${other.prop}']
+        document.dependencies.size() == 1
+        document.dependencies[0].coordinates.version == '${some.prop}'
+        document.dependencies[0].optional == "true"
+        document.dependencies[0].exclusions[0].artifactId == "artifact-three"
+        document.dependencyMgts.empty
+        document.profiles[0].id == "profile-1"
+        document.profiles[0].activationPropertyName == "!some.prop"
+    }
+
+    private static String pom(String version) {
+        return """
+<project>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>${version}</version>
+</project>
+"""
+    }
+}
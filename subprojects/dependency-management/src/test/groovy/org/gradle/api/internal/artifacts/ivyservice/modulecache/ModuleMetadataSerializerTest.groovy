@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import com.google.common.collect.ImmutableListMultimap
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.internal.component.external.descriptor.Configuration
+import org.gradle.internal.component.external.descriptor.DefaultExclude
+import org.gradle.internal.component.external.descriptor.MavenScope
+import org.gradle.internal.component.external.descriptor.MutableModuleDescriptorState
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultMutableIvyModuleResolveMetadata
+import org.gradle.internal.component.external.model.DefaultMutableMavenModuleResolveMetadata
+import org.gradle.internal.component.external.model.IvyDependencyMetadata
+import org.gradle.internal.component.external.model.LazyDependencyMetadataList
+import org.gradle.internal.component.external.model.MavenDependencyMetadata
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.internal.component.external.model.MutableModuleComponentResolveMetadata
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder
+import spock.lang.Specification
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+
+class ModuleMetadataSerializerTest extends Specification {
+    def moduleIdentifierFactory = Mock(ImmutableModuleIdentifierFactory) {
+        moduleWithVersion(_, _, _) >> { args -> DefaultModuleVersionIdentifier.newId(*args) }
+    }
+    def serializer = new ModuleMetadataSerializer(new StringInterner())
+    def id = DefaultModuleComponentIdentifier.newId("group", "module", "1.0")
+    def mvi = DefaultModuleVersionIdentifier.newId("group", "module", "1.0")
+
+    def "reads and writes maven metadata"() {
+        given:
+        def descriptor = new MutableModuleDescriptorState(id, "release", false)
+        descriptor.description = "some module"
+        def compileDep = new MavenDependencyMetadata(MavenScope.Compile, false, newSelector("org", "compile", "1.0"), [], [])
+        def runtimeDep = new MavenDependencyMetadata(MavenScope.Runtime, true, newSelector("org", "runtime", "2.0"), [], [])
+        def metadata = new DefaultMutableMavenModuleResolveMetadata(mvi, id, descriptor, "pom", false, [compileDep, runtimeDep]).asImmutable()
+
+        when:
+        def result = roundTrip(metadata).asImmutable()
+
+        then:
+        result.id == mvi
+        result.componentId == id
+        result.descriptor.status == "release"
+        result.descriptor.description == "some module"
+        result.packaging == "pom"
+        result.dependencies.size() == 2
+        result.dependencies[0].requested == newSelector("org", "compile", "1.0")
+        result.dependencies[0].scope == MavenScope.Compile
+        result.dependencies[1].requested == newSelector("org", "runtime", "2.0")
+        result.dependencies[1].optional
+        result.getConfiguration("compile").dependencies*.requested == [newSelector("org", "compile", "1.0")]
+        result.getConfiguration("optional").dependencies*.requested == [newSelector("org", "runtime", "2.0")]
+    }
+
+    def "reads and writes ivy metadata"() {
+        given:
+        def descriptor = new MutableModuleDescriptorState(id, "integration", true)
+        def configurations = [new Configuration("a", true, true, []), new Configuration("b", false, true, ["a"])]
+        def exclude = new DefaultExclude(DefaultModuleIdentifier.newId("org", "excluded"), ["b"] as String[], "exact")
+        def dependency = new IvyDependencyMetadata(newSelector("org", "dep", "1.+"), "1.+", true, false, true, ImmutableListMultimap.of("b", "default"), [], [exclude])
+        def metadata = new DefaultMutableIvyModuleResolveMetadata(mvi, id, descriptor, configurations, [dependency]).asImmutable()
+
+        when:
+        def result = roundTrip(metadata).asImmutable()
+
+        then:
+        1 * moduleIdentifierFactory.module("org", "excluded") >> DefaultModuleIdentifier.newId("org", "excluded")
+        result.configurationDefinitions.keySet() == ["a", "b"] as Set
+        result.getConfiguration("a").dependencies.empty
+        def dependencies = result.getConfiguration("b").dependencies
+        dependencies.size() == 1
+        dependencies[0].requested == newSelector("org", "dep", "1.+")
+        dependencies[0].confMappings.get("b") == ["default"] as Set
+        dependencies[0].excludes[0].moduleId == DefaultModuleIdentifier.newId("org", "excluded")
+        dependencies[0].force
+    }
+
+    def "decodes only the dependencies of the configurations that are used"() {
+        given:
+        def exclude = new DefaultExclude(DefaultModuleIdentifier.newId("org", "excluded"), ["test"] as String[], "exact")
+        def compileDep = new MavenDependencyMetadata(MavenScope.Compile, false, newSelector("org", "compile", "1.0"), [], [])
+        def testDep = new MavenDependencyMetadata(MavenScope.Test, false, newSelector("org", "test", "1.0"), [], [exclude])
+        def metadata = new DefaultMutableMavenModuleResolveMetadata(mvi, id, new MutableModuleDescriptorState(id), "jar", false, [compileDep, testDep]).asImmutable()
+
+        when:
+        def result = roundTrip(metadata).asImmutable()
+        def dependencies = result.getConfiguration("runtime").dependencies
+
+        then:
+        result.dependencies instanceof LazyDependencyMetadataList
+        dependencies*.requested == [newSelector("org", "compile", "1.0")]
+        0 * moduleIdentifierFactory.module(_, _)
+
+        when:
+        dependencies = result.getConfiguration("test").dependencies
+
+        then:
+        dependencies*.requested == [newSelector("org", "compile", "1.0"), newSelector("org", "test", "1.0")]
+        1 * moduleIdentifierFactory.module("org", "excluded") >> DefaultModuleIdentifier.newId("org", "excluded")
+    }
+
+    def "entries share the strings that they use"() {
+        given:
+        def dependency = new MavenDependencyMetadata(MavenScope.Compile, false, newSelector("org", "compile", "1.0"), [], [])
+        def metadata = new DefaultMutableMavenModuleResolveMetadata(mvi, id, new MutableModuleDescriptorState(id), "jar", false, [dependency]).asImmutable()
+
+        when:
+        def first = roundTrip(metadata)
+        def second = roundTrip(metadata)
+
+        then:
+        first.dependencies[0].requested.group.is(second.dependencies[0].requested.group)
+        first.id.group.is(second.id.group)
+    }
+
+    private MutableModuleComponentResolveMetadata roundTrip(ModuleComponentResolveMetadata metadata) {
+        def outputStream = new ByteArrayOutputStream()
+        def encoder = new KryoBackedEncoder(outputStream)
+        serializer.write(encoder, metadata)
+        encoder.flush()
+        return serializer.read(new KryoBackedDecoder(new ByteArrayInputStream(outputStream.toByteArray())), moduleIdentifierFactory, null)
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph
+
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentOverrideMetadata
+import org.gradle.internal.component.model.ComponentResolveMetadata
+import org.gradle.internal.component.model.ConfigurationMetadata
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata
+import org.gradle.internal.component.model.DependencyMetadata
+import org.gradle.internal.component.model.IvyArtifactName
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import org.gradle.internal.resolve.result.BuildableComponentResolveResult
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+
+class PrefetchingComponentMetaDataResolverTest extends Specification {
+    def delegate = Mock(ComponentMetaDataResolver)
+    def executorFactory = new DefaultExecutorFactory()
+    def resolver = new PrefetchingComponentMetaDataResolver(delegate, new DefaultVersionSelectorScheme(new DefaultVersionComparator()), new TestBuildOperationExecutor(), executorFactory)
+
+    def cleanup() {
+        resolver.stop()
+        executorFactory.stop()
+    }
+
+    def "downloads meta-data for the fixed version dependencies of a component ahead of time"() {
+        def a = component("a", dependency("b", "1.0"), dependency("c", "[1.0,2.0)"))
+        def b = component("b", dependency("d", "1.0"))
+        def d = component("d")
+        def bRequested = new CountDownLatch(1)
+        def dRequested = new CountDownLatch(1)
+        def releaseB = new CountDownLatch(1)
+
+        given:
+        1 * delegate.resolve(id("a"), _, _) >> { args -> args[2].resolved(a) }
+        1 * delegate.resolve(id("b"), _, _) >> { args ->
+            bRequested.countDown()
+            releaseB.await(10, TimeUnit.SECONDS)
+            args[2].resolved(b)
+        }
+        1 * delegate.resolve(id("d"), _, _) >> { args ->
+            dRequested.countDown()
+            args[2].resolved(d)
+        }
+        0 * delegate.resolve(_, _, _)
+
+        when:
+        def resultA = resolve("a")
+
+        then:
+        resultA.metaData == a
+        bRequested.await(10, TimeUnit.SECONDS)
+        dRequested.count == 1
+
+        when:
+        releaseB.countDown()
+        def resultB = resolve("b")
+
+        then:
+        resultB.metaData == b
+        dRequested.await(10, TimeUnit.SECONDS)
+
+        when:
+        def resultD = resolve("d")
+
+        then:
+        resultD.metaData == d
+    }
+
+    def "shares background download with traversal"() {
+        def a = component("a")
+
+        given:
+        resolver.prefetch(id("a"), new DefaultComponentOverrideMetadata())
+
+        when:
+        def result = resolve("a")
+
+        then:
+        result.metaData == a
+
+        and:
+        1 * delegate.resolve(id("a"), _, _) >> { args -> args[2].resolved(a) }
+        0 * delegate.resolve(_, _, _)
+    }
+
+    def "reports failure of background download to traversal"() {
+        def failure = new ModuleVersionResolveException(newSelector("group", "a", "1.0"), "broken")
+
+        given:
+        resolver.prefetch(id("a"), new DefaultComponentOverrideMetadata())
+
+        when:
+        def result = resolve("a")
+
+        then:
+        result.failure == failure
+
+        and:
+        1 * delegate.resolve(id("a"), _, _) >> { args -> args[2].failed(failure) }
+        0 * delegate.resolve(_, _, _)
+    }
+
+    def "does not share requests that override the component meta-data"() {
+        def a = component("a")
+        def overrides = new DefaultComponentOverrideMetadata().withChanging()
+
+        given:
+        resolver.prefetch(id("a"), overrides)
+
+        when:
+        def result1 = resolve("a", overrides)
+        def result2 = resolve("a", overrides)
+
+        then:
+        result1.metaData == a
+        result2.metaData == a
+
+        and:
+        2 * delegate.resolve(id("a"), overrides, _) >> { args -> args[2].resolved(a) }
+        0 * delegate.resolve(_, _, _)
+    }
+
+    def "treats meta-data that is being downloaded as cheap to fetch"() {
+        given:
+        delegate.isFetchingMetadataCheap(_) >> false
+        resolver.prefetch(id("a"), new DefaultComponentOverrideMetadata())
+
+        expect:
+        resolver.isFetchingMetadataCheap(id("a"))
+        !resolver.isFetchingMetadataCheap(id("b"))
+    }
+
+    private BuildableComponentResolveResult resolve(String name, ComponentOverrideMetadata overrides = new DefaultComponentOverrideMetadata()) {
+        def result = new DefaultBuildableComponentResolveResult()
+        resolver.resolve(id(name), overrides, result)
+        return result
+    }
+
+    private static ModuleComponentIdentifier id(String name) {
+        return DefaultModuleComponentIdentifier.newId("group", name, "1.0")
+    }
+
+    private ComponentResolveMetadata component(String name, DependencyMetadata... dependencies) {
+        def configuration = Stub(ConfigurationMetadata) {
+            getDependencies() >> (dependencies as List)
+        }
+        return Stub(ComponentResolveMetadata) {
+            getComponentId() >> id(name)
+            getConfiguration("default") >> configuration
+        }
+    }
+
+    private DependencyMetadata dependency(String name, String version) {
+        return Stub(DependencyMetadata) {
+            getSelector() >> DefaultModuleComponentSelector.newSelector("group", name, version)
+            getArtifacts() >> ([] as Set<IvyArtifactName>)
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.result
+
+import org.gradle.api.artifacts.result.ComponentSelectionReason
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.resolve.ModuleVersionResolveException
+import org.gradle.internal.serialize.SerializerSpec
+
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier.newId
+import static org.gradle.api.internal.artifacts.DefaultModuleVersionSelector.newSelector
+import static org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ResolutionResultPrinter.printGraph
+
+class ResolutionResultSerializerTest extends SerializerSpec {
+    def serializer = new ResolutionResultSerializer(new DefaultImmutableModuleIdentifierFactory())
+    def builder = new DefaultResolutionResultBuilder()
+
+    def "serializes graph"() {
+        given:
+        node("root", VersionSelectionReasons.ROOT)
+        node("a")
+        node("b", VersionSelectionReasons.CONFLICT_RESOLUTION)
+        node("c")
+        edges("root", [dep("a"), dep("b")])
+        edges("a", [dep("c"), dep("b", "0.9")])
+        edges("b", [dep("c")])
+        def root = builder.complete(id("root")).root
+
+        when:
+        def result = serialize(root, serializer)
+
+        then:
+        printGraph(result) == """x:root:1
+  x:a:1 [root]
+    x:c:1 [a,b]
+    x:b:0.9 -> x:b:1(C) [root,a]
+  x:b:1(C) [root,a]
+    x:c:1 [a,b]
+"""
+        result.id == root.id
+        result.selectionReason == VersionSelectionReasons.ROOT
+    }
+
+    def "serializes graph with cycle"() {
+        given:
+        node("root", VersionSelectionReasons.ROOT)
+        node("a")
+        edges("root", [dep("a")])
+        edges("a", [dep("root")])
+        def root = builder.complete(id("root")).root
+
+        when:
+        def result = serialize(root, serializer)
+
+        then:
+        printGraph(result) == printGraph(root)
+        result.dependencies.first().selected.dependencies.first().selected.is(result)
+    }
+
+    def "cannot serialize graph with unresolved dependencies"() {
+        given:
+        node("root", VersionSelectionReasons.ROOT)
+        edges("root", [new DefaultDependencyResult(new DefaultModuleComponentSelector("x", "u", "1"), null, VersionSelectionReasons.REQUESTED, new ModuleVersionResolveException(newSelector("x", "u", "1"), new RuntimeException()))])
+        def root = builder.complete(id("root")).root
+
+        when:
+        toBytes(root, serializer)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Cannot serialize a resolution result that contains unresolved dependency x:u:1."
+    }
+
+    private void node(String module, ComponentSelectionReason reason = VersionSelectionReasons.REQUESTED) {
+        builder.visitComponent(new DefaultComponentResult(id(module), newId("x", module, "1"), reason, new DefaultModuleComponentIdentifier("x", module, "1")))
+    }
+
+    private void edges(String module, List<DefaultDependencyResult> deps) {
+        builder.visitOutgoingEdges(id(module), deps)
+    }
+
+    private static DefaultDependencyResult dep(String module, String requestedVersion = "1") {
+        new DefaultDependencyResult(new DefaultModuleComponentSelector("x", module, requestedVersion), id(module), null, null)
+    }
+
+    private static Long id(String module) {
+        return module.hashCode()
+    }
+}
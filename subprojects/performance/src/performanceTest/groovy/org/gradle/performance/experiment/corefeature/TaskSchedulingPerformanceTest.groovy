@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.performance.experiment.corefeature
+
+import org.gradle.performance.AbstractCrossBuildPerformanceTest
+import org.gradle.performance.categories.PerformanceExperiment
+import org.junit.experimental.categories.Category
+
+@Category(PerformanceExperiment)
+class TaskSchedulingPerformanceTest extends AbstractCrossBuildPerformanceTest {
+
+    def "schedule 12000 no-op tasks with ready queue"() {
+        when:
+        runner.testGroup = "task scheduling"
+        runner.buildSpec {
+            warmUpCount = 2
+            invocationCount = 6
+            projectName("manyTasksWithDependencies").displayName("ready queue").invocation {
+                tasksToRun("scheduleAll").args("--parallel", "--max-workers=8", "-Dorg.gradle.tasks.readyqueue=true").gradleOpts("-Xms1g", "-Xmx1g")
+            }
+        }
+        runner.baseline {
+            warmUpCount = 2
+            invocationCount = 6
+            projectName("manyTasksWithDependencies").displayName("execution queue scan").invocation {
+                tasksToRun("scheduleAll").args("--parallel", "--max-workers=8").gradleOpts("-Xms1g", "-Xmx1g")
+            }
+        }
+
+        then:
+        runner.run()
+    }
+}
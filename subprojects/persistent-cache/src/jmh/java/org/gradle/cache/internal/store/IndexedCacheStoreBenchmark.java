@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.store;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Compares the put and get throughput of the B-tree and log structured stores. The size of the backing file is printed at the end of each
+ * iteration, to compare how the files grow when existing entries are replaced.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+@SuppressWarnings("Since15")
+public class IndexedCacheStoreBenchmark {
+    @Param({"BTREE", "LOG"})
+    String storeType;
+
+    @Param({"10000"})
+    int keyCount;
+
+    @Param({"64", "1024"})
+    int valueSize;
+
+    private File tempDir;
+    private File cacheFile;
+    private IndexedCacheStore<String, byte[]> store;
+    private String[] keys;
+    private byte[][] values;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        tempDir = Files.createTempDirectory("indexed-cache-store").toFile();
+        cacheFile = new File(tempDir, "cache." + storeType.toLowerCase());
+        Random random = new Random(1234L);
+        keys = new String[keyCount];
+        values = new byte[16][valueSize];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "/some/path/to/a/file/number/" + i + ".java";
+        }
+        for (byte[] value : values) {
+            random.nextBytes(value);
+        }
+        store = createStore();
+        for (int i = 0; i < keyCount; i++) {
+            store.put(keys[i], values[i % values.length]);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reopen() {
+        store.close();
+        System.out.println();
+        System.out.println(storeType + " file size: " + cacheFile.length() + " bytes");
+        store = createStore();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    private IndexedCacheStore<String, byte[]> createStore() {
+        if (storeType.equals("LOG")) {
+            return new LogStructuredPersistentIndexedCache<String, byte[]>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+        }
+        return new BTreePersistentIndexedCache<String, byte[]>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.BYTE_ARRAY_SERIALIZER);
+    }
+
+    @Benchmark
+    public void put() {
+        int index = next++;
+        store.put(keys[index % keyCount], values[index % values.length]);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        return store.get(keys[next++ % keyCount]);
+    }
+}
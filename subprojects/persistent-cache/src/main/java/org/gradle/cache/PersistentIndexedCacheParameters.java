@@ -19,13 +19,26 @@ import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.Serializer;
 
 import javax.annotation.Nullable;
+import java.util.Locale;
 
 public class PersistentIndexedCacheParameters<K, V> {
+    /**
+     * The system property that specifies the page cache size, in bytes, to use for large caches that opt in to it. See {@link #pageCacheSize(long)}.
+     */
+    public static final String PAGE_CACHE_SIZE_PROPERTY = "org.gradle.cache.pageCacheSize";
+
+    /**
+     * The system property that specifies the {@link StoreType} to use for write heavy caches that opt in to it. See {@link #storeType(StoreType)}.
+     */
+    public static final String STORE_TYPE_PROPERTY = "org.gradle.cache.storeType";
+
     private static final BaseSerializerFactory SERIALIZER_FACTORY = new BaseSerializerFactory();
     private final String cacheName;
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private CacheDecorator cacheDecorator;
+    private long pageCacheSize;
+    private StoreType storeType = StoreType.BTREE;
 
     public PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this.cacheName = cacheName;
@@ -67,4 +80,63 @@ public class PersistentIndexedCacheParameters<K, V> {
         this.cacheDecorator = cacheDecorator;
         return this;
     }
+
+    /**
+     * Returns the maximum number of bytes of the cache file to keep in an off-heap page cache, or 0 when the file is read directly.
+     */
+    public long getPageCacheSize() {
+        return pageCacheSize;
+    }
+
+    /**
+     * Keeps up to the given number of bytes of the cache file in an off-heap page cache, so that lookups in a large cache do not need to
+     * read from the file and do not increase the size of the heap. Use 0 to read directly from the file, which is the default.
+     */
+    public PersistentIndexedCacheParameters<K, V> pageCacheSize(long pageCacheSize) {
+        assert pageCacheSize >= 0;
+        this.pageCacheSize = pageCacheSize;
+        return this;
+    }
+
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    /**
+     * Specifies the format of the file that backs the cache. Defaults to {@link StoreType#BTREE}.
+     */
+    public PersistentIndexedCacheParameters<K, V> storeType(StoreType storeType) {
+        assert storeType != null;
+        this.storeType = storeType;
+        return this;
+    }
+
+    /**
+     * The format of the file that backs a persistent indexed cache.
+     */
+    public enum StoreType {
+        /**
+         * A B-tree that is updated in place. Suitable for caches that are mostly read.
+         */
+        BTREE,
+        /**
+         * A log that each update is appended to, with an in-memory index. Suitable for caches that are frequently updated. The index is rebuilt when the cache is opened.
+         */
+        LOG;
+
+        /**
+         * Returns the store type specified by the {@value #STORE_TYPE_PROPERTY} system property, or {@link #BTREE} when not specified.
+         */
+        public static StoreType fromSystemProperty() {
+            String value = System.getProperty(STORE_TYPE_PROPERTY);
+            if (value == null) {
+                return BTREE;
+            }
+            try {
+                return valueOf(value.toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Unsupported cache store type '%s'. Supported types are BTREE and LOG.", value));
+            }
+        }
+    }
 }
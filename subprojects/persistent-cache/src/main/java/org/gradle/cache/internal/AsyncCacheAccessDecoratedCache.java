@@ -23,10 +23,19 @@ import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+/**
+ * Applies the updates to a cache asynchronously. An update to a key that has not yet been applied is replaced by a later update to the same key,
+ * so that only the last value written for the key is written to the backing cache.
+ */
 public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V> {
     private final AsyncCacheAccess asyncCacheAccess;
     private final MultiProcessSafePersistentIndexedCache<K, V> persistentCache;
+    private final Map<K, PendingUpdate> pendingUpdates = new HashMap<K, PendingUpdate>();
 
     public AsyncCacheAccessDecoratedCache(AsyncCacheAccess asyncCacheAccess, MultiProcessSafePersistentIndexedCache<K, V> persistentCache) {
         this.asyncCacheAccess = asyncCacheAccess;
@@ -55,31 +64,34 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     }
 
     @Override
-    public void putLater(final K key, final V value, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    persistentCache.put(key, value);
-                } finally {
-                    completion.run();
-                }
-            }
-        });
+    public void putLater(K key, V value, Runnable completion) {
+        update(key, value, false, completion);
     }
 
     @Override
-    public void removeLater(final K key, final Runnable completion) {
-        asyncCacheAccess.enqueue(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    persistentCache.remove(key);
-                } finally {
-                    completion.run();
-                }
+    public void removeLater(K key, Runnable completion) {
+        update(key, null, true, completion);
+    }
+
+    private void update(K key, @Nullable V value, boolean remove, Runnable completion) {
+        PendingUpdate update;
+        synchronized (pendingUpdates) {
+            update = pendingUpdates.get(key);
+            if (update != null) {
+                update.replace(value, remove, completion);
+                return;
             }
-        });
+            update = new PendingUpdate(key, value, remove, completion);
+            pendingUpdates.put(key, update);
+        }
+        try {
+            asyncCacheAccess.enqueue(update);
+        } catch (RuntimeException e) {
+            synchronized (pendingUpdates) {
+                pendingUpdates.remove(key);
+            }
+            throw e;
+        }
     }
 
     @Override
@@ -96,4 +108,49 @@ public class AsyncCacheAccessDecoratedCache<K, V> implements MultiProcessSafeAsy
     public void beforeLockRelease(FileLock.State currentCacheState) {
         persistentCache.beforeLockRelease(currentCacheState);
     }
+
+    private class PendingUpdate implements Runnable {
+        private final K key;
+        private final List<Runnable> completions = new ArrayList<Runnable>(1);
+        private V value;
+        private boolean remove;
+
+        PendingUpdate(K key, @Nullable V value, boolean remove, Runnable completion) {
+            this.key = key;
+            this.value = value;
+            this.remove = remove;
+            completions.add(completion);
+        }
+
+        /**
+         * Replaces the value to write. Called while holding the lock on the pending updates.
+         */
+        void replace(@Nullable V value, boolean remove, Runnable completion) {
+            this.value = value;
+            this.remove = remove;
+            completions.add(completion);
+        }
+
+        @Override
+        public void run() {
+            V value;
+            boolean remove;
+            synchronized (pendingUpdates) {
+                pendingUpdates.remove(key);
+                value = this.value;
+                remove = this.remove;
+            }
+            try {
+                if (remove) {
+                    persistentCache.remove(key);
+                } else {
+                    persistentCache.put(key, value);
+                }
+            } finally {
+                for (Runnable completion : completions) {
+                    completion.run();
+                }
+            }
+        }
+    }
 }
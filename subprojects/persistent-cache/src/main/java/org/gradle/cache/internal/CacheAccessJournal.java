@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.collect.Maps;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An append-only journal of the accesses to the files of a cache directory, in the order the accesses happened. Each record holds the name and
+ * size of a file that was used, added or removed. Replaying the journal gives the files of the cache in least recently used order along with
+ * their sizes, without listing the directory or reading the attributes of any file.
+ *
+ * Each record is appended with a single write, so that multiple processes can use the journal at the same time. A partially written record at
+ * the end of the journal is ignored. The journal is only rewritten from scratch once most of its records have been superseded by later records.
+ */
+public class CacheAccessJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessJournal.class);
+    private static final int MAGIC = 0x4a524e31;
+    private static final long REMOVED = -1;
+    private static final int MIN_RECORDS_FOR_COMPACTION = 1000;
+
+    private final File journalFile;
+
+    public CacheAccessJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * Records that the given file of the cache has been used or added.
+     */
+    public void recordAccess(File file) {
+        if (!file.isFile()) {
+            return;
+        }
+        append(file.getName(), file.length());
+    }
+
+    /**
+     * Records that the given file has been removed from the cache.
+     */
+    public void recordRemoval(File file) {
+        append(file.getName(), REMOVED);
+    }
+
+    private synchronized void append(String name, long size) {
+        if (!journalFile.exists()) {
+            // Recording starts once the journal has been created from the contents of the cache directory
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(name.length() + 16);
+            DataOutputStream record = new DataOutputStream(bytes);
+            record.writeUTF(name);
+            record.writeLong(size);
+            OutputStream output = new FileOutputStream(journalFile, true);
+            try {
+                bytes.writeTo(output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not record access to " + name + " in " + journalFile, e);
+        }
+    }
+
+    /**
+     * Reads the journal.
+     *
+     * @return the state of the cache, or null when the journal does not exist or cannot be read, for example because it is corrupt.
+     */
+    @Nullable
+    public synchronized Contents read() {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)));
+            try {
+                if (input.readInt() != MAGIC) {
+                    return null;
+                }
+                Contents contents = new Contents(input.readLong());
+                while (true) {
+                    String name;
+                    long size;
+                    try {
+                        name = input.readUTF();
+                        size = input.readLong();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    if (size < 0 && size != REMOVED) {
+                        LOGGER.debug("Ignoring corrupt journal " + journalFile);
+                        return null;
+                    }
+                    contents.replay(name, size);
+                }
+                return contents;
+            } finally {
+                input.close();
+            }
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (EOFException e) {
+            return null;
+        } catch (IOException e) {
+            LOGGER.debug("Could not read journal " + journalFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the journal with one that holds just the given contents.
+     */
+    public synchronized void write(Contents contents) {
+        File tempFile = new File(journalFile.getParentFile(), journalFile.getName() + ".tmp");
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                output.writeInt(MAGIC);
+                output.writeLong(contents.getScanTime());
+                for (Map.Entry<String, Long> entry : contents.files.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue());
+                }
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!tempFile.renameTo(journalFile)) {
+            GFileUtils.deleteQuietly(journalFile);
+            GFileUtils.moveFile(tempFile, journalFile);
+        }
+    }
+
+    /**
+     * The files of a cache in least recently used order, along with their sizes.
+     */
+    public static class Contents {
+        private final long scanTime;
+        private final LinkedHashMap<String, Long> files = new LinkedHashMap<String, Long>();
+        private long totalSize;
+        private int recordCount;
+
+        /**
+         * @param scanTime the time at which the cache directory was last listed, to pick up files that were added without being recorded.
+         */
+        public Contents(long scanTime) {
+            this.scanTime = scanTime;
+        }
+
+        public long getScanTime() {
+            return scanTime;
+        }
+
+        public long getTotalSize() {
+            return totalSize;
+        }
+
+        public int getFileCount() {
+            return files.size();
+        }
+
+        /**
+         * Adds the given file as the most recently used file of the cache.
+         */
+        public void add(String name, long size) {
+            remove(name);
+            files.put(name, size);
+            totalSize += size;
+        }
+
+        public void remove(String name) {
+            Long previous = files.remove(name);
+            if (previous != null) {
+                totalSize -= previous;
+            }
+        }
+
+        /**
+         * Removes the least recently used file of the cache.
+         *
+         * @return the name and size of the file, or null when there are no files.
+         */
+        @Nullable
+        public Map.Entry<String, Long> removeLeastRecentlyUsed() {
+            Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Map.Entry<String, Long> next = iterator.next();
+            Map.Entry<String, Long> eldest = Maps.immutableEntry(next.getKey(), next.getValue());
+            iterator.remove();
+            totalSize -= eldest.getValue();
+            return eldest;
+        }
+
+        /**
+         * Returns true when most of the records read from the journal have been superseded by later records, so that the journal should be rewritten.
+         */
+        public boolean isCompactionRequired() {
+            return recordCount >= MIN_RECORDS_FOR_COMPACTION && recordCount > 2 * files.size();
+        }
+
+        private void replay(String name, long size) {
+            recordCount++;
+            if (size == REMOVED) {
+                remove(name);
+            } else {
+                add(name, size);
+            }
+        }
+    }
+}
@@ -24,23 +24,45 @@ import org.gradle.internal.concurrent.ExecutorPolicy;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Applies the operations on a cache using a single thread, holding the cache lock across a batch of operations.
+ *
+ * The lock is held while operations keep arriving. The time the worker waits for the next operation before it releases the lock starts short,
+ * so that the lock is released soon after an isolated update, and grows while operations keep arriving or while the queue is filling up,
+ * so that the lock is not released and reacquired in the middle of a burst of updates.
+ */
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
-    private final BlockingQueue<Runnable> workQueue;
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorker.class);
+    private static final long MIN_BATCH_WINDOW_MILLIS = 10;
+
+    private final BlockingQueue<QueuedOperation> workQueue;
+    private final int queueCapacity;
     private final String displayName;
     private final CacheAccess cacheAccess;
     private final long batchWindowMillis;
     private final long maximumLockingTimeMillis;
+    private final AtomicInteger operationCount = new AtomicInteger();
+    private final AtomicInteger blockedCount = new AtomicInteger();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    // Only accessed by the worker thread, and once the worker has completed
+    private int dequeuedCount;
+    private long queuedNanos;
+    private long maxQueuedNanos;
     private boolean closed;
     private boolean workerCompleted;
     private boolean stopSeen;
@@ -53,8 +75,8 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         this.batchWindowMillis = 200;
         this.maximumLockingTimeMillis = 5000;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
-        int queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
-        workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity, true);
+        queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
+        workQueue = new LinkedBlockingQueue<QueuedOperation>(queueCapacity);
     }
 
     @Override
@@ -66,10 +88,20 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         if (closed) {
             throw new IllegalStateException("The worker has already been closed. Cannot add more work to queue.");
         }
+        operationCount.incrementAndGet();
+        QueuedOperation operation = new QueuedOperation(task);
+        if (workQueue.offer(operation)) {
+            return;
+        }
+        // The queue is full, so wait for the worker to catch up and record how long the producer was held up
+        long start = System.nanoTime();
         try {
-            workQueue.put(task);
+            workQueue.put(operation);
         } catch (InterruptedException e) {
             throw UncheckedException.throwAsUncheckedException(e);
+        } finally {
+            blockedCount.incrementAndGet();
+            blockedNanos.addAndGet(System.nanoTime() - start);
         }
     }
 
@@ -151,11 +183,11 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             failureHandler.onFailure("Failed to execute cache operations on " + displayName, t);
         } finally {
             // Notify any waiting flush threads that the worker is done, possibly with a failure
-            List<Runnable> runnables = new ArrayList<Runnable>();
-            workQueue.drainTo(runnables);
-            for (Runnable runnable : runnables) {
-                if (runnable instanceof FlushOperationsCommand) {
-                    FlushOperationsCommand flushOperationsCommand = (FlushOperationsCommand) runnable;
+            List<QueuedOperation> operations = new ArrayList<QueuedOperation>();
+            workQueue.drainTo(operations);
+            for (QueuedOperation operation : operations) {
+                if (operation.runnable instanceof FlushOperationsCommand) {
+                    FlushOperationsCommand flushOperationsCommand = (FlushOperationsCommand) operation.runnable;
                     flushOperationsCommand.completed();
                 }
             }
@@ -165,7 +197,15 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     }
 
     private Runnable takeFromQueue() throws InterruptedException {
-        return workQueue.take();
+        return dequeued(workQueue.take());
+    }
+
+    private Runnable dequeued(QueuedOperation operation) {
+        long queued = System.nanoTime() - operation.enqueuedNanos;
+        dequeuedCount++;
+        queuedNanos += queued;
+        maxQueuedNanos = Math.max(maxQueuedNanos, queued);
+        return operation.runnable;
     }
 
     private void flushOperations(final Runnable updateOperation) {
@@ -178,9 +218,11 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                     if (updateOperation != null) {
                         failureHandler.onExecute(updateOperation);
                     }
-                    Runnable otherOperation;
+                    QueuedOperation next;
+                    long window = MIN_BATCH_WINDOW_MILLIS;
                     try {
-                        while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
+                        while ((next = workQueue.poll(window, TimeUnit.MILLISECONDS)) != null) {
+                            Runnable otherOperation = dequeued(next);
                             failureHandler.onExecute(otherOperation);
                             final Class<? extends Runnable> runnableClass = otherOperation.getClass();
                             if (runnableClass == FlushOperationsCommand.class) {
@@ -194,6 +236,7 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
                                     || timer.hasExpired()) {
                                 break;
                             }
+                            window = nextBatchWindow(window);
                         }
                     } catch (InterruptedException e) {
                         throw UncheckedException.throwAsUncheckedException(e);
@@ -207,11 +250,19 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
         }
     }
 
+    private long nextBatchWindow(long window) {
+        if (workQueue.size() >= queueCapacity / 2) {
+            // Producers are close to blocking, so keep the lock for as long as possible
+            return batchWindowMillis;
+        }
+        return Math.min(window * 2, batchWindowMillis);
+    }
+
     public synchronized void stop() {
         if (!closed && !workerCompleted) {
             closed = true;
             try {
-                workQueue.put(new ShutdownOperationsCommand());
+                workQueue.put(new QueuedOperation(new ShutdownOperationsCommand()));
             } catch (InterruptedException e) {
                 // ignore
             }
@@ -220,10 +271,34 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
             } catch (InterruptedException e) {
                 // ignore
             }
+            logStatistics();
         }
         rethrowFailure();
     }
 
+    private void logStatistics() {
+        int blocked = blockedCount.get();
+        long averageQueuedMillis = dequeuedCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(queuedNanos / dequeuedCount);
+        long maxQueuedMillis = TimeUnit.NANOSECONDS.toMillis(maxQueuedNanos);
+        if (blocked > 0) {
+            LOGGER.info("{} operations were queued for {}, {} of which waited {}ms in total for space in the queue. Operations waited {}ms on average and {}ms at most before being picked up.",
+                operationCount.get(), displayName, blocked, TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()), averageQueuedMillis, maxQueuedMillis);
+        } else {
+            LOGGER.debug("{} operations were queued for {}. Operations waited {}ms on average and {}ms at most before being picked up.",
+                operationCount.get(), displayName, averageQueuedMillis, maxQueuedMillis);
+        }
+    }
+
+    private static class QueuedOperation {
+        private final Runnable runnable;
+        private final long enqueuedNanos;
+
+        QueuedOperation(Runnable runnable) {
+            this.runnable = runnable;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
     private static class ShutdownOperationsCommand implements Runnable {
         @Override
         public void run() {
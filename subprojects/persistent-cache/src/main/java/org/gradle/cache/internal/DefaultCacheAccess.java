@@ -30,6 +30,8 @@ import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.store.IndexedCacheStore;
+import org.gradle.cache.internal.store.LogStructuredPersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -277,11 +279,12 @@ public class DefaultCacheAccess implements CacheCoordinator {
         IndexedCacheEntry<K, V> entry = Cast.uncheckedCast(caches.get(parameters.getCacheName()));
         try {
             if (entry == null) {
-                final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
+                String extension = parameters.getStoreType() == PersistentIndexedCacheParameters.StoreType.LOG ? ".log" : ".bin";
+                final File cacheFile = new File(baseDir, parameters.getCacheName() + extension);
                 LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-                    public BTreePersistentIndexedCache<K, V> create() {
-                        return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<IndexedCacheStore<K, V>> indexedCacheFactory = new Factory<IndexedCacheStore<K, V>>() {
+                    public IndexedCacheStore<K, V> create() {
+                        return doCreateCache(cacheFile, parameters);
                     }
                 };
 
@@ -307,8 +310,11 @@ public class DefaultCacheAccess implements CacheCoordinator {
         }
     }
 
-    <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
+    <K, V> IndexedCacheStore<K, V> doCreateCache(File cacheFile, PersistentIndexedCacheParameters<K, V> parameters) {
+        if (parameters.getStoreType() == PersistentIndexedCacheParameters.StoreType.LOG) {
+            return new LogStructuredPersistentIndexedCache<K, V>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+        }
+        return new BTreePersistentIndexedCache<K, V>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer(), (short) 512, 512, parameters.getPageCacheSize());
     }
 
     /**
@@ -439,6 +445,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStoreType(faultMessages, parameters.getStoreType());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -481,6 +488,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStoreType(Collection<String> faultMessages, PersistentIndexedCacheParameters.StoreType storeType) {
+            if (storeType != parameters.getStoreType()) {
+                faultMessages.add(
+                    String.format(" * Requested store type (%s) doesn't match current store type (%s)",
+                        storeType, parameters.getStoreType()));
+            }
+        }
     }
 
     private static class InvalidCacheReuseException extends GradleException {
@@ -29,6 +29,7 @@ import org.gradle.cache.internal.filelock.LockStateAccess;
 import org.gradle.cache.internal.filelock.LockStateSerializer;
 import org.gradle.cache.internal.filelock.Version1LockStateSerializer;
 import org.gradle.cache.internal.locklistener.FileLockContentionHandler;
+import org.gradle.cache.internal.locklistener.FileLockHandoffChannel;
 import org.gradle.internal.Factory;
 import org.gradle.internal.FileUtils;
 import org.gradle.internal.concurrent.CompositeStoppable;
@@ -37,31 +38,52 @@ import org.gradle.internal.id.IdGenerator;
 import org.gradle.internal.id.RandomLongIdGenerator;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
 import org.gradle.util.GFileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import static org.gradle.internal.UncheckedException.throwAsUncheckedException;
 
 /**
  * Uses file system locks on a lock file per target file.
+ *
+ * When {@link #HANDOFF_CHANNEL_PROPERTY} is set, the processes on this machine also coordinate the handoff of a contended lock
+ * through a {@link FileLockHandoffChannel} next to the lock file, falling back to pinging the lock holder through its socket.
+ * The channel for a lock file is opened the first time the file is locked, and stays open until this manager is stopped.
  */
-public class DefaultFileLockManager implements FileLockManager {
+public class DefaultFileLockManager implements FileLockManager, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileLockManager.class);
     public static final int DEFAULT_LOCK_TIMEOUT = 60000;
 
+    /**
+     * The system property that enables the handoff of contended locks through a memory mapped channel next to the lock file.
+     */
+    public static final String HANDOFF_CHANNEL_PROPERTY = "org.gradle.filelock.handoffChannel";
+
+    /**
+     * How long to wait for the lock holder to acknowledge a request made through the handoff channel before also pinging it through its socket.
+     */
+    private static final long CHANNEL_ACKNOWLEDGE_TIMEOUT_MS = 20;
+
+
     private final Set<File> lockedFiles = new CopyOnWriteArraySet<File>();
     private final ProcessMetaDataProvider metaDataProvider;
     private final int lockTimeoutMs;
     private final IdGenerator<Long> generator;
     private final FileLockContentionHandler fileLockContentionHandler;
     private final int shortTimeoutMs = 10000;
+    private final boolean useHandoffChannel;
+    private final ConcurrentMap<File, FileLockHandoffChannel> handoffChannels = new ConcurrentHashMap<File, FileLockHandoffChannel>();
 
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, FileLockContentionHandler fileLockContentionHandler) {
         this(metaDataProvider, DEFAULT_LOCK_TIMEOUT, fileLockContentionHandler);
@@ -73,10 +95,16 @@ public class DefaultFileLockManager implements FileLockManager {
 
     DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
                            IdGenerator<Long> generator) {
+        this(metaDataProvider, lockTimeoutMs, fileLockContentionHandler, generator, Boolean.getBoolean(HANDOFF_CHANNEL_PROPERTY));
+    }
+
+    DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider, int lockTimeoutMs, FileLockContentionHandler fileLockContentionHandler,
+                           IdGenerator<Long> generator, boolean useHandoffChannel) {
         this.metaDataProvider = metaDataProvider;
         this.lockTimeoutMs = lockTimeoutMs;
         this.fileLockContentionHandler = fileLockContentionHandler;
         this.generator = generator;
+        this.useHandoffChannel = useHandoffChannel;
     }
 
     public FileLock lock(File target, LockOptions options, String targetDisplayName) throws LockTimeoutException {
@@ -104,6 +132,46 @@ public class DefaultFileLockManager implements FileLockManager {
         }
     }
 
+    @Override
+    public void stop() {
+        for (FileLockHandoffChannel channel : handoffChannels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close {}.", channel, e);
+            }
+        }
+        handoffChannels.clear();
+    }
+
+    @Nullable
+    private FileLockHandoffChannel getHandoffChannel(File lockFile, String displayName) {
+        FileLockHandoffChannel channel = handoffChannels.get(lockFile);
+        if (channel != null) {
+            return channel;
+        }
+        try {
+            channel = FileLockHandoffChannel.open(lockFile);
+        } catch (IOException e) {
+            LOGGER.debug("Could not open lock handoff channel for {}. Using the socket only.", displayName, e);
+            return null;
+        }
+        if (channel == null) {
+            LOGGER.debug("Lock handoff channel for {} is not available. Using the socket only.", displayName);
+            return null;
+        }
+        FileLockHandoffChannel existing = handoffChannels.putIfAbsent(lockFile, channel);
+        if (existing != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close {}.", channel, e);
+            }
+            return existing;
+        }
+        return channel;
+    }
+
     private class DefaultFileLock extends AbstractFileAccess implements FileLock {
         private final File lockFile;
         private final File target;
@@ -115,6 +183,7 @@ public class DefaultFileLockManager implements FileLockManager {
         private LockState lockState;
         private int port;
         private final long lockId;
+        private final FileLockHandoffChannel handoffChannel;
 
         public DefaultFileLock(File target, LockOptions options, String displayName, String operationDisplayName, int port, Runnable whenContended) throws Throwable {
             this.port = port;
@@ -141,16 +210,24 @@ public class DefaultFileLockManager implements FileLockManager {
                 throw e;
             }
 
+            handoffChannel = useHandoffChannel && port != -1 ? getHandoffChannel(lockFile, displayName) : null;
+
             LockStateSerializer stateProtocol = options.isUseCrossVersionImplementation() ? new Version1LockStateSerializer() : new DefaultLockStateSerializer();
             lockFileAccess = new LockFileAccess(lockFile, new LockStateAccess(stateProtocol));
             try {
                 if (whenContended != null) {
                     fileLockContentionHandler.start(lockId, whenContended);
+                    if (handoffChannel != null) {
+                        fileLockContentionHandler.watch(lockId, handoffChannel);
+                    }
                 }
                 lockState = lock(options.getMode());
             } catch (Throwable t) {
                 // Also releases any locks
                 lockFileAccess.close();
+                if (handoffChannel != null) {
+                    fileLockContentionHandler.stop(lockId);
+                }
                 throw t;
             }
 
@@ -250,6 +327,10 @@ public class DefaultFileLockManager implements FileLockManager {
                             }
                         } finally {
                             lockFileAccess.close();
+                            if (handoffChannel != null) {
+                                // No longer watched, as contention handling for the lock has been stopped
+                                handoffChannel.released();
+                            }
                         }
                     } catch (Exception e) {
                         throw new RuntimeException("Failed to release lock on " + displayName, e);
@@ -330,9 +411,11 @@ public class DefaultFileLockManager implements FileLockManager {
 
         private java.nio.channels.FileLock lockStateRegion(final LockMode lockMode) throws IOException, InterruptedException {
             final ExponentialBackoff backoff = new ExponentialBackoff(lockTimeoutMs);
-            return backoff.retryUntil(new IOQuery<java.nio.channels.FileLock>() {
+            return backoff.retryUntil(handoffChannel, new IOQuery<java.nio.channels.FileLock>() {
                 private long lastPingTime;
                 private int lastLockHolderPort;
+                private long lastRequestedLockId;
+                private Timer channelRequestTimer;
 
                 @Override
                 public java.nio.channels.FileLock run() throws IOException, InterruptedException {
@@ -348,6 +431,9 @@ public class DefaultFileLockManager implements FileLockManager {
                                 lastLockHolderPort = lockInfo.port;
                                 lastPingTime = 0;
                             }
+                            if (requestReleaseThroughChannel(lockInfo)) {
+                                return null;
+                            }
                             if (fileLockContentionHandler.maybePingOwner(lockInfo.port, lockInfo.lockId, displayName, backoff.timer.getElapsedMillis() - lastPingTime)) {
                                 lastPingTime = backoff.timer.getElapsedMillis();
                                 LOGGER.debug("The file lock is held by a different Gradle process (pid: {}, lockId: {}). Pinged owner at port {}", lockInfo.pid, lockInfo.lockId, lockInfo.port);
@@ -358,6 +444,29 @@ public class DefaultFileLockManager implements FileLockManager {
                     }
                     return null;
                 }
+
+                /**
+                 * Asks the lock holder to release the lock through the handoff channel.
+                 *
+                 * @return true if the holder has acknowledged the request, or may still do so, so that it should not be pinged through its socket yet.
+                 */
+                private boolean requestReleaseThroughChannel(LockInfo lockInfo) {
+                    if (handoffChannel == null) {
+                        return false;
+                    }
+                    if (handoffChannel.isReleaseAcknowledged(lockInfo.lockId)) {
+                        return true;
+                    }
+                    if (lockInfo.lockId != lastRequestedLockId) {
+                        handoffChannel.requestRelease(lockInfo.lockId);
+                        lastRequestedLockId = lockInfo.lockId;
+                        channelRequestTimer = Time.startTimer();
+                        LOGGER.debug("The file lock is held by a different Gradle process (pid: {}, lockId: {}). Requested release through {}", lockInfo.pid, lockInfo.lockId, handoffChannel);
+                        return true;
+                    }
+                    // The holder might not watch the channel, for example when it is an older Gradle version
+                    return channelRequestTimer.getElapsedMillis() < CHANNEL_ACKNOWLEDGE_TIMEOUT_MS;
+                }
             });
         }
 
@@ -395,6 +504,27 @@ public class DefaultFileLockManager implements FileLockManager {
             timer = Time.startCountdownTimer(timeoutMs);
         }
 
+        /**
+         * Retries the given query, waking up early when a lock is released through the given channel.
+         */
+        <T> T retryUntil(@Nullable FileLockHandoffChannel channel, IOQuery<T> query) throws IOException, InterruptedException {
+            if (channel == null) {
+                return retryUntil(query);
+            }
+            int iteration = 0;
+            T result;
+            while (true) {
+                // Read the release stamp before trying, so that a release that happens while trying is not missed
+                long releaseStamp = channel.getReleaseStamp();
+                result = query.run();
+                if (result != null || timer.hasExpired()) {
+                    break;
+                }
+                channel.awaitRelease(releaseStamp, backoffPeriodFor(++iteration));
+            }
+            return result;
+        }
+
         <T> T retryUntil(IOQuery<T> query) throws IOException, InterruptedException {
             int iteration = 0;
             T result;
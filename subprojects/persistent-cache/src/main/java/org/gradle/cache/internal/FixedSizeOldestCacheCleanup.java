@@ -22,6 +22,7 @@ import com.google.common.collect.Ordering;
 import org.apache.commons.io.FileUtils;
 import org.gradle.api.Action;
 import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.locklistener.FileLockHandoffChannel;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.operations.CallableBuildOperation;
@@ -167,6 +168,6 @@ public final class FixedSizeOldestCacheCleanup implements Action<PersistentCache
     }
 
     boolean canBeDeleted(String name) {
-        return !(name.endsWith(".properties") || name.endsWith(".lock") || name.endsWith(partialFileSuffix));
+        return !(name.endsWith(".properties") || name.endsWith(".lock") || name.endsWith(FileLockHandoffChannel.FILE_SUFFIX) || name.endsWith(partialFileSuffix));
     }
 }
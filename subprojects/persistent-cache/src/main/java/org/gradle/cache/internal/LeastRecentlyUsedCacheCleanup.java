@@ -0,0 +1,193 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.locklistener.FileLockHandoffChannel;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the least recently used files from a cache directory once they use more than a given amount of space.
+ *
+ * The files are tracked by a {@link CacheAccessJournal} that the users of the cache update as they use, add and remove files, so that cleanup
+ * does not need to list the directory and sort all of its files. Beyond reading the journal, the work done is proportional to the number of files
+ * removed. The directory is listed when there is no journal yet, and again every {@link #RESCAN_INTERVAL_MILLIS} to pick up files that were added
+ * without being recorded, for example by older Gradle versions that share the cache directory.
+ *
+ * Removed files are appended to the journal, including files that turn out to be missing already. The journal is only rewritten after a scan, or
+ * once most of its records have been superseded.
+ */
+public final class LeastRecentlyUsedCacheCleanup implements Action<PersistentCache> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeastRecentlyUsedCacheCleanup.class);
+    private static final Ordering<File> OLDEST_FIRST = Ordering.natural().onResultOf(new Function<File, Comparable<Long>>() {
+        @Override
+        public Comparable<Long> apply(File input) {
+            return input.lastModified();
+        }
+    });
+
+    static final long RESCAN_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    private final BuildOperationExecutor buildOperationExecutor;
+    private final CacheAccessJournal journal;
+    private final long targetSizeInMB;
+    private final String partialFileSuffix;
+
+    public LeastRecentlyUsedCacheCleanup(BuildOperationExecutor buildOperationExecutor, CacheAccessJournal journal, long targetSizeInMB, String partialFileSuffix) {
+        this.buildOperationExecutor = buildOperationExecutor;
+        this.journal = journal;
+        this.targetSizeInMB = targetSizeInMB;
+        this.partialFileSuffix = partialFileSuffix;
+    }
+
+    @Override
+    public void execute(final PersistentCache persistentCache) {
+        buildOperationExecutor.run(new RunnableBuildOperation() {
+            @Override
+            public void run(BuildOperationContext context) {
+                cleanup(persistentCache);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Clean up " + persistentCache);
+            }
+        });
+    }
+
+    private void cleanup(final PersistentCache persistentCache) {
+        CacheAccessJournal.Contents contents = journal.read();
+        boolean rescan = contents == null || System.currentTimeMillis() - contents.getScanTime() > RESCAN_INTERVAL_MILLIS;
+        if (rescan) {
+            contents = buildOperationExecutor.call(new CallableBuildOperation<CacheAccessJournal.Contents>() {
+                @Override
+                public CacheAccessJournal.Contents call(BuildOperationContext context) {
+                    return scan(persistentCache.getBaseDir());
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Scan " + persistentCache.getBaseDir());
+                }
+            });
+        }
+
+        final CacheAccessJournal.Contents cacheContents = contents;
+        final long totalSize = contents.getTotalSize();
+        final List<Map.Entry<String, Long>> filesForDeletion = buildOperationExecutor.call(new CallableBuildOperation<List<Map.Entry<String, Long>>>() {
+            @Override
+            public List<Map.Entry<String, Long>> call(BuildOperationContext context) {
+                return findFilesToDelete(cacheContents);
+            }
+
+            @Override
+            public BuildOperationDescriptor.Builder description() {
+                return BuildOperationDescriptor.displayName("Choose files to delete from " + persistentCache);
+            }
+        });
+        LOGGER.info("{} consuming {} (target: {} MB).", persistentCache, FileUtils.byteCountToDisplaySize(totalSize), targetSizeInMB);
+
+        if (!filesForDeletion.isEmpty()) {
+            buildOperationExecutor.run(new RunnableBuildOperation() {
+                @Override
+                public void run(BuildOperationContext context) {
+                    long removedSize = deleteFiles(persistentCache.getBaseDir(), filesForDeletion, journal);
+                    LOGGER.info("{} removing {} cache entries ({} reclaimed).", persistentCache, filesForDeletion.size(), FileUtils.byteCountToDisplaySize(removedSize));
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    return BuildOperationDescriptor.displayName("Delete files for " + persistentCache);
+                }
+            });
+        }
+        if (rescan || contents.isCompactionRequired()) {
+            journal.write(contents);
+        }
+    }
+
+    /**
+     * Removes the least recently used files from the given contents until the remaining files fit in the target size.
+     */
+    private List<Map.Entry<String, Long>> findFilesToDelete(CacheAccessJournal.Contents contents) {
+        long targetSize = targetSizeInMB * 1024 * 1024;
+        List<Map.Entry<String, Long>> filesForDeletion = Lists.newArrayList();
+        while (contents.getTotalSize() > targetSize) {
+            filesForDeletion.add(contents.removeLeastRecentlyUsed());
+        }
+        return filesForDeletion;
+    }
+
+    private static long deleteFiles(File cacheDir, List<Map.Entry<String, Long>> files, CacheAccessJournal journal) {
+        long removedSize = 0;
+        for (Map.Entry<String, Long> entry : files) {
+            File file = new File(cacheDir, entry.getKey());
+            try {
+                if (file.delete()) {
+                    removedSize += entry.getValue();
+                    journal.recordRemoval(file);
+                } else if (!file.exists()) {
+                    // Removed without being recorded, so nothing is reclaimed but the journal should no longer account for it
+                    journal.recordRemoval(file);
+                }
+            } catch (Exception e) {
+                LOGGER.debug("Could not clean up cache " + file, e);
+            }
+        }
+        return removedSize;
+    }
+
+    CacheAccessJournal.Contents scan(File cacheDir) {
+        File[] files = cacheDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return canBeDeleted(file.getName()) && file.isFile();
+            }
+        });
+        CacheAccessJournal.Contents contents = new CacheAccessJournal.Contents(System.currentTimeMillis());
+        if (files != null) {
+            Arrays.sort(files, OLDEST_FIRST);
+            for (File file : files) {
+                contents.add(file.getName(), file.length());
+            }
+        }
+        return contents;
+    }
+
+    boolean canBeDeleted(String name) {
+        String journalName = journal.getJournalFile().getName();
+        return !(name.endsWith(".properties") || name.endsWith(".lock") || name.endsWith(FileLockHandoffChannel.FILE_SUFFIX) || name.endsWith(partialFileSuffix) || name.startsWith(journalName));
+    }
+}
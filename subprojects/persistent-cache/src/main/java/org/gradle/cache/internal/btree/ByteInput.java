@@ -19,6 +19,8 @@ package org.gradle.cache.internal.btree;
 import com.google.common.io.CountingInputStream;
 import org.gradle.internal.io.RandomAccessFileInputStream;
 
+import javax.annotation.Nullable;
+
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
@@ -31,10 +33,19 @@ import java.io.RandomAccessFile;
 class ByteInput {
     private final RandomAccessFile file;
     private final ResettableBufferedInputStream bufferedInputStream;
+    private final FilePageCache pageCache;
     private CountingInputStream countingInputStream;
 
     public ByteInput(RandomAccessFile file) {
+        this(file, null);
+    }
+
+    /**
+     * @param pageCache The cache to read pages of the file from, or null to read directly from the file.
+     */
+    public ByteInput(RandomAccessFile file, @Nullable FilePageCache pageCache) {
         this.file = file;
+        this.pageCache = pageCache;
         bufferedInputStream = new ResettableBufferedInputStream(new RandomAccessFileInputStream(file));
     }
 
@@ -42,6 +53,10 @@ class ByteInput {
      * Starts reading from the given offset.
      */
     public DataInputStream start(long offset) throws IOException {
+        if (pageCache != null) {
+            countingInputStream = new CountingInputStream(pageCache.openStream(offset));
+            return new DataInputStream(countingInputStream);
+        }
         file.seek(offset);
         bufferedInputStream.clear();
         countingInputStream = new CountingInputStream(bufferedInputStream);
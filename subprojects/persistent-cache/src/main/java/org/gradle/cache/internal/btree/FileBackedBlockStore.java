@@ -25,7 +25,9 @@ import java.io.RandomAccessFile;
 
 public class FileBackedBlockStore implements BlockStore {
     private final File cacheFile;
+    private final long pageCacheSize;
     private RandomAccessFile file;
+    private FilePageCache pageCache;
     private ByteOutput output;
     private ByteInput input;
     private long nextBlock;
@@ -33,7 +35,15 @@ public class FileBackedBlockStore implements BlockStore {
     private long currentFileSize;
 
     public FileBackedBlockStore(File cacheFile) {
+        this(cacheFile, 0);
+    }
+
+    /**
+     * @param pageCacheSize The maximum number of bytes of the file to keep in an off-heap page cache, or 0 to read blocks directly from the file.
+     */
+    public FileBackedBlockStore(File cacheFile, long pageCacheSize) {
         this.cacheFile = cacheFile;
+        this.pageCacheSize = pageCacheSize;
     }
 
     @Override
@@ -47,7 +57,8 @@ public class FileBackedBlockStore implements BlockStore {
             cacheFile.getParentFile().mkdirs();
             file = new RandomAccessFile(cacheFile, "rw");
             output = new ByteOutput(file);
-            input = new ByteInput(file);
+            pageCache = pageCacheSize > 0 ? new FilePageCache(file.getChannel(), pageCacheSize) : null;
+            input = new ByteInput(file, pageCache);
             currentFileSize = file.length();
             nextBlock = currentFileSize;
             if (currentFileSize == 0) {
@@ -59,6 +70,9 @@ public class FileBackedBlockStore implements BlockStore {
     }
 
     public void close() {
+        if (pageCache != null) {
+            pageCache.clear();
+        }
         try {
             file.close();
         } catch (IOException e) {
@@ -70,6 +84,9 @@ public class FileBackedBlockStore implements BlockStore {
         try {
             file.setLength(0);
             currentFileSize = 0;
+            if (pageCache != null) {
+                pageCache.clear();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -204,6 +221,10 @@ public class FileBackedBlockStore implements BlockStore {
                 file.setLength(finalSize);
                 currentFileSize = finalSize;
             }
+
+            if (pageCache != null) {
+                pageCache.invalidate(pos, Math.max(finalSize, pos + HEADER_SIZE + bytesWritten + TAIL_SIZE) - pos);
+            }
         }
 
         public void read() throws Exception {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least recently used cache of fixed size pages of a file, held in direct buffers outside of the heap. A miss reads the whole page containing
+ * the requested position, so that reading a block also reads ahead the blocks that follow it.
+ *
+ * Pages are read using positional reads on the file's channel rather than by mapping the file, so that the memory used is bounded and is released
+ * when the cache is closed, and the file can be truncated or deleted while the cache is open.
+ *
+ * This class is not thread-safe. The owner must discard any pages it modifies using {@link #invalidate(long, long)}.
+ */
+class FilePageCache {
+    static final int PAGE_SIZE = 16 * 1024;
+
+    private final FileChannel channel;
+    private final int maxPages;
+    private final List<ByteBuffer> freePages = new ArrayList<ByteBuffer>();
+    private final LinkedHashMap<Long, ByteBuffer> pages;
+
+    FilePageCache(FileChannel channel, long maxSize) {
+        this.channel = channel;
+        this.maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxSize / PAGE_SIZE));
+        this.pages = new LinkedHashMap<Long, ByteBuffer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ByteBuffer> eldest) {
+                if (size() > maxPages) {
+                    freePages.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a stream that reads the file from the given offset, using the cached pages where possible.
+     */
+    InputStream openStream(long offset) {
+        return new PageInputStream(offset);
+    }
+
+    /**
+     * Discards the pages containing the given region of the file.
+     */
+    void invalidate(long offset, long length) {
+        if (length <= 0 || pages.isEmpty()) {
+            return;
+        }
+        long firstPage = offset / PAGE_SIZE;
+        long lastPage = (offset + length - 1) / PAGE_SIZE;
+        if (lastPage - firstPage >= pages.size()) {
+            Iterator<Map.Entry<Long, ByteBuffer>> iterator = pages.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Long, ByteBuffer> entry = iterator.next();
+                if (entry.getKey() >= firstPage && entry.getKey() <= lastPage) {
+                    freePages.add(entry.getValue());
+                    iterator.remove();
+                }
+            }
+        } else {
+            for (long index = firstPage; index <= lastPage; index++) {
+                ByteBuffer page = pages.remove(index);
+                if (page != null) {
+                    freePages.add(page);
+                }
+            }
+        }
+    }
+
+    /**
+     * Discards all pages and releases the memory they use.
+     */
+    void clear() {
+        pages.clear();
+        freePages.clear();
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    private ByteBuffer getPage(long index) throws IOException {
+        ByteBuffer page = pages.get(index);
+        if (page == null) {
+            page = freePages.isEmpty() ? ByteBuffer.allocateDirect(PAGE_SIZE) : freePages.remove(freePages.size() - 1);
+            page.clear();
+            long position = index * PAGE_SIZE;
+            while (page.hasRemaining()) {
+                if (channel.read(page, position + page.position()) < 0) {
+                    break;
+                }
+            }
+            page.flip();
+            pages.put(index, page);
+        }
+        return page;
+    }
+
+    private class PageInputStream extends InputStream {
+        private long position;
+
+        PageInputStream(long position) {
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            ByteBuffer page = getPage(position / PAGE_SIZE);
+            int offset = (int) (position % PAGE_SIZE);
+            if (offset >= page.limit()) {
+                return -1;
+            }
+            position++;
+            return page.get(offset) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer page = getPage(position / PAGE_SIZE);
+            int pageOffset = (int) (position % PAGE_SIZE);
+            if (pageOffset >= page.limit()) {
+                return -1;
+            }
+            int count = Math.min(length, page.limit() - pageOffset);
+            ByteBuffer source = page.duplicate();
+            source.position(pageOffset);
+            source.get(buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+}
@@ -26,7 +26,10 @@ import org.slf4j.LoggerFactory;
 import java.net.DatagramPacket;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -63,13 +66,23 @@ import java.util.concurrent.locks.ReentrantLock;
  * <p>
  * As Lock Requester, the state of the request is always stored per lock (lockId) and Lock Holder (port). The Lock Holder
  * for a lock might change without acquiring the lock if several Lock Requester compete for the same lock.
+ * <p>
+ * A Lock Holder can also ask this handler to {@link #watch(long, FileLockHandoffChannel)} a {@link FileLockHandoffChannel} for the lock.
+ * A single thread polls the watched channels and starts the contended action when a Lock Requester on the same machine asks for the lock
+ * through the channel, acknowledging the request in the channel rather than through the socket.
  */
 public class DefaultFileLockContentionHandler implements FileLockContentionHandler, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileLockContentionHandler.class);
     private static final int PING_DELAY = 1000;
+    // The interval between polls of the watched channels doubles while there are no requests. It must stay well below the time a Lock Requester
+    // waits for an acknowledgement through the channel before pinging through the socket.
+    private static final long MIN_CHANNEL_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_CHANNEL_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
     private final Lock lock = new ReentrantLock();
+    private final Condition channelsWatched = lock.newCondition();
 
     private final Map<Long, ContendedAction> contendedActions = new HashMap<Long, ContendedAction>();
+    private final Map<Long, FileLockHandoffChannel> watchedChannels = new HashMap<Long, FileLockHandoffChannel>();
     private final Map<Long, Integer> unlocksRequestedFrom = new HashMap<Long, Integer>();
     private final Map<Long, Integer> unlocksConfirmedFrom = new HashMap<Long, Integer>();
 
@@ -79,6 +92,7 @@ public class DefaultFileLockContentionHandler implements FileLockContentionHandl
     private FileLockCommunicator communicator;
     private ManagedExecutor fileLockRequestListener;
     private ManagedExecutor unlockActionExecutor;
+    private ManagedExecutor handoffChannelListener;
     private boolean stopped;
 
     public DefaultFileLockContentionHandler(ExecutorFactory executorFactory, InetAddressFactory addressFactory) {
@@ -127,6 +141,54 @@ public class DefaultFileLockContentionHandler implements FileLockContentionHandl
         };
     }
 
+    private Runnable channelListener() {
+        return new Runnable() {
+            private long pollInterval = MIN_CHANNEL_POLL_INTERVAL_NANOS;
+
+            public void run() {
+                try {
+                    LOGGER.debug("Starting file lock handoff channel listener thread.");
+                    while (pollChannels()) {
+                        LockSupport.parkNanos(pollInterval);
+                    }
+                } catch (Throwable t) {
+                    LOGGER.error("Problems handling incoming cache access requests.", t);
+                } finally {
+                    LOGGER.debug("File lock handoff channel listener thread completed.");
+                }
+            }
+
+            private boolean pollChannels() throws InterruptedException {
+                lock.lock();
+                try {
+                    pollInterval = Math.min(pollInterval * 2, MAX_CHANNEL_POLL_INTERVAL_NANOS);
+                    while (watchedChannels.isEmpty() && !stopped) {
+                        channelsWatched.await();
+                        pollInterval = MIN_CHANNEL_POLL_INTERVAL_NANOS;
+                    }
+                    if (stopped) {
+                        return false;
+                    }
+                    for (Map.Entry<Long, FileLockHandoffChannel> entry : watchedChannels.entrySet()) {
+                        long lockId = entry.getKey();
+                        FileLockHandoffChannel channel = entry.getValue();
+                        if (channel.isReleaseRequested(lockId) && !channel.isReleaseAcknowledged(lockId)) {
+                            ContendedAction contendedAction = contendedActions.get(lockId);
+                            if (contendedAction != null && !contendedAction.running) {
+                                startLockReleaseAsLockHolder(contendedAction);
+                            }
+                            channel.acknowledgeRelease(lockId);
+                            pollInterval = MIN_CHANNEL_POLL_INTERVAL_NANOS;
+                        }
+                    }
+                    return true;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
     private void startLockReleaseAsLockHolder(ContendedAction contendedAction) {
         contendedAction.running = true;
         unlockActionExecutor.execute(contendedAction.action);
@@ -162,6 +224,24 @@ public class DefaultFileLockContentionHandler implements FileLockContentionHandl
         }
     }
 
+    public void watch(long lockId, FileLockHandoffChannel channel) {
+        lock.lock();
+        try {
+            assertNotStopped();
+            if (!contendedActions.containsKey(lockId)) {
+                throw new IllegalStateException("Must start managing contention for the lock before watching its channel.");
+            }
+            if (handoffChannelListener == null) {
+                handoffChannelListener = executorFactory.create("File lock handoff channel listener");
+                handoffChannelListener.execute(channelListener());
+            }
+            watchedChannels.put(lockId, channel);
+            channelsWatched.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public boolean maybePingOwner(int port, long lockId, String displayName, long timeElapsed) {
         if (Integer.valueOf(port).equals(unlocksConfirmedFrom.get(lockId))) {
             //the unlock was confirmed we are waiting
@@ -192,6 +272,7 @@ public class DefaultFileLockContentionHandler implements FileLockContentionHandl
         lock.lock();
         try {
             contendedActions.remove(lockId);
+            watchedChannels.remove(lockId);
         } finally {
             lock.unlock();
         }
@@ -202,6 +283,8 @@ public class DefaultFileLockContentionHandler implements FileLockContentionHandl
         try {
             stopped = true;
             contendedActions.clear();
+            watchedChannels.clear();
+            channelsWatched.signalAll();
             if (communicator != null) {
                 communicator.stop();
             }
@@ -214,6 +297,9 @@ public class DefaultFileLockContentionHandler implements FileLockContentionHandl
         if (unlockActionExecutor != null) {
             unlockActionExecutor.stop();
         }
+        if (handoffChannelListener != null) {
+            handoffChannelListener.stop();
+        }
     }
 
     public int reservePort() {
@@ -19,6 +19,12 @@ package org.gradle.cache.internal.locklistener;
 public interface FileLockContentionHandler {
     void start(long lockId, Runnable whenContended);
 
+    /**
+     * Watches the given channel for requests to release the lock with the given id, in addition to the requests received through the socket.
+     * Must be called after {@link #start(long, Runnable)}. Stops watching when {@link #stop(long)} is called for the lock.
+     */
+    void watch(long lockId, FileLockHandoffChannel channel);
+
     void stop(long lockId);
 
     int reservePort();
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.locklistener;
+
+import org.gradle.internal.io.MappedByteBuffers;
+import org.gradle.internal.time.CountdownTimer;
+import org.gradle.internal.time.Time;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A channel through which the processes on this machine that use a lock file coordinate the handoff of the lock, without going through a socket.
+ *
+ * The channel is a small file next to the lock file that each process maps into memory. A process waiting for the lock writes the id of the lock it wants
+ * released, which the holder of the lock notices by polling the channel. The holder acknowledges the request, so that the waiting process does not also
+ * ping it through the socket, and increments a release counter once it has released the lock, so that the waiting process can try again straight away
+ * rather than after its backoff period. A process that does not use the channel, such as an older Gradle version, is still pinged through the socket.
+ *
+ * Values are written using single aligned 8 byte writes, and a stale or partially initialized value only delays the handoff until the next request.
+ * Each write is followed by a volatile write and each read preceded by a volatile read, which act as fences so that the values are not cached
+ * in registers while spinning, and writes become visible to other processes straight away.
+ *
+ * Each channel file holds a random generation, which is cleared by the last user before it removes the file. A process that maps a file that
+ * has been removed, or replaced by a new channel file, in the meantime detects the mismatch and opens the new file instead.
+ */
+public class FileLockHandoffChannel {
+    public static final String FILE_SUFFIX = ".handoff";
+
+    private static final int MAGIC = 0x474c4832;
+    private static final int GENERATION_OFFSET = 8;
+    private static final int REQUESTED_LOCK_ID_OFFSET = 16;
+    private static final int ACKNOWLEDGED_LOCK_ID_OFFSET = 24;
+    private static final int RELEASE_STAMP_OFFSET = 32;
+    private static final int SIZE = 40;
+    private static final long USERS_REGION_SIZE = Long.MAX_VALUE - SIZE;
+    private static final long WAIT_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int MAX_OPEN_ATTEMPTS = 3;
+    private static final Random RANDOM = new Random();
+    // Users of the channel in this process lock different regions, as overlapping locks cannot be held by a single process
+    private static final AtomicLong USER_REGION_COUNTER = new AtomicLong();
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock userLock;
+    private final MappedByteBuffer buffer;
+    private volatile int fence;
+
+    private FileLockHandoffChannel(File file, RandomAccessFile randomAccessFile, FileLock userLock, MappedByteBuffer buffer) {
+        this.file = file;
+        this.randomAccessFile = randomAccessFile;
+        this.userLock = userLock;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Opens the channel for the given lock file, creating it if required.
+     *
+     * @return the channel, or null when the channel cannot be used at the moment, for example because its last user is removing it.
+     */
+    @Nullable
+    public static FileLockHandoffChannel open(File lockFile) throws IOException {
+        File file = new File(lockFile.getParentFile(), lockFile.getName() + FILE_SUFFIX);
+        for (int attempt = 0; attempt < MAX_OPEN_ATTEMPTS; attempt++) {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            boolean opened = false;
+            try {
+                FileLock userLock = lockUserRegion(randomAccessFile.getChannel());
+                if (userLock == null) {
+                    return null;
+                }
+                if (randomAccessFile.length() < SIZE) {
+                    randomAccessFile.setLength(SIZE);
+                }
+                MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+                if (buffer.getInt(0) != MAGIC) {
+                    buffer.putLong(GENERATION_OFFSET, newGeneration());
+                    buffer.putLong(REQUESTED_LOCK_ID_OFFSET, 0);
+                    buffer.putLong(ACKNOWLEDGED_LOCK_ID_OFFSET, 0);
+                    buffer.putInt(0, MAGIC);
+                }
+                long generation = buffer.getLong(GENERATION_OFFSET);
+                if (generation == 0 || generation != readGeneration(file)) {
+                    // Removed by its last user after it was opened here, and possibly replaced by a new file, try again with the current file
+                    unmap(buffer);
+                    continue;
+                }
+                opened = true;
+                return new FileLockHandoffChannel(file, randomAccessFile, userLock, buffer);
+            } finally {
+                if (!opened) {
+                    randomAccessFile.close();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static long newGeneration() {
+        long generation;
+        do {
+            generation = RANDOM.nextLong();
+        } while (generation == 0);
+        return generation;
+    }
+
+    /**
+     * Reads the generation of the file that currently exists at the given path, which may not be the file that was mapped.
+     */
+    private static long readGeneration(File file) throws IOException {
+        RandomAccessFile current;
+        try {
+            current = new RandomAccessFile(file, "r");
+        } catch (FileNotFoundException e) {
+            return 0;
+        }
+        try {
+            if (current.length() < SIZE) {
+                return 0;
+            }
+            current.seek(GENERATION_OFFSET);
+            return current.readLong();
+        } finally {
+            current.close();
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        // Without eager unmapping, the mapping is released when the buffer is garbage collected
+        if (MappedByteBuffers.isUnmapSupported()) {
+            MappedByteBuffers.unmap(buffer);
+        }
+    }
+
+    @Nullable
+    private static FileLock lockUserRegion(FileChannel channel) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock(SIZE + USER_REGION_COUNTER.getAndIncrement() % USERS_REGION_SIZE, 1, true);
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+        if (lock != null && !lock.isShared()) {
+            // Only a single process could use the channel
+            lock.release();
+            return null;
+        }
+        return lock;
+    }
+
+    /**
+     * Asks the holder of the lock with the given id to release it.
+     */
+    public void requestRelease(long lockId) {
+        write(REQUESTED_LOCK_ID_OFFSET, lockId);
+    }
+
+    public boolean isReleaseRequested(long lockId) {
+        return read(REQUESTED_LOCK_ID_OFFSET) == lockId;
+    }
+
+    /**
+     * Confirms that the holder of the lock with the given id is releasing it.
+     */
+    public void acknowledgeRelease(long lockId) {
+        write(ACKNOWLEDGED_LOCK_ID_OFFSET, lockId);
+    }
+
+    public boolean isReleaseAcknowledged(long lockId) {
+        return read(ACKNOWLEDGED_LOCK_ID_OFFSET) == lockId;
+    }
+
+    /**
+     * Records that a lock on the lock file has been released.
+     */
+    public void released() {
+        long previous = getReleaseStamp();
+        long stamp;
+        do {
+            stamp = RANDOM.nextLong();
+        } while (stamp == previous);
+        write(RELEASE_STAMP_OFFSET, stamp);
+    }
+
+    /**
+     * Returns a value that changes each time a lock on the lock file is released.
+     */
+    public long getReleaseStamp() {
+        return read(RELEASE_STAMP_OFFSET);
+    }
+
+    private long read(int offset) {
+        // The volatile read keeps the read from the buffer from being hoisted out of a polling loop
+        int ignored = fence;
+        return buffer.getLong(offset);
+    }
+
+    private void write(int offset, long value) {
+        buffer.putLong(offset, value);
+        // The volatile write makes the write to the buffer visible before any later read
+        fence = 0;
+    }
+
+    /**
+     * Waits until a lock on the lock file is released, or the given time has elapsed.
+     *
+     * @param releaseStamp the release stamp read before the lock was last found to be held.
+     * @return true if a lock was released.
+     */
+    public boolean awaitRelease(long releaseStamp, long timeoutMillis) throws InterruptedException {
+        CountdownTimer timer = Time.startCountdownTimer(timeoutMillis);
+        while (getReleaseStamp() == releaseStamp) {
+            if (timer.hasExpired()) {
+                return false;
+            }
+            LockSupport.parkNanos(WAIT_INTERVAL_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Closes this channel, and removes the channel file when there are no other users. The channel must not be used afterwards.
+     */
+    public void close() throws IOException {
+        try {
+            unmap(buffer);
+            userLock.release();
+            FileLock lastUserLock;
+            try {
+                lastUserLock = randomAccessFile.getChannel().tryLock(SIZE, USERS_REGION_SIZE, false);
+            } catch (OverlappingFileLockException e) {
+                // Still used by this process
+                return;
+            }
+            if (lastUserLock != null) {
+                // Clear the generation, so that a process that opened the file before it is removed does not use it
+                randomAccessFile.seek(GENERATION_OFFSET);
+                randomAccessFile.writeLong(0);
+                // The file cannot be deleted while it is open on some platforms, where it is deleted after closing it instead.
+                // These platforms also do not allow deleting the file when another process has opened it in the meantime.
+                if (file.delete()) {
+                    lastUserLock.release();
+                } else {
+                    lastUserLock.release();
+                    randomAccessFile.close();
+                    file.delete();
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "lock handoff channel " + file;
+    }
+}
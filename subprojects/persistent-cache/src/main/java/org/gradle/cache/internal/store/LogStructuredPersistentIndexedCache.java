@@ -0,0 +1,362 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.store;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.io.RandomAccessFileInputStream;
+import org.gradle.internal.io.RandomAccessFileOutputStream;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent indexed cache that appends each update to the end of a log file, and keeps an index from key to the position of the latest record for
+ * that key in memory. Updates never rewrite existing parts of the file, so a put costs a single write regardless of the size of the cache.
+ *
+ * The index is rebuilt by scanning the record headers of the log when the cache is opened. A record that was only partially written is discarded.
+ * A record whose value does not match its checksum is treated as removed, without affecting the other entries.
+ * When the cache is closed and most of the records in the log have been superseded, the live records are copied to a new log that atomically replaces
+ * the old one, so that a crash during compaction leaves the old log in place.
+ *
+ * Like the B-tree cache, keys are identified by a 64 bit hash of their serialized form.
+ */
+public class LogStructuredPersistentIndexedCache<K, V> implements IndexedCacheStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogStructuredPersistentIndexedCache.class);
+    private static final int MAGIC = 0x474c4f47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER_SIZE = 1 + 8 + 4; // type, key hash, value size
+    private static final int RECORD_TAIL_SIZE = 4; // checksum
+    private static final long DEFAULT_MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    private final File cacheFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final long minCompactionSize;
+    private final Map<Long, Long> index = new HashMap<Long, Long>();
+    private final ByteArrayOutputStream keyBuffer = new ByteArrayOutputStream();
+    private final KryoBackedEncoder keyEncoder = new KryoBackedEncoder(keyBuffer);
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+    private final DataOutputStream recordOutput = new DataOutputStream(recordBuffer);
+    private final KryoBackedEncoder valueEncoder = new KryoBackedEncoder(recordBuffer);
+    private final CRC32 checksum = new CRC32();
+    private RandomAccessFile file;
+    private long end;
+    private int recordCount;
+
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(cacheFile, keySerializer, valueSerializer, DEFAULT_MIN_COMPACTION_SIZE);
+    }
+
+    /**
+     * @param minCompactionSize The size the log needs to reach before it is considered for compaction.
+     */
+    public LogStructuredPersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, long minCompactionSize) {
+        this.cacheFile = cacheFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.minCompactionSize = minCompactionSize;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + cacheFile.getName() + " (" + cacheFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        cacheFile.getParentFile().mkdirs();
+        // Left behind by a process that was killed while compacting, before the compacted log replaced the old one
+        getCompactedFile().delete();
+        file = new RandomAccessFile(cacheFile, "rw");
+        if (file.length() < HEADER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION) {
+            if (file.length() > 0) {
+                LOGGER.warn("{} is corrupt. Discarding.", this);
+            }
+            discard();
+            return;
+        }
+        scan();
+    }
+
+    private void scan() throws IOException {
+        long length = file.length();
+        long pos = HEADER_SIZE;
+        file.seek(pos);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new RandomAccessFileInputStream(file), 64 * 1024));
+        while (pos + RECORD_HEADER_SIZE + RECORD_TAIL_SIZE <= length) {
+            byte type = input.readByte();
+            long keyHash = input.readLong();
+            int valueSize = input.readInt();
+            long recordSize = RECORD_HEADER_SIZE + valueSize + RECORD_TAIL_SIZE;
+            if ((type != PUT && type != REMOVE) || valueSize < 0 || pos + recordSize > length) {
+                break;
+            }
+            skipFully(input, valueSize + RECORD_TAIL_SIZE);
+            if (type == PUT) {
+                index.put(keyHash, pos);
+            } else {
+                index.remove(keyHash);
+            }
+            recordCount++;
+            pos += recordSize;
+        }
+        if (pos < length) {
+            // A partially written record, most likely from a process that was killed while writing
+            LOGGER.debug("Discarding {} bytes from the end of {}.", length - pos, this);
+            file.setLength(pos);
+        }
+        end = pos;
+    }
+
+    private static void skipFully(DataInputStream input, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = input.skip(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private void discard() throws IOException {
+        file.setLength(0);
+        file.seek(0);
+        file.writeInt(MAGIC);
+        file.writeInt(VERSION);
+        index.clear();
+        recordCount = 0;
+        end = HEADER_SIZE;
+    }
+
+    @Override
+    public V get(K key) {
+        try {
+            long keyHash = hashKey(key);
+            Long pos = index.get(keyHash);
+            if (pos == null) {
+                return null;
+            }
+            byte[] value = readValue(pos);
+            if (value == null) {
+                LOGGER.warn("Entry '{}' in {} is corrupt. Discarding.", key, this);
+                index.remove(keyHash);
+                appendRemove(keyHash);
+                return null;
+            }
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(value)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private byte[] readValue(long pos) throws IOException {
+        file.seek(pos);
+        byte type = file.readByte();
+        file.readLong();
+        int valueSize = file.readInt();
+        if (type != PUT || valueSize < 0 || pos + RECORD_HEADER_SIZE + valueSize + RECORD_TAIL_SIZE > end) {
+            return null;
+        }
+        byte[] value = new byte[valueSize];
+        file.readFully(value);
+        checksum.reset();
+        checksum.update(value);
+        if ((int) checksum.getValue() != file.readInt()) {
+            return null;
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            long keyHash = hashKey(key);
+            recordBuffer.reset();
+            recordOutput.writeByte(PUT);
+            recordOutput.writeLong(keyHash);
+            recordOutput.writeInt(0);
+            valueSerializer.write(valueEncoder, value);
+            valueEncoder.flush();
+            int valueSize = recordBuffer.size() - RECORD_HEADER_SIZE;
+            recordOutput.writeInt(0);
+            byte[] bytes = recordBuffer.toByteArray();
+            checksum.reset();
+            checksum.update(bytes, RECORD_HEADER_SIZE, valueSize);
+            writeInt(bytes, RECORD_HEADER_SIZE - 4, valueSize);
+            writeInt(bytes, bytes.length - RECORD_TAIL_SIZE, (int) checksum.getValue());
+            index.put(keyHash, append(bytes));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            long keyHash = hashKey(key);
+            if (index.remove(keyHash) == null) {
+                return;
+            }
+            appendRemove(keyHash);
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private void appendRemove(long keyHash) throws IOException {
+        byte[] bytes = new byte[RECORD_HEADER_SIZE + RECORD_TAIL_SIZE];
+        bytes[0] = REMOVE;
+        for (int i = 0; i < 8; i++) {
+            bytes[1 + i] = (byte) (keyHash >>> (56 - 8 * i));
+        }
+        append(bytes);
+    }
+
+    private long append(byte[] record) throws IOException {
+        long pos = end;
+        file.seek(pos);
+        file.write(record);
+        end += record.length;
+        recordCount++;
+        return pos;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private long hashKey(K key) throws Exception {
+        keyBuffer.reset();
+        keySerializer.write(keyEncoder, key);
+        keyEncoder.flush();
+        byte[] hash = Hashing.murmur3_128().hashBytes(keyBuffer.toByteArray()).toByteArray();
+        long result = 0;
+        for (int i = 0; i < 8; i++) {
+            result = (result << 8) | (hash[i] & 0xFF);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            try {
+                compactIfRequired();
+            } finally {
+                if (file != null) {
+                    file.close();
+                    file = null;
+                }
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the number of records in the log that have been superseded by a later record.
+     */
+    int getGarbageRecordCount() {
+        return recordCount - index.size();
+    }
+
+    private void compactIfRequired() throws IOException {
+        if (file == null || end < minCompactionSize || getGarbageRecordCount() <= index.size()) {
+            return;
+        }
+        LOGGER.debug("Compacting {}", this);
+        long[] positions = new long[index.size()];
+        int count = 0;
+        for (Long pos : index.values()) {
+            positions[count++] = pos;
+        }
+        // Copy the records in the order they appear in the old log, so the old log is read sequentially
+        Arrays.sort(positions);
+
+        File compactedFile = getCompactedFile();
+        RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+        try {
+            compacted.setLength(0);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new RandomAccessFileOutputStream(compacted), 64 * 1024));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            byte[] buffer = new byte[8 * 1024];
+            for (long pos : positions) {
+                file.seek(pos + RECORD_HEADER_SIZE - 4);
+                long recordSize = RECORD_HEADER_SIZE + file.readInt() + RECORD_TAIL_SIZE;
+                file.seek(pos);
+                while (recordSize > 0) {
+                    int read = file.read(buffer, 0, (int) Math.min(buffer.length, recordSize));
+                    if (read < 0) {
+                        throw new IOException("Unexpected end of file.");
+                    }
+                    output.write(buffer, 0, read);
+                    recordSize -= read;
+                }
+            }
+            output.flush();
+        } finally {
+            compacted.close();
+        }
+
+        file.close();
+        file = null;
+        try {
+            Files.move(compactedFile.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Not fatal, the old log is still in place and is compacted the next time the cache is closed
+            LOGGER.info("Could not replace {} with its compacted log {}.", this, compactedFile, e);
+            compactedFile.delete();
+        }
+    }
+
+    private File getCompactedFile() {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".compact");
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import org.gradle.cache.AsyncCacheAccess
+import org.gradle.cache.MultiProcessSafePersistentIndexedCache
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+class AsyncCacheAccessDecoratedCacheTest extends Specification {
+    def queue = []
+    def asyncCacheAccess = new AsyncCacheAccess() {
+        @Override
+        void enqueue(Runnable task) {
+            queue << task
+        }
+
+        @Override
+        public <T> T read(Factory<T> task) {
+            flush()
+            return task.create()
+        }
+
+        @Override
+        void flush() {
+            def tasks = new ArrayList(queue)
+            queue.clear()
+            tasks*.run()
+        }
+    }
+    def persistentCache = Mock(MultiProcessSafePersistentIndexedCache)
+    def cache = new AsyncCacheAccessDecoratedCache<String, String>(asyncCacheAccess, persistentCache)
+
+    def "writes only the last value for a key that has not yet been written"() {
+        def completion1 = Mock(Runnable)
+        def completion2 = Mock(Runnable)
+        def completion3 = Mock(Runnable)
+
+        when:
+        cache.putLater("key", "value1", completion1)
+        cache.putLater("key", "value2", completion2)
+        cache.putLater("other", "value3", completion3)
+
+        then:
+        queue.size() == 2
+        0 * _
+
+        when:
+        asyncCacheAccess.flush()
+
+        then:
+        1 * persistentCache.put("key", "value2")
+        1 * persistentCache.put("other", "value3")
+        1 * completion1.run()
+        1 * completion2.run()
+        1 * completion3.run()
+        0 * _
+    }
+
+    def "removal replaces a write that has not yet been applied"() {
+        def completion = Mock(Runnable)
+
+        when:
+        cache.putLater("key", "value", completion)
+        cache.removeLater("key", completion)
+        asyncCacheAccess.flush()
+
+        then:
+        1 * persistentCache.remove("key")
+        0 * persistentCache.put(_, _)
+        2 * completion.run()
+    }
+
+    def "writes key again once the earlier write has been applied"() {
+        def completion = Mock(Runnable)
+
+        when:
+        cache.putLater("key", "value1", completion)
+        def value = cache.get("key")
+        cache.putLater("key", "value2", completion)
+        asyncCacheAccess.flush()
+
+        then:
+        1 * persistentCache.put("key", "value1")
+        1 * persistentCache.get("key") >> "value1"
+        1 * persistentCache.put("key", "value2")
+        2 * completion.run()
+        value == "value1"
+    }
+}
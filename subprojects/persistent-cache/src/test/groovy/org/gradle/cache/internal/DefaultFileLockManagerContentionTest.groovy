@@ -114,6 +114,26 @@ class DefaultFileLockManagerContentionTest extends ConcurrentSpec {
         }
     }
 
+    def "keeps the lock handoff channel open until the lock manager is stopped"() {
+        given:
+        def handoffManager = new DefaultFileLockManager(Stub(ProcessMetaDataProvider), 2000, contentionHandler, new LongIdGenerator(), true)
+        def file = tmpDir.file("lock-file.bin")
+        def channelFile = tmpDir.file("lock-file.bin.lock.handoff")
+
+        when:
+        createLock(Exclusive, file, handoffManager).close()
+
+        then:
+        channelFile.exists()
+
+        when:
+        createLock(Exclusive, file, handoffManager).close()
+        handoffManager.stop()
+
+        then:
+        !channelFile.exists()
+    }
+
     FileLock createLock(FileLockManager.LockMode lockMode, File file, FileLockManager lockManager = manager, Runnable whenContended = null) {
         def lock = lockManager.lock(file, LockOptionsBuilder.mode(lockMode), "foo", "operation", whenContended)
         openedLocks << lock
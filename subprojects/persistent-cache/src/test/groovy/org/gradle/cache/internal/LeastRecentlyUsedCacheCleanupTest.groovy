@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal
+
+import org.gradle.cache.PersistentCache
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Subject
+
+@Subject(LeastRecentlyUsedCacheCleanup)
+class LeastRecentlyUsedCacheCleanupTest extends Specification {
+    static final int MB = 1024 * 1024
+
+    @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.file("cache-dir").createDir()
+    def persistentCache = Stub(PersistentCache) {
+        getBaseDir() >> cacheDir
+    }
+    def journal = new CacheAccessJournal(cacheDir.file("access.journal"))
+    def cleanupAction = new LeastRecentlyUsedCacheCleanup(new TestBuildOperationExecutor(), journal, 10, ".part")
+
+    def "filters for cache entry files"() {
+        expect:
+        !cleanupAction.canBeDeleted("cache.properties")
+        !cleanupAction.canBeDeleted("gc.properties")
+        !cleanupAction.canBeDeleted("cache.lock")
+        !cleanupAction.canBeDeleted("access.journal")
+        !cleanupAction.canBeDeleted("access.journal.tmp")
+        !cleanupAction.canBeDeleted("0123.part")
+
+        cleanupAction.canBeDeleted("0"*32)
+        cleanupAction.canBeDeleted("abcdefabcdefabcdefabcdefabcdef00")
+    }
+
+    def "scans the cache directory when there is no journal"() {
+        def newest = createCacheEntry(1 * MB, 1000)
+        def middle = createCacheEntry(5 * MB, 500)
+        def oldest = createCacheEntry(6 * MB, 0)
+        cacheDir.file("cache.lock").touch()
+        cacheDir.file("0123.part").touch()
+
+        when:
+        cleanupAction.execute(persistentCache)
+
+        then:
+        oldest.assertDoesNotExist()
+        middle.assertExists()
+        newest.assertExists()
+
+        and:
+        def contents = journal.read()
+        contents.fileCount == 2
+        contents.totalSize == 6 * MB
+    }
+
+    def "removes least recently used files recorded in the journal"() {
+        def first = createCacheEntry(4 * MB, 0)
+        def second = createCacheEntry(4 * MB, 500)
+        cleanupAction.execute(persistentCache)
+
+        when:
+        def third = createCacheEntry(4 * MB, 1000)
+        journal.recordAccess(third)
+        journal.recordAccess(first)
+        cleanupAction.execute(persistentCache)
+
+        then:
+        second.assertDoesNotExist()
+        first.assertExists()
+        third.assertExists()
+        journal.read().fileCount == 2
+    }
+
+    def "does not account for files recorded as removed"() {
+        def first = createCacheEntry(4 * MB, 0)
+        def second = createCacheEntry(4 * MB, 500)
+        cleanupAction.execute(persistentCache)
+
+        when:
+        second.delete()
+        journal.recordRemoval(second)
+        def third = createCacheEntry(4 * MB, 1000)
+        journal.recordAccess(third)
+        cleanupAction.execute(persistentCache)
+
+        then:
+        first.assertExists()
+        third.assertExists()
+        journal.read().totalSize == 8 * MB
+    }
+
+    def "appends removed files to the journal instead of rewriting it"() {
+        def first = createCacheEntry(4 * MB, 0)
+        def second = createCacheEntry(4 * MB, 500)
+        cleanupAction.execute(persistentCache)
+        def third = createCacheEntry(4 * MB, 1000)
+        journal.recordAccess(third)
+        def journalBefore = journal.journalFile.bytes
+
+        when:
+        cleanupAction.execute(persistentCache)
+
+        then:
+        first.assertDoesNotExist()
+        def journalAfter = journal.journalFile.bytes
+        journalAfter.length > journalBefore.length
+        journalAfter.toList().take(journalBefore.length) == journalBefore.toList()
+        journal.read().fileCount == 2
+    }
+
+    def "drops files that were removed without being recorded"() {
+        def first = createCacheEntry(4 * MB, 0)
+        def second = createCacheEntry(4 * MB, 500)
+        cleanupAction.execute(persistentCache)
+
+        when:
+        first.delete()
+        def third = createCacheEntry(4 * MB, 1000)
+        journal.recordAccess(third)
+        cleanupAction.execute(persistentCache)
+
+        then:
+        second.assertExists()
+        third.assertExists()
+        def contents = journal.read()
+        contents.fileCount == 2
+        contents.totalSize == 8 * MB
+    }
+
+    def "rewrites the journal once most of its records have been superseded"() {
+        def entry = createCacheEntry(1 * MB, 0)
+        cleanupAction.execute(persistentCache)
+        def length = journal.journalFile.length()
+        2000.times { journal.recordAccess(entry) }
+
+        expect:
+        journal.read().compactionRequired
+
+        when:
+        cleanupAction.execute(persistentCache)
+
+        then:
+        entry.assertExists()
+        journal.journalFile.length() == length
+        !journal.read().compactionRequired
+    }
+
+    def "rescans the cache directory when journal has not been rebuilt for a long time"() {
+        def first = createCacheEntry(4 * MB, 0)
+        journal.write(new CacheAccessJournal.Contents(System.currentTimeMillis() - LeastRecentlyUsedCacheCleanup.RESCAN_INTERVAL_MILLIS - 1000))
+        def unrecorded = createCacheEntry(8 * MB, 1000)
+
+        when:
+        cleanupAction.execute(persistentCache)
+
+        then:
+        first.assertDoesNotExist()
+        unrecorded.assertExists()
+    }
+
+    def "ignores partially written record at the end of the journal"() {
+        createCacheEntry(1 * MB, 0)
+        cleanupAction.execute(persistentCache)
+
+        when:
+        journal.journalFile << ([0, 5, 1] as byte[])
+
+        then:
+        journal.read().fileCount == 1
+    }
+
+    def "rescans the cache directory when the journal is corrupt"() {
+        def newest = createCacheEntry(1 * MB, 1000)
+        cleanupAction.execute(persistentCache)
+
+        when:
+        // A record whose name is not valid modified UTF-8
+        journal.journalFile << ([0, 2, 0xC0, 0, 0, 0, 0, 0, 0, 0, 0, 1] as byte[])
+
+        then:
+        journal.read() == null
+
+        when:
+        def middle = createCacheEntry(5 * MB, 500)
+        def oldest = createCacheEntry(6 * MB, 0)
+        cleanupAction.execute(persistentCache)
+
+        then:
+        oldest.assertDoesNotExist()
+        middle.assertExists()
+        newest.assertExists()
+        journal.read().fileCount == 2
+    }
+
+    def "does not record accesses until the journal has been created"() {
+        when:
+        journal.recordAccess(createCacheEntry(1 * MB, 0))
+
+        then:
+        journal.read() == null
+    }
+
+    TestFile createCacheEntry(int size, int timestamp) {
+        def cacheEntry = cacheDir.file(String.format("%032x", size + timestamp))
+        cacheEntry.bytes = new byte[size]
+        cacheEntry.lastModified = timestamp
+        return cacheEntry
+    }
+}
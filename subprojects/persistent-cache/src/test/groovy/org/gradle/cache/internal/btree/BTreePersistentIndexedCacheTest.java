@@ -259,6 +259,20 @@ public class BTreePersistentIndexedCacheTest {
         cache.close();
     }
 
+    @Test
+    public void canHandleLargeNumberOfEntriesUsingPageCache() {
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100, 2 * FilePageCache.PAGE_SIZE);
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 2000; i++) {
+            values.add(i);
+        }
+
+        checkAddsAndRemoves(null, values);
+        checkAdds(values);
+
+        verifyAndCloseCache();
+    }
+
     @Test
     public void persistsRemovalOfEntries() {
         createCache();
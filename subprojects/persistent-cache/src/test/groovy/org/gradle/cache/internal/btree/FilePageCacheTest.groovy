@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.cache.internal.btree.FilePageCache.PAGE_SIZE
+
+class FilePageCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    RandomAccessFile file
+    FilePageCache pageCache
+
+    def setup() {
+        file = new RandomAccessFile(tmpDir.file("test.bin"), "rw")
+        pageCache = new FilePageCache(file.channel, 2 * PAGE_SIZE)
+    }
+
+    def cleanup() {
+        file.close()
+    }
+
+    def "reads content that spans multiple pages"() {
+        given:
+        file.seek(PAGE_SIZE - 2)
+        file.writeInt(123)
+        file.writeInt(456)
+
+        expect:
+        def stream = new DataInputStream(pageCache.openStream(PAGE_SIZE - 2))
+        stream.readInt() == 123
+        stream.readInt() == 456
+        pageCache.pageCount == 2
+    }
+
+    def "keeps a bounded number of pages"() {
+        given:
+        file.setLength(4 * PAGE_SIZE)
+
+        when:
+        (0..3).each { pageCache.openStream(it * PAGE_SIZE).read() }
+
+        then:
+        pageCache.pageCount == 2
+    }
+
+    def "rereads pages that have been invalidated"() {
+        given:
+        file.seek(PAGE_SIZE + 4)
+        file.writeInt(123)
+
+        expect:
+        new DataInputStream(pageCache.openStream(PAGE_SIZE + 4)).readInt() == 123
+
+        when:
+        file.seek(PAGE_SIZE + 4)
+        file.writeInt(456)
+        pageCache.invalidate(PAGE_SIZE + 4, 4)
+
+        then:
+        new DataInputStream(pageCache.openStream(PAGE_SIZE + 4)).readInt() == 456
+    }
+
+    def "cannot read beyond end of file"() {
+        given:
+        file.writeInt(123)
+
+        when:
+        new DataInputStream(pageCache.openStream(2)).readInt()
+
+        then:
+        EOFException e = thrown()
+    }
+}
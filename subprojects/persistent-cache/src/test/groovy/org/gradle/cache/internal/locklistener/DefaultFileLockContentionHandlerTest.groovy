@@ -19,13 +19,17 @@ package org.gradle.cache.internal.locklistener
 import org.gradle.internal.concurrent.ExecutorFactory
 import org.gradle.internal.concurrent.ManagedExecutor
 import org.gradle.internal.remote.internal.inet.InetAddressFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.util.ConcurrentSpecification
+import org.junit.Rule
 
 import java.util.concurrent.atomic.AtomicBoolean
 
 import static org.gradle.test.fixtures.ConcurrentTestUtil.poll
 
 class DefaultFileLockContentionHandlerTest extends ConcurrentSpecification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
     def addressFactory = new InetAddressFactory()
     def handler = new DefaultFileLockContentionHandler(executorFactory, addressFactory)
     def client = new DefaultFileLockContentionHandler(executorFactory, addressFactory)
@@ -53,6 +57,51 @@ class DefaultFileLockContentionHandlerTest extends ConcurrentSpecification {
         }
     }
 
+    def "runs contended action when release is requested through handoff channel"() {
+        def action = new AtomicBoolean()
+        def lockFile = tmpDir.file("test.lock")
+        def requester = FileLockHandoffChannel.open(lockFile)
+
+        when:
+        handler.reservePort()
+        handler.start(10, { action.set(true) })
+        handler.watch(10, FileLockHandoffChannel.open(lockFile))
+        requester.requestRelease(10)
+
+        then:
+        poll {
+            assert action.get()
+            assert requester.isReleaseAcknowledged(10)
+        }
+    }
+
+    def "ignores requests through handoff channel for other locks"() {
+        def action = new AtomicBoolean()
+        def lockFile = tmpDir.file("test.lock")
+        def requester = FileLockHandoffChannel.open(lockFile)
+
+        when:
+        handler.reservePort()
+        handler.start(10, { action.set(true) })
+        handler.watch(10, FileLockHandoffChannel.open(lockFile))
+        requester.requestRelease(11)
+        sleep(100)
+
+        then:
+        !action.get()
+        !requester.isReleaseAcknowledged(11)
+    }
+
+    def "cannot watch handoff channel for lock that has not been started"() {
+        handler.reservePort()
+
+        when:
+        handler.watch(10, FileLockHandoffChannel.open(tmpDir.file("test.lock")))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
     def "there are only two executors: one lock request listener and one release lock action executor"() {
         def factory = Mock(ExecutorFactory)
         handler = new DefaultFileLockContentionHandler(factory, addressFactory)
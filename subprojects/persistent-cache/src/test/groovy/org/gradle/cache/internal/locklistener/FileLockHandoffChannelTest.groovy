@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.locklistener
+
+import org.gradle.test.fixtures.concurrent.ConcurrentSpec
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+
+class FileLockHandoffChannelTest extends ConcurrentSpec {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def lockFile = tmpDir.file("test.lock")
+
+    def "creates channel next to lock file"() {
+        when:
+        FileLockHandoffChannel.open(lockFile)
+
+        then:
+        tmpDir.file("test.lock.handoff").length() > 0
+    }
+
+    def "requests and acknowledgements are visible to other users of the channel"() {
+        def holder = FileLockHandoffChannel.open(lockFile)
+        def requester = FileLockHandoffChannel.open(lockFile)
+
+        expect:
+        !holder.isReleaseRequested(12)
+
+        when:
+        requester.requestRelease(12)
+
+        then:
+        holder.isReleaseRequested(12)
+        !holder.isReleaseRequested(13)
+        !requester.isReleaseAcknowledged(12)
+
+        when:
+        holder.acknowledgeRelease(12)
+
+        then:
+        requester.isReleaseAcknowledged(12)
+    }
+
+    def "keeps state when reopened"() {
+        given:
+        def channel = FileLockHandoffChannel.open(lockFile)
+        channel.requestRelease(12)
+        channel.released()
+
+        when:
+        def reopened = FileLockHandoffChannel.open(lockFile)
+
+        then:
+        reopened.isReleaseRequested(12)
+        reopened.releaseStamp == channel.releaseStamp
+    }
+
+    def "release stamp changes each time a lock is released"() {
+        def holder = FileLockHandoffChannel.open(lockFile)
+        def requester = FileLockHandoffChannel.open(lockFile)
+        def stamps = [requester.releaseStamp] as Set
+
+        when:
+        10.times {
+            holder.released()
+            stamps << requester.releaseStamp
+        }
+
+        then:
+        stamps.size() == 11
+    }
+
+    def "removes channel file when closed by its last user"() {
+        def first = FileLockHandoffChannel.open(lockFile)
+        def second = FileLockHandoffChannel.open(lockFile)
+        def channelFile = tmpDir.file("test.lock.handoff")
+
+        when:
+        first.close()
+
+        then:
+        channelFile.exists()
+
+        when:
+        second.close()
+
+        then:
+        !channelFile.exists()
+    }
+
+    def "can reopen channel after it has been removed"() {
+        FileLockHandoffChannel.open(lockFile).close()
+
+        when:
+        def channel = FileLockHandoffChannel.open(lockFile)
+        channel.requestRelease(12)
+
+        then:
+        channel.isReleaseRequested(12)
+        tmpDir.file("test.lock.handoff").exists()
+
+        cleanup:
+        channel?.close()
+    }
+
+    def "does not use a channel file that has been cleared by its last user"() {
+        def channel = FileLockHandoffChannel.open(lockFile)
+        new RandomAccessFile(tmpDir.file("test.lock.handoff"), "rw").withCloseable {
+            // Clear the generation, as the last user does before it removes the file
+            it.seek(8)
+            it.writeLong(0)
+        }
+
+        expect:
+        FileLockHandoffChannel.open(lockFile) == null
+
+        cleanup:
+        channel?.close()
+    }
+
+    def "waiting for release returns when lock is released by other user of the channel"() {
+        def holder = FileLockHandoffChannel.open(lockFile)
+        def requester = FileLockHandoffChannel.open(lockFile)
+        def releaseStamp = requester.releaseStamp
+        def released = false
+
+        when:
+        async {
+            start {
+                released = requester.awaitRelease(releaseStamp, 10000)
+            }
+            start {
+                holder.released()
+            }
+        }
+
+        then:
+        released
+    }
+
+    def "waiting for release times out"() {
+        def requester = FileLockHandoffChannel.open(lockFile)
+
+        expect:
+        !requester.awaitRelease(requester.releaseStamp, 10)
+    }
+}
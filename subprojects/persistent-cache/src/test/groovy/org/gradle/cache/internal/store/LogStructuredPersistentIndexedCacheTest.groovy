@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.store
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class LogStructuredPersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    TestFile cacheFile
+    LogStructuredPersistentIndexedCache<String, Integer> cache
+
+    def setup() {
+        cacheFile = tmpDir.file("cache.log")
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "persists added, replaced and removed entries"() {
+        given:
+        createCache()
+
+        when:
+        (1..100).each { cache.put("key_$it".toString(), it) }
+        cache.put("key_1", 1000)
+        cache.remove("key_2")
+        cache.remove("unknown")
+
+        then:
+        cache.get("key_1") == 1000
+        cache.get("key_2") == null
+        cache.get("key_3") == 3
+
+        when:
+        reopen()
+
+        then:
+        cache.get("key_1") == 1000
+        cache.get("key_2") == null
+        (3..100).every { cache.get("key_$it".toString()) == it }
+    }
+
+    def "appends updates to the end of the log"() {
+        given:
+        createCache()
+        cache.put("key", 1)
+        def length = cacheFile.length()
+
+        when:
+        cache.put("key", 2)
+
+        then:
+        cacheFile.length() > length
+        cache.get("key") == 2
+        cache.garbageRecordCount == 1
+    }
+
+    def "discards a partially written record at the end of the log"() {
+        given:
+        createCache()
+        cache.put("key_1", 1)
+        cache.put("key_2", 2)
+        cache.close()
+        def length = cacheFile.length()
+
+        when:
+        new RandomAccessFile(cacheFile, "rw").withCloseable { it.setLength(length - 2) }
+        createCache()
+
+        then:
+        cache.get("key_1") == 1
+        cache.get("key_2") == null
+
+        when:
+        cache.put("key_3", 3)
+        reopen()
+
+        then:
+        cache.get("key_1") == 1
+        cache.get("key_3") == 3
+    }
+
+    def "discards a log that is badly formed"() {
+        given:
+        cacheFile.text = "not a log"
+
+        when:
+        createCache()
+        cache.put("key", 1)
+        reopen()
+
+        then:
+        cache.get("key") == 1
+    }
+
+    def "discards a record that does not match its checksum without discarding other entries"() {
+        given:
+        createCache()
+        cache.put("key_1", 1)
+        cache.put("key_2", 2)
+        cache.close()
+
+        when:
+        new RandomAccessFile(cacheFile, "rw").withCloseable {
+            // The first byte of the value of the first record, after the log header and the record header
+            it.seek(8 + 13)
+            def b = it.read()
+            it.seek(8 + 13)
+            it.write(b ^ 0xFF)
+        }
+        createCache()
+
+        then:
+        cache.get("key_1") == null
+        cache.get("key_2") == 2
+
+        when:
+        reopen()
+
+        then:
+        cache.get("key_1") == null
+        cache.get("key_2") == 2
+    }
+
+    def "ignores a compacted log left behind by an interrupted compaction"() {
+        given:
+        createCache()
+        cache.put("key", 1)
+        cache.close()
+        tmpDir.file("cache.log.compact").text = "partially written"
+
+        when:
+        createCache()
+
+        then:
+        cache.get("key") == 1
+        !tmpDir.file("cache.log.compact").exists()
+    }
+
+    def "compacts the log on close when most records have been superseded"() {
+        given:
+        cache = new LogStructuredPersistentIndexedCache<String, Integer>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER, 0)
+        (1..10).each { i ->
+            (1..10).each { cache.put("key_$it".toString(), i * it) }
+        }
+        def length = cacheFile.length()
+
+        when:
+        reopen()
+
+        then:
+        cacheFile.length() < length / 5
+        !tmpDir.file("cache.log.compact").exists()
+        cache.garbageRecordCount == 0
+        (1..10).every { cache.get("key_$it".toString()) == 10 * it }
+    }
+
+    private void createCache() {
+        cache = new LogStructuredPersistentIndexedCache<String, Integer>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER, BaseSerializerFactory.INTEGER_SERIALIZER)
+    }
+
+    private void reopen() {
+        cache.close()
+        createCache()
+    }
+}
@@ -18,8 +18,12 @@ package org.gradle.internal.resource.transport.http;
 
 import org.apache.http.Header;
 import org.apache.http.HeaderIterator;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
 import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -33,6 +37,7 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
 import org.gradle.api.UncheckedIOException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,6 +46,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Provides some convenience and unified logging.
@@ -48,8 +54,12 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class HttpClientHelper implements Closeable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
+    private static final String REQUEST_START_ATTRIBUTE = "org.gradle.request-start";
     private CloseableHttpClient client;
     private final HttpSettings settings;
+    private final int maxConnections;
+    private final AtomicLong openedConnectionCount = new AtomicLong();
+    private final AtomicLong connectNanos = new AtomicLong();
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -61,7 +71,15 @@ public class HttpClientHelper implements Closeable {
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
     public HttpClientHelper(HttpSettings settings) {
+        this(settings, 0);
+    }
+
+    /**
+     * @param maxConnections the maximum number of connections to keep open to each server, or 0 to use the default.
+     */
+    public HttpClientHelper(HttpSettings settings, int maxConnections) {
         this.settings = settings;
+        this.maxConnections = maxConnections;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -146,6 +164,7 @@ public class HttpClientHelper implements Closeable {
         // Without this, HTTP Client prohibits multiple redirects to the same location within the same context
         httpContext.removeAttribute(HttpClientContext.REDIRECT_LOCATIONS);
         LOGGER.debug("Performing HTTP {}: {}", request.getMethod(), request.getURI());
+        httpContext.setAttribute(REQUEST_START_ATTRIBUTE, System.nanoTime());
         return getClient().execute(request, httpContext);
     }
 
@@ -168,11 +187,43 @@ public class HttpClientHelper implements Closeable {
             HttpClientBuilder builder = HttpClientBuilder.create();
             builder.setRedirectStrategy(new AlwaysRedirectRedirectStrategy());
             new HttpClientConfigurer(settings).configure(builder);
+            if (maxConnections > 0) {
+                builder.setMaxConnTotal(maxConnections);
+                builder.setMaxConnPerRoute(maxConnections);
+            }
+            builder.setRequestExecutor(new HttpRequestExecutor() {
+                @Override
+                public HttpResponse execute(HttpRequest request, HttpClientConnection connection, HttpContext context) throws IOException, HttpException {
+                    // The connection has been opened for this request when nothing has been sent over it yet
+                    if (connection.getMetrics().getRequestCount() == 0) {
+                        openedConnectionCount.incrementAndGet();
+                        Object start = context.removeAttribute(REQUEST_START_ATTRIBUTE);
+                        if (start != null) {
+                            connectNanos.addAndGet(System.nanoTime() - (Long) start);
+                        }
+                    }
+                    return super.execute(request, connection, context);
+                }
+            });
             this.client = builder.build();
         }
         return client;
     }
 
+    /**
+     * Returns the number of connections opened so far. Requests that reuse a kept alive connection do not open a connection.
+     */
+    public long getOpenedConnectionCount() {
+        return openedConnectionCount.get();
+    }
+
+    /**
+     * Returns the total time taken to open connections so far, including the TLS handshake, in nanoseconds.
+     */
+    public long getConnectNanos() {
+        return connectNanos.get();
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (client != null) {